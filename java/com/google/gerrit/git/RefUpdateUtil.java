@@ -17,7 +17,6 @@ package com.google.gerrit.git;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.flogger.LazyArgs.lazy;
 
-import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.flogger.FluentLogger;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
@@ -113,8 +112,7 @@ public class RefUpdateUtil {
    * @throws LockFailureException if the transaction was aborted due to lock failure.
    * @throws IOException if any result was not {@code OK}.
    */
-  @VisibleForTesting
-  static void checkResults(BatchRefUpdate bru) throws IOException {
+  public static void checkResults(BatchRefUpdate bru) throws IOException {
     if (bru.getCommands().isEmpty()) {
       return;
     }
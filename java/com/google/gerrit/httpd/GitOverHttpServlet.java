@@ -26,6 +26,7 @@ import com.google.gerrit.common.data.Capable;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.extensions.restapi.AuthException;
+import com.google.gerrit.httpd.restapi.RestApiServlet;
 import com.google.gerrit.server.AccessPath;
 import com.google.gerrit.server.AnonymousUser;
 import com.google.gerrit.server.CurrentUser;
@@ -37,6 +38,7 @@ import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.git.PermissionAwareRepositoryManager;
 import com.google.gerrit.server.git.TracingHook;
 import com.google.gerrit.server.git.TransferConfig;
+import com.google.gerrit.server.git.UploadPackAdmissionControl;
 import com.google.gerrit.server.git.UploadPackInitializer;
 import com.google.gerrit.server.git.UsersSelfAdvertiseRefsHook;
 import com.google.gerrit.server.git.receive.AsyncReceiveCommits;
@@ -49,6 +51,7 @@ import com.google.gerrit.server.permissions.ProjectPermission;
 import com.google.gerrit.server.plugincontext.PluginSetContext;
 import com.google.gerrit.server.project.ProjectCache;
 import com.google.gerrit.server.project.ProjectState;
+import com.google.gerrit.server.quota.QuotaException;
 import com.google.gerrit.server.util.time.TimeUtil;
 import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
@@ -109,7 +112,7 @@ public class GitOverHttpServlet extends GitServlet {
   public static final String URL_REGEX;
   public static final String GIT_COMMAND_STATUS_HEADER = "X-git-command-status";
 
-  private enum GIT_COMMAND_STATUS {
+  enum GIT_COMMAND_STATUS {
     OK(0),
     FAIL(-1),
     MAY_NOT_CONTINUE(-2);
@@ -159,6 +162,10 @@ public class GitOverHttpServlet extends GitServlet {
               cache(ID_CACHE, AdvertisedObjectsCacheKey.class, new TypeLiteral<Set<ObjectId>>() {})
                   .maximumWeight(4096)
                   .expireAfterWrite(Duration.ofMinutes(10));
+              cache(PackResponseCache.CACHE_NAME, String.class, PackResponseCache.Entry.class)
+                  .maximumWeight(1024L * 1024 * 1024)
+                  .weigher(PackResponseCache.EntryWeigher.class)
+                  .expireAfterWrite(Duration.ofMinutes(10));
             }
           });
 
@@ -391,6 +398,8 @@ public class GitOverHttpServlet extends GitServlet {
     private final PluginSetContext<RequestListener> requestListeners;
     private final UsersSelfAdvertiseRefsHook usersSelfAdvertiseRefsHook;
     private final Provider<WebSession> sessionProvider;
+    private final UploadPackAdmissionControl admissionControl;
+    private final PackResponseCache packCache;
 
     @Inject
     UploadFilter(
@@ -401,7 +410,9 @@ public class GitOverHttpServlet extends GitServlet {
         Metrics metrics,
         PluginSetContext<RequestListener> requestListeners,
         UsersSelfAdvertiseRefsHook usersSelfAdvertiseRefsHook,
-        Provider<WebSession> sessionProvider) {
+        Provider<WebSession> sessionProvider,
+        UploadPackAdmissionControl admissionControl,
+        PackResponseCache packCache) {
       this.uploadValidatorsFactory = uploadValidatorsFactory;
       this.permissionBackend = permissionBackend;
       this.userProvider = userProvider;
@@ -410,6 +421,8 @@ public class GitOverHttpServlet extends GitServlet {
       this.requestListeners = requestListeners;
       this.usersSelfAdvertiseRefsHook = usersSelfAdvertiseRefsHook;
       this.sessionProvider = sessionProvider;
+      this.admissionControl = admissionControl;
+      this.packCache = packCache;
     }
 
     @Override
@@ -460,9 +473,24 @@ public class GitOverHttpServlet extends GitServlet {
           up.setAdvertiseRefsHook(usersSelfAdvertiseRefsHook);
         }
 
-        try (TracingHook tracingHook = new TracingHook()) {
+        try (UploadPackAdmissionControl.Permit permit =
+                admissionControl.admit(state.getNameKey(), userProvider.get());
+            TracingHook tracingHook = new TracingHook()) {
           up.setProtocolV2Hook(tracingHook);
-          next.doFilter(httpRequest, responseWrapper);
+          if (packCache.isEnabled() && !state.isAllUsers()) {
+            packCache.serve(
+                state.getNameKey(),
+                perm,
+                PermissionAwareRepositoryManager.wrap(repo, perm),
+                httpRequest,
+                responseWrapper,
+                next);
+          } else {
+            next.doFilter(httpRequest, responseWrapper);
+          }
+        } catch (QuotaException e) {
+          GitSmartHttpTools.sendError(
+              httpRequest, responseWrapper, RestApiServlet.SC_TOO_MANY_REQUESTS, e.getMessage());
         }
       } finally {
         groupAuditService.dispatch(
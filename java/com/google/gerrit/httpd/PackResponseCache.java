@@ -0,0 +1,722 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.httpd;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.config.SitePaths;
+import com.google.gerrit.server.git.validators.UploadValidationListener;
+import com.google.gerrit.server.permissions.PermissionBackend;
+import com.google.gerrit.server.permissions.PermissionBackendException;
+import com.google.gerrit.server.permissions.ProjectPermission;
+import com.google.gerrit.server.plugincontext.PluginSetContext;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.SequenceInputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.PreUploadHook;
+
+/**
+ * Caches the responses of upload-pack requests over HTTP on disk.
+ *
+ * <p>Many clients (e.g. CI agents) clone the same repository at the same tip, and every such clone
+ * makes JGit count, compress and write the same pack again. If {@code upload.enablePackCache} is
+ * set, the response of the final request of a fetch (the one that contains {@code done}) is stored
+ * under a key made of the project, the protocol version, the accepted encoding and the request
+ * body, without the {@code agent} and {@code session-id} capabilities. Identical requests are then
+ * answered from the stored file until it expires ({@code cache.pack_responses.maxAge}) or is
+ * evicted because the total size of the stored files exceeds {@code
+ * cache.pack_responses.memoryLimit}. Files of responses that are no longer cached are deleted
+ * whenever a new response is stored.
+ *
+ * <p>The pack sent for a request only depends on the requested objects, which never change.
+ * Requests whose response depends on ref values ({@code want-ref}, {@code deepen-not}) are not
+ * cached. Since objects are sent only if they are reachable from refs that the user can see, the
+ * cache is only used for users that can read all refs of the project, which all see the same refs.
+ * Refs may have moved or been deleted since a response was recorded, hence a response is only
+ * recorded and replayed if every wanted object is the tip of a ref that is visible to the user.
+ * Other requests are passed on to upload-pack, which validates the wants. Cached
+ * responses are served without running {@link PreUploadHook}s and {@link
+ * UploadValidationListener}s, hence the cache is not used if any of them is registered.
+ */
+@Singleton
+class PackResponseCache {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** Request bodies larger than this are not cached. */
+  private static final int MAX_REQUEST_SIZE = 1024 * 1024;
+
+  static final String CACHE_NAME = "pack_responses";
+
+  /** Recorded response, stored in the file. */
+  static class Entry {
+    final Path file;
+    final long size;
+    final ImmutableMap<String, String> headers;
+
+    Entry(Path file, long size, ImmutableMap<String, String> headers) {
+      this.file = file;
+      this.size = size;
+      this.headers = headers;
+    }
+  }
+
+  /** Weighs entries by the size of their file, so that the cache limits the used disk space. */
+  static class EntryWeigher implements Weigher<String, Entry> {
+    @Override
+    public int weigh(String key, Entry entry) {
+      return (int) Math.min(entry.size, Integer.MAX_VALUE);
+    }
+  }
+
+  private final DynamicSet<PreUploadHook> preUploadHooks;
+  private final PluginSetContext<UploadValidationListener> uploadValidationListeners;
+  @Nullable private final Path dir;
+  private final long maxEntrySize;
+  private final Cache<String, Entry> entries;
+  private final Set<String> recording = new HashSet<>();
+  private final Set<Path> recordingFiles = new HashSet<>();
+  private final Counter0 hitCount;
+  private final Counter0 missCount;
+  private final Counter0 bytesSaved;
+
+  @Inject
+  PackResponseCache(
+      @GerritServerConfig Config cfg,
+      SitePaths site,
+      @Named(CACHE_NAME) Cache<String, Entry> entries,
+      DynamicSet<PreUploadHook> preUploadHooks,
+      PluginSetContext<UploadValidationListener> uploadValidationListeners,
+      MetricMaker metricMaker) {
+    this(
+        cfg.getBoolean("upload", "enablePackCache", false) ? createDir(cfg, site) : null,
+        cfg.getLong("upload", "packCacheMaxEntrySize", 256L * 1024 * 1024),
+        entries,
+        preUploadHooks,
+        uploadValidationListeners,
+        metricMaker);
+  }
+
+  @VisibleForTesting
+  PackResponseCache(
+      @Nullable Path dir,
+      long maxEntrySize,
+      Cache<String, Entry> entries,
+      DynamicSet<PreUploadHook> preUploadHooks,
+      PluginSetContext<UploadValidationListener> uploadValidationListeners,
+      MetricMaker metricMaker) {
+    this.dir = dir;
+    this.maxEntrySize = Math.min(maxEntrySize, Integer.MAX_VALUE);
+    this.entries = entries;
+    this.preUploadHooks = preUploadHooks;
+    this.uploadValidationListeners = uploadValidationListeners;
+
+    this.hitCount =
+        metricMaker.newCounter(
+            "git/upload-pack/pack_cache/hit_count",
+            new Description("Upload-pack requests that were answered from the pack cache")
+                .setRate()
+                .setUnit("requests"));
+    this.missCount =
+        metricMaker.newCounter(
+            "git/upload-pack/pack_cache/miss_count",
+            new Description("Cacheable upload-pack requests that were not in the pack cache")
+                .setRate()
+                .setUnit("requests"));
+    this.bytesSaved =
+        metricMaker.newCounter(
+            "git/upload-pack/pack_cache/bytes_saved",
+            new Description("Bytes of pack responses that were served from the pack cache")
+                .setRate()
+                .setUnit(Units.BYTES));
+  }
+
+  @Nullable
+  private static Path createDir(Config cfg, SitePaths site) {
+    String cacheDir = cfg.getString("cache", null, "directory");
+    if (cacheDir == null) {
+      logger.atWarning().log("upload.enablePackCache requires cache.directory");
+      return null;
+    }
+    Path dir = site.resolve(cacheDir).resolve(DIRECTORY);
+    try {
+      Files.createDirectories(dir);
+      // The index of the cached responses is kept in memory, responses of a previous run are
+      // unknown.
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+        for (Path file : files) {
+          Files.deleteIfExists(file);
+        }
+      }
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Cannot create pack cache %s", dir.toAbsolutePath());
+      return null;
+    }
+    logger.atInfo().log("Enabling pack cache %s", dir.toAbsolutePath());
+    return dir;
+  }
+
+  /** Whether responses may be served from the cache. */
+  boolean isEnabled() {
+    return dir != null
+        && !preUploadHooks.iterator().hasNext()
+        && uploadValidationListeners.isEmpty();
+  }
+
+  /** Upload-pack request whose response can be cached. */
+  @VisibleForTesting
+  static class CacheableRequest {
+    final String key;
+    final ImmutableSet<ObjectId> wants;
+
+    CacheableRequest(String key, ImmutableSet<ObjectId> wants) {
+      this.key = key;
+      this.wants = wants;
+    }
+  }
+
+  /**
+   * Answers the upload-pack request from the cache, or passes it on to {@code next} and records
+   * the response if it can be cached.
+   *
+   * <p>Must only be called if {@link #isEnabled()}. Requests of users that cannot read all refs of
+   * the project are passed on to {@code next}.
+   *
+   * @param project project that is fetched from.
+   * @param perm permissions of the user on the project.
+   * @param repo repository of the project, exposing only the refs that are visible to the user.
+   * @param req upload-pack request.
+   * @param rsp response to the request.
+   * @param next filter chain that executes upload-pack.
+   */
+  void serve(
+      Project.NameKey project,
+      PermissionBackend.ForProject perm,
+      Repository repo,
+      HttpServletRequest req,
+      HttpServletResponse rsp,
+      FilterChain next)
+      throws IOException, ServletException {
+    if (!"POST".equals(req.getMethod())
+        || !req.getRequestURI().endsWith("/git-upload-pack")
+        || !canReadAllRefs(perm)) {
+      next.doFilter(req, rsp);
+      return;
+    }
+
+    InputStream in = req.getInputStream();
+    byte[] body = ByteStreams.toByteArray(ByteStreams.limit(in, MAX_REQUEST_SIZE + 1));
+    if (body.length > MAX_REQUEST_SIZE) {
+      next.doFilter(
+          new BufferedRequest(req, new SequenceInputStream(new ByteArrayInputStream(body), in)),
+          rsp);
+      return;
+    }
+    HttpServletRequest bufferedReq = new BufferedRequest(req, new ByteArrayInputStream(body));
+
+    CacheableRequest cacheable = parse(project, req, body);
+    if (cacheable == null) {
+      next.doFilter(bufferedReq, rsp);
+      return;
+    }
+
+    String key = cacheable.key;
+    if (!wantsAreVisibleTips(repo, cacheable.wants)) {
+      // Upload-pack may still serve the wants, e.g. if they are reachable from a visible ref, but
+      // such a response must neither be replayed nor be recorded.
+      entries.invalidate(key);
+      next.doFilter(bufferedReq, rsp);
+      return;
+    }
+
+    Entry entry = entries.getIfPresent(key);
+    if (entry != null) {
+      if (replay(entry, rsp)) {
+        hitCount.increment();
+        bytesSaved.incrementBy(entry.size);
+        return;
+      }
+      entries.invalidate(key);
+    }
+    missCount.increment();
+
+    Path file = startRecording(key);
+    if (file == null) {
+      next.doFilter(bufferedReq, rsp);
+      return;
+    }
+    Entry recorded = null;
+    try {
+      recorded = record(file, bufferedReq, rsp, next);
+    } finally {
+      finishRecording(key, file, recorded);
+    }
+  }
+
+  private static boolean canReadAllRefs(PermissionBackend.ForProject perm) {
+    try {
+      return perm.test(ProjectPermission.READ);
+    } catch (PermissionBackendException e) {
+      logger.atWarning().withCause(e).log("Cannot check read permission, not using pack cache");
+      return false;
+    }
+  }
+
+  /**
+   * Creates the file for recording the response of the request, or returns {@code null} if the
+   * response must not be recorded because another request is already recording the same response.
+   * Every recording gets its own file, so that a file that is still replayed is never overwritten.
+   */
+  @Nullable
+  private synchronized Path startRecording(String key) {
+    if (!recording.add(key)) {
+      return null;
+    }
+    try {
+      Path file = Files.createTempFile(dir, key + "-", ".pack");
+      recordingFiles.add(file);
+      return file;
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Cannot create pack cache file");
+      recording.remove(key);
+      return null;
+    }
+  }
+
+  /**
+   * Caches the recorded response, if any, and deletes the files of responses that are no longer
+   * cached because they expired, were evicted or the cache was flushed. The cache only grows
+   * through recordings, hence this keeps the files within the limit of the cache.
+   */
+  private synchronized void finishRecording(String key, Path file, @Nullable Entry recorded) {
+    recording.remove(key);
+    recordingFiles.remove(file);
+    if (recorded != null) {
+      entries.put(key, recorded);
+    }
+    entries.cleanUp();
+    Set<Path> used = new HashSet<>(recordingFiles);
+    entries.asMap().values().forEach(e -> used.add(e.file));
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+      for (Path f : files) {
+        if (!used.contains(f)) {
+          Files.deleteIfExists(f);
+        }
+      }
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Cannot delete unused files of pack cache");
+    }
+  }
+
+  /** Passes the request on to upload-pack and returns the response if it was recorded completely. */
+  @Nullable
+  private Entry record(
+      Path file, HttpServletRequest req, HttpServletResponse rsp, FilterChain next)
+      throws IOException, ServletException {
+    RecordingResponse recorder;
+    try {
+      recorder =
+          new RecordingResponse(
+              rsp, new BufferedOutputStream(Files.newOutputStream(file)), maxEntrySize);
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Cannot create pack cache file");
+      next.doFilter(req, rsp);
+      return null;
+    }
+    try {
+      next.doFilter(req, recorder);
+    } finally {
+      recorder.closeRecording();
+    }
+    return recorder.isComplete()
+        ? new Entry(file, recorder.size, ImmutableMap.copyOf(recorder.headers))
+        : null;
+  }
+
+  /**
+   * Whether all wanted objects are tips of refs that are visible to the user. Replaying a response
+   * bypasses the validation of the wants by upload-pack, so it must not serve objects of refs that
+   * were deleted or rewound after the response was recorded.
+   */
+  private static boolean wantsAreVisibleTips(Repository repo, Set<ObjectId> wants) {
+    try {
+      RefDatabase refDb = repo.getRefDatabase();
+      for (ObjectId want : wants) {
+        if (refDb.getTipsWithSha1(want).isEmpty()) {
+          return false;
+        }
+      }
+      return true;
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Cannot check wants of cached pack request");
+      return false;
+    }
+  }
+
+  private static boolean replay(Entry entry, HttpServletResponse rsp) throws IOException {
+    InputStream in;
+    try {
+      in = Files.newInputStream(entry.file);
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Cannot read cached pack %s", entry.file);
+      return false;
+    }
+    try (in) {
+      rsp.setStatus(HttpServletResponse.SC_OK);
+      entry.headers.forEach(rsp::setHeader);
+      rsp.setContentLengthLong(entry.size);
+      ByteStreams.copy(in, rsp.getOutputStream());
+    }
+    return true;
+  }
+
+  @Nullable
+  private static CacheableRequest parse(
+      Project.NameKey project, HttpServletRequest req, byte[] body) {
+    String encoding = req.getHeader("Content-Encoding");
+    if ("gzip".equals(encoding) || "x-gzip".equals(encoding)) {
+      try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+        body = ByteStreams.toByteArray(ByteStreams.limit(in, MAX_REQUEST_SIZE + 1));
+      } catch (IOException e) {
+        return null;
+      }
+      if (body.length > MAX_REQUEST_SIZE) {
+        return null;
+      }
+    } else if (encoding != null) {
+      return null;
+    }
+    String acceptEncoding = Strings.nullToEmpty(req.getHeader("Accept-Encoding"));
+    return parse(project, req.getHeader("Git-Protocol"), acceptEncoding.contains("gzip"), body);
+  }
+
+  /**
+   * Parses the cache key and the wanted objects of the upload-pack request, or returns {@code null}
+   * if the response must not be cached.
+   */
+  @VisibleForTesting
+  @Nullable
+  static CacheableRequest parse(
+      Project.NameKey project, @Nullable String protocol, boolean acceptsGzip, byte[] body) {
+    Hasher h =
+        Hashing.sha256()
+            .newHasher()
+            .putString(project.get(), UTF_8)
+            .putByte((byte) 0)
+            .putString(Strings.nullToEmpty(protocol), UTF_8)
+            .putByte((byte) 0)
+            .putBoolean(acceptsGzip);
+    ImmutableSet.Builder<ObjectId> wants = ImmutableSet.builder();
+    boolean done = false;
+    int pos = 0;
+    while (pos < body.length) {
+      if (pos + 4 > body.length) {
+        return null;
+      }
+      int len;
+      try {
+        len = Integer.parseInt(new String(body, pos, 4, US_ASCII), 16);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+      if (len < 4) {
+        // Flush, delimiter or response end packet.
+        h.putInt(len);
+        pos += 4;
+        continue;
+      }
+      if (pos + len > body.length) {
+        return null;
+      }
+      String line = new String(body, pos + 4, len - 4, UTF_8);
+      pos += len;
+      if (line.endsWith("\n")) {
+        line = line.substring(0, line.length() - 1);
+      }
+      if (line.startsWith("want-ref ")
+          || line.startsWith("deepen-not ")
+          || (line.startsWith("command=") && !line.equals("command=fetch"))) {
+        return null;
+      }
+      if (line.startsWith("want ")) {
+        String id = line.substring("want ".length()).split(" ", 2)[0];
+        if (!ObjectId.isId(id)) {
+          return null;
+        }
+        wants.add(ObjectId.fromString(id));
+      }
+      done |= line.equals("done");
+      h.putString(withoutVolatileCapabilities(line), UTF_8).putByte((byte) '\n');
+    }
+    ImmutableSet<ObjectId> wanted = wants.build();
+    return done && !wanted.isEmpty() ? new CacheableRequest(h.hash().toString(), wanted) : null;
+  }
+
+  private static String withoutVolatileCapabilities(String line) {
+    return Arrays.stream(line.split(" "))
+        .filter(s -> !s.startsWith("agent=") && !s.startsWith("session-id="))
+        .collect(joining(" "));
+  }
+
+  private static class BufferedRequest extends HttpServletRequestWrapper {
+    private final InputStream body;
+
+    BufferedRequest(HttpServletRequest req, InputStream body) {
+      super(req);
+      this.body = body;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+      return new ServletInputStream() {
+        @Override
+        public int read() throws IOException {
+          return body.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+          return body.read(b, off, len);
+        }
+
+        @Override
+        public boolean isFinished() {
+          try {
+            return body.available() == 0;
+          } catch (IOException e) {
+            return true;
+          }
+        }
+
+        @Override
+        public boolean isReady() {
+          return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+          // Upload-pack reads the request with blocking I/O and the request is never put into
+          // asynchronous mode, in which case the servlet spec requires this exception.
+          throw new IllegalStateException("request is not in asynchronous mode");
+        }
+      };
+    }
+  }
+
+  /** Passes the response on to the client and records it in a file. */
+  private static class RecordingResponse extends HttpServletResponseWrapper {
+    private final long maxSize;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    @Nullable private OutputStream file;
+    private int status = SC_OK;
+    private boolean failed;
+    private long size;
+    private ServletOutputStream out;
+
+    RecordingResponse(HttpServletResponse rsp, OutputStream file, long maxSize) {
+      super(rsp);
+      this.file = file;
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    public void setStatus(int sc) {
+      status = sc;
+      super.setStatus(sc);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+      status = sc;
+      super.sendError(sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+      status = sc;
+      super.sendError(sc, msg);
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+      record(name, value);
+      super.setHeader(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+      record(name, value);
+      super.addHeader(name, value);
+    }
+
+    @Override
+    public void setContentType(String type) {
+      record("Content-Type", type);
+      super.setContentType(type);
+    }
+
+    private void record(String name, String value) {
+      if (!"Content-Length".equalsIgnoreCase(name)) {
+        headers.put(name, value);
+      }
+    }
+
+    @Override
+    public void reset() {
+      failed = true;
+      super.reset();
+    }
+
+    @Override
+    public void resetBuffer() {
+      failed = true;
+      super.resetBuffer();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      failed = true;
+      return super.getWriter();
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (out == null) {
+        ServletOutputStream client = super.getOutputStream();
+        out =
+            new ServletOutputStream() {
+              @Override
+              public void write(int b) throws IOException {
+                client.write(b);
+                recordBytes(new byte[] {(byte) b}, 0, 1);
+              }
+
+              @Override
+              public void write(byte[] b, int off, int len) throws IOException {
+                client.write(b, off, len);
+                recordBytes(b, off, len);
+              }
+
+              @Override
+              public void flush() throws IOException {
+                client.flush();
+              }
+
+              @Override
+              public boolean isReady() {
+                return client.isReady();
+              }
+
+              @Override
+              public void setWriteListener(WriteListener writeListener) {
+                client.setWriteListener(writeListener);
+              }
+            };
+      }
+      return out;
+    }
+
+    private void recordBytes(byte[] b, int off, int len) {
+      if (file == null) {
+        return;
+      }
+      size += len;
+      if (size > maxSize) {
+        failed = true;
+        closeRecording();
+        return;
+      }
+      try {
+        file.write(b, off, len);
+      } catch (IOException e) {
+        logger.atWarning().withCause(e).log("Cannot write pack cache file");
+        failed = true;
+        closeRecording();
+      }
+    }
+
+    void closeRecording() {
+      if (file == null) {
+        return;
+      }
+      try {
+        file.close();
+      } catch (IOException e) {
+        logger.atWarning().withCause(e).log("Cannot write pack cache file");
+        failed = true;
+      }
+      file = null;
+    }
+
+    /** Whether a successful response was recorded completely. */
+    boolean isComplete() {
+      return !failed
+          && status == SC_OK
+          && GitOverHttpServlet.GIT_COMMAND_STATUS
+              .OK
+              .toString()
+              .equals(headers.get(GitOverHttpServlet.GIT_COMMAND_STATUS_HEADER));
+    }
+  }
+}
@@ -48,6 +48,7 @@ import com.google.gerrit.server.cache.h2.CacheOptions;
 import com.google.gerrit.server.cache.h2.H2CacheModule;
 import com.google.gerrit.server.cache.mem.DefaultMemoryCacheModule;
 import com.google.gerrit.server.change.ChangeJson;
+import com.google.gerrit.server.change.ChangeKeyCache;
 import com.google.gerrit.server.change.ChangeKindCacheImpl;
 import com.google.gerrit.server.change.EmailNewPatchSet;
 import com.google.gerrit.server.change.MergeabilityCacheImpl;
@@ -81,6 +82,7 @@ import com.google.gerrit.server.patch.DiffOperationsForCommitValidation;
 import com.google.gerrit.server.patch.DiffOperationsImpl;
 import com.google.gerrit.server.patch.PatchListCacheImpl;
 import com.google.gerrit.server.permissions.DefaultPermissionBackendModule;
+import com.google.gerrit.server.permissions.RefVisibilityCache;
 import com.google.gerrit.server.permissions.SectionSortCache;
 import com.google.gerrit.server.plugins.PluginModule;
 import com.google.gerrit.server.project.CommentLinkProvider;
@@ -190,7 +192,7 @@ public class BatchProgramModule extends FactoryModule {
     modules.add(new DefaultMemoryCacheModule());
     modules.add(new H2CacheModule(cacheOptions));
     modules.add(new GroupModule());
-    modules.add(new NoteDbModule());
+    modules.add(NoteDbModule.forBatchProgram());
     modules.add(AccountCacheImpl.module());
     modules.add(AccountCacheImpl.bindingModule());
     modules.add(ConflictsCacheImpl.module());
@@ -199,6 +201,8 @@ public class BatchProgramModule extends FactoryModule {
     modules.add(GroupIncludeCacheImpl.module());
     modules.add(ProjectCacheImpl.module());
     modules.add(SectionSortCache.module());
+    modules.add(RefVisibilityCache.module());
+    modules.add(ChangeKeyCache.module());
     modules.add(ChangeKindCacheImpl.module());
     modules.add(MergeabilityCacheImpl.module());
     modules.add(ServiceUserClassifierImpl.module());
@@ -27,7 +27,8 @@ public class PerThreadRefDbCache {
       PerThreadCache.Key.create(PerThreadRefDbCache.class);
 
   public static RefDatabase getRefDatabase(File path, RefDatabase refDb) {
-    if (PerThreadCache.get() != null) {
+    // Only the ref directory supports snapshots, e.g. reftable databases are used as they are.
+    if (PerThreadCache.get() != null && refDb instanceof RefDirectory) {
       return PerThreadCache.get()
           .get(REFDB_CACHE_KEY, PerThreadRefDbCache::new)
           .computeIfAbsent(path, p -> ((RefDirectory) refDb).createSnapshottingRefDirectory());
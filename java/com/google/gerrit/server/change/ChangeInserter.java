@@ -136,6 +136,7 @@ public class ChangeInserter implements InsertChangeOp {
   private final DiffOperationsForCommitValidation.Factory diffOperationsForCommitValidationFactory;
   private final PluginSetContext<ValidationOptionsListener> validationOptionsListeners;
   private final PluginSetContext<CommitValidationInfoListener> commitValidationInfoListeners;
+  private final ChangeKeyCache changeKeyCache;
   private final boolean sendEmailEnabled;
 
   private final Change.Id changeId;
@@ -197,6 +198,7 @@ public class ChangeInserter implements InsertChangeOp {
       DiffOperationsForCommitValidation.Factory diffOperationsForCommitValidationFactory,
       PluginSetContext<ValidationOptionsListener> validationOptionsListeners,
       PluginSetContext<CommitValidationInfoListener> commitValidationInfoListeners,
+      ChangeKeyCache changeKeyCache,
       @Assisted Change.Id changeId,
       @Assisted ObjectId commitId,
       @Assisted String refName) {
@@ -219,6 +221,7 @@ public class ChangeInserter implements InsertChangeOp {
     this.diffOperationsForCommitValidationFactory = diffOperationsForCommitValidationFactory;
     this.validationOptionsListeners = validationOptionsListeners;
     this.commitValidationInfoListeners = commitValidationInfoListeners;
+    this.changeKeyCache = changeKeyCache;
 
     this.changeId = changeId;
     this.psId = PatchSet.id(changeId, INITIAL_PATCH_SET_ID);
@@ -602,6 +605,8 @@ public class ChangeInserter implements InsertChangeOp {
 
   @Override
   public void postUpdate(PostUpdateContext ctx) throws Exception {
+    // The Change-Id may now map to more than one change on the branch.
+    changeKeyCache.invalidate(change.getDest(), change.getKey());
     reviewerAdditions.postUpdate(ctx);
     NotifyResolver.Result notify = ctx.getNotify(change.getId());
     if (sendMail && sendEmailEnabled) {
@@ -121,6 +121,7 @@ import com.google.gerrit.server.project.RemoveReviewerControl;
 import com.google.gerrit.server.project.SubmitRuleOptions;
 import com.google.gerrit.server.query.change.ChangeData;
 import com.google.gerrit.server.query.change.ChangeData.ChangedLines;
+import com.google.gerrit.server.query.change.ChangeNotesBulkLoader;
 import com.google.gerrit.server.util.AttentionSetUtil;
 import com.google.gerrit.server.util.ManualRequestContext;
 import com.google.gerrit.server.util.ThreadLocalRequestContext;
@@ -245,6 +246,7 @@ public class ChangeJson {
   private final Provider<ConsistencyChecker> checkerProvider;
   private final ActionJson actionJson;
   private final ChangeNotes.Factory notesFactory;
+  private final ChangeNotesBulkLoader notesBulkLoader;
   private final LabelsJson labelsJson;
   private final RemoveReviewerControl removeReviewerControl;
   private final TrackingFooters trackingFooters;
@@ -273,6 +275,7 @@ public class ChangeJson {
       Provider<ConsistencyChecker> checkerProvider,
       ActionJson actionJson,
       ChangeNotes.Factory notesFactory,
+      ChangeNotesBulkLoader notesBulkLoader,
       LabelsJson labelsJson,
       RemoveReviewerControl removeReviewerControl,
       TrackingFooters trackingFooters,
@@ -294,6 +297,7 @@ public class ChangeJson {
     this.checkerProvider = checkerProvider;
     this.actionJson = actionJson;
     this.notesFactory = notesFactory;
+    this.notesBulkLoader = notesBulkLoader;
     this.labelsJson = labelsJson;
     this.removeReviewerControl = removeReviewerControl;
     this.trackingFooters = trackingFooters;
@@ -531,14 +535,15 @@ public class ChangeJson {
               "Load change data for lazyLoad options",
               Metadata.builder().resourceCount(all.size()).build())) {
         boolean isIdentifiedUser = userProvider.get().isIdentifiedUser();
+        // Mark all ChangeDatas as coming from the index, but allow backfilling data from NoteDb
+        all.forEach(
+            cd ->
+                cd.setStorageConstraint(
+                    ChangeData.StorageConstraint.INDEX_PRIMARY_NOTEDB_SECONDARY));
+        notesBulkLoader.load(all);
         all.parallelStream()
             .forEach(
                 cd -> {
-                  // Mark all ChangeDatas as coming from the index, but allow backfilling data from
-                  // NoteDb
-                  cd.setStorageConstraint(
-                      ChangeData.StorageConstraint.INDEX_PRIMARY_NOTEDB_SECONDARY);
-
                   Set<ChangeData> singleCdSet = Collections.singleton(cd);
                   ChangeData.ensureChangeLoaded(singleCdSet);
                   if (has(ALL_REVISIONS)) {
@@ -0,0 +1,145 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.change;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.cache.Cache;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.notedb.ChangeNotes;
+import com.google.gerrit.server.project.NoSuchChangeException;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches which change has a given Change-Id on a branch.
+ *
+ * <p>Used by {@code ReceiveCommits} to look up the change that is updated by a push of a single
+ * commit for review without querying the change index. Entries are only written for Change-Ids
+ * that map to exactly one change on the branch. Since changes may be deleted or moved to another
+ * branch, every cached entry is verified against the change notes before it is used; entries that
+ * don't match are dropped and the caller falls back to the index.
+ *
+ * <p>A cached entry can't detect that a second change with the same Change-Id was added to the
+ * branch, hence creating a change and moving a change to another branch must {@link #invalidate}
+ * the Change-Id on the affected branches.
+ */
+@Singleton
+public class ChangeKeyCache {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final String CACHE_NAME = "changes_by_key";
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(CACHE_NAME, Key.class, Change.Id.class).maximumWeight(100_000);
+        bind(ChangeKeyCache.class);
+      }
+    };
+  }
+
+  @AutoValue
+  abstract static class Key {
+    static Key create(BranchNameKey branch, Change.Key changeKey) {
+      return new AutoValue_ChangeKeyCache_Key(branch, changeKey);
+    }
+
+    abstract BranchNameKey branch();
+
+    abstract Change.Key changeKey();
+  }
+
+  private final Cache<Key, Change.Id> cache;
+  private final ChangeNotes.Factory notesFactory;
+  private final ChangeData.Factory changeDataFactory;
+  private final AtomicLong generation = new AtomicLong();
+
+  @Inject
+  ChangeKeyCache(
+      @Named(CACHE_NAME) Cache<Key, Change.Id> cache,
+      ChangeNotes.Factory notesFactory,
+      ChangeData.Factory changeDataFactory) {
+    this.cache = cache;
+    this.notesFactory = notesFactory;
+    this.changeDataFactory = changeDataFactory;
+  }
+
+  /**
+   * Returns the change with the given Change-Id on the branch, if it is cached.
+   *
+   * @return the change, or empty if there is no cached entry or the cached entry doesn't match the
+   *     change anymore.
+   */
+  public Optional<ChangeData> get(BranchNameKey branch, Change.Key changeKey) {
+    Key key = Key.create(branch, changeKey);
+    Change.Id id = cache.getIfPresent(key);
+    if (id == null) {
+      return Optional.empty();
+    }
+    ChangeNotes notes;
+    try {
+      notes = notesFactory.createChecked(branch.project(), id);
+    } catch (NoSuchChangeException e) {
+      notes = null;
+    }
+    if (notes == null
+        || !notes.getChange().getDest().equals(branch)
+        || !notes.getChange().getKey().equals(changeKey)) {
+      logger.atFine().log("Dropping outdated entry %s -> %s", changeKey, id);
+      cache.invalidate(key);
+      return Optional.empty();
+    }
+    return Optional.of(changeDataFactory.create(notes));
+  }
+
+  /**
+   * Returns the current generation of the cache.
+   *
+   * <p>Must be read before the change index is queried for the entry that is passed to {@link
+   * #put}, so that the result of a query that raced with an {@link #invalidate} is not cached.
+   */
+  public long generation() {
+    return generation.get();
+  }
+
+  /**
+   * Records that {@code id} is the only change with the given Change-Id on the branch.
+   *
+   * @param generation the {@link #generation()} before the change index was queried; if the cache
+   *     was invalidated since, the entry is not cached.
+   */
+  public void put(BranchNameKey branch, Change.Key changeKey, Change.Id id, long generation) {
+    Key key = Key.create(branch, changeKey);
+    cache.put(key, id);
+    if (this.generation.get() != generation) {
+      cache.invalidate(key);
+    }
+  }
+
+  /** Drops the entry for the given Change-Id on the branch, if any. */
+  public void invalidate(BranchNameKey branch, Change.Key changeKey) {
+    generation.incrementAndGet();
+    cache.invalidate(Key.create(branch, changeKey));
+  }
+}
@@ -123,6 +123,7 @@ import com.google.gerrit.server.change.AbandonOp;
 import com.google.gerrit.server.change.AccountPatchReviewStore;
 import com.google.gerrit.server.change.ChangeFinder;
 import com.google.gerrit.server.change.ChangeJson;
+import com.google.gerrit.server.change.ChangeKeyCache;
 import com.google.gerrit.server.change.ChangeKindCacheImpl;
 import com.google.gerrit.server.change.ChangePluginDefinedInfoFactory;
 import com.google.gerrit.server.change.EmailNewPatchSet;
@@ -140,6 +141,7 @@ import com.google.gerrit.server.extensions.events.AttentionSetObserver;
 import com.google.gerrit.server.extensions.events.GitReferenceUpdated;
 import com.google.gerrit.server.extensions.webui.UiActions;
 import com.google.gerrit.server.flow.FlowService;
+import com.google.gerrit.server.git.AllUsersRefCacheListener;
 import com.google.gerrit.server.git.ChangeMessageModifier;
 import com.google.gerrit.server.git.GitModule;
 import com.google.gerrit.server.git.MergedByPushOp;
@@ -192,6 +194,7 @@ import com.google.gerrit.server.patch.PatchScriptFactory;
 import com.google.gerrit.server.patch.PatchScriptFactoryForAutoFix;
 import com.google.gerrit.server.patch.PatchSetInfoFactory;
 import com.google.gerrit.server.permissions.PermissionCollection;
+import com.google.gerrit.server.permissions.RefVisibilityCache;
 import com.google.gerrit.server.permissions.SectionSortCache;
 import com.google.gerrit.server.plugins.ReloadPluginListener;
 import com.google.gerrit.server.project.AccessControlModule;
@@ -270,6 +273,7 @@ public class GerritGlobalModule extends FactoryModule {
     bind(BlameCache.class).to(BlameCacheImpl.class);
     bind(RegexCompiler.class).to(DefaultRegexCompiler.class).in(SINGLETON);
     install(BatchUpdate.module());
+    install(ChangeKeyCache.module());
     install(ChangeKindCacheImpl.module());
     install(ChangeFinder.module());
     install(ConflictsCacheImpl.module());
@@ -282,6 +286,7 @@ public class GerritGlobalModule extends FactoryModule {
     install(ProjectCacheImpl.module());
     install(DiffOperationsImpl.module());
     install(SectionSortCache.module());
+    install(RefVisibilityCache.module());
     install(SubmitStrategy.module());
     install(TagCache.module());
     install(PureRevertCache.module());
@@ -293,6 +298,7 @@ public class GerritGlobalModule extends FactoryModule {
     install(new CmdLineParserModule());
     install(new ExternalIdModule());
     install(new GitModule());
+    install(new AllUsersRefCacheListener.Module());
     install(new GroupDbModule());
     install(new GroupModule());
     install(new NoteDbModule());
@@ -0,0 +1,738 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import static com.google.common.base.Throwables.throwIfInstanceOf;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static java.lang.invoke.MethodType.methodType;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.server.config.ConfigUtil;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.RefRename;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.PushCertificate;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.util.time.ProposedTimestamp;
+
+/**
+ * In-memory cache of the account, draft comment and external ID refs of {@code All-Users}.
+ *
+ * <p>Account, draft comment and external ID lookups read single refs of {@code All-Users} all the
+ * time. With many refs every {@link RefDatabase#exactRef(String)} has to look up the ref in the
+ * packed refs. This cache keeps the results of these lookups in memory, including lookups of refs
+ * that don't exist.
+ *
+ * <p>Entries are invalidated when Gerrit updates the ref ({@link AllUsersRefCacheListener}), when
+ * a {@link RefUpdate}, {@link BatchRefUpdate} or {@link RefRename} of the cached {@link
+ * RefDatabase} that touches the ref completed, and when they expire after {@code
+ * core.allUsersRefCacheMaxAge}, which bounds the staleness for refs that are updated outside of
+ * Gerrit. Every {@code core.allUsersRefCacheCheckEvery}-th hit is checked against the ref
+ * database; if the cached value is stale, the entry is refreshed and the mismatch is counted.
+ */
+public class AllUsersRefCache {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final long DEFAULT_MAX_SIZE = 100_000;
+  private static final long DEFAULT_MAX_AGE_SECONDS = TimeUnit.MINUTES.toSeconds(5);
+  private static final int DEFAULT_CHECK_EVERY = 1000;
+
+  /**
+   * Creates the cache if it is enabled by {@code core.useAllUsersRefCache}.
+   *
+   * @return the cache, or {@code null} if the cache is disabled.
+   */
+  @Nullable
+  static AllUsersRefCache create(Config cfg) {
+    if (!cfg.getBoolean("core", null, "useAllUsersRefCache", false)) {
+      return null;
+    }
+    return new AllUsersRefCache(
+        cfg.getLong("core", null, "allUsersRefCacheSize", DEFAULT_MAX_SIZE),
+        Duration.ofSeconds(
+            ConfigUtil.getTimeUnit(
+                cfg,
+                "core",
+                null,
+                "allUsersRefCacheMaxAge",
+                DEFAULT_MAX_AGE_SECONDS,
+                TimeUnit.SECONDS)),
+        cfg.getInt("core", null, "allUsersRefCacheCheckEvery", DEFAULT_CHECK_EVERY));
+  }
+
+  /** Whether lookups of the given ref are cached. */
+  static boolean isCached(String refName) {
+    return refName.startsWith(RefNames.REFS_USERS)
+        || refName.startsWith(RefNames.REFS_DRAFT_COMMENTS)
+        || refName.equals(RefNames.REFS_EXTERNAL_IDS);
+  }
+
+  private final Cache<String, Optional<Ref>> refs;
+  private final int checkEvery;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong staleCount = new AtomicLong();
+
+  /** Incremented by every invalidation, guarded by {@code this}. */
+  private long generation;
+
+  @VisibleForTesting
+  AllUsersRefCache(long maxSize, Duration maxAge, int checkEvery) {
+    this.refs = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(maxAge).build();
+    this.checkEvery = checkEvery;
+  }
+
+  /**
+   * Wraps the ref database of {@code All-Users}.
+   *
+   * @param refDb ref database that is used to load the cached refs. It must read the current state
+   *     of the refs, so that no outdated values from a snapshot are cached.
+   * @param uncachedRefDb ref database for all other calls, may be the same as {@code refDb}.
+   */
+  RefDatabase wrap(RefDatabase refDb, RefDatabase uncachedRefDb) {
+    return new CachingRefDatabase(refDb, uncachedRefDb);
+  }
+
+  /** Invalidates the cached lookup of the given ref. */
+  public void invalidate(String refName) {
+    if (!isCached(refName)) {
+      return;
+    }
+    synchronized (this) {
+      generation++;
+      refs.invalidate(refName);
+    }
+  }
+
+  public void invalidateAll() {
+    synchronized (this) {
+      generation++;
+      refs.invalidateAll();
+    }
+  }
+
+  public long hitCount() {
+    return hitCount.get();
+  }
+
+  public long missCount() {
+    return missCount.get();
+  }
+
+  public long staleCount() {
+    return staleCount.get();
+  }
+
+  public long size() {
+    return refs.size();
+  }
+
+  @Nullable
+  private Ref exactRef(RefDatabase refDb, String name) throws IOException {
+    Optional<Ref> cached = refs.getIfPresent(name);
+    if (cached != null) {
+      long hits = hitCount.incrementAndGet();
+      if (checkEvery > 0 && hits % checkEvery == 0) {
+        return check(refDb, name, cached);
+      }
+      return cached.orElse(null);
+    }
+    missCount.incrementAndGet();
+    return load(refDb, name);
+  }
+
+  @Nullable
+  private Ref check(RefDatabase refDb, String name, Optional<Ref> cached) throws IOException {
+    Ref current = refDb.exactRef(name);
+    if (Objects.equals(
+        cached.map(Ref::getObjectId).orElse(null),
+        current != null ? current.getObjectId() : null)) {
+      return cached.orElse(null);
+    }
+    staleCount.incrementAndGet();
+    logger.atWarning().log("Cached lookup of ref %s is stale, refreshing it", name);
+    invalidate(name);
+    return load(refDb, name);
+  }
+
+  @Nullable
+  private Ref load(RefDatabase refDb, String name) throws IOException {
+    long gen;
+    synchronized (this) {
+      gen = generation;
+    }
+    Ref ref = refDb.exactRef(name);
+    synchronized (this) {
+      // Don't cache the value if the ref was invalidated while it was read, the value may be
+      // outdated already.
+      if (gen == generation) {
+        refs.put(name, Optional.ofNullable(ref));
+      }
+    }
+    return ref;
+  }
+
+  private class CachingRefDatabase extends DelegateRefDatabase {
+    private final RefDatabase refDb;
+
+    CachingRefDatabase(RefDatabase refDb, RefDatabase uncachedRefDb) {
+      super(uncachedRefDb);
+      this.refDb = refDb;
+    }
+
+    @Override
+    public Ref exactRef(String name) throws IOException {
+      if (!isCached(name)) {
+        return super.exactRef(name);
+      }
+      return AllUsersRefCache.this.exactRef(refDb, name);
+    }
+
+    @Override
+    public Map<String, Ref> exactRef(String... names) throws IOException {
+      Map<String, Ref> result = new HashMap<>();
+      List<String> uncached = new ArrayList<>();
+      for (String name : names) {
+        if (isCached(name)) {
+          Ref ref = AllUsersRefCache.this.exactRef(refDb, name);
+          if (ref != null) {
+            result.put(name, ref);
+          }
+        } else {
+          uncached.add(name);
+        }
+      }
+      if (!uncached.isEmpty()) {
+        result.putAll(super.exactRef(uncached.toArray(new String[0])));
+      }
+      return result;
+    }
+
+    @Override
+    public RefUpdate newUpdate(String name, boolean detach) throws IOException {
+      return new CachingRefUpdate(this, super.newUpdate(name, detach));
+    }
+
+    @Override
+    public RefRename newRename(String fromName, String toName) throws IOException {
+      return new CachingRefRename(
+          super.newRename(fromName, toName),
+          super.newUpdate(fromName, false),
+          super.newUpdate(toName, false));
+    }
+
+    @Override
+    public BatchRefUpdate newBatchUpdate() {
+      return new CachingBatchRefUpdate(this, super.newBatchUpdate());
+    }
+
+    @Override
+    public void refresh() {
+      super.refresh();
+      invalidateAll();
+    }
+  }
+
+  /**
+   * Delegates all calls to a {@link RefUpdate} of the wrapped ref database and invalidates the
+   * cached lookup of the ref once the update completed. Setters whose values are read through
+   * protected getters are also applied to this update. Invalidating the entry when the update is
+   * created isn't sufficient, since a concurrent lookup could cache the old value again before the
+   * ref is updated.
+   */
+  private class CachingRefUpdate extends RefUpdate {
+    private final RefDatabase refDb;
+    private final RefUpdate delegate;
+
+    CachingRefUpdate(RefDatabase refDb, RefUpdate delegate) {
+      super(delegate.getRef());
+      this.refDb = refDb;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public Result update() throws IOException {
+      try {
+        return delegate.update();
+      } finally {
+        invalidate(getName());
+      }
+    }
+
+    @Override
+    public Result update(RevWalk walk) throws IOException {
+      try {
+        return delegate.update(walk);
+      } finally {
+        invalidate(getName());
+      }
+    }
+
+    @Override
+    public Result forceUpdate() throws IOException {
+      try {
+        return delegate.forceUpdate();
+      } finally {
+        invalidate(getName());
+      }
+    }
+
+    @Override
+    public Result delete() throws IOException {
+      try {
+        return delegate.delete();
+      } finally {
+        invalidate(getName());
+      }
+    }
+
+    @Override
+    public Result delete(RevWalk walk) throws IOException {
+      try {
+        return delegate.delete(walk);
+      } finally {
+        invalidate(getName());
+      }
+    }
+
+    @Override
+    public Result link(String target) throws IOException {
+      try {
+        return delegate.link(target);
+      } finally {
+        invalidate(getName());
+      }
+    }
+
+    @Override
+    public String getName() {
+      return delegate.getName();
+    }
+
+    @Override
+    public Ref getRef() {
+      return delegate.getRef();
+    }
+
+    @Override
+    public ObjectId getNewObjectId() {
+      return delegate.getNewObjectId();
+    }
+
+    @Override
+    public void setDetachingSymbolicRef() {
+      delegate.setDetachingSymbolicRef();
+    }
+
+    @Override
+    public boolean isDetachingSymbolicRef() {
+      return delegate.isDetachingSymbolicRef();
+    }
+
+    @Override
+    public void setNewObjectId(AnyObjectId id) {
+      delegate.setNewObjectId(id);
+    }
+
+    @Override
+    public ObjectId getExpectedOldObjectId() {
+      return delegate.getExpectedOldObjectId();
+    }
+
+    @Override
+    public void setExpectedOldObjectId(AnyObjectId id) {
+      delegate.setExpectedOldObjectId(id);
+    }
+
+    @Override
+    public boolean isForceUpdate() {
+      return delegate.isForceUpdate();
+    }
+
+    @Override
+    public void setForceUpdate(boolean b) {
+      delegate.setForceUpdate(b);
+    }
+
+    @Override
+    public PersonIdent getRefLogIdent() {
+      return delegate.getRefLogIdent();
+    }
+
+    @Override
+    public void setRefLogIdent(PersonIdent pi) {
+      delegate.setRefLogIdent(pi);
+    }
+
+    @Override
+    public String getRefLogMessage() {
+      return delegate.getRefLogMessage();
+    }
+
+    @Override
+    public void setRefLogMessage(String msg, boolean appendStatus) {
+      super.setRefLogMessage(msg, appendStatus);
+      delegate.setRefLogMessage(msg, appendStatus);
+    }
+
+    @Override
+    public void disableRefLog() {
+      super.disableRefLog();
+      delegate.disableRefLog();
+    }
+
+    @Override
+    public void setForceRefLog(boolean force) {
+      super.setForceRefLog(force);
+      delegate.setForceRefLog(force);
+    }
+
+    @Override
+    public ObjectId getOldObjectId() {
+      return delegate.getOldObjectId();
+    }
+
+    @Override
+    public void setPushCertificate(PushCertificate cert) {
+      super.setPushCertificate(cert);
+      delegate.setPushCertificate(cert);
+    }
+
+    @Override
+    public Result getResult() {
+      return delegate.getResult();
+    }
+
+    @Override
+    public void setCheckConflicting(boolean check) {
+      delegate.setCheckConflicting(check);
+    }
+
+    @Override
+    protected RefDatabase getRefDatabase() {
+      return refDb;
+    }
+
+    @Override
+    protected Repository getRepository() {
+      try {
+        return (Repository) ProtectedRefUpdateMethods.GET_REPOSITORY.invokeExact(delegate);
+      } catch (Throwable t) {
+        throw rethrow(t);
+      }
+    }
+
+    @Override
+    protected boolean tryLock(boolean deref) throws IOException {
+      try {
+        return (boolean) ProtectedRefUpdateMethods.TRY_LOCK.invokeExact(delegate, deref);
+      } catch (Throwable t) {
+        throwIfInstanceOf(t, IOException.class);
+        throw rethrow(t);
+      }
+    }
+
+    @Override
+    protected void unlock() {
+      try {
+        ProtectedRefUpdateMethods.UNLOCK.invokeExact(delegate);
+      } catch (Throwable t) {
+        throw rethrow(t);
+      }
+    }
+
+    @Override
+    protected Result doUpdate(Result desiredResult) throws IOException {
+      try {
+        return (Result) ProtectedRefUpdateMethods.DO_UPDATE.invokeExact(delegate, desiredResult);
+      } catch (Throwable t) {
+        throwIfInstanceOf(t, IOException.class);
+        throw rethrow(t);
+      } finally {
+        invalidate(getName());
+      }
+    }
+
+    @Override
+    protected Result doDelete(Result desiredResult) throws IOException {
+      try {
+        return (Result) ProtectedRefUpdateMethods.DO_DELETE.invokeExact(delegate, desiredResult);
+      } catch (Throwable t) {
+        throwIfInstanceOf(t, IOException.class);
+        throw rethrow(t);
+      } finally {
+        invalidate(getName());
+      }
+    }
+
+    @Override
+    protected Result doLink(String target) throws IOException {
+      try {
+        return (Result) ProtectedRefUpdateMethods.DO_LINK.invokeExact(delegate, target);
+      } catch (Throwable t) {
+        throwIfInstanceOf(t, IOException.class);
+        throw rethrow(t);
+      } finally {
+        invalidate(getName());
+      }
+    }
+  }
+
+  private static RuntimeException rethrow(Throwable t) {
+    throwIfUnchecked(t);
+    throw new IllegalStateException(t);
+  }
+
+  /**
+   * Handles to the protected methods of {@link RefUpdate}, which {@link CachingRefUpdate} can't
+   * call on the wrapped update directly since it's in another package. Only initialized when one of
+   * them is called, the public methods of {@link CachingRefUpdate} don't need them.
+   */
+  private static class ProtectedRefUpdateMethods {
+    static final MethodHandle GET_REPOSITORY = find("getRepository", methodType(Repository.class));
+    static final MethodHandle TRY_LOCK = find("tryLock", methodType(boolean.class, boolean.class));
+    static final MethodHandle UNLOCK = find("unlock", methodType(void.class));
+    static final MethodHandle DO_UPDATE =
+        find("doUpdate", methodType(RefUpdate.Result.class, RefUpdate.Result.class));
+    static final MethodHandle DO_DELETE =
+        find("doDelete", methodType(RefUpdate.Result.class, RefUpdate.Result.class));
+    static final MethodHandle DO_LINK =
+        find("doLink", methodType(RefUpdate.Result.class, String.class));
+
+    private static MethodHandle find(String name, MethodType type) {
+      try {
+        return MethodHandles.privateLookupIn(RefUpdate.class, MethodHandles.lookup())
+            .findVirtual(RefUpdate.class, name, type);
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("Cannot access RefUpdate#" + name, e);
+      }
+    }
+  }
+
+  /**
+   * Delegates the rename to a {@link RefRename} of the wrapped ref database and invalidates the
+   * cached lookups of both refs once the rename completed.
+   */
+  private class CachingRefRename extends RefRename {
+    private final RefRename delegate;
+
+    /**
+     * @param source update of the source ref, only used to hold the ref log settings.
+     * @param destination update of the destination ref, only used to hold the ref log settings.
+     */
+    CachingRefRename(RefRename delegate, RefUpdate source, RefUpdate destination) {
+      super(source, destination);
+      this.delegate = delegate;
+    }
+
+    @Override
+    protected RefUpdate.Result doRename() throws IOException {
+      try {
+        delegate.setRefLogIdent(getRefLogIdent());
+        delegate.setRefLogMessage(getRefLogMessage());
+        return delegate.rename();
+      } finally {
+        invalidate(source.getName());
+        invalidate(destination.getName());
+      }
+    }
+  }
+
+  /**
+   * Delegates all calls to a {@link BatchRefUpdate} of the wrapped ref database and invalidates
+   * the cached lookups of the updated refs once the batch was executed.
+   */
+  private class CachingBatchRefUpdate extends BatchRefUpdate {
+    private final BatchRefUpdate delegate;
+
+    CachingBatchRefUpdate(RefDatabase refDb, BatchRefUpdate delegate) {
+      super(refDb);
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(RevWalk walk, ProgressMonitor monitor, List<String> options)
+        throws IOException {
+      try {
+        delegate.execute(walk, monitor, options);
+      } finally {
+        invalidateCommands();
+      }
+    }
+
+    @Override
+    public void execute(RevWalk walk, ProgressMonitor monitor) throws IOException {
+      try {
+        delegate.execute(walk, monitor);
+      } finally {
+        invalidateCommands();
+      }
+    }
+
+    private void invalidateCommands() {
+      for (ReceiveCommand cmd : delegate.getCommands()) {
+        invalidate(cmd.getRefName());
+      }
+    }
+
+    @Override
+    public boolean isAllowNonFastForwards() {
+      return delegate.isAllowNonFastForwards();
+    }
+
+    @Override
+    public BatchRefUpdate setAllowNonFastForwards(boolean allow) {
+      delegate.setAllowNonFastForwards(allow);
+      return this;
+    }
+
+    @Override
+    public PersonIdent getRefLogIdent() {
+      return delegate.getRefLogIdent();
+    }
+
+    @Override
+    public BatchRefUpdate setRefLogIdent(PersonIdent pi) {
+      delegate.setRefLogIdent(pi);
+      return this;
+    }
+
+    @Override
+    public String getRefLogMessage() {
+      return delegate.getRefLogMessage();
+    }
+
+    @Override
+    public boolean isRefLogIncludingResult() {
+      return delegate.isRefLogIncludingResult();
+    }
+
+    @Override
+    public BatchRefUpdate setRefLogMessage(String msg, boolean appendStatus) {
+      super.setRefLogMessage(msg, appendStatus);
+      delegate.setRefLogMessage(msg, appendStatus);
+      return this;
+    }
+
+    @Override
+    public BatchRefUpdate disableRefLog() {
+      super.disableRefLog();
+      delegate.disableRefLog();
+      return this;
+    }
+
+    @Override
+    public BatchRefUpdate setForceRefLog(boolean force) {
+      super.setForceRefLog(force);
+      delegate.setForceRefLog(force);
+      return this;
+    }
+
+    @Override
+    public boolean isRefLogDisabled() {
+      return delegate.isRefLogDisabled();
+    }
+
+    @Override
+    public BatchRefUpdate setAtomic(boolean atomic) {
+      delegate.setAtomic(atomic);
+      return this;
+    }
+
+    @Override
+    public boolean isAtomic() {
+      return delegate.isAtomic();
+    }
+
+    @Override
+    public void setPushCertificate(PushCertificate cert) {
+      // Also kept by this update, so that the protected getPushCertificate() returns it.
+      super.setPushCertificate(cert);
+      delegate.setPushCertificate(cert);
+    }
+
+    @Override
+    public List<ReceiveCommand> getCommands() {
+      return delegate.getCommands();
+    }
+
+    @Override
+    public BatchRefUpdate addCommand(ReceiveCommand cmd) {
+      delegate.addCommand(cmd);
+      return this;
+    }
+
+    @Override
+    public BatchRefUpdate addCommand(ReceiveCommand... cmd) {
+      delegate.addCommand(cmd);
+      return this;
+    }
+
+    @Override
+    public BatchRefUpdate addCommand(Collection<ReceiveCommand> cmd) {
+      delegate.addCommand(cmd);
+      return this;
+    }
+
+    @Override
+    public List<String> getPushOptions() {
+      return delegate.getPushOptions();
+    }
+
+    @Override
+    public List<ProposedTimestamp> getProposedTimestamps() {
+      return delegate.getProposedTimestamps();
+    }
+
+    @Override
+    public BatchRefUpdate addProposedTimestamp(ProposedTimestamp ts) {
+      delegate.addProposedTimestamp(ts);
+      return this;
+    }
+
+    @Override
+    public String toString() {
+      return delegate.toString();
+    }
+  }
+}
@@ -0,0 +1,99 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.lifecycle.LifecycleModule;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.AllUsersName;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.Optional;
+
+/**
+ * Invalidates the {@link AllUsersRefCache} on updates of {@code All-Users} refs and exports the
+ * metrics of the cache.
+ */
+@Singleton
+public class AllUsersRefCacheListener implements GitReferenceUpdatedListener, LifecycleListener {
+  public static class Module extends LifecycleModule {
+    @Override
+    protected void configure() {
+      DynamicSet.bind(binder(), GitReferenceUpdatedListener.class)
+          .to(AllUsersRefCacheListener.class);
+      listener().to(AllUsersRefCacheListener.class);
+    }
+  }
+
+  private final AllUsersName allUsersName;
+  private final Optional<AllUsersRefCache> cache;
+
+  @Inject
+  AllUsersRefCacheListener(
+      GitRepositoryManager repoManager, AllUsersName allUsersName, MetricMaker metricMaker) {
+    this.allUsersName = allUsersName;
+    this.cache =
+        repoManager instanceof LocalDiskRepositoryManager
+            ? ((LocalDiskRepositoryManager) repoManager).getAllUsersRefCache()
+            : Optional.empty();
+    if (cache.isPresent()) {
+      AllUsersRefCache c = cache.get();
+      metricMaker.newCallbackMetric(
+          "git/all_users_ref_cache/hit_count",
+          Long.class,
+          new Description("Lookups of All-Users refs that were served from the cache")
+              .setCumulative()
+              .setUnit("lookups"),
+          c::hitCount);
+      metricMaker.newCallbackMetric(
+          "git/all_users_ref_cache/miss_count",
+          Long.class,
+          new Description("Lookups of All-Users refs that were read from the ref database")
+              .setCumulative()
+              .setUnit("lookups"),
+          c::missCount);
+      metricMaker.newCallbackMetric(
+          "git/all_users_ref_cache/stale_count",
+          Long.class,
+          new Description("Cached All-Users refs that were found to be stale when checked")
+              .setCumulative()
+              .setUnit("refs"),
+          c::staleCount);
+      metricMaker.newCallbackMetric(
+          "git/all_users_ref_cache/size",
+          Long.class,
+          new Description("Number of cached All-Users refs").setGauge().setUnit("refs"),
+          c::size);
+    }
+  }
+
+  @Override
+  public void onGitReferenceUpdated(Event event) {
+    if (cache.isPresent() && allUsersName.get().equals(event.getProjectName())) {
+      cache.get().invalidate(event.getRefName());
+    }
+  }
+
+  @Override
+  public void start() {
+    // Nothing to do, the listener is only bound to the lifecycle to export the metrics on startup.
+  }
+
+  @Override
+  public void stop() {}
+}
@@ -14,14 +14,17 @@
 
 package com.google.gerrit.server.git;
 
+import com.google.gerrit.common.Nullable;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.eclipse.jgit.annotations.NonNull;
+import org.eclipse.jgit.api.PackRefsCommand;
 import org.eclipse.jgit.lib.BatchRefUpdate;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ProgressMonitor;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.RefDatabase;
 import org.eclipse.jgit.lib.RefRename;
@@ -31,146 +34,163 @@ import org.eclipse.jgit.lib.Repository;
 
 /**
  * Wrapper around {@link RefDatabase} that delegates all calls to the wrapped {@link Repository}'s
- * {@link RefDatabase}.
+ * {@link RefDatabase}, or to the wrapped {@link RefDatabase}.
  */
 public class DelegateRefDatabase extends RefDatabase {
 
-  private Repository delegate;
+  @Nullable private Repository delegate;
+  @Nullable private RefDatabase refDbDelegate;
 
   public DelegateRefDatabase(Repository delegate) {
     this.delegate = delegate;
   }
 
+  public DelegateRefDatabase(RefDatabase refDbDelegate) {
+    this.refDbDelegate = refDbDelegate;
+  }
+
   @Override
   public void create() throws IOException {
-    delegate.getRefDatabase().create();
+    refDb().create();
   }
 
   @Override
   public void close() {
-    delegate.getRefDatabase().close();
+    refDb().close();
   }
 
   @Override
   public boolean hasVersioning() {
-    return delegate.getRefDatabase().hasVersioning();
+    return refDb().hasVersioning();
   }
 
   @Override
   public boolean isNameConflicting(String name) throws IOException {
-    return delegate.getRefDatabase().isNameConflicting(name);
+    return refDb().isNameConflicting(name);
   }
 
   @Override
   public Collection<String> getConflictingNames(String name) throws IOException {
-    return delegate.getRefDatabase().getConflictingNames(name);
+    return refDb().getConflictingNames(name);
   }
 
   @Override
   public RefUpdate newUpdate(String name, boolean detach) throws IOException {
-    return delegate.getRefDatabase().newUpdate(name, detach);
+    return refDb().newUpdate(name, detach);
   }
 
   @Override
   public RefRename newRename(String fromName, String toName) throws IOException {
-    return delegate.getRefDatabase().newRename(fromName, toName);
+    return refDb().newRename(fromName, toName);
   }
 
   @Override
   public BatchRefUpdate newBatchUpdate() {
-    return delegate.getRefDatabase().newBatchUpdate();
+    return refDb().newBatchUpdate();
   }
 
   @Override
   public boolean performsAtomicTransactions() {
-    return delegate.getRefDatabase().performsAtomicTransactions();
+    return refDb().performsAtomicTransactions();
   }
 
   @Override
   public Ref exactRef(String name) throws IOException {
-    return delegate.getRefDatabase().exactRef(name);
+    return refDb().exactRef(name);
   }
 
   @Override
   public Map<String, Ref> exactRef(String... refs) throws IOException {
-    return delegate.getRefDatabase().exactRef(refs);
+    return refDb().exactRef(refs);
   }
 
   @Override
   public Ref firstExactRef(String... refs) throws IOException {
-    return delegate.getRefDatabase().firstExactRef(refs);
+    return refDb().firstExactRef(refs);
   }
 
   @Override
   public List<Ref> getRefs() throws IOException {
-    return delegate.getRefDatabase().getRefs();
+    return refDb().getRefs();
   }
 
   @SuppressWarnings("deprecation")
   @Override
   public Map<String, Ref> getRefs(String prefix) throws IOException {
-    return delegate.getRefDatabase().getRefs(prefix);
+    return refDb().getRefs(prefix);
   }
 
   @Override
   public ReflogReader getReflogReader(String refName) throws IOException {
-    return delegate.getRefDatabase().getReflogReader(refName);
+    return refDb().getReflogReader(refName);
   }
 
   @Override
   @NonNull
   public ReflogReader getReflogReader(@NonNull Ref ref) throws IOException {
-    return delegate.getRefDatabase().getReflogReader(ref);
+    return refDb().getReflogReader(ref);
   }
 
   @Override
   public List<Ref> getRefsByPrefix(String prefix) throws IOException {
-    return delegate.getRefDatabase().getRefsByPrefix(prefix);
+    return refDb().getRefsByPrefix(prefix);
   }
 
   @Override
   public List<Ref> getRefsByPrefixWithExclusions(String include, Set<String> excludes)
       throws IOException {
-    return delegate.getRefDatabase().getRefsByPrefixWithExclusions(include, excludes);
+    return refDb().getRefsByPrefixWithExclusions(include, excludes);
   }
 
   @Override
   public List<Ref> getRefsByPrefix(String... prefixes) throws IOException {
-    return delegate.getRefDatabase().getRefsByPrefix(prefixes);
+    return refDb().getRefsByPrefix(prefixes);
   }
 
   @Override
   @NonNull
   public Set<Ref> getTipsWithSha1(ObjectId id) throws IOException {
-    return delegate.getRefDatabase().getTipsWithSha1(id);
+    return refDb().getTipsWithSha1(id);
   }
 
   @Override
   public boolean hasFastTipsWithSha1() throws IOException {
-    return delegate.getRefDatabase().hasFastTipsWithSha1();
+    return refDb().hasFastTipsWithSha1();
   }
 
   @Override
   public boolean hasRefs() throws IOException {
-    return delegate.getRefDatabase().hasRefs();
+    return refDb().hasRefs();
   }
 
   @Override
   public List<Ref> getAdditionalRefs() throws IOException {
-    return delegate.getRefDatabase().getAdditionalRefs();
+    return refDb().getAdditionalRefs();
   }
 
   @Override
   public Ref peel(Ref ref) throws IOException {
-    return delegate.getRefDatabase().peel(ref);
+    return refDb().peel(ref);
   }
 
   @Override
   public void refresh() {
-    delegate.getRefDatabase().refresh();
+    refDb().refresh();
   }
 
+  @Override
+  public void packRefs(ProgressMonitor pm, PackRefsCommand packRefs) throws IOException {
+    refDb().packRefs(pm, packRefs);
+  }
+
+  /** Returns the wrapped repository, or {@code null} if a {@link RefDatabase} is wrapped. */
+  @Nullable
   protected Repository getDelegate() {
     return delegate;
   }
+
+  /** Returns the {@link RefDatabase} to which all calls are delegated. */
+  protected RefDatabase refDb() {
+    return refDbDelegate != null ? refDbDelegate : delegate.getRefDatabase();
+  }
 }
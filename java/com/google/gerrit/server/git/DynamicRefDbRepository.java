@@ -14,25 +14,41 @@
 
 package com.google.gerrit.server.git;
 
+import com.google.gerrit.common.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.util.function.BiFunction;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
 import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.RefDatabase;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.RepositoryCache;
 import org.eclipse.jgit.util.FS;
 
-/** A FileRepository with a dynamic RefDatabase supplied via a BiFunction. */
+/**
+ * A FileRepository with a dynamic RefDatabase supplied via a BiFunction, and optionally with
+ * object readers that are reused across requests through an {@link ObjectReaderPool}.
+ */
 public class DynamicRefDbRepository extends FileRepository {
   public static class FileKey extends RepositoryCache.FileKey {
     private BiFunction<File, RefDatabase, RefDatabase> refDatabaseSupplier;
+    @Nullable private ObjectReaderPool objectReaderPool;
 
     public static FileKey lenient(
         File directory, FS fs, BiFunction<File, RefDatabase, RefDatabase> refDatabaseSupplier) {
+      return lenient(directory, fs, refDatabaseSupplier, null);
+    }
+
+    static FileKey lenient(
+        File directory,
+        FS fs,
+        BiFunction<File, RefDatabase, RefDatabase> refDatabaseSupplier,
+        @Nullable ObjectReaderPool objectReaderPool) {
       final File gitdir = resolve(directory, fs);
-      return new FileKey(gitdir != null ? gitdir : directory, fs, refDatabaseSupplier);
+      FileKey key = new FileKey(gitdir != null ? gitdir : directory, fs, refDatabaseSupplier);
+      key.objectReaderPool = objectReaderPool;
+      return key;
     }
 
     private final FS fs;
@@ -53,7 +69,7 @@ public class DynamicRefDbRepository extends FileRepository {
     public Repository open(boolean mustExist) throws IOException {
       if (mustExist && !isGitRepository(getFile(), fs))
         throw new RepositoryNotFoundException(getFile());
-      return new DynamicRefDbRepository(getFile(), refDatabaseSupplier);
+      return new DynamicRefDbRepository(getFile(), refDatabaseSupplier, objectReaderPool);
     }
 
     private static File canonical(File path) {
@@ -67,17 +83,43 @@ public class DynamicRefDbRepository extends FileRepository {
 
   private final File path;
   private final BiFunction<File, RefDatabase, RefDatabase> refDatabaseSupplier;
+  @Nullable private final ObjectReaderPool.ForRepository objectReaders;
 
   public DynamicRefDbRepository(
       File path, BiFunction<File, RefDatabase, RefDatabase> refDatabaseSupplier)
       throws IOException {
+    this(path, refDatabaseSupplier, null);
+  }
+
+  DynamicRefDbRepository(
+      File path,
+      BiFunction<File, RefDatabase, RefDatabase> refDatabaseSupplier,
+      @Nullable ObjectReaderPool objectReaderPool)
+      throws IOException {
     super(path);
     this.path = path;
     this.refDatabaseSupplier = refDatabaseSupplier;
+    this.objectReaders =
+        objectReaderPool != null
+            ? objectReaderPool.forRepository(() -> getObjectDatabase().newReader())
+            : null;
   }
 
   @Override
   public RefDatabase getRefDatabase() {
     return refDatabaseSupplier.apply(path, super.getRefDatabase());
   }
+
+  @Override
+  public ObjectReader newObjectReader() {
+    return objectReaders != null ? objectReaders.newReader() : super.newObjectReader();
+  }
+
+  @Override
+  protected void doClose() {
+    if (objectReaders != null) {
+      objectReaders.close();
+    }
+    super.doClose();
+  }
 }
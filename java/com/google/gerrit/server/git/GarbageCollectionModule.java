@@ -14,6 +14,8 @@
 
 package com.google.gerrit.server.git;
 
+import com.google.gerrit.extensions.events.GitBatchRefUpdateListener;
+import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.lifecycle.LifecycleModule;
 
 public class GarbageCollectionModule extends LifecycleModule {
@@ -26,5 +28,13 @@ public class GarbageCollectionModule extends LifecycleModule {
     bind(GarbageCollectionQueue.class);
     factory(GarbageCollection.Factory.class);
     listener().to(GarbageCollectionRunner.Lifecycle.class);
+
+    DynamicSet.bind(binder(), GitBatchRefUpdateListener.class)
+        .to(ReftableCompactionScheduler.class);
+    listener().to(ReftableCompactionScheduler.class);
+
+    DynamicSet.bind(binder(), GitBatchRefUpdateListener.class)
+        .to(GarbageCollectionScheduler.class);
+    listener().to(GarbageCollectionScheduler.class);
   }
 }
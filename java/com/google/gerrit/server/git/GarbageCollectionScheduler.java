@@ -0,0 +1,381 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import static java.util.Comparator.comparingDouble;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.common.data.GarbageCollectionResult;
+import com.google.gerrit.common.data.GarbageCollectionResult.GcError;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.events.GitBatchRefUpdateListener;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Runs gc on the repositories that need it most, while the server is not busy.
+ *
+ * <p>{@link GarbageCollectionRunner} collects all projects on a fixed schedule, no matter whether
+ * they need it. This scheduler instead periodically samples the statistics of the projects that
+ * were updated since the last check, and runs gc on a project if
+ * it has more than {@code gc.maxPackFiles} packs, {@code gc.maxLooseObjects} loose objects or
+ * {@code gc.maxLooseRefs} loose refs. Projects that exceed their limits the most are collected
+ * first, by at most {@code gc.maxConcurrent} threads. Projects that were not updated since the
+ * server started are sampled too, {@code gc.maxProjectsPerCheck} of them per check, so that the
+ * first checks don't open all repositories at once.
+ *
+ * <p>Checks are skipped while the system load average per processor is above {@code
+ * gc.maxLoadPercent}, so that gc runs in the low-load windows of the server. Projects that are due
+ * are remembered and collected by a later check.
+ */
+@Singleton
+public class GarbageCollectionScheduler
+    implements GitBatchRefUpdateListener, LifecycleListener, Runnable {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  @VisibleForTesting
+  enum Trigger {
+    PACK_FILES,
+    LOOSE_OBJECTS,
+    LOOSE_REFS
+  }
+
+  /** A project that is due for gc. */
+  @VisibleForTesting
+  record Candidate(Project.NameKey project, Trigger trigger, double score, long size) {}
+
+  private final GitRepositoryManager repoManager;
+  private final GarbageCollection.Factory garbageCollectionFactory;
+  private final ProjectCache projectCache;
+  private final WorkQueue workQueue;
+  private final IntSupplier loadPercent;
+  private final long checkIntervalMs;
+  private final long maxPackFiles;
+  private final long maxLooseObjects;
+  private final long maxLooseRefs;
+  private final int maxConcurrent;
+  private final int maxLoadPercent;
+  private final int maxProjectsPerCheck;
+
+  /** Projects that need to be checked by the next check. */
+  private final Set<Project.NameKey> toCheck = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Projects that were not checked since the server started, filled by the first check. Only
+   * accessed by the checks, which don't run concurrently.
+   */
+  private final Queue<Project.NameKey> unchecked = new ArrayDeque<>();
+
+  /** Projects on which gc is running. */
+  @VisibleForTesting final Set<Project.NameKey> running = ConcurrentHashMap.newKeySet();
+
+  private final Counter1<Trigger> gcCount;
+  private final Counter0 gcFailureCount;
+  private final Counter0 deferredCheckCount;
+  private final Timer0 gcLatency;
+  private final Counter0 bytesSaved;
+
+  private boolean checkAllProjects = true;
+  private ScheduledExecutorService gcExecutor;
+  private ScheduledFuture<?> future;
+
+  @Inject
+  GarbageCollectionScheduler(
+      GitRepositoryManager repoManager,
+      GarbageCollection.Factory garbageCollectionFactory,
+      ProjectCache projectCache,
+      WorkQueue workQueue,
+      MetricMaker metricMaker,
+      @GerritServerConfig Config cfg) {
+    this(
+        repoManager,
+        garbageCollectionFactory,
+        projectCache,
+        workQueue,
+        metricMaker,
+        cfg,
+        GarbageCollectionScheduler::systemLoadPercent);
+  }
+
+  @VisibleForTesting
+  GarbageCollectionScheduler(
+      GitRepositoryManager repoManager,
+      GarbageCollection.Factory garbageCollectionFactory,
+      ProjectCache projectCache,
+      WorkQueue workQueue,
+      MetricMaker metricMaker,
+      Config cfg,
+      IntSupplier loadPercent) {
+    this.repoManager = repoManager;
+    this.garbageCollectionFactory = garbageCollectionFactory;
+    this.projectCache = projectCache;
+    this.workQueue = workQueue;
+    this.loadPercent = loadPercent;
+    this.checkIntervalMs =
+        ConfigUtil.getTimeUnit(cfg, "gc", null, "checkInterval", 0, TimeUnit.MILLISECONDS);
+    this.maxPackFiles = cfg.getLong("gc", null, "maxPackFiles", 20);
+    this.maxLooseObjects = cfg.getLong("gc", null, "maxLooseObjects", 6700);
+    this.maxLooseRefs = cfg.getLong("gc", null, "maxLooseRefs", 1000);
+    this.maxConcurrent = Math.max(1, cfg.getInt("gc", "maxConcurrent", 1));
+    this.maxLoadPercent = cfg.getInt("gc", "maxLoadPercent", 70);
+    this.maxProjectsPerCheck = Math.max(0, cfg.getInt("gc", "maxProjectsPerCheck", 100));
+
+    this.gcCount =
+        metricMaker.newCounter(
+            "git/gc/scheduled_count",
+            new Description("Number of gc runs that were scheduled based on repository statistics")
+                .setRate()
+                .setUnit("runs"),
+            Field.ofEnum(Trigger.class, "trigger", Field.ignoreMetadata())
+                .description("What triggered the gc (PACK_FILES, LOOSE_OBJECTS, LOOSE_REFS).")
+                .build());
+    this.gcFailureCount =
+        metricMaker.newCounter(
+            "git/gc/scheduled_failure_count",
+            new Description("Number of failed scheduled gc runs").setRate().setUnit("runs"));
+    this.deferredCheckCount =
+        metricMaker.newCounter(
+            "git/gc/deferred_check_count",
+            new Description("Number of gc checks that were skipped because of high system load")
+                .setRate()
+                .setUnit("checks"));
+    this.gcLatency =
+        metricMaker.newTimer(
+            "git/gc/scheduled_latency",
+            new Description("Latency of scheduled gc runs")
+                .setCumulative()
+                .setUnit(Description.Units.MILLISECONDS));
+    this.bytesSaved =
+        metricMaker.newCounter(
+            "git/gc/scheduled_bytes_saved",
+            new Description("Bytes of objects that were removed by scheduled gc runs")
+                .setRate()
+                .setUnit(Description.Units.BYTES));
+  }
+
+  @Override
+  public void start() {
+    if (checkIntervalMs > 0) {
+      gcExecutor = workQueue.createQueue(maxConcurrent, "GarbageCollectionScheduler");
+      future =
+          workQueue
+              .getDefaultQueue()
+              .scheduleWithFixedDelay(
+                  this, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (future != null) {
+      future.cancel(false);
+    }
+  }
+
+  @Override
+  public void onGitBatchRefUpdate(GitBatchRefUpdateListener.Event event) {
+    if (checkIntervalMs > 0) {
+      toCheck.add(Project.nameKey(event.getProjectName()));
+    }
+  }
+
+  @Override
+  public void run() {
+    int load = loadPercent.getAsInt();
+    if (maxLoadPercent > 0 && load > maxLoadPercent) {
+      logger.atFine().log("Deferring gc check, system load is at %d%%", load);
+      deferredCheckCount.increment();
+      return;
+    }
+    List<Candidate> due = selectProjects();
+    for (Candidate candidate : due) {
+      Project.NameKey project = candidate.project();
+      if (running.size() >= maxConcurrent || !running.add(project)) {
+        // Checked again by the next check.
+        toCheck.add(project);
+        continue;
+      }
+      try {
+        gcExecutor.execute(
+            () -> {
+              try {
+                collect(candidate);
+              } finally {
+                running.remove(project);
+              }
+            });
+      } catch (RuntimeException e) {
+        running.remove(project);
+        logger.atWarning().withCause(e).log("Failed to schedule gc of %s", project);
+      }
+    }
+  }
+
+  /** Returns the projects that are due for gc, the most urgent first. */
+  @VisibleForTesting
+  List<Candidate> selectProjects() {
+    if (checkAllProjects) {
+      checkAllProjects = false;
+      unchecked.addAll(projectCache.all());
+    }
+    Set<Project.NameKey> projects = new LinkedHashSet<>(toCheck);
+    toCheck.removeAll(projects);
+    for (int i = 0; i < maxProjectsPerCheck && !unchecked.isEmpty(); i++) {
+      projects.add(unchecked.remove());
+    }
+
+    List<Candidate> due = new ArrayList<>();
+    for (Project.NameKey project : projects) {
+      if (running.contains(project)) {
+        // The project may have been updated after its gc started, check it once gc is done.
+        toCheck.add(project);
+        continue;
+      }
+      try {
+        Candidate candidate = check(project);
+        if (candidate != null) {
+          due.add(candidate);
+        }
+      } catch (IOException | RuntimeException e) {
+        logger.atWarning().withCause(e).log("Failed to read repository statistics of %s", project);
+      }
+    }
+    due.sort(comparingDouble(Candidate::score).reversed());
+    return due;
+  }
+
+  @Nullable
+  private Candidate check(Project.NameKey project) throws IOException {
+    try (Repository repo = repoManager.openRepository(project)) {
+      GC.RepoStatistics stats = readStatistics(repo);
+      if (stats == null) {
+        return null;
+      }
+      double packFiles = ratio(stats.numberOfPackFiles, maxPackFiles);
+      double looseObjects = ratio(stats.numberOfLooseObjects, maxLooseObjects);
+      double looseRefs = ratio(stats.numberOfLooseRefs, maxLooseRefs);
+      Trigger trigger;
+      double max;
+      if (packFiles >= looseObjects && packFiles >= looseRefs) {
+        trigger = Trigger.PACK_FILES;
+        max = packFiles;
+      } else if (looseObjects >= looseRefs) {
+        trigger = Trigger.LOOSE_OBJECTS;
+        max = looseObjects;
+      } else {
+        trigger = Trigger.LOOSE_REFS;
+        max = looseRefs;
+      }
+      if (max <= 1) {
+        return null;
+      }
+      return new Candidate(project, trigger, packFiles + looseObjects + looseRefs, size(stats));
+    }
+  }
+
+  /** Runs gc on a project and records its latency and the bytes it saved. */
+  @VisibleForTesting
+  void collect(Candidate candidate) {
+    Project.NameKey project = candidate.project();
+    logger.atInfo().log("Scheduling gc of %s (%s)", project, candidate.trigger());
+    GarbageCollectionResult result;
+    try (Timer0.Context ctx = gcLatency.start()) {
+      result = garbageCollectionFactory.create().run(ImmutableList.of(project));
+    }
+    if (result.hasErrors()) {
+      for (GcError e : result.getErrors()) {
+        if (e.getType() != GcError.Type.GC_ALREADY_SCHEDULED) {
+          gcFailureCount.increment();
+          // Retried by the next check.
+          toCheck.add(project);
+          return;
+        }
+      }
+      // Collected by someone else right now.
+      return;
+    }
+    gcCount.increment(candidate.trigger());
+
+    try (Repository repo = repoManager.openRepository(project)) {
+      GC.RepoStatistics stats = readStatistics(repo);
+      if (stats != null) {
+        bytesSaved.incrementBy(Math.max(0, candidate.size() - size(stats)));
+      }
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Failed to read repository statistics of %s", project);
+    }
+  }
+
+  /** Returns the statistics of {@code repo}, {@code null} if it is not stored on disk. */
+  @Nullable
+  private static GC.RepoStatistics readStatistics(Repository repo) throws IOException {
+    if (repo instanceof DelegateRepository) {
+      repo = ((DelegateRepository) repo).delegate();
+    }
+    if (!(repo instanceof FileRepository)) {
+      return null;
+    }
+    return new GC((FileRepository) repo).getStatistics();
+  }
+
+  private static long size(GC.RepoStatistics stats) {
+    return stats.sizeOfLooseObjects + stats.sizeOfPackedObjects;
+  }
+
+  private static double ratio(long value, long limit) {
+    return limit > 0 ? (double) value / limit : 0;
+  }
+
+  /** Returns the system load average per processor in percent, 0 if it is not available. */
+  private static int systemLoadPercent() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    double load = os.getSystemLoadAverage();
+    if (load < 0) {
+      return 0;
+    }
+    return (int) (100 * load / os.getAvailableProcessors());
+  }
+}
@@ -30,6 +30,7 @@ import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.PatchSet;
 import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
 import com.google.gerrit.server.PatchSetUtil;
 import com.google.gerrit.server.change.RevisionResource;
 import com.google.gerrit.server.git.receive.ReceivePackRefCache;
@@ -38,11 +39,14 @@ import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 
 /**
@@ -89,13 +93,15 @@ public class GroupCollector {
   }
 
   interface Lookup {
-    List<String> lookup(PatchSet.Id psId);
+    @Nullable
+    List<String> lookup(PatchSet.Id psId) throws IOException;
   }
 
   private final ReceivePackRefCache receivePackRefCache;
   private final ListMultimap<ObjectId, String> groups;
   private final SetMultimap<String, String> groupAliases;
   private final Lookup groupLookup;
+  private final Map<PatchSet.Id, List<String>> lookedUpGroups;
 
   private boolean done;
 
@@ -108,12 +114,17 @@ public class GroupCollector {
       ReceivePackRefCache receivePackRefCache,
       PatchSetUtil psUtil,
       ChangeNotes.Factory notesFactory,
+      Repository repo,
       Project.NameKey project) {
     return new GroupCollector(
         receivePackRefCache,
         psId -> {
-          // TODO(dborowitz): Reuse open repository from caller.
-          ChangeNotes notes = notesFactory.createChecked(project, psId.changeId());
+          // Load the notes at the revision of the meta ref that is already known from the refs of
+          // the push, so that they are served from the change notes cache.
+          Ref metaRef = receivePackRefCache.exactRef(RefNames.changeMetaRef(psId.changeId()));
+          ChangeNotes notes =
+              notesFactory.createChecked(
+                  repo, project, psId.changeId(), metaRef != null ? metaRef.getObjectId() : null);
           PatchSet ps = psUtil.get(notes, psId);
           return ps != null ? ps.groups() : null;
         });
@@ -135,6 +146,7 @@ public class GroupCollector {
     this.groupLookup = groupLookup;
     groups = MultimapBuilder.hashKeys().arrayListValues().build();
     groupAliases = MultimapBuilder.hashKeys().hashSetValues().build();
+    lookedUpGroups = new HashMap<>();
   }
 
   /**
@@ -275,7 +287,12 @@ public class GroupCollector {
     if (id != null) {
       PatchSet.Id psId = Iterables.getFirst(receivePackRefCache.patchSetIdsFromObjectId(id), null);
       if (psId != null) {
-        List<String> groups = groupLookup.lookup(psId);
+        // All commits of a series that is pushed on top of an existing patch set share its group,
+        // hence look up the groups of each patch set only once.
+        if (!lookedUpGroups.containsKey(psId)) {
+          lookedUpGroups.put(psId, groupLookup.lookup(psId));
+        }
+        List<String> groups = lookedUpGroups.get(psId);
         // Group for existing patch set may be missing, e.g. if group has not
         // been migrated yet.
         if (groups != null && !groups.isEmpty()) {
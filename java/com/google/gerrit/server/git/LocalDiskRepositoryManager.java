@@ -15,12 +15,18 @@
 package com.google.gerrit.server.git;
 
 import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.entities.Project.NameKey;
 import com.google.gerrit.entities.RefNames;
 import com.google.gerrit.extensions.events.LifecycleListener;
 import com.google.gerrit.lifecycle.LifecycleModule;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
 import com.google.gerrit.server.cache.PerThreadRefDbCache;
+import com.google.gerrit.server.config.AllUsersName;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.config.SitePaths;
 import com.google.inject.Inject;
@@ -37,6 +43,7 @@ import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Map;
 import java.util.NavigableSet;
+import java.util.Optional;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
@@ -115,15 +122,44 @@ public class LocalDiskRepositoryManager implements GitRepositoryManager {
   private final Map<Project.NameKey, FileKey> fileKeyByProject = new ConcurrentHashMap<>();
   private final boolean usePerRequestRefCache;
   private final boolean useFileKeyByProjectCache;
+  private final AllUsersName allUsersName;
+  @Nullable private final AllUsersRefCache allUsersRefCache;
+  @Nullable private final ObjectReaderPool objectReaderPool;
+  private final Timer0 openLatency;
 
   @Inject
-  LocalDiskRepositoryManager(SitePaths site, @GerritServerConfig Config cfg) {
+  LocalDiskRepositoryManager(
+      SitePaths site,
+      @GerritServerConfig Config cfg,
+      AllUsersName allUsersName,
+      MetricMaker metricMaker) {
     basePath = site.resolve(cfg.getString("gerrit", null, "basePath"));
     if (basePath == null) {
       throw new IllegalStateException("gerrit.basePath must be configured");
     }
     usePerRequestRefCache = cfg.getBoolean("core", null, "usePerRequestRefCache", true);
     useFileKeyByProjectCache = cfg.getBoolean("core", null, "useFileKeyByProjectCache", true);
+    this.allUsersName = allUsersName;
+    allUsersRefCache = AllUsersRefCache.create(cfg);
+    objectReaderPool = ObjectReaderPool.create(cfg, metricMaker);
+    openLatency =
+        metricMaker.newTimer(
+            "git/repository/open_latency",
+            new Description("Latency of opening a repository")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    metricMaker.newCallbackMetric(
+        "git/repository/cached_count",
+        Integer.class,
+        new Description("Number of repositories that are kept open by the repository cache")
+            .setGauge()
+            .setUnit("repositories"),
+        () -> RepositoryCache.getRegisteredKeys().size());
+  }
+
+  /** Returns the {@link AllUsersRefCache}, if enabled by {@code core.useAllUsersRefCache}. */
+  public Optional<AllUsersRefCache> getAllUsersRefCache() {
+    return Optional.ofNullable(allUsersRefCache);
   }
 
   /**
@@ -161,6 +197,12 @@ public class LocalDiskRepositoryManager implements GitRepositoryManager {
 
   @Override
   public Repository openRepository(Project.NameKey name) throws RepositoryNotFoundException {
+    try (Timer0.Context ignored = openLatency.start()) {
+      return doOpenRepository(name);
+    }
+  }
+
+  private Repository doOpenRepository(Project.NameKey name) throws RepositoryNotFoundException {
     FileKey cachedLocation = useFileKeyByProjectCache ? fileKeyByProject.get(name) : null;
     if (cachedLocation != null) {
       try {
@@ -173,13 +215,31 @@ public class LocalDiskRepositoryManager implements GitRepositoryManager {
     if (isUnreasonableName(name)) {
       throw new RepositoryNotFoundException("Invalid name: " + name);
     }
-    FileKey location =
-        usePerRequestRefCache
-            ? DynamicRefDbRepository.FileKey.lenient(
-                getBasePath(name).resolve(name.get()).toFile(),
-                FS.DETECTED,
-                (path, refDb) -> PerThreadRefDbCache.getRefDatabase(path, refDb))
-            : FileKey.lenient(getBasePath(name).resolve(name.get()).toFile(), FS.DETECTED);
+    FileKey location;
+    if (allUsersRefCache != null && name.equals(allUsersName)) {
+      location =
+          DynamicRefDbRepository.FileKey.lenient(
+              getBasePath(name).resolve(name.get()).toFile(),
+              FS.DETECTED,
+              (path, refDb) ->
+                  allUsersRefCache.wrap(
+                      refDb,
+                      usePerRequestRefCache
+                          ? PerThreadRefDbCache.getRefDatabase(path, refDb)
+                          : refDb),
+              objectReaderPool);
+    } else if (usePerRequestRefCache || objectReaderPool != null) {
+      location =
+          DynamicRefDbRepository.FileKey.lenient(
+              getBasePath(name).resolve(name.get()).toFile(),
+              FS.DETECTED,
+              usePerRequestRefCache
+                  ? (path, refDb) -> PerThreadRefDbCache.getRefDatabase(path, refDb)
+                  : (path, refDb) -> refDb,
+              objectReaderPool);
+    } else {
+      location = FileKey.lenient(getBasePath(name).resolve(name.get()).toFile(), FS.DETECTED);
+    }
     try {
       Repository repo = RepositoryCache.open(location);
       if (useFileKeyByProjectCache) {
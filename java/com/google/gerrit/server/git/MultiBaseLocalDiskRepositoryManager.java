@@ -18,6 +18,8 @@ import static com.google.common.base.Preconditions.checkState;
 
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.lifecycle.LifecycleModule;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.config.AllUsersName;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.config.RepositoryConfig;
 import com.google.gerrit.server.config.SitePaths;
@@ -47,8 +49,12 @@ public class MultiBaseLocalDiskRepositoryManager extends LocalDiskRepositoryMana
 
   @Inject
   MultiBaseLocalDiskRepositoryManager(
-      SitePaths site, @GerritServerConfig Config cfg, RepositoryConfig config) {
-    super(site, cfg);
+      SitePaths site,
+      @GerritServerConfig Config cfg,
+      AllUsersName allUsersName,
+      RepositoryConfig config,
+      MetricMaker metricMaker) {
+    super(site, cfg, allUsersName, metricMaker);
     this.config = config;
 
     for (Path alternateBasePath : config.getAllBasePaths()) {
@@ -0,0 +1,273 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.errors.StoredObjectRepresentationNotAvailableException;
+import org.eclipse.jgit.internal.storage.pack.CachedPack;
+import org.eclipse.jgit.internal.storage.pack.ObjectReuseAsIs;
+import org.eclipse.jgit.internal.storage.pack.ObjectToPack;
+import org.eclipse.jgit.internal.storage.pack.PackOutputStream;
+import org.eclipse.jgit.internal.storage.pack.PackWriter;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.BitmapIndex.BitmapBuilder;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.ProgressMonitor;
+
+/**
+ * Pool of idle {@link ObjectReader}s of the repositories that are kept open by the {@link
+ * org.eclipse.jgit.lib.RepositoryCache}.
+ *
+ * <p>JGit's readers of file repositories keep a delta base cache that is dropped when the reader is
+ * closed, and they return their inflater to JGit's inflater cache. Since every request creates its
+ * own readers, requests for hot projects inflate the same delta bases over and over again. Readers
+ * that are handed out by the pool are returned to the pool of their repository when they are
+ * closed, so that the next request reuses their delta base cache and inflater.
+ *
+ * <p>The number of idle readers is bounded per repository ({@code core.objectReaderPoolSize}) and
+ * in total ({@code core.objectReaderPoolTotalSize}), since each of them may hold up to {@code
+ * core.deltaBaseCacheLimit} bytes of delta bases.
+ */
+class ObjectReaderPool {
+  private static final int DEFAULT_TOTAL_SIZE = 32;
+
+  /**
+   * Creates the pool if it is enabled by {@code core.objectReaderPoolSize}.
+   *
+   * @return the pool, or {@code null} if pooling is disabled.
+   */
+  @Nullable
+  static ObjectReaderPool create(Config cfg, MetricMaker metricMaker) {
+    int maxIdlePerRepository = cfg.getInt("core", null, "objectReaderPoolSize", 0);
+    if (maxIdlePerRepository <= 0) {
+      return null;
+    }
+    return new ObjectReaderPool(
+        maxIdlePerRepository,
+        cfg.getInt("core", null, "objectReaderPoolTotalSize", DEFAULT_TOTAL_SIZE),
+        metricMaker);
+  }
+
+  private final int maxIdlePerRepository;
+  private final int maxIdle;
+  private final AtomicInteger idle = new AtomicInteger();
+  private final Counter0 hitCount;
+  private final Counter0 missCount;
+
+  @VisibleForTesting
+  ObjectReaderPool(int maxIdlePerRepository, int maxIdle, MetricMaker metricMaker) {
+    this.maxIdlePerRepository = maxIdlePerRepository;
+    this.maxIdle = maxIdle;
+    this.hitCount =
+        metricMaker.newCounter(
+            "git/object_reader_pool/hit_count",
+            new Description("Number of object readers that were taken from the pool")
+                .setRate()
+                .setUnit("readers"));
+    this.missCount =
+        metricMaker.newCounter(
+            "git/object_reader_pool/miss_count",
+            new Description("Number of object readers that were created because none was pooled")
+                .setRate()
+                .setUnit("readers"));
+    metricMaker.newCallbackMetric(
+        "git/object_reader_pool/idle",
+        Integer.class,
+        new Description("Number of idle object readers in the pool").setGauge().setUnit("readers"),
+        idle::get);
+  }
+
+  /** Returns the pool for a repository that creates its readers with {@code newReader}. */
+  ForRepository forRepository(Supplier<ObjectReader> newReader) {
+    return new ForRepository(newReader);
+  }
+
+  @VisibleForTesting
+  int idle() {
+    return idle.get();
+  }
+
+  /** Idle readers of one repository. */
+  class ForRepository {
+    private final Supplier<ObjectReader> newReader;
+    private final Deque<ObjectReader> idleReaders = new ArrayDeque<>();
+    private boolean closed;
+
+    private ForRepository(Supplier<ObjectReader> newReader) {
+      this.newReader = newReader;
+    }
+
+    /**
+     * Returns a new reader. The underlying reader is only taken from the pool once the reader is
+     * used, and is returned to the pool when the reader is closed.
+     */
+    ObjectReader newReader() {
+      return new PooledObjectReader(this);
+    }
+
+    /** Closes the idle readers and stops pooling, e.g. because the repository was closed. */
+    void close() {
+      List<ObjectReader> toClose;
+      synchronized (this) {
+        closed = true;
+        toClose = List.copyOf(idleReaders);
+        idleReaders.clear();
+        idle.addAndGet(-toClose.size());
+      }
+      toClose.forEach(ObjectReader::close);
+    }
+
+    private ObjectReader take() {
+      synchronized (this) {
+        ObjectReader reader = idleReaders.pollFirst();
+        if (reader != null) {
+          idle.decrementAndGet();
+          hitCount.increment();
+          return reader;
+        }
+      }
+      missCount.increment();
+      return newReader.get();
+    }
+
+    private void release(ObjectReader reader) {
+      synchronized (this) {
+        if (!closed && idleReaders.size() < maxIdlePerRepository && reserveIdleSlot()) {
+          // Most recently used readers first, they are most likely to have warm caches.
+          idleReaders.addFirst(reader);
+          return;
+        }
+      }
+      reader.close();
+    }
+
+    private boolean reserveIdleSlot() {
+      while (true) {
+        int current = idle.get();
+        if (current >= maxIdle) {
+          return false;
+        }
+        if (idle.compareAndSet(current, current + 1)) {
+          return true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Reader that borrows a reader from the pool of its repository while it is in use.
+   *
+   * <p>A reader may be used again after it was closed (e.g. by a {@link
+   * org.eclipse.jgit.revwalk.RevWalk} that is reused after {@code close()}), in which case it
+   * borrows another reader. Implements {@link ObjectReuseAsIs} so that pack writing can still reuse
+   * the stored representation of objects.
+   */
+  private static class PooledObjectReader extends ObjectReader.Filter implements ObjectReuseAsIs {
+    private final ForRepository pool;
+    @Nullable private ObjectReader delegate;
+    private boolean streamFileThresholdChanged;
+
+    PooledObjectReader(ForRepository pool) {
+      this.pool = pool;
+    }
+
+    @Override
+    protected ObjectReader delegate() {
+      if (delegate == null) {
+        delegate = pool.take();
+      }
+      return delegate;
+    }
+
+    private ObjectReuseAsIs reuse() {
+      return (ObjectReuseAsIs) delegate();
+    }
+
+    @Override
+    public void setStreamFileThreshold(int threshold) {
+      super.setStreamFileThreshold(threshold);
+      delegate().setStreamFileThreshold(threshold);
+      streamFileThresholdChanged = true;
+    }
+
+    @Override
+    public int getStreamFileThreshold() {
+      return delegate().getStreamFileThreshold();
+    }
+
+    @Override
+    public ObjectToPack newObjectToPack(AnyObjectId objectId, int type) {
+      return reuse().newObjectToPack(objectId, type);
+    }
+
+    @Override
+    public void selectObjectRepresentation(
+        PackWriter packer, ProgressMonitor monitor, Iterable<ObjectToPack> objects)
+        throws IOException, MissingObjectException {
+      reuse().selectObjectRepresentation(packer, monitor, objects);
+    }
+
+    @Override
+    public void writeObjects(PackOutputStream out, List<ObjectToPack> list) throws IOException {
+      reuse().writeObjects(out, list);
+    }
+
+    @Override
+    public void copyObjectAsIs(PackOutputStream out, ObjectToPack otp, boolean validate)
+        throws IOException, StoredObjectRepresentationNotAvailableException {
+      reuse().copyObjectAsIs(out, otp, validate);
+    }
+
+    @Override
+    public void copyPackAsIs(PackOutputStream out, CachedPack pack) throws IOException {
+      reuse().copyPackAsIs(out, pack);
+    }
+
+    @Override
+    public Collection<CachedPack> getCachedPacksAndUpdate(BitmapBuilder needBitmap)
+        throws IOException {
+      return reuse().getCachedPacksAndUpdate(needBitmap);
+    }
+
+    @Override
+    public void close() {
+      ObjectReader reader = delegate;
+      if (reader == null) {
+        return;
+      }
+      delegate = null;
+      if (streamFileThresholdChanged) {
+        // Don't hand out a reader with a threshold that another caller has chosen.
+        streamFileThresholdChanged = false;
+        reader.close();
+      } else {
+        pool.release(reader);
+      }
+    }
+  }
+}
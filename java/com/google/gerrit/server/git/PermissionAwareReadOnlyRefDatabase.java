@@ -28,16 +28,18 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import org.eclipse.jgit.annotations.NonNull;
 import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.api.PackRefsCommand;
 import org.eclipse.jgit.lib.BatchRefUpdate;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ProgressMonitor;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.RefRename;
 import org.eclipse.jgit.lib.RefUpdate;
@@ -82,6 +84,11 @@ public class PermissionAwareReadOnlyRefDatabase extends DelegateRefDatabase {
     throw new UnsupportedOperationException("PermissionAwareReadOnlyRefDatabase is read-only");
   }
 
+  @Override
+  public void packRefs(ProgressMonitor pm, PackRefsCommand packRefs) {
+    throw new UnsupportedOperationException("PermissionAwareReadOnlyRefDatabase is read-only");
+  }
+
   @Nullable
   @Override
   public Ref exactRef(String name) throws IOException {
@@ -129,37 +136,42 @@ public class PermissionAwareReadOnlyRefDatabase extends DelegateRefDatabase {
 
   @Override
   public List<Ref> getRefsByPrefix(String prefix) throws IOException {
-    List<Ref> refs = getDelegate().getRefDatabase().getRefsByPrefix(prefix);
-    if (refs.isEmpty()) {
-      return Collections.emptyList();
-    }
-
-    Collection<Ref> result;
-    try {
-      result = forProject.filter(refs, getDelegate(), RefFilterOptions.defaults());
-    } catch (PermissionBackendException e) {
-      throw new IOException("", e);
-    }
-    return result.stream().collect(Collectors.toList());
+    return filter(getDelegate().getRefDatabase().getRefsByPrefix(prefix));
   }
 
   @Override
   public List<Ref> getRefsByPrefixWithExclusions(String include, Set<String> excludes)
       throws IOException {
-    Stream<Ref> refs = getRefs(include).values().stream();
-    for (String exclude : excludes) {
-      refs = refs.filter(r -> !r.getName().startsWith(exclude));
-    }
-    return Collections.unmodifiableList(refs.collect(Collectors.toList()));
+    // Exclude refs before filtering, so that the permissions of excluded refs are never checked.
+    return Collections.unmodifiableList(
+        filter(getDelegate().getRefDatabase().getRefsByPrefixWithExclusions(include, excludes)));
   }
 
   @Override
   public List<Ref> getRefsByPrefix(String... prefixes) throws IOException {
-    List<Ref> result = new ArrayList<>();
-    for (String prefix : prefixes) {
-      result.addAll(getRefsByPrefix(prefix));
+    // Protocol v2 clients send the prefixes of the refs they are interested in, e.g. to fetch
+    // refs/heads/main only. Filter the refs of all prefixes with a single call, so that refs
+    // matching multiple prefixes are checked only once and refs outside the prefixes are never
+    // looked at.
+    Map<String, Ref> refs = new LinkedHashMap<>();
+    for (Ref ref : getDelegate().getRefDatabase().getRefsByPrefix(prefixes)) {
+      refs.putIfAbsent(ref.getName(), ref);
     }
-    return Collections.unmodifiableList(result);
+    return Collections.unmodifiableList(filter(refs.values()));
+  }
+
+  private List<Ref> filter(Collection<Ref> refs) throws IOException {
+    if (refs.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    Collection<Ref> result;
+    try {
+      result = forProject.filter(refs, getDelegate(), RefFilterOptions.defaults());
+    } catch (PermissionBackendException e) {
+      throw new IOException("", e);
+    }
+    return result.stream().collect(Collectors.toList());
   }
 
   @Override
@@ -195,14 +207,7 @@ public class PermissionAwareReadOnlyRefDatabase extends DelegateRefDatabase {
   @Override
   @NonNull
   public Set<Ref> getTipsWithSha1(ObjectId id) throws IOException {
-    Set<Ref> unfiltered = super.getTipsWithSha1(id);
-    Set<Ref> result = new HashSet<>(unfiltered.size());
-    for (Ref ref : unfiltered) {
-      if (exactRef(ref.getName()) != null) {
-        result.add(ref);
-      }
-    }
-    return result;
+    return new HashSet<>(filter(super.getTipsWithSha1(id)));
   }
 
   @Override
@@ -0,0 +1,259 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.events.GitBatchRefUpdateListener;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.metrics.CallbackMetric1;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.internal.storage.file.FileReftableDatabase;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Compacts the reftable stacks of repositories that use reftable as ref storage.
+ *
+ * <p>Every batch ref update adds a new table to the reftable stack of a repository. JGit only
+ * compacts the stack partially on writes, and {@link GarbageCollectionRunner} compacts it fully
+ * only when gc runs. Repositories that receive many ref updates, such as {@code All-Users} or
+ * projects with millions of change refs, can pile up long stacks in between, which slows down every
+ * ref lookup.
+ *
+ * <p>If {@code reftable.compactionCheckInterval} is set, this scheduler counts the batch ref
+ * updates per project and periodically checks the projects that were updated since the last check.
+ * A project is compacted fully if its stack has more than {@code reftable.maxStackSize} tables or
+ * if it received at least {@code reftable.maxUpdatesBeforeCompaction} batch updates since the last
+ * check. Projects that use the ref directory as ref storage are ignored. A project is only checked
+ * again once it was updated again.
+ */
+@Singleton
+public class ReftableCompactionScheduler
+    implements GitBatchRefUpdateListener, LifecycleListener, Runnable {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final int MAX_REPO_COUNT = 16;
+
+  @VisibleForTesting
+  enum Trigger {
+    STACK_SIZE,
+    UPDATE_COUNT
+  }
+
+  private final GitRepositoryManager repoManager;
+  private final WorkQueue workQueue;
+  private final long checkIntervalMs;
+  private final int maxStackSize;
+  private final long maxUpdatesBeforeCompaction;
+
+  /** Batch updates of the projects that were updated since the last check. */
+  private final Map<Project.NameKey, AtomicLong> updateCounts = new ConcurrentHashMap<>();
+
+  /** Stack sizes of reftable repositories, as seen by the last check. */
+  private final Map<Project.NameKey, Long> stackSizes = new ConcurrentHashMap<>();
+
+  private final Counter1<Trigger> compactionCount;
+  private final Counter0 compactionFailureCount;
+  private final Timer0 compactionLatency;
+
+  private ScheduledFuture<?> future;
+
+  @Inject
+  ReftableCompactionScheduler(
+      GitRepositoryManager repoManager,
+      WorkQueue workQueue,
+      MetricMaker metricMaker,
+      @GerritServerConfig Config cfg) {
+    this.repoManager = repoManager;
+    this.workQueue = workQueue;
+    this.checkIntervalMs =
+        ConfigUtil.getTimeUnit(
+            cfg,
+            "reftable",
+            null,
+            "compactionCheckInterval",
+            0,
+            TimeUnit.MILLISECONDS);
+    this.maxStackSize = cfg.getInt("reftable", null, "maxStackSize", 32);
+    this.maxUpdatesBeforeCompaction =
+        cfg.getLong("reftable", null, "maxUpdatesBeforeCompaction", 1000);
+
+    this.compactionCount =
+        metricMaker.newCounter(
+            "git/reftable/compaction_count",
+            new Description("Number of scheduled full compactions of reftable stacks")
+                .setRate()
+                .setUnit("compactions"),
+            Field.ofEnum(Trigger.class, "trigger", Field.ignoreMetadata())
+                .description("What triggered the compaction (STACK_SIZE, UPDATE_COUNT).")
+                .build());
+    this.compactionFailureCount =
+        metricMaker.newCounter(
+            "git/reftable/compaction_failure_count",
+            new Description("Number of failed compactions of reftable stacks")
+                .setRate()
+                .setUnit("compactions"));
+    this.compactionLatency =
+        metricMaker.newTimer(
+            "git/reftable/compaction_latency",
+            new Description("Latency of full compactions of reftable stacks")
+                .setCumulative()
+                .setUnit(Description.Units.MILLISECONDS));
+    CallbackMetric1<String, Long> stackSize =
+        metricMaker.newCallbackMetric(
+            "git/reftable/stack_size_per_repository",
+            Long.class,
+            new Description(
+                    "Number of tables in the reftable stack for the repositories with the most "
+                        + "tables")
+                .setGauge()
+                .setUnit("tables"),
+            Field.ofProjectName("repository_name")
+                .description("The name of the repository.")
+                .build());
+    metricMaker.newTrigger(
+        stackSize,
+        () -> {
+          if (stackSizes.isEmpty()) {
+            stackSize.forceCreate("");
+          } else {
+            stackSizes.entrySet().stream()
+                .sorted(Map.Entry.<Project.NameKey, Long>comparingByValue().reversed())
+                .limit(MAX_REPO_COUNT)
+                .forEach(e -> stackSize.set(e.getKey().get(), e.getValue()));
+            stackSize.prune();
+          }
+        });
+  }
+
+  @Override
+  public void start() {
+    if (checkIntervalMs > 0) {
+      // Compactions of large stacks can take a while, don't block the default queue with them.
+      future =
+          workQueue
+              .createQueue(1, "ReftableCompaction")
+              .scheduleWithFixedDelay(
+                  this, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (future != null) {
+      future.cancel(false);
+    }
+  }
+
+  @Override
+  public void onGitBatchRefUpdate(GitBatchRefUpdateListener.Event event) {
+    if (checkIntervalMs > 0) {
+      updateCounts
+          .computeIfAbsent(Project.nameKey(event.getProjectName()), p -> new AtomicLong())
+          .incrementAndGet();
+    }
+  }
+
+  @Override
+  public void run() {
+    List<Project.NameKey> projects = new ArrayList<>(updateCounts.keySet());
+    for (Project.NameKey project : projects) {
+      try {
+        check(project);
+      } catch (RuntimeException e) {
+        logger.atWarning().withCause(e).log("Failed to check reftable stack of %s", project);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  void check(Project.NameKey project) {
+    // Updates that happen while the project is checked are counted for the next check.
+    AtomicLong updates = updateCounts.remove(project);
+    if (updates == null) {
+      return;
+    }
+    try (Repository repo = repoManager.openRepository(project)) {
+      if (!FileReftableDatabase.isReftable(repo.getDirectory())) {
+        stackSizes.remove(project);
+        return;
+      }
+      long size = readStackSize(repo);
+      Trigger trigger = null;
+      if (size > maxStackSize) {
+        trigger = Trigger.STACK_SIZE;
+      } else if (maxUpdatesBeforeCompaction > 0
+          && updates.get() >= maxUpdatesBeforeCompaction) {
+        trigger = Trigger.UPDATE_COUNT;
+      }
+      if (trigger == null) {
+        stackSizes.put(project, size);
+        return;
+      }
+      compact(repo, project, trigger);
+      stackSizes.put(project, readStackSize(repo));
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Failed to compact reftable stack of %s", project);
+      compactionFailureCount.increment();
+    }
+  }
+
+  private void compact(Repository repo, Project.NameKey project, Trigger trigger)
+      throws IOException {
+    logger.atFine().log("Compacting reftable stack of %s (%s)", project, trigger);
+    try (Timer0.Context ctx = compactionLatency.start();
+        Git git = Git.wrap(repo)) {
+      git.packRefs().setAll(true).call();
+    } catch (GitAPIException e) {
+      throw new IOException(e);
+    }
+    compactionCount.increment(trigger);
+  }
+
+  /** Returns the number of tables in the reftable stack of {@code repo}. */
+  @VisibleForTesting
+  static long readStackSize(Repository repo) throws IOException {
+    Path tablesList = repo.getDirectory().toPath().resolve("reftable").resolve("tables.list");
+    try {
+      return Files.readAllLines(tablesList).stream().filter(l -> !l.isEmpty()).count();
+    } catch (NoSuchFileException e) {
+      return 0;
+    }
+  }
+}
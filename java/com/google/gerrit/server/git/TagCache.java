@@ -16,6 +16,13 @@ package com.google.gerrit.server.git;
 
 import com.google.common.cache.Cache;
 import com.google.gerrit.entities.Project;
+import com.google.gerrit.lifecycle.LifecycleModule;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer1;
 import com.google.gerrit.server.cache.CacheModule;
 import com.google.gerrit.server.cache.serialize.StringCacheSerializer;
 import com.google.inject.Inject;
@@ -29,6 +36,13 @@ import org.eclipse.jgit.lib.ObjectId;
 public class TagCache {
   private static final String CACHE_NAME = "git_tags";
 
+  enum BuildType {
+    /** The tag set of a project was built from scratch. */
+    FULL,
+    /** An existing tag set was updated for new or rewound refs. */
+    UPDATE
+  }
+
   public static Module module() {
     return new CacheModule() {
       @Override
@@ -38,15 +52,40 @@ public class TagCache {
             .keySerializer(StringCacheSerializer.INSTANCE)
             .valueSerializer(TagSetHolder.Serializer.INSTANCE);
         bind(TagCache.class);
+        install(
+            new LifecycleModule() {
+              @Override
+              protected void configure() {
+                listener().to(TagCacheWarmer.class);
+              }
+            });
       }
     };
   }
 
   private final Cache<String, TagSetHolder> cache;
+  private final Timer1<BuildType> buildLatency;
+  private final Counter0 staleCount;
 
   @Inject
-  TagCache(@Named(CACHE_NAME) Cache<String, TagSetHolder> cache) {
+  TagCache(@Named(CACHE_NAME) Cache<String, TagSetHolder> cache, MetricMaker metricMaker) {
     this.cache = cache;
+    this.buildLatency =
+        metricMaker.newTimer(
+            "git/tag_cache/build_latency",
+            new Description("Latency of building the set of tags reachable from branches")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            Field.ofEnum(BuildType.class, "type", Field.ignoreMetadata())
+                .description(
+                    "whether the tag set was built from scratch (FULL) or an existing tag set was"
+                        + " updated (UPDATE)")
+                .build());
+    this.staleCount =
+        metricMaker.newCounter(
+            "git/tag_cache/stale_count",
+            new Description("Cached tag sets that had to be updated before they could be used")
+                .setRate());
   }
 
   /**
@@ -90,4 +129,12 @@ public class TagCache {
   void put(Project.NameKey name, TagSetHolder tags) {
     cache.put(name.get(), tags);
   }
+
+  Timer1.Context<BuildType> startBuild(BuildType type) {
+    return buildLatency.start(type);
+  }
+
+  void recordStale() {
+    staleCount.increment();
+  }
 }
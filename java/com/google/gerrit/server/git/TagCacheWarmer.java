@@ -0,0 +1,94 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.logging.LoggingContextAwareExecutorService;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Brings the tag sets of the projects in {@code cache.git_tags.loadOnStartup} up to date in the
+ * background when the server starts.
+ *
+ * <p>Tag sets that are loaded from the persistent cache are updated for the refs that moved while
+ * the server was down, tag sets that are missing are built. This way the first fetch after a
+ * restart doesn't have to wait for the tag set of a large project.
+ */
+@Singleton
+public class TagCacheWarmer implements LifecycleListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private final Config config;
+  private final TagCache tagCache;
+  private final GitRepositoryManager repoManager;
+
+  @Inject
+  TagCacheWarmer(
+      @GerritServerConfig Config config, TagCache tagCache, GitRepositoryManager repoManager) {
+    this.config = config;
+    this.tagCache = tagCache;
+    this.repoManager = repoManager;
+  }
+
+  @Override
+  public void start() {
+    String[] projects = config.getStringList("cache", "git_tags", "loadOnStartup");
+    if (projects.length == 0) {
+      return;
+    }
+    Thread scheduler =
+        new Thread(
+            () -> {
+              try (ExecutorService pool =
+                  new LoggingContextAwareExecutorService(
+                      new ScheduledThreadPoolExecutor(
+                          config.getInt("cache", "git_tags", "loadThreads", 1),
+                          new ThreadFactoryBuilder().setNameFormat("TagCacheLoader-%d").build()))) {
+                for (String project : projects) {
+                  pool.execute(() -> refresh(Project.nameKey(project)));
+                }
+              }
+            });
+    scheduler.setName("TagCacheWarmer");
+    scheduler.setDaemon(true);
+
+    logger.atInfo().log("Loading tag cache for %d projects", projects.length);
+    scheduler.start();
+  }
+
+  private void refresh(Project.NameKey project) {
+    try (Repository repo = repoManager.openRepository(project)) {
+      tagCache.get(project).refresh(tagCache, repo);
+    } catch (RepositoryNotFoundException e) {
+      logger.atWarning().log("Cannot load tag cache of unknown project %s", project);
+    } catch (IOException | RuntimeException e) {
+      logger.atWarning().withCause(e).log("Cannot load tag cache of project %s", project);
+    }
+  }
+
+  @Override
+  public void stop() {}
+}
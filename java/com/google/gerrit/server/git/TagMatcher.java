@@ -36,6 +36,9 @@ public class TagMatcher {
   final boolean updated;
   private boolean rebuiltForNewTags;
 
+  /** Whether refs of the tag set were updated in place by {@link TagSet#prepare(TagMatcher)}. */
+  boolean refsMoved;
+
   TagMatcher(
       TagSetHolder holder,
       TagCache cache,
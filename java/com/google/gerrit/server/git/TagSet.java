@@ -166,7 +166,7 @@ class TagSet {
           RevCommit currentCommit = rw.parseCommit(currentRef.getObjectId());
           if (rw.isMergedInto(savedCommit, currentCommit)) {
             // Fast-forward. Safely update the reference in-place.
-            savedRef.compareAndSet(savedObjectId, currentRef.getObjectId());
+            m.refsMoved |= savedRef.compareAndSet(savedObjectId, currentRef.getObjectId());
             m.mask.add(savedRef.flag);
             continue;
           }
@@ -188,7 +188,7 @@ class TagSet {
           }
           if (!err) {
             // All of the tags are still reachable. Update in-place.
-            savedRef.compareAndSet(savedObjectId, currentRef.getObjectId());
+            m.refsMoved |= savedRef.compareAndSet(savedObjectId, currentRef.getObjectId());
             m.mask.add(savedRef.flag);
           }
 
@@ -16,13 +16,19 @@ package com.google.gerrit.server.git;
 
 import static java.util.stream.Collectors.toList;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.Timer1;
 import com.google.gerrit.proto.Protos;
 import com.google.gerrit.server.cache.proto.Cache.TagSetHolderProto;
 import com.google.gerrit.server.cache.serialize.CacheSerializer;
+import com.google.gerrit.server.git.TagCache.BuildType;
+import java.io.IOException;
 import java.util.Collection;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
 import org.eclipse.jgit.lib.Repository;
 
 public class TagSetHolder {
@@ -58,15 +64,35 @@ public class TagSetHolder {
     TagMatcher m = new TagMatcher(this, cache, db, include, tags, false);
     tags.prepare(m);
     if (!m.newRefs.isEmpty() || !m.lostRefs.isEmpty()) {
+      cache.recordStale();
       tags = rebuild(cache, db, tags, m);
 
       m = new TagMatcher(this, cache, db, include, tags, true);
       tags.prepare(m);
+    } else if (m.refsMoved) {
+      // Persist the refs that were updated in place, so that their reachability doesn't need to
+      // be checked again after the tag set is loaded from disk.
+      cache.put(projectName, this);
     }
     return m;
   }
 
+  /**
+   * Builds the tag set if it isn't built yet, and updates it for refs that were created or moved
+   * since it was built.
+   */
+  void refresh(TagCache cache, Repository db) throws IOException {
+    @SuppressWarnings("unused")
+    var unused =
+        matcher(
+            cache,
+            db,
+            db.getRefDatabase()
+                .getRefsByPrefixWithExclusions(RefDatabase.ALL, ImmutableSet.of(Constants.R_TAGS)));
+  }
+
   void rebuildForNewTags(TagCache cache, TagMatcher m) {
+    cache.recordStale();
     m.tags = rebuild(cache, m.db, m.tags, null);
     m.mask.clear();
     m.newRefs.clear();
@@ -79,7 +105,9 @@ public class TagSetHolder {
       TagSet tags = this.tags;
       if (tags == null) {
         tags = new TagSet(projectName);
-        tags.build(db, null, null);
+        try (Timer1.Context<BuildType> ignored = cache.startBuild(BuildType.FULL)) {
+          tags.build(db, null, null);
+        }
         this.tags = tags;
         cache.put(projectName, this);
       }
@@ -92,7 +120,9 @@ public class TagSetHolder {
       TagSet cur = this.tags;
       if (cur == old) {
         cur = new TagSet(projectName);
-        cur.build(db, old, m);
+        try (Timer1.Context<BuildType> ignored = cache.startBuild(BuildType.UPDATE)) {
+          cur.build(db, old, m);
+        }
         this.tags = cur;
         cache.put(projectName, this);
       }
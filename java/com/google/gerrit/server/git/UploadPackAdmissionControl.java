@@ -0,0 +1,199 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import static com.google.gerrit.server.quota.QuotaGroupDefinitions.UPLOAD_PACK_GROUP;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.quota.QuotaBackend;
+import com.google.gerrit.server.quota.QuotaException;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.eclipse.jgit.lib.Config;
+
+/**
+ * Limits the number of concurrent upload-pack requests per project and per user.
+ *
+ * <p>Before an upload-pack request over HTTP or SSH is served, it has to be admitted:
+ *
+ * <ul>
+ *   <li>The {@link QuotaBackend} is asked for a token of the {@code /git/upload-pack} quota group.
+ *   <li>The request needs a free slot of its user ({@code upload.maxConcurrentPerUser}) and of its
+ *       project ({@code upload.maxConcurrentPerProject}).
+ * </ul>
+ *
+ * <p>Requests that can't be admitted are rejected right away with a {@link QuotaException}, so that
+ * the client retries later. Waiting for a slot would occupy a thread that serves Git requests,
+ * which is what the limits are meant to prevent: a clone storm on one project must not block
+ * requests for other projects.
+ *
+ * <p>Only projects and users with running requests take up memory.
+ */
+@Singleton
+public class UploadPackAdmissionControl {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** Slots of an admitted request. Must be closed when the request is done. */
+  public interface Permit extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  enum RejectReason {
+    QUOTA,
+    USER_LIMIT,
+    PROJECT_LIMIT
+  }
+
+  private final QuotaBackend quotaBackend;
+  private final int maxPerProject;
+  private final int maxPerUser;
+
+  /** Number of running requests by key. Keys without running requests are removed. */
+  private final ConcurrentMap<Project.NameKey, Integer> projectSlots = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<Account.Id, Integer> userSlots = new ConcurrentHashMap<>();
+  private final Counter1<RejectReason> rejectedCount;
+
+  @Inject
+  UploadPackAdmissionControl(
+      @GerritServerConfig Config cfg, QuotaBackend quotaBackend, MetricMaker metricMaker) {
+    this.quotaBackend = quotaBackend;
+    this.maxPerProject = cfg.getInt("upload", "maxConcurrentPerProject", 0);
+    this.maxPerUser = cfg.getInt("upload", "maxConcurrentPerUser", 0);
+
+    this.rejectedCount =
+        metricMaker.newCounter(
+            "git/upload-pack/rejected_count",
+            new Description("Number of upload-pack requests that were not admitted")
+                .setRate()
+                .setUnit("requests"),
+            Field.ofEnum(RejectReason.class, "reason", Field.ignoreMetadata())
+                .description(
+                    "Why the request was rejected (QUOTA, USER_LIMIT, PROJECT_LIMIT).")
+                .build());
+  }
+
+  /**
+   * Admits an upload-pack request.
+   *
+   * @param project project that is fetched from.
+   * @param user user that fetches.
+   * @return permit that must be closed when the request is done.
+   * @throws QuotaException if the quota of the user is exhausted, or if the user or the project
+   *     has no free slot.
+   */
+  public Permit admit(Project.NameKey project, CurrentUser user) throws QuotaException {
+    try {
+      quotaBackend.user(user).project(project).requestToken(UPLOAD_PACK_GROUP).throwOnError();
+    } catch (QuotaException e) {
+      rejectedCount.increment(RejectReason.QUOTA);
+      throw e;
+    }
+
+    Account.Id accountId = null;
+    if (maxPerUser > 0 && user.isIdentifiedUser()) {
+      accountId = user.getAccountId();
+      if (!tryAcquire(userSlots, accountId, maxPerUser)) {
+        rejectedCount.increment(RejectReason.USER_LIMIT);
+        logger.atFine().log("Rejecting upload-pack of %s: too many concurrent fetches", user);
+        throw new QuotaException(
+            String.format(
+                "Too many concurrent fetches by %s, try again later", user.getLoggableName()));
+      }
+    }
+
+    Project.NameKey slotProject = null;
+    if (maxPerProject > 0) {
+      if (!tryAcquire(projectSlots, project, maxPerProject)) {
+        if (accountId != null) {
+          release(userSlots, accountId);
+        }
+        rejectedCount.increment(RejectReason.PROJECT_LIMIT);
+        logger.atFine().log("Rejecting upload-pack of %s: too many concurrent fetches", project);
+        throw new QuotaException(
+            String.format(
+                "Too many concurrent fetches from %s, try again later", project.get()));
+      }
+      slotProject = project;
+    }
+
+    if (accountId == null && slotProject == null) {
+      return () -> {};
+    }
+    return new SlotPermit(accountId, slotProject);
+  }
+
+  @VisibleForTesting
+  int trackedKeys() {
+    return projectSlots.size() + userSlots.size();
+  }
+
+  private static <K> boolean tryAcquire(ConcurrentMap<K, Integer> slots, K key, int max) {
+    AtomicBoolean acquired = new AtomicBoolean();
+    slots.compute(
+        key,
+        (k, running) -> {
+          int n = running != null ? running : 0;
+          if (n >= max) {
+            return running;
+          }
+          acquired.set(true);
+          return n + 1;
+        });
+    return acquired.get();
+  }
+
+  private static <K> void release(ConcurrentMap<K, Integer> slots, K key) {
+    slots.computeIfPresent(key, (k, running) -> running > 1 ? running - 1 : null);
+  }
+
+  private class SlotPermit implements Permit {
+    @Nullable private final Account.Id accountId;
+    @Nullable private final Project.NameKey project;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    SlotPermit(@Nullable Account.Id accountId, @Nullable Project.NameKey project) {
+      this.accountId = accountId;
+      this.project = project;
+    }
+
+    @Override
+    public void close() {
+      if (!closed.compareAndSet(false, true)) {
+        return;
+      }
+      if (project != null) {
+        release(projectSlots, project);
+      }
+      if (accountId != null) {
+        release(userSlots, accountId);
+      }
+    }
+  }
+}
@@ -34,6 +34,7 @@ import com.google.gerrit.metrics.Field;
 import com.google.gerrit.metrics.Histogram1;
 import com.google.gerrit.metrics.MetricMaker;
 import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.metrics.Timer1;
 import com.google.gerrit.metrics.Timer2;
 import com.google.gerrit.server.IdentifiedUser;
 import com.google.gerrit.server.PublishCommentsOp;
@@ -76,6 +77,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Collection;
+import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -187,13 +189,20 @@ public class AsyncReceiveCommits {
     AUTOCLOSE,
   }
 
+  private enum MagicPushPath {
+    FAST,
+    SLOW,
+  }
+
   @Singleton
   private static class Metrics {
     private final Histogram1<PushType> changes;
     private final Timer2<PushType, UserKind> latencyPerChange;
     private final Timer2<PushType, UserKind> latencyPerPush;
+    private final Timer1<MagicPushPath> latencyPerMagicPush;
     private final Timer0 latencyForScheduling;
     private final Counter0 timeouts;
+    private final Counter0 earlyRejections;
 
     @Inject
     Metrics(MetricMaker metricMaker) {
@@ -240,6 +249,18 @@ public class AsyncReceiveCommits {
               pushTypeField,
               userKindField);
 
+      latencyPerMagicPush =
+          metricMaker.newTimer(
+              "receivecommits/latency_per_magic_push",
+              new Description("processing delay for a single push for review")
+                  .setUnit(Units.MILLISECONDS)
+                  .setCumulative(),
+              Field.ofEnum(MagicPushPath.class, "path", Field.ignoreMetadata())
+                  .description(
+                      "whether the push was processed on the fast path for a single commit on"
+                          + " top of the target branch (fast) or not (slow)")
+                  .build());
+
       latencyForScheduling =
           metricMaker.newTimer(
               "receivecommits/latency_for_scheduling",
@@ -252,6 +273,12 @@ public class AsyncReceiveCommits {
       timeouts =
           metricMaker.newCounter(
               "receivecommits/timeout", new Description("rate of push timeouts").setRate());
+
+      earlyRejections =
+          metricMaker.newCounter(
+              "receivecommits/early_rejection",
+              new Description("rate of pushes that were rejected before their pack was received")
+                  .setRate());
     }
   }
 
@@ -315,7 +342,14 @@ public class AsyncReceiveCommits {
     Project.NameKey projectName = projectState.getNameKey();
     this.perm = permissionBackend.user(user).project(projectName);
 
-    receivePack = new ReceivePack(PermissionAwareRepositoryManager.wrap(repo, perm));
+    Repository receiveRepo = PermissionAwareRepositoryManager.wrap(repo, perm);
+    if (receiveConfig.enableEarlyRejection) {
+      EarlyReceiveCheck earlyReceiveCheck =
+          new EarlyReceiveCheck(projectState, user.getAccountId(), perm, repo);
+      receiveRepo =
+          new EarlyRejectingRepository(receiveRepo, () -> checkBeforeReceive(earlyReceiveCheck));
+    }
+    receivePack = new ReceivePack(receiveRepo);
     receivePack.setAllowCreates(true);
     receivePack.setAllowDeletes(true);
     receivePack.setAllowNonFastForwards(true);
@@ -389,6 +423,25 @@ public class AsyncReceiveCommits {
             });
   }
 
+  private Optional<String> checkBeforeReceive(EarlyReceiveCheck earlyReceiveCheck)
+      throws IOException {
+    Optional<String> rejection;
+    try {
+      rejection =
+          earlyReceiveCheck.check(receivePack.getAllCommands(), receivePack.getPushOptions());
+    } catch (PermissionBackendException e) {
+      // Receive the pack, ReceiveCommits reports the error if it persists.
+      logger.atWarning().withCause(e).log(
+          "Cannot check push to %s before receiving the pack", projectState.getName());
+      return Optional.empty();
+    }
+    if (rejection.isPresent()) {
+      logger.atFine().log("Rejecting push before receiving the pack: %s", rejection.get());
+      metrics.earlyRejections.increment();
+    }
+    return rejection;
+  }
+
   /** Determine if the user can upload commits. */
   public Capable canUpload() throws IOException, PermissionBackendException {
     if (!perm.test(ProjectPermission.PUSH_AT_LEAST_ONE_REF)) {
@@ -503,6 +556,10 @@ public class AsyncReceiveCommits {
           result.changes().get(ReceiveCommitsResult.ChangeStatus.REPLACED);
       metrics.changes.record(pushType, created.size() + replaced.size());
       totalChanges = replaced.size() + created.size();
+      metrics.latencyPerMagicPush.record(
+          result.magicPushFastPath() ? MagicPushPath.FAST : MagicPushPath.SLOW,
+          deltaNanos,
+          NANOSECONDS);
     } else {
       ImmutableSet<Change.Id> autoclosed =
           result.changes().get(ReceiveCommitsResult.ChangeStatus.AUTOCLOSED);
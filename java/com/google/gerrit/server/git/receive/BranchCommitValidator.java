@@ -41,11 +41,13 @@ import com.google.gerrit.server.project.ProjectState;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import java.io.IOException;
+import java.util.function.Function;
 import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.notes.NoteMap;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.ReceiveCommand;
 
 /** Validates single commits for a branch. */
@@ -169,6 +171,119 @@ public class BranchCommitValidator {
       @Nullable Change change,
       boolean skipValidation)
       throws IOException {
+    return validateCommit(
+        repository,
+        objectReader,
+        diffOperationsForCommitValidation,
+        cmd,
+        commit,
+        pushOptions,
+        change,
+        rw -> {
+          CommitValidators validators;
+          if (isMerged) {
+            validators =
+                commitValidatorsFactory.forMergedCommits(
+                    permissions, branch, user.asIdentifiedUser());
+          } else {
+            validators =
+                commitValidatorsFactory.forReceiveCommits(
+                    permissions,
+                    branch,
+                    user.asIdentifiedUser(),
+                    rejectCommits,
+                    rw,
+                    change,
+                    skipValidation);
+          }
+          return validators.invokeCommitValidationInfoListeners(
+              invokeCommitValidationInfoListeners);
+        });
+  }
+
+  /**
+   * Validates a single commit of a regular push with the built-in validators that run before the
+   * plugin validators. The {@link
+   * CommitValidationInfoListener}s are not invoked. If the commit does not validate, the command is
+   * rejected.
+   *
+   * <p>May be called concurrently for different commits, provided that every thread uses its own
+   * {@code BranchCommitValidator}, object reader and {@code rejectCommits}.
+   *
+   * @return The validation {@link Result}.
+   */
+  Result validateCommitWithBuiltInValidators(
+      Repository repository,
+      ObjectReader objectReader,
+      DiffOperationsForCommitValidation diffOperationsForCommitValidation,
+      ReceiveCommand cmd,
+      RevCommit commit,
+      ImmutableListMultimap<String, String> pushOptions,
+      NoteMap rejectCommits)
+      throws IOException {
+    return validateCommit(
+        repository,
+        objectReader,
+        diffOperationsForCommitValidation,
+        cmd,
+        commit,
+        pushOptions,
+        /* change= */ null,
+        rw ->
+            commitValidatorsFactory
+                .builtInForReceiveCommits(
+                    permissions,
+                    branch,
+                    user.asIdentifiedUser(),
+                    rejectCommits,
+                    rw,
+                    /* change= */ null)
+                .invokeCommitValidationInfoListeners(false));
+  }
+
+  /**
+   * Validates a single commit of a regular push with the plugin validators and the built-in
+   * validators that run after them, after it passed {@link #validateCommitWithBuiltInValidators}.
+   * The result and the {@link CommitValidationInfoListener}s include the results of the built-in
+   * validators that ran before. If the commit does not validate, the command is rejected.
+   *
+   * @param builtInValidationInfos the validation infos of the built-in validators.
+   * @return The validation {@link Result}.
+   */
+  Result validateCommitWithRemainingValidators(
+      Repository repository,
+      ObjectReader objectReader,
+      DiffOperationsForCommitValidation diffOperationsForCommitValidation,
+      ReceiveCommand cmd,
+      RevCommit commit,
+      ImmutableListMultimap<String, String> pushOptions,
+      boolean skipValidation,
+      ImmutableMap<String, CommitValidationInfo> builtInValidationInfos)
+      throws IOException {
+    return validateCommit(
+        repository,
+        objectReader,
+        diffOperationsForCommitValidation,
+        cmd,
+        commit,
+        pushOptions,
+        /* change= */ null,
+        rw ->
+            commitValidatorsFactory
+                .remainingForReceiveCommits(skipValidation)
+                .previousValidationInfos(builtInValidationInfos));
+  }
+
+  private Result validateCommit(
+      Repository repository,
+      ObjectReader objectReader,
+      DiffOperationsForCommitValidation diffOperationsForCommitValidation,
+      ReceiveCommand cmd,
+      RevCommit commit,
+      ImmutableListMultimap<String, String> pushOptions,
+      @Nullable Change change,
+      Function<RevWalk, CommitValidators> validatorsFactory)
+      throws IOException {
     try (TraceTimer traceTimer = TraceContext.newTimer("BranchCommitValidator#validateCommit")) {
       ImmutableMap<String, CommitValidationInfo> validationInfos = ImmutableMap.of();
       ImmutableList.Builder<CommitValidationMessage> messages = new ImmutableList.Builder<>();
@@ -184,27 +299,7 @@ public class BranchCommitValidator {
               user,
               change != null ? change.getCherryPickOf() : null,
               diffOperationsForCommitValidation)) {
-        CommitValidators validators;
-        if (isMerged) {
-          validators =
-              commitValidatorsFactory.forMergedCommits(
-                  permissions, branch, user.asIdentifiedUser());
-        } else {
-          validators =
-              commitValidatorsFactory.forReceiveCommits(
-                  permissions,
-                  branch,
-                  user.asIdentifiedUser(),
-                  rejectCommits,
-                  receiveEvent.revWalk,
-                  change,
-                  skipValidation);
-        }
-
-        validationInfos =
-            validators
-                .invokeCommitValidationInfoListeners(invokeCommitValidationInfoListeners)
-                .validate(receiveEvent);
+        validationInfos = validatorsFactory.apply(receiveEvent.revWalk).validate(receiveEvent);
         for (CommitValidationInfo validatioInfo : validationInfos.values()) {
           for (CommitValidationMessage m : validatioInfo.validationMessages()) {
             messages.add(
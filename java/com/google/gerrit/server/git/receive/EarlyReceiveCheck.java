@@ -0,0 +1,191 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git.receive;
+
+import static com.google.gerrit.entities.RefNames.REFS_CHANGES;
+import static com.google.gerrit.entities.RefNames.isConfigRef;
+import static com.google.gerrit.entities.RefNames.isRefsUsersSelf;
+import static org.eclipse.jgit.transport.ReceiveCommand.Result.NOT_ATTEMPTED;
+
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.extensions.restapi.AuthException;
+import com.google.gerrit.server.permissions.PermissionBackend;
+import com.google.gerrit.server.permissions.PermissionBackendException;
+import com.google.gerrit.server.permissions.RefPermission;
+import com.google.gerrit.server.project.ProjectState;
+import com.google.gerrit.server.util.MagicBranch;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.ReceiveCommand;
+
+/**
+ * Checks the commands of a push before its pack is received.
+ *
+ * <p>Only the checks of {@link ReceiveCommits} that don't need the objects of the push are done:
+ * project state, mixing of normal and magic pushes, ref names, NoteDb refs and ref permissions. A
+ * rejection is only reported if every command of the push is certain to be rejected, so that the
+ * pack doesn't need to be received at all. Pushes for which at least one command may succeed are
+ * received as usual and fully checked by {@link ReceiveCommits}.
+ */
+class EarlyReceiveCheck {
+  private final ProjectState projectState;
+  private final Account.Id accountId;
+  private final PermissionBackend.ForProject perm;
+  private final Repository repo;
+
+  EarlyReceiveCheck(
+      ProjectState projectState,
+      Account.Id accountId,
+      PermissionBackend.ForProject perm,
+      Repository repo) {
+    this.projectState = projectState;
+    this.accountId = accountId;
+    this.perm = perm;
+    this.repo = repo;
+  }
+
+  /**
+   * Checks the commands of a push.
+   *
+   * @param commands commands of the push.
+   * @param pushOptions push options of the push, {@code null} if the client didn't send any.
+   * @return the reason why the push is rejected, empty if at least one command may succeed.
+   */
+  Optional<String> check(Collection<ReceiveCommand> commands, @Nullable List<String> pushOptions)
+      throws PermissionBackendException, IOException {
+    if (commands.isEmpty()) {
+      return Optional.empty();
+    }
+    if (!projectState.getProject().getState().permitsWrite()) {
+      return Optional.of("prohibited by Gerrit: project state does not permit write");
+    }
+
+    boolean hasMagicCommands = false;
+    boolean hasRegularCommands = false;
+    for (ReceiveCommand cmd : commands) {
+      if (MagicBranch.isMagicBranch(cmd.getRefName())) {
+        hasMagicCommands = true;
+      } else {
+        hasRegularCommands = true;
+      }
+    }
+    if (hasMagicCommands && hasRegularCommands) {
+      return Optional.of("cannot combine normal pushes and magic pushes");
+    }
+    if (hasMagicCommands) {
+      // Whether a magic push can succeed depends on its commits and options.
+      return Optional.empty();
+    }
+
+    boolean allowNoteDb = allowsNoteDbUpdates(pushOptions);
+    String firstRejection = null;
+    for (ReceiveCommand cmd : commands) {
+      if (cmd.getResult() != NOT_ATTEMPTED) {
+        return Optional.empty();
+      }
+      Optional<String> rejection = checkRegularCommand(cmd, allowNoteDb);
+      if (rejection.isEmpty()) {
+        return Optional.empty();
+      }
+      if (firstRejection == null) {
+        firstRejection = cmd.getRefName() + ": " + rejection.get();
+      }
+    }
+    return Optional.of(firstRejection);
+  }
+
+  private Optional<String> checkRegularCommand(ReceiveCommand cmd, boolean allowNoteDb)
+      throws PermissionBackendException, IOException {
+    String refName = cmd.getRefName();
+    if (isRefsUsersSelf(refName, projectState.isAllUsers())) {
+      // ReceiveCommits applies the command to the user branch of the pushing user.
+      refName = RefNames.refsUsers(accountId);
+    }
+    if (!Repository.isValidRefName(refName) || refName.contains("//")) {
+      return Optional.of("not valid ref");
+    }
+    if (RefNames.isNoteDbMetaRef(refName) && !allowNoteDb) {
+      return Optional.of(
+          "NoteDb update requires -o "
+              + NoteDbPushOption.OPTION_NAME
+              + "="
+              + NoteDbPushOption.ALLOW.value());
+    }
+
+    PermissionBackend.ForRef forRef = perm.ref(refName);
+    return switch (cmd.getType()) {
+      case CREATE -> {
+        if (repo.exactRef(refName) != null) {
+          yield Optional.of(
+              String.format("Cannot create ref '%s' because it already exists.", refName));
+        }
+        // Which permission is needed depends on whether a commit or a tag is pushed.
+        yield checkAnyPermission(
+            forRef,
+            RefPermission.CREATE,
+            RefPermission.CREATE_TAG,
+            RefPermission.CREATE_SIGNED_TAG);
+      }
+      // Whether an update is a fast-forward is only known once the pack was received.
+      case UPDATE, UPDATE_NONFASTFORWARD ->
+          checkAnyPermission(forRef, RefPermission.UPDATE, RefPermission.FORCE_UPDATE);
+      case DELETE -> {
+        if (refName.startsWith(REFS_CHANGES)) {
+          yield Optional.of("cannot delete changes");
+        } else if (isConfigRef(refName)) {
+          yield Optional.of("cannot delete project configuration");
+        }
+        yield checkAnyPermission(forRef, RefPermission.DELETE);
+      }
+    };
+  }
+
+  private static Optional<String> checkAnyPermission(
+      PermissionBackend.ForRef forRef, RefPermission... permissions)
+      throws PermissionBackendException {
+    AuthException denied = null;
+    for (RefPermission permission : permissions) {
+      try {
+        forRef.check(permission);
+        return Optional.empty();
+      } catch (AuthException e) {
+        if (denied == null) {
+          denied = e;
+        }
+      }
+    }
+    return Optional.of("prohibited by Gerrit: " + denied.getMessage());
+  }
+
+  private static boolean allowsNoteDbUpdates(@Nullable List<String> pushOptions) {
+    if (pushOptions == null) {
+      return false;
+    }
+    String prefix = NoteDbPushOption.OPTION_NAME + "=";
+    String value = null;
+    for (String option : pushOptions) {
+      if (option.startsWith(prefix)) {
+        value = option.substring(prefix.length());
+      }
+    }
+    return value != null
+        && NoteDbPushOption.parse(value).equals(Optional.of(NoteDbPushOption.ALLOW));
+  }
+}
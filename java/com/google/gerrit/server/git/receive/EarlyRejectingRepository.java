@@ -0,0 +1,68 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git.receive;
+
+import com.google.gerrit.server.git.DelegateRepository;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.PackParser;
+import org.eclipse.jgit.transport.ReceivePack;
+
+/**
+ * Repository for {@link ReceivePack} that can reject a push before its pack is received.
+ *
+ * <p>JGit has no hook between reading the commands of a push and receiving its pack, but it creates
+ * the {@link PackParser} right before it reads the first byte of the pack. If the check fails at
+ * this point, the push is aborted with an unpack error that carries the rejection reason, and none
+ * of the objects are transferred or indexed.
+ */
+class EarlyRejectingRepository extends DelegateRepository {
+  /** Check that is run before the pack of a push is received. */
+  @FunctionalInterface
+  interface Check {
+    /** Returns the reason why the push is rejected, empty if the pack should be received. */
+    Optional<String> check() throws IOException;
+  }
+
+  private final Check check;
+
+  EarlyRejectingRepository(Repository delegate, Check check) {
+    super(delegate);
+    this.check = check;
+  }
+
+  @Override
+  public ObjectInserter newObjectInserter() {
+    ObjectInserter inserter = delegate.newObjectInserter();
+    return new ObjectInserter.Filter() {
+      @Override
+      protected ObjectInserter delegate() {
+        return inserter;
+      }
+
+      @Override
+      public PackParser newPackParser(InputStream in) throws IOException {
+        Optional<String> rejection = check.check();
+        if (rejection.isPresent()) {
+          throw new IOException(rejection.get());
+        }
+        return super.newPackParser(in);
+      }
+    };
+  }
+}
@@ -0,0 +1,189 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git.receive;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Validates the new commits of a push concurrently, while the commits are still being walked.
+ *
+ * <p>The walking thread {@link #add}s the commits in walk order. They are grouped into chunks that
+ * are validated by tasks on an executor, each chunk serially by a single task. At most {@code
+ * maxPendingChunks} chunks are in flight, {@link #add} blocks if the validation falls behind the
+ * walk.
+ *
+ * <p>The results are handed to the {@link ResultConsumer} in the walking thread and in walk order,
+ * so that messages and the rejection of the push are the same as with serial validation. Once a
+ * commit is invalid, the results of all later commits are discarded and their validation is
+ * cancelled. {@link #close} waits until all tasks are done, so that no task uses the repository or
+ * the request after the push.
+ *
+ * @param <R> result of validating a single commit
+ */
+class ParallelCommitValidator<R> implements AutoCloseable {
+  /** Validates a chunk of commits, called concurrently for different chunks. */
+  @FunctionalInterface
+  interface ChunkValidator<R> {
+    /**
+     * Validates the given commits in order.
+     *
+     * @param commits the commits to validate.
+     * @param cancelled whether the validation was cancelled, then the remaining commits should be
+     *     skipped.
+     * @return the results in the order of the commits. The validation may stop after the first
+     *     invalid commit or once it was cancelled, then results for the remaining commits are
+     *     omitted.
+     */
+    List<R> validate(ImmutableList<ObjectId> commits, BooleanSupplier cancelled)
+        throws IOException;
+  }
+
+  /** Consumes the results in walk order. */
+  @FunctionalInterface
+  interface ResultConsumer<R> {
+    /** Returns whether the commit was valid and the validation should continue. */
+    boolean accept(R result) throws IOException;
+  }
+
+  private final Function<Callable<List<R>>, Future<List<R>>> executor;
+  private final int chunkSize;
+  private final int maxPendingChunks;
+  private final ChunkValidator<R> chunkValidator;
+  private final ResultConsumer<R> resultConsumer;
+  private final Deque<Future<List<R>>> pending = new ArrayDeque<>();
+
+  private List<ObjectId> chunk = new ArrayList<>();
+  private boolean failed;
+  private volatile boolean cancelled;
+
+  ParallelCommitValidator(
+      Function<Callable<List<R>>, Future<List<R>>> executor,
+      int chunkSize,
+      int maxPendingChunks,
+      ChunkValidator<R> chunkValidator,
+      ResultConsumer<R> resultConsumer) {
+    this.executor = executor;
+    this.chunkSize = chunkSize;
+    this.maxPendingChunks = maxPendingChunks;
+    this.chunkValidator = chunkValidator;
+    this.resultConsumer = resultConsumer;
+  }
+
+  /**
+   * Adds the next commit in walk order.
+   *
+   * @return whether all commits so far were valid, or are still being validated. If {@code false}
+   *     the walk should stop.
+   */
+  boolean add(ObjectId commit) throws IOException {
+    if (failed) {
+      return false;
+    }
+    chunk.add(commit.copy());
+    if (chunk.size() >= chunkSize) {
+      submitChunk();
+    }
+    consume(/* wait= */ false);
+    while (!failed && pending.size() >= maxPendingChunks) {
+      consumeNext();
+    }
+    return !failed;
+  }
+
+  /**
+   * Waits for the validation of all added commits.
+   *
+   * @return whether all commits were valid.
+   */
+  boolean finish() throws IOException {
+    if (!failed && !chunk.isEmpty()) {
+      submitChunk();
+    }
+    consume(/* wait= */ true);
+    return !failed;
+  }
+
+  /** Cancels the validation of the remaining chunks and waits until all tasks are done. */
+  @Override
+  public void close() {
+    cancelled = true;
+    // Tasks are not cancelled through their futures, since a cancelled future doesn't wait for
+    // the task if it is already running. Tasks that didn't start yet return right away instead.
+    for (Future<List<R>> future : pending) {
+      try {
+        Uninterruptibles.getUninterruptibly(future);
+      } catch (ExecutionException | CancellationException e) {
+        // The result is discarded anyway.
+      }
+    }
+    pending.clear();
+  }
+
+  private void submitChunk() {
+    ImmutableList<ObjectId> commits = ImmutableList.copyOf(chunk);
+    chunk = new ArrayList<>();
+    pending.add(
+        executor.apply(
+            () ->
+                cancelled
+                    ? ImmutableList.of()
+                    : chunkValidator.validate(commits, () -> cancelled)));
+  }
+
+  private void consume(boolean wait) throws IOException {
+    while (!failed && !pending.isEmpty() && (wait || pending.peek().isDone())) {
+      consumeNext();
+    }
+  }
+
+  private void consumeNext() throws IOException {
+    List<R> results = get(pending.remove());
+    for (R result : results) {
+      if (!resultConsumer.accept(result)) {
+        failed = true;
+        close();
+        return;
+      }
+    }
+  }
+
+  private static <R> List<R> get(Future<List<R>> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while validating commits");
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IOException("Failed to validate commits", e.getCause());
+    }
+  }
+}
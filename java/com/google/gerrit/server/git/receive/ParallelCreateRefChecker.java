@@ -0,0 +1,172 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git.receive;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import org.eclipse.jgit.transport.ReceiveCommand;
+
+/**
+ * Checks whether the refs of a push that creates many refs may be created concurrently, while the
+ * commands are still processed one by one.
+ *
+ * <p>The commands are grouped into chunks that are checked by tasks on an executor, each chunk
+ * serially by a single task. At most {@code maxPendingChunks} chunks are in flight, the next chunks
+ * are only submitted once the commands of earlier chunks are {@link #check}ed. This way a push that
+ * creates thousands of refs doesn't fill the queue of the executor that is shared with other
+ * pushes.
+ *
+ * <p>{@link #check} must be called in the order of the commands. It returns the result of the
+ * concurrent check, so that rejections and messages are the same as with serial checks. Commands
+ * that are rejected for other reasons are never checked, their results are discarded. {@link
+ * #close} waits until all tasks are done, so that no task uses the repository or the request after
+ * the push.
+ */
+class ParallelCreateRefChecker implements AutoCloseable {
+  /** Checks whether the ref of a single command may be created, called concurrently. */
+  @FunctionalInterface
+  interface CreateRefCheck {
+    void check(ReceiveCommand cmd) throws Exception;
+  }
+
+  private final Function<
+          Callable<Map<ReceiveCommand, Optional<Exception>>>,
+          Future<Map<ReceiveCommand, Optional<Exception>>>>
+      executor;
+  private final int maxPendingChunks;
+  private final CreateRefCheck createRefCheck;
+  private final List<ImmutableList<ReceiveCommand>> chunks;
+  private final Map<ReceiveCommand, Integer> chunkIndex = new HashMap<>();
+  private final List<Future<Map<ReceiveCommand, Optional<Exception>>>> futures = new ArrayList<>();
+
+  /** Index of the first chunk whose task may still be running. */
+  private int firstPending;
+
+  private volatile boolean cancelled;
+
+  ParallelCreateRefChecker(
+      Function<
+              Callable<Map<ReceiveCommand, Optional<Exception>>>,
+              Future<Map<ReceiveCommand, Optional<Exception>>>>
+          executor,
+      int chunkSize,
+      int maxPendingChunks,
+      CreateRefCheck createRefCheck,
+      List<ReceiveCommand> cmds) {
+    this.executor = executor;
+    this.maxPendingChunks = Math.max(1, maxPendingChunks);
+    this.createRefCheck = createRefCheck;
+    this.chunks =
+        Lists.partition(cmds, chunkSize).stream()
+            .map(ImmutableList::copyOf)
+            .collect(ImmutableList.toImmutableList());
+    for (int i = 0; i < chunks.size(); i++) {
+      for (ReceiveCommand cmd : chunks.get(i)) {
+        chunkIndex.put(cmd, i);
+      }
+    }
+    submitUpTo(this.maxPendingChunks);
+  }
+
+  /**
+   * Returns once the ref of the command was checked, waiting for its concurrent check if needed.
+   * Commands that are not checked concurrently are checked in the calling thread.
+   *
+   * @throws ExecutionException if the check failed, the cause is the exception of the check.
+   * @throws InterruptedException if the thread was interrupted while waiting for the check.
+   */
+  void check(ReceiveCommand cmd) throws ExecutionException, InterruptedException {
+    Integer index = chunkIndex.remove(cmd);
+    if (index == null || cancelled) {
+      checkInline(cmd);
+      return;
+    }
+
+    // Commands are checked in order, the tasks of earlier chunks are no longer needed.
+    while (firstPending < index) {
+      awaitQuietly(futures.get(firstPending++));
+    }
+    submitUpTo(index + maxPendingChunks);
+
+    Optional<Exception> result = futures.get(index).get().get(cmd);
+    if (result == null) {
+      // The task was cancelled before it got to the command.
+      checkInline(cmd);
+    } else if (result.isPresent()) {
+      throw new ExecutionException(result.get());
+    }
+  }
+
+  /** Cancels the remaining checks and waits until all tasks are done. */
+  @Override
+  public void close() {
+    cancelled = true;
+    // Tasks are not cancelled through their futures, since a cancelled future doesn't wait for
+    // the task if it is already running. Tasks that didn't start yet return right away instead.
+    while (firstPending < futures.size()) {
+      awaitQuietly(futures.get(firstPending++));
+    }
+  }
+
+  private void checkInline(ReceiveCommand cmd) throws ExecutionException {
+    try {
+      createRefCheck.check(cmd);
+    } catch (Exception e) {
+      throw new ExecutionException(e);
+    }
+  }
+
+  private void submitUpTo(int end) {
+    while (!cancelled && futures.size() < Math.min(end, chunks.size())) {
+      ImmutableList<ReceiveCommand> chunk = chunks.get(futures.size());
+      futures.add(executor.apply(() -> checkChunk(chunk)));
+    }
+  }
+
+  private Map<ReceiveCommand, Optional<Exception>> checkChunk(ImmutableList<ReceiveCommand> chunk) {
+    Map<ReceiveCommand, Optional<Exception>> results = new HashMap<>();
+    for (ReceiveCommand cmd : chunk) {
+      if (cancelled) {
+        break;
+      }
+      try {
+        createRefCheck.check(cmd);
+        results.put(cmd, Optional.empty());
+      } catch (Exception e) {
+        results.put(cmd, Optional.of(e));
+      }
+    }
+    return results;
+  }
+
+  private static void awaitQuietly(Future<?> future) {
+    try {
+      Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException | CancellationException e) {
+      // The result is discarded anyway.
+    }
+  }
+}
@@ -103,8 +103,10 @@ import com.google.gerrit.extensions.validators.CommentValidator;
 import com.google.gerrit.metrics.Counter0;
 import com.google.gerrit.metrics.Counter3;
 import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
 import com.google.gerrit.metrics.Field;
 import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
 import com.google.gerrit.server.AclInfoController;
 import com.google.gerrit.server.CancellationMetrics;
 import com.google.gerrit.server.ChangeUtil;
@@ -129,11 +131,13 @@ import com.google.gerrit.server.cancellation.RequestCancelledException;
 import com.google.gerrit.server.cancellation.RequestStateContext;
 import com.google.gerrit.server.change.AttentionSetUnchangedOp;
 import com.google.gerrit.server.change.ChangeInserter;
+import com.google.gerrit.server.change.ChangeKeyCache;
 import com.google.gerrit.server.change.NotifyResolver;
 import com.google.gerrit.server.change.SetHashtagsOp;
 import com.google.gerrit.server.change.SetPrivateOp;
 import com.google.gerrit.server.change.SetTopicOp;
 import com.google.gerrit.server.config.AllProjectsName;
+import com.google.gerrit.server.config.CommitValidationExecutor;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.config.PluginConfig;
 import com.google.gerrit.server.config.ProjectConfigEntry;
@@ -221,6 +225,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -235,7 +240,9 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -243,8 +250,11 @@ import java.util.stream.StreamSupport;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.BitmapIndex;
+import org.eclipse.jgit.lib.BitmapIndex.BitmapBuilder;
 import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectInserter;
 import org.eclipse.jgit.lib.ObjectReader;
@@ -252,6 +262,8 @@ import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.notes.NoteMap;
+import org.eclipse.jgit.revwalk.BitmapWalker;
+import org.eclipse.jgit.revwalk.ObjectWalk;
 import org.eclipse.jgit.revwalk.ReachabilityChecker;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevObject;
@@ -345,6 +357,8 @@ class ReceiveCommits {
     private final Counter0 psRevisionMissing;
     private final Counter3<String, String, String> pushCount;
     private final Counter3<String, String, Integer> rejectCount;
+    private final Timer0 autoCloseWithBitmapsLatency;
+    private final Counter0 autoCloseWithBitmapsCount;
 
     @Inject
     Metrics(MetricMaker metricMaker) {
@@ -382,6 +396,17 @@ class ReceiveCommits {
               Field.ofInteger("status", (metadataBuilder, fieldValue) -> {})
                   .description("The HTTP status code.")
                   .build());
+      autoCloseWithBitmapsLatency =
+          metricMaker.newTimer(
+              "receivecommits/auto_close_with_bitmaps_latency",
+              new Description(
+                      "Latency for finding the changes that are merged by a push with bitmaps")
+                  .setCumulative()
+                  .setUnit(Units.MILLISECONDS));
+      autoCloseWithBitmapsCount =
+          metricMaker.newCounter(
+              "receivecommits/auto_close_with_bitmaps_count",
+              new Description("number of pushes whose merged changes were found with bitmaps"));
     }
   }
 
@@ -401,6 +426,7 @@ class ReceiveCommits {
   private final ChangeInserter.Factory changeInserterFactory;
   private final ChangeNotes.Factory notesFactory;
   private final ChangeReportFormatter changeFormatter;
+  private final ChangeKeyCache changeKeyCache;
   private final ChangeUtil changeUtil;
   private final CmdLineParser.Factory optionParserFactory;
   private final DraftCommentsReader draftCommentsReader;
@@ -425,6 +451,7 @@ class ReceiveCommits {
   private final Provider<MergeOp> mergeOpProvider;
   private final Provider<MergeOpRepoManager> ormProvider;
   private final ReceiveConfig receiveConfig;
+  private final ExecutorService commitValidationExecutor;
   private final RefOperationValidators.Factory refValidatorsFactory;
   private final ReplaceOp.Factory replaceOpFactory;
   private final PluginSetContext<RequestListener> requestListeners;
@@ -468,6 +495,9 @@ class ReceiveCommits {
 
   private final LinkedHashMap<ReceiveCommand, RejectionReason> rejectionReasons;
 
+  /** Ref creation checks that run ahead of processing the commands, null if there are none. */
+  @Nullable private ParallelCreateRefChecker createRefChecker;
+
   private final ListMultimap<String, String> pushOptions;
   private final ReceivePackRefCache receivePackRefCache;
   private final Map<Change.Id, ReplaceRequest> replaceByChange;
@@ -476,6 +506,7 @@ class ReceiveCommits {
   private MagicBranchInput magicBranch;
   private boolean newChangeForAllNotInTarget;
   private boolean setChangeAsPrivate;
+  private boolean magicPushFastPath;
   private Optional<NoteDbPushOption> noteDbPushOption;
   private Optional<String> tracePushOption = Optional.empty();
   private Map<String, String> customKeyedValues = new HashMap<>();
@@ -504,6 +535,7 @@ class ReceiveCommits {
       ChangeInserter.Factory changeInserterFactory,
       ChangeNotes.Factory notesFactory,
       DynamicItem<ChangeReportFormatter> changeFormatterProvider,
+      ChangeKeyCache changeKeyCache,
       ChangeUtil changeUtil,
       CmdLineParser.Factory optionParserFactory,
       DraftCommentsReader draftCommentsReader,
@@ -528,6 +560,7 @@ class ReceiveCommits {
       Provider<MergeOpRepoManager> ormProvider,
       PublishCommentsOp.Factory publishCommentsOp,
       ReceiveConfig receiveConfig,
+      @CommitValidationExecutor ExecutorService commitValidationExecutor,
       RefOperationValidators.Factory refValidatorsFactory,
       ReplaceOp.Factory replaceOpFactory,
       PluginSetContext<RequestListener> requestListeners,
@@ -559,6 +592,7 @@ class ReceiveCommits {
     this.batchUpdates = batchUpdates;
     this.cancellationMetrics = cancellationMetrics;
     this.changeFormatter = changeFormatterProvider.get();
+    this.changeKeyCache = changeKeyCache;
     this.changeUtil = changeUtil;
     this.changeInserterFactory = changeInserterFactory;
     this.draftCommentsReader = draftCommentsReader;
@@ -592,6 +626,7 @@ class ReceiveCommits {
     this.performanceLoggers = performanceLoggers;
     this.publishCommentsOp = publishCommentsOp;
     this.receiveConfig = receiveConfig;
+    this.commitValidationExecutor = commitValidationExecutor;
     this.refValidatorsFactory = refValidatorsFactory;
     this.replaceOpFactory = replaceOpFactory;
     this.requestCounter = requestCounter;
@@ -990,8 +1025,17 @@ class ReceiveCommits {
     try (TraceTimer traceTimer =
         newTimer("handleRegularCommands", Metadata.builder().resourceCount(cmds.size()))) {
       result.magicPush(false);
-      for (ReceiveCommand cmd : cmds) {
-        parseRegularCommand(globalRevWalk, ins, cmd);
+      startCreateRefChecks(cmds);
+      try {
+        for (ReceiveCommand cmd : cmds) {
+          parseRegularCommand(globalRevWalk, ins, cmd);
+        }
+      } finally {
+        // Checks of commands that were rejected before their check was needed.
+        if (createRefChecker != null) {
+          createRefChecker.close();
+          createRefChecker = null;
+        }
       }
 
       Map<BranchNameKey, ReceiveCommand> branches;
@@ -1321,6 +1365,7 @@ class ReceiveCommits {
 
       if (magicBranchCmd != null) {
         magicBranchCmd.setResult(OK);
+        result.magicPushFastPath(magicPushFastPath);
       }
       for (ReplaceRequest replace : replaceByChange.values()) {
         Optional<RejectionReason> rejectionReason = replace.getRejectionReason();
@@ -1666,10 +1711,7 @@ class ReceiveCommits {
 
       BranchNameKey branch = BranchNameKey.create(project.getName(), cmd.getRefName());
       try {
-        // Must pass explicit user instead of injecting a provider into CreateRefControl, since
-        // Provider<CurrentUser> within ReceiveCommits will always return anonymous.
-        createRefControl.checkCreateRef(
-            Providers.of(user), receivePack.getRepository(), branch, obj, /* forPush= */ true);
+        checkCreateRef(cmd, branch, obj);
       } catch (AuthException denied) {
         rejectProhibited(cmd, denied);
         return;
@@ -1694,6 +1736,90 @@ class ReceiveCommits {
     }
   }
 
+  /**
+   * Starts the checks whether the refs of a push that creates multiple refs (e.g. many tags) may be
+   * created on the commit validation executor, so that they run concurrently while the commands are
+   * processed one by one.
+   *
+   * <p>The checks only read the repository and the permissions, they don't depend on each other or
+   * on the order of the commands. They are checked in chunks of {@code
+   * receive.createRefCheckChunkSize} refs, with at most twice as many chunks in flight as the
+   * executor has threads.
+   */
+  private void startCreateRefChecks(List<ReceiveCommand> cmds) {
+    if (receiveConfig.commitValidationThreadPoolSize <= 0
+        || receiveConfig.createRefCheckChunkSize <= 0) {
+      return;
+    }
+    List<ReceiveCommand> creates =
+        cmds.stream()
+            .filter(
+                cmd ->
+                    cmd.getType() == ReceiveCommand.Type.CREATE
+                        && cmd.getResult() == NOT_ATTEMPTED
+                        && Repository.isValidRefName(cmd.getRefName())
+                        && !RefNames.isNoteDbMetaRef(cmd.getRefName()))
+            .collect(toList());
+    if (creates.size() < 2) {
+      return;
+    }
+    logger.atFine().log("Checking creation of %d refs concurrently", creates.size());
+    Repository repository = receivePack.getRepository();
+    createRefChecker =
+        new ParallelCreateRefChecker(
+            task -> commitValidationExecutor.submit(requestScopePropagator.wrap(task)),
+            receiveConfig.createRefCheckChunkSize,
+            2 * receiveConfig.commitValidationThreadPoolSize,
+            cmd -> {
+              // Parse the object with a walk of the task, RevObjects are not thread-safe.
+              try (RevWalk rw = new RevWalk(repository)) {
+                createRefControl.checkCreateRef(
+                    Providers.of(user),
+                    repository,
+                    BranchNameKey.create(project.getName(), cmd.getRefName()),
+                    rw.parseAny(cmd.getNewId()),
+                    /* forPush= */ true);
+              }
+            },
+            creates);
+  }
+
+  /**
+   * Checks whether the ref of the command may be created, using the concurrent check that was
+   * started by {@link #startCreateRefChecks(List)} if there is one.
+   */
+  private void checkCreateRef(ReceiveCommand cmd, BranchNameKey branch, RevObject obj)
+      throws AuthException,
+          ResourceConflictException,
+          UnprocessableEntityException,
+          PermissionBackendException,
+          NoSuchProjectException,
+          IOException {
+    if (createRefChecker == null) {
+      // Must pass explicit user instead of injecting a provider into CreateRefControl, since
+      // Provider<CurrentUser> within ReceiveCommits will always return anonymous.
+      createRefControl.checkCreateRef(
+          Providers.of(user), receivePack.getRepository(), branch, obj, /* forPush= */ true);
+      return;
+    }
+    try {
+      createRefChecker.check(cmd);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StorageException("Interrupted while checking creation of " + cmd.getRefName(), e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      Throwables.throwIfInstanceOf(cause, AuthException.class);
+      Throwables.throwIfInstanceOf(cause, ResourceConflictException.class);
+      Throwables.throwIfInstanceOf(cause, UnprocessableEntityException.class);
+      Throwables.throwIfInstanceOf(cause, PermissionBackendException.class);
+      Throwables.throwIfInstanceOf(cause, NoSuchProjectException.class);
+      Throwables.throwIfInstanceOf(cause, IOException.class);
+      Throwables.throwIfUnchecked(cause);
+      throw new StorageException(cause);
+    }
+  }
+
   private void parseUpdate(RevWalk globalRevWalk, ObjectInserter ins, ReceiveCommand cmd)
       throws PermissionBackendException {
     try (TraceTimer traceTimer = TraceContext.newTimer("parseUpdate")) {
@@ -2652,14 +2778,25 @@ class ReceiveCommits {
       logger.atFine().log("Finding new and replaced changes");
       List<CreateRequest> newChanges = new ArrayList<>();
 
-      GroupCollector groupCollector =
-          GroupCollector.create(receivePackRefCache, psUtil, notesFactory, project.getNameKey());
+      // A push of a single commit on top of the target branch is handled without walking the
+      // branches and without computing groups.
+      RevCommit singleCommit = singleCommitForFastPath(globalRevWalk);
+      GroupCollector groupCollector = null;
+      if (singleCommit != null) {
+        logger.atFine().log("Using fast path for single commit %s", singleCommit.name());
+        magicPushFastPath = true;
+      } else {
+        groupCollector =
+            GroupCollector.create(
+                receivePackRefCache, psUtil, notesFactory, repo, project.getNameKey());
+      }
 
       BranchCommitValidator validator =
           commitValidatorFactory.create(projectState, magicBranch.dest, user);
 
       try (RepoView repoView = new RepoView(repo, globalRevWalk, ins)) {
-        RevCommit start = setUpWalkForSelectingChanges(globalRevWalk);
+        RevCommit start =
+            singleCommit != null ? singleCommit : setUpWalkForSelectingChanges(globalRevWalk);
         if (start == null) {
           return ImmutableList.of();
         }
@@ -2687,14 +2824,21 @@ class ReceiveCommits {
         }
 
         for (; ; ) {
-          RevCommit c = globalRevWalk.next();
+          RevCommit c;
+          if (singleCommit != null) {
+            c = total == 0 ? singleCommit : null;
+          } else {
+            c = globalRevWalk.next();
+          }
           if (c == null) {
             break;
           }
           total++;
           globalRevWalk.parseBody(c);
           String name = c.name();
-          groupCollector.visit(c);
+          if (groupCollector != null) {
+            groupCollector.visit(c);
+          }
           ImmutableList<PatchSet.Id> existingPatchSets =
               receivePackRefCache.patchSetIdsFromObjectId(c);
 
@@ -2713,7 +2857,12 @@ class ReceiveCommits {
 
           List<String> idList = changeUtil.getChangeIdsFromFooter(c);
           if (!idList.isEmpty()) {
-            pending.put(c, lookupByChangeKey(c, Change.key(idList.get(idList.size() - 1).trim())));
+            Change.Key changeKey = Change.key(idList.get(idList.size() - 1).trim());
+            pending.put(
+                c,
+                singleCommit != null
+                    ? lookupByChangeKeyCached(c, changeKey)
+                    : lookupByChangeKey(c, changeKey));
           } else {
             pending.put(c, lookupByCommit(c));
           }
@@ -2913,7 +3062,14 @@ class ReceiveCommits {
         return ImmutableList.copyOf(newChanges);
       }
 
-      SortedSetMultimap<ObjectId, String> groups = groupCollector.getGroups();
+      SortedSetMultimap<ObjectId, String> groups;
+      if (groupCollector != null) {
+        groups = groupCollector.getGroups();
+      } else {
+        // The single commit has no new parents, hence it starts a new group.
+        groups = MultimapBuilder.hashKeys().treeSetValues().build();
+        groups.put(singleCommit, singleCommit.name());
+      }
       ImmutableList<Integer> newIds = seq.nextChangeIds(newChanges.size());
       for (int i = 0; i < newChanges.size(); i++) {
         CreateRequest create = newChanges.get(i);
@@ -2945,6 +3101,76 @@ class ReceiveCommits {
     }
   }
 
+  /**
+   * Returns the pushed commit if the push to the magic branch can take the fast path.
+   *
+   * <p>This is the case if the push contains a single commit whose only parent is the current tip
+   * of the target branch and that is not reachable from any branch yet. Such a push needs neither
+   * a walk that marks all branches as uninteresting, nor a {@link GroupCollector}, and its
+   * Change-Id can be looked up in the {@link ChangeKeyCache}.
+   *
+   * @return the pushed commit, or {@code null} if the push must take the generic path.
+   */
+  @Nullable
+  private RevCommit singleCommitForFastPath(RevWalk globalRevWalk) throws IOException {
+    if (!receiveConfig.enableMagicPushFastPath
+        || magicBranch.base != null
+        || magicBranch.baseCommit != null
+        || magicBranch.merged
+        || newChangeForAllNotInTarget) {
+      return null;
+    }
+    Ref targetRef = receivePackRefCache.exactRef(magicBranch.dest.branch());
+    if (targetRef == null || targetRef.getObjectId() == null) {
+      return null;
+    }
+    RevCommit c = globalRevWalk.parseCommit(magicBranch.cmd.getNewId());
+    if (c.getParentCount() != 1
+        || !c.getParent(0).equals(targetRef.getObjectId())
+        || mayBeReachableFromBranches(globalRevWalk, c)) {
+      return null;
+    }
+    return c;
+  }
+
+  /**
+   * Returns whether the commit may be reachable from any branch.
+   *
+   * <p>A commit that is already on a branch must be rejected as "no new changes" by the generic
+   * path. Reachability is only checked with bitmaps; without a bitmap index the commit is assumed
+   * to be reachable, so that the push takes the generic path.
+   */
+  private boolean mayBeReachableFromBranches(RevWalk globalRevWalk, RevCommit c)
+      throws IOException {
+    try (TraceTimer traceTimer = newTimer("mayBeReachableFromBranches")) {
+      if (globalRevWalk.getObjectReader().getBitmapIndex() == null) {
+        logger.atFine().log("No bitmap index, not using fast path");
+        return true;
+      }
+      List<RevCommit> heads = new ArrayList<>();
+      for (Ref ref : receivePackRefCache.byPrefix(R_HEADS)) {
+        if (ref.getObjectId() == null) {
+          continue;
+        }
+        if (ref.getObjectId().equals(c)) {
+          return true;
+        }
+        try {
+          heads.add(globalRevWalk.parseCommit(ref.getObjectId()));
+        } catch (IOException e) {
+          logger.atWarning().withCause(e).log(
+              "Invalid ref %s in %s", ref.getName(), project.getName());
+        }
+      }
+      ReachabilityChecker checker =
+          globalRevWalk.getObjectReader().createReachabilityChecker(globalRevWalk);
+      Optional<RevCommit> unreachableCommit =
+          checker.areAllReachable(ImmutableList.of(c), heads.stream());
+      globalRevWalk.reset();
+      return unreachableCommit.isEmpty();
+    }
+  }
+
   private RevCommit setUpWalkForSelectingChanges(RevWalk globalRevWalk) throws IOException {
     try (TraceTimer traceTimer = newTimer("setUpWalkForSelectingChanges")) {
       RevCommit start = globalRevWalk.parseCommit(magicBranch.cmd.getNewId());
@@ -3075,6 +3301,7 @@ class ReceiveCommits {
 
   private ChangeLookup lookupByChangeKey(RevCommit c, Change.Key key) {
     try (TraceTimer traceTimer = newTimer("lookupByChangeKey")) {
+      long cacheGeneration = changeKeyCache.generation();
       List<ChangeData> byBranchKey =
           retryHelper
               .changeIndexQuery(
@@ -3084,10 +3311,23 @@ class ReceiveCommits {
                           .filter(cd -> cd.change().getKey().equals(key))
                           .collect(toList()))
               .call();
+      if (byBranchKey.size() == 1) {
+        changeKeyCache.put(magicBranch.dest, key, byBranchKey.get(0).getId(), cacheGeneration);
+      }
       return new ChangeLookup(c, key, byBranchKey);
     }
   }
 
+  private ChangeLookup lookupByChangeKeyCached(RevCommit c, Change.Key key) {
+    try (TraceTimer traceTimer = newTimer("lookupByChangeKeyCached")) {
+      Optional<ChangeData> cached = changeKeyCache.get(magicBranch.dest, key);
+      if (cached.isPresent()) {
+        return new ChangeLookup(c, key, ImmutableList.of(cached.get()));
+      }
+      return lookupByChangeKey(c, key);
+    }
+  }
+
   private ChangeLookup lookupByCommit(RevCommit c) {
     try (TraceTimer traceTimer = newTimer("lookupByCommit")) {
       List<ChangeData> byBranchCommit =
@@ -3872,41 +4112,57 @@ class ReceiveCommits {
         markHeadsAsUninteresting(globalRevWalk, cmd.getRefName());
         int limit = receiveConfig.maxBatchCommits;
         int n = 0;
-        for (RevCommit c; (c = globalRevWalk.next()) != null; ) {
-          // Even if skipValidation is set, we still get here when at least one plugin
-          // commit validator requires to validate all commits. In this case, however,
-          // we don't need to check the commit limit.
-          if (++n > limit && !skipValidation) {
-            logger.atFine().log("Number of new commits exceeds limit of %d", limit);
-            reject(
-                cmd,
-                RejectionReason.create(
-                    MetricBucket.TOO_MANY_COMMITS,
-                    String.format(
-                        "more than %d commits, and %s not set",
-                        limit, PUSH_OPTION_SKIP_VALIDATION)));
-            return;
-          }
-          if (!receivePackRefCache.patchSetIdsFromObjectId(c).isEmpty()) {
-            continue;
-          }
-
-          BranchCommitValidator.Result validationResult =
-              validator.validateCommit(
-                  repo,
-                  globalRevWalk.getObjectReader(),
-                  diffOperationsForCommitValidationFactory.create(repoView, ins),
+        try (ParallelCommitValidator<CommitValidationOutcome> parallelValidator =
+            receiveConfig.commitValidationThreadPoolSize > 0
+                ? newParallelCommitValidator(
+                    validator, branch, cmd, globalRevWalk, repoView, ins, skipValidation)
+                : null) {
+          for (RevCommit c; (c = globalRevWalk.next()) != null; ) {
+            // Even if skipValidation is set, we still get here when at least one plugin
+            // commit validator requires to validate all commits. In this case, however,
+            // we don't need to check the commit limit.
+            if (++n > limit && !skipValidation) {
+              logger.atFine().log("Number of new commits exceeds limit of %d", limit);
+              reject(
                   cmd,
-                  c,
-                  ImmutableListMultimap.copyOf(pushOptions),
-                  /* isMerged= */ false,
-                  rejectCommits,
-                  /* invokeCommitValidationInfoListeners= */ true,
-                  /* change= */ null,
-                  skipValidation);
-          messages.addAll(validationResult.messages());
-          if (!validationResult.isValid()) {
-            break;
+                  RejectionReason.create(
+                      MetricBucket.TOO_MANY_COMMITS,
+                      String.format(
+                          "more than %d commits, and %s not set",
+                          limit, PUSH_OPTION_SKIP_VALIDATION)));
+              return;
+            }
+            if (!receivePackRefCache.patchSetIdsFromObjectId(c).isEmpty()) {
+              continue;
+            }
+
+            if (parallelValidator != null) {
+              if (!parallelValidator.add(c)) {
+                break;
+              }
+              continue;
+            }
+
+            BranchCommitValidator.Result validationResult =
+                validator.validateCommit(
+                    repo,
+                    globalRevWalk.getObjectReader(),
+                    diffOperationsForCommitValidationFactory.create(repoView, ins),
+                    cmd,
+                    c,
+                    ImmutableListMultimap.copyOf(pushOptions),
+                    /* isMerged= */ false,
+                    rejectCommits,
+                    /* invokeCommitValidationInfoListeners= */ true,
+                    /* change= */ null,
+                    skipValidation);
+            messages.addAll(validationResult.messages());
+            if (!validationResult.isValid()) {
+              break;
+            }
+          }
+          if (parallelValidator != null) {
+            parallelValidator.finish();
           }
         }
         logger.atFine().log("Validated %d new commits", n);
@@ -3918,6 +4174,117 @@ class ReceiveCommits {
     }
   }
 
+  /** Result of validating a single commit with the built-in validators. */
+  private static class CommitValidationOutcome {
+    final ObjectId commit;
+    final BranchCommitValidator.Result result;
+
+    /** Copy of the validated command, carries the rejection if the commit is invalid. */
+    final ReceiveCommand command;
+
+    CommitValidationOutcome(
+        ObjectId commit, BranchCommitValidator.Result result, ReceiveCommand command) {
+      this.commit = commit;
+      this.result = result;
+      this.command = command;
+    }
+  }
+
+  /**
+   * Creates a {@link ParallelCommitValidator} that validates the commits of a regular push on the
+   * commit validation executor.
+   *
+   * <p>Only the built-in validators that run before the plugin validators run concurrently, each
+   * chunk with its own {@link BranchCommitValidator} and hence its own {@link
+   * PermissionBackend.ForProject}. Plugin validators, the validators that run after them and {@link
+   * com.google.gerrit.server.git.validators.CommitValidationInfoListener}s are invoked in the
+   * receive thread when the results are consumed in walk order, since plugin validators are not
+   * known to be thread-safe. Validators run in the same order, messages are added and the command
+   * is rejected in walk order, like with serial validation.
+   */
+  private ParallelCommitValidator<CommitValidationOutcome> newParallelCommitValidator(
+      BranchCommitValidator validator,
+      BranchNameKey branch,
+      ReceiveCommand cmd,
+      RevWalk globalRevWalk,
+      RepoView repoView,
+      ObjectInserter ins,
+      boolean skipValidation) {
+    ImmutableListMultimap<String, String> pushOptionsCopy =
+        ImmutableListMultimap.copyOf(pushOptions);
+    return new ParallelCommitValidator<>(
+        task -> commitValidationExecutor.submit(requestScopePropagator.wrap(task)),
+        receiveConfig.commitValidationChunkSize,
+        2 * receiveConfig.commitValidationThreadPoolSize,
+        (commits, cancelled) ->
+            validateCommitChunk(branch, cmd, pushOptionsCopy, commits, cancelled),
+        outcome -> {
+          if (!outcome.result.isValid()) {
+            messages.addAll(outcome.result.messages());
+            cmd.setResult(outcome.command.getResult(), outcome.command.getMessage());
+            return false;
+          }
+          BranchCommitValidator.Result result =
+              validator.validateCommitWithRemainingValidators(
+                  repo,
+                  globalRevWalk.getObjectReader(),
+                  diffOperationsForCommitValidationFactory.create(repoView, ins),
+                  cmd,
+                  globalRevWalk.parseCommit(outcome.commit),
+                  pushOptionsCopy,
+                  skipValidation,
+                  outcome.result.validationInfos());
+          messages.addAll(result.messages());
+          return result.isValid();
+        });
+  }
+
+  /**
+   * Validates a chunk of commits of a regular push with the built-in validators, stops at the
+   * first invalid commit.
+   *
+   * <p>Called concurrently for different chunks, hence the chunk uses its own validator, object
+   * reader, inserter and map of rejected commits rather than the ones of the push. Objects that
+   * are inserted during the validation (e.g. auto-merge commits to compute diffs) are not flushed.
+   */
+  private List<CommitValidationOutcome> validateCommitChunk(
+      BranchNameKey branch,
+      ReceiveCommand cmd,
+      ImmutableListMultimap<String, String> pushOptions,
+      ImmutableList<ObjectId> commits,
+      BooleanSupplier cancelled)
+      throws IOException {
+    BranchCommitValidator validator = commitValidatorFactory.create(projectState, branch, user);
+    List<CommitValidationOutcome> outcomes = new ArrayList<>(commits.size());
+    try (ObjectInserter chunkIns = repo.newObjectInserter();
+        ObjectReader reader = chunkIns.newReader();
+        RevWalk rw = new RevWalk(reader);
+        RepoView repoView = new RepoView(repo, rw, chunkIns)) {
+      NoteMap chunkRejectCommits = BanCommit.loadRejectCommitsMap(repo, rw);
+      for (ObjectId commit : commits) {
+        if (cancelled.getAsBoolean()) {
+          break;
+        }
+        ReceiveCommand cmdCopy =
+            new ReceiveCommand(cmd.getOldId(), cmd.getNewId(), cmd.getRefName(), cmd.getType());
+        BranchCommitValidator.Result result =
+            validator.validateCommitWithBuiltInValidators(
+                repo,
+                reader,
+                diffOperationsForCommitValidationFactory.create(repoView, chunkIns),
+                cmdCopy,
+                rw.parseCommit(commit),
+                pushOptions,
+                chunkRejectCommits);
+        outcomes.add(new CommitValidationOutcome(commit, result, cmdCopy));
+        if (!result.isValid()) {
+          break;
+        }
+      }
+    }
+    return outcomes;
+  }
+
   private void autoCloseChanges(
       RevWalk globalRevWalk, ObjectInserter ins, ReceiveCommand cmd, Task progress) {
     try (TraceTimer traceTimer = newTimer("autoCloseChanges")) {
@@ -3953,19 +4320,49 @@ class ReceiveCommits {
                         RevCommit newTip = rw.parseCommit(cmd.getNewId());
                         BranchNameKey branch = BranchNameKey.create(project.getNameKey(), refName);
 
-                        rw.reset();
-                        rw.sort(RevSort.REVERSE);
-                        rw.markStart(newTip);
-                        rw.markUninteresting(rw.parseCommit(cmd.getOldId()));
-
                         Map<Change.Key, ChangeData> changeDataByKey = null;
                         List<ReplaceRequest> replaceAndClose = new ArrayList<>();
+                        Map<PatchSet.Id, ChangeNotes> mergedPatchSets = new LinkedHashMap<>();
+
+                        Optional<ImmutableList<PatchSet.Id>> mergedWithBitmaps = Optional.empty();
+                        BitmapIndex bitmapIndex =
+                            receiveConfig.autoCloseWithBitmaps ? reader.getBitmapIndex() : null;
+                        if (bitmapIndex != null) {
+                          List<ChangeData> openChanges =
+                              retryHelper
+                                  .changeIndexQuery(
+                                      "queryOpenChangesByBranch", q -> q.byBranchOpen(branch))
+                                  .call();
+                          mergedWithBitmaps =
+                              Optional.of(
+                                  findMergedPatchSetsWithBitmaps(
+                                      reader, bitmapIndex, branch, openChanges, cmd));
+                        } else if (receiveConfig.autoCloseWithBitmaps) {
+                          logger.atFine().log(
+                              "No bitmap index, walking the new commits to auto-close changes");
+                        }
+
+                        if (mergedWithBitmaps.isPresent()) {
+                          for (PatchSet.Id psId : mergedWithBitmaps.get()) {
+                            Optional<ChangeNotes> notes = getChangeNotes(psId.changeId());
+                            if (notes.isPresent()
+                                && notes.get().getChange().getDest().equals(branch)) {
+                              mergedPatchSets.put(psId, notes.get());
+                            }
+                          }
+                        } else {
+                          rw.reset();
+                          rw.sort(RevSort.REVERSE);
+                          rw.markStart(newTip);
+                          rw.markUninteresting(rw.parseCommit(cmd.getOldId()));
+                        }
 
                         int existingPatchSets = 0;
                         int newPatchSets = 0;
                         SubmissionId submissionId = null;
                         COMMIT:
-                        for (RevCommit c; (c = rw.next()) != null; ) {
+                        for (RevCommit c;
+                            mergedWithBitmaps.isEmpty() && (c = rw.next()) != null; ) {
                           rw.parseBody(c);
 
                           // Check if change refs point to this commit. Usually there are 0-1 change
@@ -3975,21 +4372,7 @@ class ReceiveCommits {
                             Optional<ChangeNotes> notes = getChangeNotes(psId.changeId());
                             if (notes.isPresent()
                                 && notes.get().getChange().getDest().equals(branch)) {
-                              if (submissionId == null) {
-                                submissionId = new SubmissionId(notes.get().getChange());
-                              }
-                              existingPatchSets++;
-                              bu.addOp(
-                                  notes.get().getChangeId(),
-                                  setPrivateOpFactory.create(false, null));
-                              bu.addOp(
-                                  psId.changeId(),
-                                  mergedByPushOpFactory.create(
-                                      requestScopePropagator,
-                                      psId,
-                                      submissionId,
-                                      refName,
-                                      newTip.getId().getName()));
+                              mergedPatchSets.put(psId, notes.get());
                               continue COMMIT;
                             }
                           }
@@ -4020,6 +4403,24 @@ class ReceiveCommits {
                           }
                         }
 
+                        for (Map.Entry<PatchSet.Id, ChangeNotes> e : mergedPatchSets.entrySet()) {
+                          PatchSet.Id psId = e.getKey();
+                          ChangeNotes notes = e.getValue();
+                          if (submissionId == null) {
+                            submissionId = new SubmissionId(notes.getChange());
+                          }
+                          existingPatchSets++;
+                          bu.addOp(notes.getChangeId(), setPrivateOpFactory.create(false, null));
+                          bu.addOp(
+                              psId.changeId(),
+                              mergedByPushOpFactory.create(
+                                  requestScopePropagator,
+                                  psId,
+                                  submissionId,
+                                  refName,
+                                  newTip.getId().getName()));
+                        }
+
                         for (ReplaceRequest req : replaceAndClose) {
                           Change.Id id = req.notes.getChangeId();
                           if (!req.validateNewPatchSetForAutoClose(globalRevWalk)) {
@@ -4089,6 +4490,73 @@ class ReceiveCommits {
     }
   }
 
+  /**
+   * Finds the patch sets of open changes that are merged into {@code branch} by {@code cmd}, using
+   * the bitmap index of the repository.
+   *
+   * <p>Rather than walking every new commit of the branch and looking it up, the patch set commits
+   * of the open changes of the branch are intersected with the objects that are reachable from the
+   * new tip, but not from the old tip. With bitmaps this is cheap even if the push brings in many
+   * commits, e.g. when merging a long-lived branch. Changes are only found if one of their patch
+   * set commits is merged, new commits that reference a change by its Change-Id footer are not
+   * considered.
+   *
+   * @return the merged patch sets, ordered by change and patch set number so that the submission
+   *     ID doesn't depend on the order in which the patch sets are found.
+   */
+  private ImmutableList<PatchSet.Id> findMergedPatchSetsWithBitmaps(
+      ObjectReader reader,
+      BitmapIndex bitmapIndex,
+      BranchNameKey branch,
+      List<ChangeData> openChanges,
+      ReceiveCommand cmd)
+      throws IOException {
+    try (TraceTimer traceTimer =
+            newTimer(
+                "findMergedPatchSetsWithBitmaps",
+                Metadata.builder().branchName(branch.branch()));
+        Timer0.Context ctx = metrics.autoCloseWithBitmapsLatency.start()) {
+      metrics.autoCloseWithBitmapsCount.increment();
+      ListMultimap<ObjectId, PatchSet.Id> openPatchSets =
+          MultimapBuilder.hashKeys().arrayListValues().build();
+      for (ChangeData cd : openChanges) {
+        for (Ref ref : receivePackRefCache.byPrefix(RefNames.changeRefPrefix(cd.getId()))) {
+          PatchSet.Id psId = PatchSet.Id.fromRef(ref.getName());
+          if (psId != null && ref.getObjectId() != null) {
+            openPatchSets.put(ref.getObjectId(), psId);
+          }
+        }
+      }
+      if (openPatchSets.isEmpty()) {
+        return ImmutableList.of();
+      }
+
+      BitmapBuilder merged =
+          reachable(reader, bitmapIndex, cmd.getNewId())
+              .andNot(reachable(reader, bitmapIndex, cmd.getOldId()));
+      ImmutableList<PatchSet.Id> result =
+          openPatchSets.entries().stream()
+              .filter(e -> merged.contains(e.getKey()))
+              .map(Map.Entry::getValue)
+              .sorted(
+                  Comparator.comparingInt((PatchSet.Id psId) -> psId.changeId().get())
+                      .thenComparingInt(PatchSet.Id::get))
+              .collect(toImmutableList());
+      logger.atFine().log(
+          "Found %d merged patch sets of %d open changes with bitmaps",
+          result.size(), openChanges.size());
+      return result;
+    }
+  }
+
+  private static BitmapBuilder reachable(
+      ObjectReader reader, BitmapIndex bitmapIndex, ObjectId tip) throws IOException {
+    try (ObjectWalk ow = new ObjectWalk(reader)) {
+      return new BitmapWalker(ow, bitmapIndex, NullProgressMonitor.INSTANCE)
+          .findObjects(ImmutableList.of(tip), null, true);
+    }
+  }
+
   private Map<Change.Key, ChangeData> openChangesByKeyByBranch(
       InternalChangeQuery internalChangeQuery, BranchNameKey branch) {
     try (TraceTimer traceTimer =
@@ -42,8 +42,14 @@ public abstract class ReceiveCommitsResult {
   /** Indicate that the ReceiveCommits call involved a magic branch, such as {@code refs/for/}. */
   public abstract boolean magicPush();
 
+  /**
+   * Indicate that the push to the magic branch contained a single commit on top of the target
+   * branch and was processed on the fast path.
+   */
+  public abstract boolean magicPushFastPath();
+
   public static Builder builder() {
-    return new AutoValue_ReceiveCommitsResult.Builder().magicPush(false);
+    return new AutoValue_ReceiveCommitsResult.Builder().magicPush(false).magicPushFastPath(false);
   }
 
   public static ReceiveCommitsResult empty() {
@@ -69,6 +75,9 @@ public abstract class ReceiveCommitsResult {
     @CanIgnoreReturnValue
     public abstract Builder magicPush(boolean isMagicPush);
 
+    @CanIgnoreReturnValue
+    public abstract Builder magicPushFastPath(boolean isMagicPushFastPath);
+
     public ReceiveCommitsResult build() {
       ImmutableMap.Builder<ChangeStatus, ImmutableSet<Change.Id>> changesBuilder =
           ImmutableMap.builder();
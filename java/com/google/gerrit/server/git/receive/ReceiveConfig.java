@@ -30,6 +30,12 @@ public class ReceiveConfig {
   final int maxBatchCommits;
   final boolean disablePrivateChanges;
   final int advertiseOpenChangesRefs;
+  final int commitValidationThreadPoolSize;
+  final int commitValidationChunkSize;
+  final int createRefCheckChunkSize;
+  final boolean autoCloseWithBitmaps;
+  final boolean enableMagicPushFastPath;
+  final boolean enableEarlyRejection;
   private final int systemMaxBatchChanges;
   private final AccountLimits.Factory limitsFactory;
 
@@ -42,6 +48,14 @@ public class ReceiveConfig {
     systemMaxBatchChanges = config.getInt("receive", "maxBatchChanges", 0);
     disablePrivateChanges = config.getBoolean("change", null, "disablePrivateChanges", false);
     advertiseOpenChangesRefs = config.getInt("receive", "advertiseOpenChangesRefs", 32);
+    commitValidationThreadPoolSize =
+        config.getInt("receive", null, "commitValidationThreadPoolSize", 0);
+    commitValidationChunkSize =
+        Math.max(1, config.getInt("receive", null, "commitValidationChunkSize", 100));
+    createRefCheckChunkSize = config.getInt("receive", null, "createRefCheckChunkSize", 0);
+    autoCloseWithBitmaps = config.getBoolean("receive", null, "autoCloseWithBitmaps", false);
+    enableMagicPushFastPath = config.getBoolean("receive", null, "enableMagicPushFastPath", false);
+    enableEarlyRejection = config.getBoolean("receive", null, "enableEarlyRejection", false);
     this.limitsFactory = limitsFactory;
   }
 
@@ -43,6 +43,7 @@ import com.google.gerrit.metrics.Counter2;
 import com.google.gerrit.metrics.Description;
 import com.google.gerrit.metrics.Field;
 import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer1;
 import com.google.gerrit.server.ChangeUtil;
 import com.google.gerrit.server.GerritPersonIdent;
 import com.google.gerrit.server.IdentifiedUser;
@@ -115,6 +116,7 @@ public class CommitValidators {
     private final MetricMaker metricMaker;
     private final ApprovalQueryBuilder approvalQueryBuilder;
     private final PluginSetContext<CommitValidationInfoListener> commitValidationInfoListeners;
+    private final Timer1<String> validatorLatency;
 
     @Inject
     Factory(
@@ -142,6 +144,15 @@ public class CommitValidators {
       this.metricMaker = metricMaker;
       this.approvalQueryBuilder = approvalQueryBuilder;
       this.commitValidationInfoListeners = commitValidationInfoListeners;
+      this.validatorLatency =
+          metricMaker.newTimer(
+              "validation/commit_validator_latency",
+              new Description("Latency of running a commit validator for a single commit")
+                  .setCumulative()
+                  .setUnit(Description.Units.MILLISECONDS),
+              Field.ofString("validator", Metadata.Builder::className)
+                  .description("The name of the commit validator.")
+                  .build());
     }
 
     public CommitValidators forReceiveCommits(
@@ -152,22 +163,73 @@ public class CommitValidators {
         RevWalk rw,
         @Nullable Change change,
         boolean skipValidation) {
+      ImmutableList<CommitValidationListener> validators =
+          ImmutableList.<CommitValidationListener>builder()
+              .addAll(
+                  builtInReceiveCommitsValidators(
+                      forProject, branch, user, rejectCommits, rw, change))
+              .addAll(remainingReceiveCommitsValidators(skipValidation))
+              .build();
+      return new CommitValidators(commitValidationInfoListeners, validatorLatency, validators);
+    }
+
+    /**
+     * Returns the validators of {@link #forReceiveCommits} that are part of Gerrit core and run
+     * before the plugin validators. Other than plugin validators they are thread-safe, so that
+     * different commits can be validated concurrently, provided that each thread uses its own
+     * {@code forProject}.
+     */
+    public CommitValidators builtInForReceiveCommits(
+        PermissionBackend.ForProject forProject,
+        BranchNameKey branch,
+        IdentifiedUser user,
+        NoteMap rejectCommits,
+        RevWalk rw,
+        @Nullable Change change) {
+      return new CommitValidators(
+          commitValidationInfoListeners,
+          validatorLatency,
+          builtInReceiveCommitsValidators(forProject, branch, user, rejectCommits, rw, change));
+    }
+
+    /**
+     * Returns the validators of {@link #forReceiveCommits} that run after {@link
+     * #builtInForReceiveCommits}: the plugin validators, followed by the validators of Gerrit core
+     * that run after them.
+     */
+    public CommitValidators remainingForReceiveCommits(boolean skipValidation) {
+      return new CommitValidators(
+          commitValidationInfoListeners,
+          validatorLatency,
+          remainingReceiveCommitsValidators(skipValidation));
+    }
+
+    private ImmutableList<CommitValidationListener> builtInReceiveCommitsValidators(
+        PermissionBackend.ForProject forProject,
+        BranchNameKey branch,
+        IdentifiedUser user,
+        NoteMap rejectCommits,
+        RevWalk rw,
+        @Nullable Change change) {
       PermissionBackend.ForRef perm = forProject.ref(branch.branch());
       ProjectState projectState =
           projectCache.get(branch.project()).orElseThrow(illegalState(branch.project()));
-      ImmutableList.Builder<CommitValidationListener> validators = ImmutableList.builder();
-      validators
-          .add(new UploadMergesPermissionValidator(perm))
-          .add(new ProjectStateValidationListener(projectState))
-          .add(new AmendedGerritMergeCommitValidationListener(perm, gerritIdent))
-          .add(new AuthorUploaderValidator(user, perm, urlFormatter.get()))
-          .add(new FileCountValidator(config, urlFormatter.get(), metricMaker))
-          .add(new CommitterUploaderValidator(user, perm, urlFormatter.get()))
-          .add(new SignedOffByValidator(user, perm, projectState))
-          .add(new ChangeIdValidator(changeUtil, projectState, urlFormatter.get(), config, change))
-          .add(new ConfigValidator(projectConfigFactory, branch, user, rw, allUsers, allProjects))
-          .add(new BannedCommitsValidator(rejectCommits));
+      return ImmutableList.of(
+          new UploadMergesPermissionValidator(perm),
+          new ProjectStateValidationListener(projectState),
+          new AmendedGerritMergeCommitValidationListener(perm, gerritIdent),
+          new AuthorUploaderValidator(user, perm, urlFormatter.get()),
+          new FileCountValidator(config, urlFormatter.get(), metricMaker),
+          new CommitterUploaderValidator(user, perm, urlFormatter.get()),
+          new SignedOffByValidator(user, perm, projectState),
+          new ChangeIdValidator(changeUtil, projectState, urlFormatter.get(), config, change),
+          new ConfigValidator(projectConfigFactory, branch, user, rw, allUsers, allProjects),
+          new BannedCommitsValidator(rejectCommits));
+    }
 
+    private ImmutableList<CommitValidationListener> remainingReceiveCommitsValidators(
+        boolean skipValidation) {
+      ImmutableList.Builder<CommitValidationListener> validators = ImmutableList.builder();
       Iterator<PluginSetEntryContext<CommitValidationListener>> pluginValidatorsIt =
           pluginValidators.iterator();
       while (pluginValidatorsIt.hasNext()) {
@@ -177,8 +239,7 @@ public class CommitValidators {
       validators
           .add(new GroupCommitValidator(allUsers))
           .add(new LabelConfigValidator(approvalQueryBuilder));
-
-      return new CommitValidators(commitValidationInfoListeners, validators.build());
+      return validators.build();
     }
 
     public CommitValidators forGerritCommits(
@@ -211,7 +272,8 @@ public class CommitValidators {
           .add(new GroupCommitValidator(allUsers))
           .add(new LabelConfigValidator(approvalQueryBuilder));
 
-      return new CommitValidators(commitValidationInfoListeners, validators.build());
+      return new CommitValidators(
+          commitValidationInfoListeners, validatorLatency, validators.build());
     }
 
     public CommitValidators forMergedCommits(
@@ -238,7 +300,8 @@ public class CommitValidators {
           .add(new ProjectStateValidationListener(projectState))
           .add(new AuthorUploaderValidator(user, perm, urlFormatter.get()))
           .add(new CommitterUploaderValidator(user, perm, urlFormatter.get()));
-      return new CommitValidators(commitValidationInfoListeners, validators.build());
+      return new CommitValidators(
+          commitValidationInfoListeners, validatorLatency, validators.build());
     }
 
     CommitValidationListener skippablePluginValidator(
@@ -262,15 +325,19 @@ public class CommitValidators {
   }
 
   private final PluginSetContext<CommitValidationInfoListener> commitValidationInfoListeners;
+  private final Timer1<String> validatorLatency;
   private final List<CommitValidationListener> validators;
 
   @Nullable private PatchSet.Id patchSetId;
   private boolean invokeCommitValidationInfoListeners = true;
+  private ImmutableMap<String, CommitValidationInfo> previousValidationInfos = ImmutableMap.of();
 
   CommitValidators(
       PluginSetContext<CommitValidationInfoListener> commitValidationInfoListeners,
+      Timer1<String> validatorLatency,
       List<CommitValidationListener> validators) {
     this.commitValidationInfoListeners = commitValidationInfoListeners;
+    this.validatorLatency = validatorLatency;
     this.validators = validators;
   }
 
@@ -309,11 +376,28 @@ public class CommitValidators {
     return this;
   }
 
+  /**
+   * Sets the results of validators that already ran for the commit in a previous step.
+   *
+   * <p>They are included in the result of {@link #validate(CommitReceivedEvent)} and passed to the
+   * {@link CommitValidationInfoListener}s as if the validators had run as part of this instance.
+   *
+   * @param previousValidationInfos the results of the validators that already ran
+   * @return the {@link CommitValidators} instance to allow chaining calls
+   */
+  @CanIgnoreReturnValue
+  public CommitValidators previousValidationInfos(
+      ImmutableMap<String, CommitValidationInfo> previousValidationInfos) {
+    this.previousValidationInfos = previousValidationInfos;
+    return this;
+  }
+
   @CanIgnoreReturnValue
   public ImmutableMap<String, CommitValidationInfo> validate(CommitReceivedEvent receiveEvent)
       throws CommitValidationException {
     ImmutableMap.Builder<String, CommitValidationInfo> validationInfosBuilder =
         ImmutableMap.builder();
+    validationInfosBuilder.putAll(previousValidationInfos);
     for (CommitValidationListener commitValidator : validators) {
       try {
         try (TraceTimer ignored =
@@ -324,7 +408,9 @@ public class CommitValidators {
                     .projectName(receiveEvent.getProjectNameKey().get())
                     .branchName(receiveEvent.getBranchNameKey().branch())
                     .commit(receiveEvent.commit.name())
-                    .build())) {
+                    .build());
+            Timer1.Context<String> ctx =
+                validatorLatency.start(commitValidator.getValidatorName())) {
           CommitValidationInfo commitValidationInfo = commitValidator.validateCommit(receiveEvent);
           logger.atFine().log(
               "commit %s has passed validator %s: %s",
@@ -14,57 +14,34 @@
 
 package com.google.gerrit.server.notedb;
 
-import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.base.Preconditions.checkState;
-import static com.google.gerrit.server.update.context.RefUpdateContext.RefUpdateType.CHANGE_MODIFICATION;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.MultimapBuilder;
-import com.google.common.flogger.FluentLogger;
 import com.google.gerrit.common.Nullable;
-import com.google.gerrit.git.RefUpdateUtil;
 import com.google.gerrit.server.CurrentUser;
-import com.google.gerrit.server.FanOutExecutor;
 import com.google.gerrit.server.account.AccountState;
-import com.google.gerrit.server.config.AllUsersName;
-import com.google.gerrit.server.extensions.events.GitReferenceUpdated;
-import com.google.gerrit.server.git.GitRepositoryManager;
-import com.google.gerrit.server.update.context.RefUpdateContext;
 import com.google.inject.Inject;
-import java.io.IOException;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
-import org.eclipse.jgit.lib.BatchRefUpdate;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.transport.PushCertificate;
 
 /**
  * Performs an update on {@code All-Users} asynchronously if required. No-op in case no updates were
  * scheduled for asynchronous execution.
+ *
+ * <p>The updates are executed by the {@link AllUsersUpdateQueue}.
  */
 public class AllUsersAsyncUpdate {
-  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
-
-  private final ExecutorService executor;
-  private final AllUsersName allUsersName;
-  private final GitRepositoryManager repoManager;
-  private final GitReferenceUpdated gitReferenceUpdated;
+  private final AllUsersUpdateQueue queue;
   private final ListMultimap<String, ChangeDraftNotesUpdate> draftUpdates;
 
   private PersonIdent serverIdent;
 
   @Inject
-  AllUsersAsyncUpdate(
-      @FanOutExecutor ExecutorService executor,
-      AllUsersName allUsersName,
-      GitRepositoryManager repoManager,
-      GitReferenceUpdated gitReferenceUpdated) {
-    this.executor = executor;
-    this.allUsersName = allUsersName;
-    this.repoManager = repoManager;
-    this.gitReferenceUpdated = gitReferenceUpdated;
+  AllUsersAsyncUpdate(AllUsersUpdateQueue queue) {
+    this.queue = queue;
     this.draftUpdates = MultimapBuilder.hashKeys().arrayListValues().build();
   }
 
@@ -98,36 +75,12 @@ public class AllUsersAsyncUpdate {
     if (isEmpty()) {
       return;
     }
-
-    @SuppressWarnings("unused")
-    Future<?> possiblyIgnoredError =
-        executor.submit(
-            () -> {
-              try (RefUpdateContext ctx = RefUpdateContext.open(CHANGE_MODIFICATION)) {
-                try (OpenRepo allUsersRepo = OpenRepo.open(repoManager, allUsersName)) {
-                  allUsersRepo.addUpdatesNoLimits(draftUpdates);
-                  allUsersRepo.flush();
-                  BatchRefUpdate bru = allUsersRepo.repo.getRefDatabase().newBatchUpdate();
-                  bru.setPushCertificate(pushCert);
-                  if (refLogMessage != null) {
-                    bru.setRefLogMessage(refLogMessage, false);
-                  } else {
-                    bru.setRefLogMessage(
-                        firstNonNull(NoteDbUtil.guessRestApiHandler(), "Update NoteDb refs async"),
-                        false);
-                  }
-                  bru.setRefLogIdent(refLogIdent != null ? refLogIdent : serverIdent);
-                  bru.setAtomic(true);
-                  allUsersRepo.cmds.addTo(bru);
-                  bru.setAllowNonFastForwards(true);
-                  RefUpdateUtil.executeChecked(bru, allUsersRepo.rw);
-                  gitReferenceUpdated.fire(allUsersName, bru, getAccountState(currentUser));
-                } catch (IOException e) {
-                  logger.atSevere().withCause(e).log(
-                      "Failed to delete draft comments asynchronously after publishing them");
-                }
-              }
-            });
+    queue.enqueue(
+        draftUpdates,
+        refLogIdent != null ? refLogIdent : serverIdent,
+        refLogMessage,
+        pushCert,
+        getAccountState(currentUser));
   }
 
   @Nullable
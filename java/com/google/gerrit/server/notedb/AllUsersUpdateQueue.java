@@ -0,0 +1,700 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.notedb;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.gerrit.server.update.context.RefUpdateContext.RefUpdateType.CHANGE_MODIFICATION;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MultimapBuilder;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Comment;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.git.RefUpdateUtil;
+import com.google.gerrit.json.OutputFormat;
+import com.google.gerrit.lifecycle.LifecycleModule;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Histogram0;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.FanOutExecutor;
+import com.google.gerrit.server.account.AccountState;
+import com.google.gerrit.server.config.AllUsersName;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.gerrit.server.config.SitePaths;
+import com.google.gerrit.server.extensions.events.GitReferenceUpdated;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.notedb.ChangeDraftNotesUpdate.DeleteReason;
+import com.google.gerrit.server.project.NoSuchChangeException;
+import com.google.gerrit.server.update.context.RefUpdateContext;
+import com.google.gson.Gson;
+import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.transport.PushCertificate;
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * Queue for the {@code All-Users} updates that {@link AllUsersAsyncUpdate} executes asynchronously.
+ *
+ * <p>The queue is sharded by account: updates of different accounts are executed in parallel on
+ * the {@link FanOutExecutor}, updates of the same account are executed one after the other. All
+ * updates that are queued for an account while a previous update of the account is executed are
+ * combined into a single ref transaction, and updates of the same draft comments ref into a single
+ * commit. This reduces the contention on {@code All-Users} when many users publish their drafts at
+ * the same time.
+ *
+ * <p>If {@code notedb.allUsersQueue.journal} is enabled, every queued update is written to a
+ * journal file in {@code $site_path/data/all-users-queue} before the request returns, and the
+ * file is only removed once the update was executed. Updates that were queued when the server
+ * stopped, or that still failed after all retries, are executed again when the server starts. This
+ * is safe because the queued updates only delete draft comments, which is idempotent.
+ *
+ * <p>Failed updates are retried after {@code notedb.allUsersQueue.retryDelay}, at most {@code
+ * notedb.allUsersQueue.maxAttempts} times. Later updates of the same account wait for the retry,
+ * so that the updates of an account are always executed in the order in which they were queued.
+ */
+@Singleton
+class AllUsersUpdateQueue implements LifecycleListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  static final String JOURNAL_DIRECTORY = "AllUsersUpdateQueueJournal";
+  static final String RETRY_EXECUTOR = "AllUsersUpdateQueueRetryExecutor";
+
+  private static final String SECTION = "notedb";
+  private static final String SUBSECTION = "allUsersQueue";
+  private static final int DEFAULT_MAX_BATCH_SIZE = 100;
+  private static final int DEFAULT_MAX_ATTEMPTS = 3;
+  private static final long DEFAULT_RETRY_DELAY_MS = 10_000;
+
+  private static final Gson GSON = OutputFormat.JSON_COMPACT.newGson();
+
+  /** Binds the queue for the daemon, which replays the journal when it starts. */
+  static class Module extends LifecycleModule {
+    @Override
+    protected void configure() {
+      listener().to(AllUsersUpdateQueue.class);
+    }
+
+    @Provides
+    @Singleton
+    @Named(JOURNAL_DIRECTORY)
+    Optional<Path> provideJournalDirectory(@GerritServerConfig Config cfg, SitePaths sitePaths) {
+      if (!cfg.getBoolean(SECTION, SUBSECTION, "journal", false)) {
+        return Optional.empty();
+      }
+      return Optional.of(sitePaths.data_dir.resolve("all-users-queue"));
+    }
+
+    @Provides
+    @Singleton
+    @Named(RETRY_EXECUTOR)
+    ScheduledExecutorService provideRetryExecutor(WorkQueue workQueue) {
+      return workQueue.getDefaultQueue();
+    }
+  }
+
+  /**
+   * Binds the queue for batch programs. They neither write nor replay the journal, which belongs to
+   * the daemon that may be running on the same site.
+   */
+  static class BatchModule extends AbstractModule {
+    @Provides
+    @Singleton
+    @Named(JOURNAL_DIRECTORY)
+    Optional<Path> provideJournalDirectory() {
+      return Optional.empty();
+    }
+
+    @Provides
+    @Singleton
+    @Named(RETRY_EXECUTOR)
+    ScheduledExecutorService provideRetryExecutor(WorkQueue workQueue) {
+      return workQueue.getDefaultQueue();
+    }
+  }
+
+  private final ExecutorService executor;
+  private final ScheduledExecutorService retryExecutor;
+  private final AllUsersName allUsersName;
+  private final GitRepositoryManager repoManager;
+  private final GitReferenceUpdated gitReferenceUpdated;
+  private final ChangeNotes.Factory changeNotesFactory;
+  private final ChangeDraftNotesUpdate.Factory draftUpdateFactory;
+  private final Optional<Path> journalDir;
+  private final int maxBatchSize;
+  private final int maxAttempts;
+  private final long retryDelayMs;
+  private final ConcurrentMap<Account.Id, Shard> shards = new ConcurrentHashMap<>();
+  private final AtomicInteger pendingCount = new AtomicInteger();
+  private final AtomicLong journalSequence = new AtomicLong();
+
+  private final Timer0 lag;
+  private final Histogram0 batchSize;
+  private final Counter0 failureCount;
+
+  @Inject
+  AllUsersUpdateQueue(
+      @FanOutExecutor ExecutorService executor,
+      @Named(RETRY_EXECUTOR) ScheduledExecutorService retryExecutor,
+      AllUsersName allUsersName,
+      GitRepositoryManager repoManager,
+      GitReferenceUpdated gitReferenceUpdated,
+      ChangeNotes.Factory changeNotesFactory,
+      ChangeDraftNotesUpdate.Factory draftUpdateFactory,
+      @GerritServerConfig Config cfg,
+      @Named(JOURNAL_DIRECTORY) Optional<Path> journalDir,
+      MetricMaker metricMaker) {
+    this.executor = executor;
+    this.retryExecutor = retryExecutor;
+    this.allUsersName = allUsersName;
+    this.repoManager = repoManager;
+    this.gitReferenceUpdated = gitReferenceUpdated;
+    this.changeNotesFactory = changeNotesFactory;
+    this.draftUpdateFactory = draftUpdateFactory;
+    this.journalDir = journalDir;
+    this.maxBatchSize =
+        Math.max(1, cfg.getInt(SECTION, SUBSECTION, "maxBatchSize", DEFAULT_MAX_BATCH_SIZE));
+    this.maxAttempts =
+        Math.max(1, cfg.getInt(SECTION, SUBSECTION, "maxAttempts", DEFAULT_MAX_ATTEMPTS));
+    this.retryDelayMs =
+        ConfigUtil.getTimeUnit(
+            cfg, SECTION, SUBSECTION, "retryDelay", DEFAULT_RETRY_DELAY_MS, MILLISECONDS);
+
+    this.lag =
+        metricMaker.newTimer(
+            "notedb/all_users_queue/lag",
+            new Description(
+                    "Time from queuing an asynchronous All-Users update until it was executed")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    this.batchSize =
+        metricMaker.newHistogram(
+            "notedb/all_users_queue/batch_size",
+            new Description(
+                    "Number of queued All-Users updates that were executed in a single ref"
+                        + " transaction")
+                .setCumulative()
+                .setUnit("updates"));
+    this.failureCount =
+        metricMaker.newCounter(
+            "notedb/all_users_queue/failure_count",
+            new Description("Total number of failed asynchronous All-Users updates")
+                .setRate()
+                .setUnit("updates"));
+    metricMaker.newCallbackMetric(
+        "notedb/all_users_queue/pending",
+        Long.class,
+        new Description("Number of asynchronous All-Users updates waiting to be executed")
+            .setGauge()
+            .setUnit("updates"),
+        () -> (long) pendingCount.get());
+  }
+
+  @Override
+  public void start() {
+    if (journalDir.isEmpty() || !Files.isDirectory(journalDir.get())) {
+      return;
+    }
+    List<Path> files;
+    try (Stream<Path> s = Files.list(journalDir.get())) {
+      files = s.filter(p -> p.toString().endsWith(".json")).sorted().collect(toImmutableList());
+    } catch (IOException e) {
+      logger.atSevere().withCause(e).log("Failed to list %s", journalDir.get());
+      return;
+    }
+    for (Path file : files) {
+      try {
+        Entry entry = readJournal(file);
+        if (entry != null) {
+          enqueue(entry);
+        } else {
+          Files.deleteIfExists(file);
+        }
+      } catch (IOException | RuntimeException e) {
+        logger.atSevere().withCause(e).log("Failed to replay queued All-Users update %s", file);
+      }
+    }
+    if (!files.isEmpty()) {
+      logger.atInfo().log("Replayed %d queued All-Users updates", files.size());
+    }
+  }
+
+  @Override
+  public void stop() {}
+
+  /**
+   * Queues the given draft updates for asynchronous execution.
+   *
+   * @param draftUpdates updates keyed by ref name, owned by the queue from now on.
+   * @param refLogIdent ident for the ref log.
+   * @param refLogMessage message for the ref log, a default message is used if {@code null}.
+   * @param pushCert push certificate to store with the ref update, if any.
+   * @param accountState the account state of the user who triggered the update, if any.
+   */
+  void enqueue(
+      ListMultimap<String, ChangeDraftNotesUpdate> draftUpdates,
+      PersonIdent refLogIdent,
+      @Nullable String refLogMessage,
+      @Nullable PushCertificate pushCert,
+      @Nullable AccountState accountState) {
+    Map<Account.Id, ListMultimap<String, ChangeDraftNotesUpdate>> byAccount =
+        new LinkedHashMap<>();
+    for (Map.Entry<String, ChangeDraftNotesUpdate> e : draftUpdates.entries()) {
+      byAccount
+          .computeIfAbsent(
+              e.getValue().accountId, id -> MultimapBuilder.hashKeys().arrayListValues().build())
+          .put(e.getKey(), e.getValue());
+    }
+    for (Map.Entry<Account.Id, ListMultimap<String, ChangeDraftNotesUpdate>> e :
+        byAccount.entrySet()) {
+      Entry entry =
+          new Entry(e.getKey(), e.getValue(), refLogIdent, refLogMessage, pushCert, accountState);
+      writeJournal(entry);
+      enqueue(entry);
+    }
+  }
+
+  private void enqueue(Entry entry) {
+    pendingCount.incrementAndGet();
+    Shard shard;
+    while (true) {
+      shard = shards.computeIfAbsent(entry.accountId, Shard::new);
+      synchronized (shard) {
+        if (shard.retired) {
+          // The shard was removed concurrently, get a new one.
+          continue;
+        }
+        shard.pending.add(entry);
+        if (shard.scheduled) {
+          return;
+        }
+        shard.scheduled = true;
+        break;
+      }
+    }
+    submit(shard);
+  }
+
+  private void submit(Shard shard) {
+    @SuppressWarnings("unused")
+    Future<?> possiblyIgnoredError = executor.submit(() -> drain(shard));
+  }
+
+  private void drain(Shard shard) {
+    boolean retryScheduled = false;
+    try {
+      List<Entry> batch;
+      while (!(batch = poll(shard)).isEmpty()) {
+        if (execute(batch)) {
+          pendingCount.addAndGet(-batch.size());
+        } else if (retryLater(shard, batch)) {
+          retryScheduled = true;
+          return;
+        }
+      }
+    } finally {
+      if (!retryScheduled) {
+        release(shard);
+      }
+    }
+  }
+
+  /**
+   * Removes the next batch from the shard. Entries with a push certificate are executed on their
+   * own, since a ref transaction can carry only one push certificate.
+   */
+  private List<Entry> poll(Shard shard) {
+    synchronized (shard) {
+      if (shard.pending.isEmpty()) {
+        return ImmutableList.of();
+      }
+      List<Entry> batch = new ArrayList<>();
+      batch.add(shard.pending.poll());
+      while (batch.get(0).pushCert == null
+          && batch.size() < maxBatchSize
+          && !shard.pending.isEmpty()
+          && shard.pending.peek().pushCert == null) {
+        batch.add(shard.pending.poll());
+      }
+      return batch;
+    }
+  }
+
+  /**
+   * Removes the shard once it has no pending entries. Otherwise, e.g. if draining was aborted by
+   * an unexpected error, the remaining entries are drained by a new task.
+   */
+  private void release(Shard shard) {
+    synchronized (shard) {
+      if (shard.pending.isEmpty()) {
+        shard.scheduled = false;
+        shard.retired = true;
+        shards.remove(shard.accountId, shard);
+        return;
+      }
+    }
+    submit(shard);
+  }
+
+  /**
+   * Puts the entries of a failed batch back to the head of the shard and schedules a retry.
+   *
+   * <p>Entries that were attempted {@code maxAttempts} times are dropped. Their journal files are
+   * kept, so that they are executed again on the next start.
+   *
+   * @return whether a retry was scheduled; if not, the caller continues to drain the shard.
+   */
+  private boolean retryLater(Shard shard, List<Entry> batch) {
+    List<Entry> retry = new ArrayList<>();
+    for (Entry entry : batch) {
+      if (++entry.attempts < maxAttempts) {
+        retry.add(entry);
+      } else {
+        pendingCount.decrementAndGet();
+        logger.atSevere().log(
+            "Giving up on asynchronous All-Users update of account %s after %d attempts",
+            entry.accountId, entry.attempts);
+      }
+    }
+    if (retry.isEmpty()) {
+      return false;
+    }
+    synchronized (shard) {
+      for (int i = retry.size() - 1; i >= 0; i--) {
+        shard.pending.addFirst(retry.get(i));
+      }
+    }
+    try {
+      @SuppressWarnings("unused")
+      Future<?> possiblyIgnoredError =
+          retryExecutor.schedule(() -> submit(shard), retryDelayMs, MILLISECONDS);
+      return true;
+    } catch (RejectedExecutionException e) {
+      logger.atWarning().withCause(e).log("Failed to schedule retry, retrying immediately");
+      return false;
+    }
+  }
+
+  /**
+   * Executes the batch in a single ref transaction.
+   *
+   * @return whether the batch was executed successfully.
+   */
+  private boolean execute(List<Entry> batch) {
+    Entry first = batch.get(0);
+    batchSize.record(batch.size());
+    try (RefUpdateContext ctx = RefUpdateContext.open(CHANGE_MODIFICATION)) {
+      // Combine all updates of the same ref into one commit. The queued updates are not modified,
+      // so that they can be retried.
+      Map<String, ChangeDraftNotesUpdate> byRef = new LinkedHashMap<>();
+      for (Entry entry : batch) {
+        for (Map.Entry<String, ChangeDraftNotesUpdate> e : entry.draftUpdates.entries()) {
+          ChangeDraftNotesUpdate existing = byRef.get(e.getKey());
+          if (existing == null) {
+            byRef.put(e.getKey(), e.getValue().copy());
+          } else {
+            existing.mergeDeletions(e.getValue());
+          }
+        }
+      }
+      ListMultimap<String, ChangeDraftNotesUpdate> draftUpdates =
+          MultimapBuilder.hashKeys().arrayListValues().build();
+      byRef.forEach(draftUpdates::put);
+
+      try (OpenRepo allUsersRepo = OpenRepo.open(repoManager, allUsersName)) {
+        allUsersRepo.addUpdatesNoLimits(draftUpdates);
+        allUsersRepo.flush();
+        BatchRefUpdate bru = allUsersRepo.repo.getRefDatabase().newBatchUpdate();
+        bru.setPushCertificate(first.pushCert);
+        if (first.refLogMessage != null) {
+          bru.setRefLogMessage(first.refLogMessage, false);
+        } else {
+          bru.setRefLogMessage(
+              firstNonNull(NoteDbUtil.guessRestApiHandler(), "Update NoteDb refs async"), false);
+        }
+        bru.setRefLogIdent(first.refLogIdent);
+        bru.setAtomic(true);
+        allUsersRepo.cmds.addTo(bru);
+        bru.setAllowNonFastForwards(true);
+        RefUpdateUtil.executeChecked(bru, allUsersRepo.rw);
+        gitReferenceUpdated.fire(allUsersName, bru, first.accountState);
+      }
+    } catch (IOException | RuntimeException e) {
+      failureCount.increment();
+      logger.atSevere().withCause(e).log(
+          "Failed to delete draft comments asynchronously after publishing them");
+      return false;
+    }
+
+    long now = System.nanoTime();
+    for (Entry entry : batch) {
+      lag.record(now - entry.queuedAtNanos, NANOSECONDS);
+      deleteJournal(entry);
+    }
+    return true;
+  }
+
+  @VisibleForTesting
+  int pendingCount() {
+    return pendingCount.get();
+  }
+
+  private void writeJournal(Entry entry) {
+    if (journalDir.isEmpty()) {
+      return;
+    }
+    JournalEntry data = new JournalEntry();
+    data.accountId = entry.accountId.get();
+    data.refLogIdent = entry.refLogIdent.toExternalString();
+    data.refLogMessage = entry.refLogMessage;
+    data.updates = new ArrayList<>();
+    for (ChangeDraftNotesUpdate update : entry.draftUpdates.values()) {
+      JournalUpdate u = new JournalUpdate();
+      u.project = update.getChange().getProject().get();
+      u.changeId = update.getChange().getId().get();
+      u.loggableName = update.loggableName;
+      u.realAccountId = update.realAccountId.get();
+      u.realLoggableName = update.realLoggableName;
+      u.authorIdent = update.authorIdent.toExternalString();
+      u.when = update.when.toEpochMilli();
+      u.deletions = new ArrayList<>();
+      update
+          .getDeletions()
+          .forEach(
+              (k, reason) -> {
+                JournalDeletion d = new JournalDeletion();
+                d.commitId = k.commitId().name();
+                d.uuid = k.key().uuid;
+                d.filename = k.key().filename;
+                d.patchSetId = k.key().patchSetId;
+                d.reason = reason.name();
+                u.deletions.add(d);
+              });
+      data.updates.add(u);
+    }
+
+    try {
+      Path dir = journalDir.get();
+      Files.createDirectories(dir);
+      String name =
+          String.format(
+              "%013d-%06d-%d.json",
+              Instant.now().toEpochMilli(),
+              journalSequence.incrementAndGet() % 1_000_000,
+              entry.accountId.get());
+      Path tmp = dir.resolve(name + ".tmp");
+      try (FileChannel channel =
+          FileChannel.open(
+              tmp,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.TRUNCATE_EXISTING,
+              StandardOpenOption.WRITE)) {
+        ByteBuffer buf = ByteBuffer.wrap(GSON.toJson(data).getBytes(UTF_8));
+        while (buf.hasRemaining()) {
+          channel.write(buf);
+        }
+        channel.force(true);
+      }
+      Path file = dir.resolve(name);
+      Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+      syncDirectory(dir);
+      entry.journalFile = file;
+    } catch (IOException e) {
+      // The update is still executed, it just doesn't survive a restart.
+      logger.atWarning().withCause(e).log("Failed to write queued All-Users update to journal");
+    }
+  }
+
+  /** Makes the rename of a journal file durable. Not supported on all platforms. */
+  private static void syncDirectory(Path dir) {
+    try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      logger.atFine().withCause(e).log("Failed to sync %s", dir);
+    }
+  }
+
+  @Nullable
+  private Entry readJournal(Path file) throws IOException {
+    JournalEntry data =
+        GSON.fromJson(new String(Files.readAllBytes(file), UTF_8), JournalEntry.class);
+    Account.Id accountId = Account.id(data.accountId);
+    ListMultimap<String, ChangeDraftNotesUpdate> draftUpdates =
+        MultimapBuilder.hashKeys().arrayListValues().build();
+    for (JournalUpdate u : data.updates) {
+      ChangeNotes notes;
+      try {
+        notes =
+            changeNotesFactory.createChecked(Project.nameKey(u.project), Change.id(u.changeId));
+      } catch (NoSuchChangeException e) {
+        // The draft comments are deleted together with the change.
+        continue;
+      }
+      ChangeDraftNotesUpdate update =
+          draftUpdateFactory.create(
+              notes.getChange(),
+              accountId,
+              u.loggableName,
+              Account.id(u.realAccountId),
+              u.realLoggableName,
+              RawParseUtils.parsePersonIdent(u.authorIdent),
+              Instant.ofEpochMilli(u.when));
+      for (JournalDeletion d : u.deletions) {
+        update.addDeletion(
+            ObjectId.fromString(d.commitId),
+            new Comment.Key(d.uuid, d.filename, d.patchSetId),
+            DeleteReason.valueOf(d.reason));
+      }
+      draftUpdates.put(update.getRefName(), update);
+    }
+    if (draftUpdates.isEmpty()) {
+      return null;
+    }
+    Entry entry =
+        new Entry(
+            accountId,
+            draftUpdates,
+            RawParseUtils.parsePersonIdent(data.refLogIdent),
+            data.refLogMessage,
+            /* pushCert= */ null,
+            /* accountState= */ null);
+    entry.journalFile = file;
+    return entry;
+  }
+
+  private static void deleteJournal(Entry entry) {
+    if (entry.journalFile == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(entry.journalFile);
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Failed to delete %s", entry.journalFile);
+    }
+  }
+
+  /** Queued updates of a single account. */
+  private static class Shard {
+    final Account.Id accountId;
+    final ArrayDeque<Entry> pending = new ArrayDeque<>();
+    boolean scheduled;
+    boolean retired;
+
+    Shard(Account.Id accountId) {
+      this.accountId = accountId;
+    }
+  }
+
+  private static class Entry {
+    final Account.Id accountId;
+    final ListMultimap<String, ChangeDraftNotesUpdate> draftUpdates;
+    final PersonIdent refLogIdent;
+    @Nullable final String refLogMessage;
+    @Nullable final PushCertificate pushCert;
+    @Nullable final AccountState accountState;
+    final long queuedAtNanos = System.nanoTime();
+    @Nullable Path journalFile;
+    int attempts;
+
+    Entry(
+        Account.Id accountId,
+        ListMultimap<String, ChangeDraftNotesUpdate> draftUpdates,
+        PersonIdent refLogIdent,
+        @Nullable String refLogMessage,
+        @Nullable PushCertificate pushCert,
+        @Nullable AccountState accountState) {
+      this.accountId = accountId;
+      this.draftUpdates = draftUpdates;
+      this.refLogIdent = refLogIdent;
+      this.refLogMessage = refLogMessage;
+      this.pushCert = pushCert;
+      this.accountState = accountState;
+    }
+  }
+
+  /**
+   * Journal format of a queued {@link Entry}. The push certificate is not stored, updates that are
+   * replayed from the journal are executed without it.
+   */
+  private static class JournalEntry {
+    int accountId;
+    String refLogIdent;
+    String refLogMessage;
+    List<JournalUpdate> updates;
+  }
+
+  private static class JournalUpdate {
+    String project;
+    int changeId;
+    String loggableName;
+    int realAccountId;
+    String realLoggableName;
+    String authorIdent;
+    long when;
+    List<JournalDeletion> deletions;
+  }
+
+  private static class JournalDeletion {
+    String commitId;
+    String uuid;
+    String filename;
+    int patchSetId;
+    String reason;
+  }
+}
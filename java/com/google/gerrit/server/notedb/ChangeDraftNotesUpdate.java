@@ -21,6 +21,7 @@ import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
 
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ListMultimap;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Account;
@@ -189,6 +190,7 @@ public class ChangeDraftNotesUpdate extends AbstractChangeUpdate implements Chan
       try (TraceContext.TraceTimer ignored =
           newTimer("ChangeDraftNotesUpdate#Executor#updateAllUsersSync", Metadata.empty())) {
         return noteDbUpdateExecutor.execute(
+            allUsersName,
             allUsersRepo,
             dryRun,
             shouldAllowFastForward,
@@ -367,6 +369,32 @@ public class ChangeDraftNotesUpdate extends AbstractChangeUpdate implements Chan
     return clonedUpdate;
   }
 
+  /** Returns the draft comments that are deleted by this update. */
+  ImmutableMap<Key, DeleteReason> getDeletions() {
+    return ImmutableMap.copyOf(delete);
+  }
+
+  /**
+   * Adds the deletions of another update of the same draft comments ref to this update, so that
+   * both are applied by a single commit. Only allowed for updates that contain no new comments.
+   */
+  void mergeDeletions(ChangeDraftNotesUpdate other) {
+    checkState(
+        put.isEmpty() && other.put.isEmpty(),
+        "merging ChangeDraftNotesUpdate is allowed only if it doesn't contain new comments");
+    checkState(
+        getRefName().equals(other.getRefName()),
+        "cannot merge updates of different refs: %s, %s",
+        getRefName(),
+        other.getRefName());
+    other.delete.forEach(delete::putIfAbsent);
+  }
+
+  /** Adds a deletion that was restored from the journal of {@link AllUsersUpdateQueue}. */
+  void addDeletion(ObjectId commitId, Comment.Key commentKey, DeleteReason reason) {
+    delete.put(new AutoValue_ChangeDraftNotesUpdate_Key(commitId, commentKey), reason);
+  }
+
   @Nullable
   private CommitBuilder storeCommentsInNotes(
       RevWalk rw, ObjectInserter ins, ObjectId curr, CommitBuilder cb)
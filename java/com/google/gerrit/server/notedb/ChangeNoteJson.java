@@ -75,6 +75,7 @@ public class ChangeNoteJson {
         .registerTypeAdapter(
             SubmitRequirementExpressionResult.Status.class,
             new SubmitRequirementExpressionResultStatusAdapter())
+        .registerTypeAdapterFactory(new RevisionNoteTypeAdapterFactory())
         .setPrettyPrinting()
         .create();
   }
@@ -40,6 +40,7 @@ import com.google.inject.name.Named;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -53,6 +54,12 @@ public class ChangeNotesCache {
 
   @VisibleForTesting static final String CACHE_NAME = "change_notes";
 
+  /**
+   * Maximum number of meta commits to look back for a cached state that the requested state can be
+   * parsed incrementally from.
+   */
+  @VisibleForTesting static final int MAX_HISTORY_LOOKBACK = 10;
+
   public static Module module() {
     return new CacheModule() {
       @Override
@@ -363,20 +370,57 @@ public class ChangeNotesCache {
     public ChangeNotesState call() throws ConfigInvalidException, IOException {
       logger.atFine().log(
           "Load change notes for change %s of project %s", key.changeId(), key.project());
-      ChangeNotesParser parser =
-          new ChangeNotesParser(
-              key.changeId(),
-              key.id(),
-              walkSupplier.get(),
-              args.changeNoteJson,
-              args.metrics,
-              new NoteDbUtil(args.serverId, externalIdCache));
+      // Most of the time the meta ref only advanced by a few commits since the last load, so try to
+      // apply the new commits on top of a cached ancestor state rather than replaying the full
+      // history, which is expensive for long-lived changes.
+      Optional<ChangeNotesState> ancestorState = findCachedAncestorState();
+      if (ancestorState.isPresent()) {
+        ChangeNotesParser parser = newParser();
+        Optional<ChangeNotesState> result = parser.parseOnTopOf(ancestorState.get());
+        if (result.isPresent()) {
+          args.metrics.cacheLoadCount.increment(true);
+          revisionNoteMap = parser.getRevisionNoteMap();
+          return result.get();
+        }
+      }
+
+      ChangeNotesParser parser = newParser();
       ChangeNotesState result = parser.parseAll();
+      args.metrics.cacheLoadCount.increment(false);
       // This assignment only happens if call() was actually called, which only
       // happens when Cache#get(K, Callable<V>) incurs a cache miss.
       revisionNoteMap = parser.getRevisionNoteMap();
       return result;
     }
+
+    private ChangeNotesParser newParser() {
+      return new ChangeNotesParser(
+          key.changeId(),
+          key.id(),
+          walkSupplier.get(),
+          args.changeNoteJson,
+          args.metrics,
+          new NoteDbUtil(args.serverId, externalIdCache));
+    }
+
+    /**
+     * Looks up the most recent cached state among the first-parent ancestors of the requested meta
+     * commit, checking at most {@link #MAX_HISTORY_LOOKBACK} commits. Stops at the first merge
+     * commit, as incremental parsing requires a linear history.
+     */
+    private Optional<ChangeNotesState> findCachedAncestorState() throws IOException {
+      ChangeNotesRevWalk walk = walkSupplier.get();
+      ChangeNotesCommit commit = walk.parseCommit(key.id());
+      for (int i = 0; i < MAX_HISTORY_LOOKBACK && commit.getParentCount() == 1; i++) {
+        commit = walk.parseCommit(commit.getParent(0));
+        ChangeNotesState state =
+            cache.getIfPresent(Key.create(key.project(), key.changeId(), commit));
+        if (state != null) {
+          return Optional.of(state);
+        }
+      }
+      return Optional.empty();
+    }
   }
 
   private final Cache<Key, ChangeNotesState> cache;
@@ -19,11 +19,15 @@ import static com.google.gerrit.server.notedb.ChangeNoteFooters.FOOTER_ATTENTION
 import static com.google.gerrit.server.notedb.ChangeNoteFooters.FOOTER_PATCH_SET;
 
 import com.google.common.collect.ImmutableList;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.server.git.InMemoryInserter;
 import com.google.gerrit.server.git.InsertedObject;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.lib.AnyObjectId;
@@ -40,6 +44,10 @@ import org.eclipse.jgit.revwalk.RevWalk;
  * <ul>
  *   <li>Caches the result of {@link #getFooterLines()}, which is otherwise very wasteful with
  *       allocations.
+ *   <li>Decodes the value of each footer line at most once, and only if it's requested.
+ *   <li>Footer lines that occur in multiple commits of the same {@link ChangeNotesRevWalk} (e.g.
+ *       {@code Patch-set}, {@code Label} or {@code Reviewer} footers) are matched by their raw
+ *       bytes and share a single decoded value, see {@link FooterValueInterner}.
  * </ul>
  */
 public class ChangeNotesCommit extends RevCommit {
@@ -49,6 +57,11 @@ public class ChangeNotesCommit extends RevCommit {
     return new ChangeNotesRevWalk(repo);
   }
 
+  /** A {@link ChangeNotesRevWalk} reading objects through the given reader. */
+  static ChangeNotesRevWalk newRevWalk(ObjectReader reader) {
+    return new ChangeNotesRevWalk(reader);
+  }
+
   public static ChangeNotesRevWalk newStagedRevWalk(
       Repository repo, Iterable<InsertedObject> stagedObjs) {
     final InMemoryInserter ins = new InMemoryInserter(repo);
@@ -66,6 +79,8 @@ public class ChangeNotesCommit extends RevCommit {
 
   /** A {@link RevWalk} that creates {@link ChangeNotesCommit}s rather than {@link RevCommit}s */
   public static class ChangeNotesRevWalk extends RevWalk {
+    private final FooterValueInterner footerValueInterner = new FooterValueInterner();
+
     private ChangeNotesRevWalk(Repository repo) {
       super(repo);
     }
@@ -76,7 +91,7 @@ public class ChangeNotesCommit extends RevCommit {
 
     @Override
     protected ChangeNotesCommit createCommit(AnyObjectId id) {
-      return new ChangeNotesCommit(id);
+      return new ChangeNotesCommit(id, footerValueInterner);
     }
 
     @Override
@@ -111,16 +126,100 @@ public class ChangeNotesCommit extends RevCommit {
     }
   }
 
+  /**
+   * Shares the decoded values of footer lines with identical raw bytes between the commits of one
+   * walk.
+   *
+   * <p>The histories of changes repeat the same footer lines over and over again, decoding each of
+   * them (which includes unfolding continuation lines with a regular expression) is wasteful. Not
+   * thread-safe, like the {@link RevWalk} that owns it.
+   */
+  static class FooterValueInterner {
+    /** Bounds the memory used for changes with very long histories. */
+    private static final int MAX_SIZE = 10_000;
+
+    private final Map<RawLine, String> values = new HashMap<>();
+
+    String intern(byte[] raw, FooterLine fl) {
+      RawLine line = new RawLine(raw, fl.getStartOffset(), fl.getEndOffset());
+      String value = values.get(line);
+      if (value == null) {
+        value = fl.getValue();
+        if (values.size() < MAX_SIZE) {
+          // Copy the bytes, the key must not pin the buffer of the commit.
+          values.put(
+              new RawLine(Arrays.copyOfRange(raw, line.start, line.end), 0, line.end - line.start),
+              value);
+        }
+      }
+      return value;
+    }
+
+    private static class RawLine {
+      private final byte[] raw;
+      private final int start;
+      private final int end;
+      private final int hash;
+
+      RawLine(byte[] raw, int start, int end) {
+        this.raw = raw;
+        this.start = start;
+        this.end = end;
+        int h = 1;
+        for (int i = start; i < end; i++) {
+          h = 31 * h + raw[i];
+        }
+        this.hash = h;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+        if (!(o instanceof RawLine)) {
+          return false;
+        }
+        RawLine other = (RawLine) o;
+        return hash == other.hash
+            && Arrays.equals(raw, start, end, other.raw, other.start, other.end);
+      }
+
+      @Override
+      public int hashCode() {
+        return hash;
+      }
+    }
+  }
+
+  @Nullable private final FooterValueInterner footerValueInterner;
   private List<FooterLine> footerLines;
+  private String[] footerValues;
+  private boolean internFooterValues;
 
   public ChangeNotesCommit(AnyObjectId id) {
+    this(id, null);
+  }
+
+  private ChangeNotesCommit(AnyObjectId id, @Nullable FooterValueInterner footerValueInterner) {
     super(id);
+    this.footerValueInterner = footerValueInterner;
   }
 
   private void initFooterLines() {
     if (footerLines == null) {
       footerLines = getFooterLines();
+      footerValues = new String[footerLines.size()];
+      // Values can only be shared between commits if they are decoded with the same charset.
+      internFooterValues = footerValueInterner != null && getEncodingName() == null;
+    }
+  }
+
+  private String getFooterValue(int i) {
+    String value = footerValues[i];
+    if (value == null) {
+      FooterLine fl = footerLines.get(i);
+      value = internFooterValues ? footerValueInterner.intern(getRawBuffer(), fl) : fl.getValue();
+      footerValues[i] = value;
     }
+    return value;
   }
 
   public List<String> getFooterLineValues(FooterKey key) {
@@ -130,16 +229,16 @@ public class ChangeNotesCommit extends RevCommit {
     }
     String first = null;
     List<String> r = null;
-    for (FooterLine fl : footerLines) {
-      if (fl.matches(key)) {
+    for (int i = 0; i < footerLines.size(); i++) {
+      if (footerLines.get(i).matches(key)) {
         if (first == null) {
-          first = fl.getValue();
+          first = getFooterValue(i);
         } else {
           if (r == null) {
             r = new ArrayList<>(2);
             r.add(first);
           }
-          r.add(fl.getValue());
+          r.add(getFooterValue(i));
         }
       }
     }
@@ -152,6 +251,17 @@ public class ChangeNotesCommit extends RevCommit {
     return ImmutableList.of();
   }
 
+  /** Returns whether every footer line of this commit matches one of the given footer keys. */
+  public boolean hasOnlyFooters(ImmutableList<FooterKey> keys) {
+    initFooterLines();
+    for (FooterLine fl : footerLines) {
+      if (keys.stream().noneMatch(fl::matches)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public boolean isAttentionSetCommitOnly(boolean hasChangeMessage) {
     if (hasChangeMessage) {
       return false;
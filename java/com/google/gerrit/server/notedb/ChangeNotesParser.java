@@ -152,6 +152,13 @@ class ChangeNotesParser {
 
   private static final Splitter HASHTAG_SPLITTER = Splitter.on(",");
 
+  /**
+   * Footers that may appear in commits that are applied on top of a previously parsed state by
+   * {@link #parseOnTopOf(ChangeNotesState)}.
+   */
+  private static final ImmutableList<FooterKey> INCREMENTAL_FOOTERS =
+      ImmutableList.of(FOOTER_PATCH_SET, FOOTER_TAG, FOOTER_REAL_USER, FOOTER_ATTENTION);
+
   // Private final members initialized in the constructor.
   private final ChangeNoteJson changeNoteJson;
   private final NoteDbMetrics metrics;
@@ -285,6 +292,115 @@ class ChangeNotesParser {
     return buildState();
   }
 
+  /**
+   * Parses the state at the tip by applying the commits that were added since {@code base} on top
+   * of the already parsed {@code base} state, instead of replaying the full history.
+   *
+   * <p>Only commits that append to the change without affecting state derived from older commits
+   * can be applied this way, i.e. commits that only carry a change message, published comments and
+   * attention set updates on an existing patch set. This covers the common case of bots and users
+   * commenting on long-lived changes.
+   *
+   * @param base parsed state of an ancestor of the tip.
+   * @return the parsed state, or empty if the history between {@code base} and the tip is not
+   *     linear or contains commits that can't be applied incrementally, in which case the caller
+   *     should fall back to {@link #parseAll()}.
+   */
+  Optional<ChangeNotesState> parseOnTopOf(ChangeNotesState base)
+      throws ConfigInvalidException, IOException {
+    ObjectId baseId = base.metaId();
+    if (baseId == null || base.columns() == null) {
+      return Optional.empty();
+    }
+    walk.reset();
+    ChangeNotesCommit tipCommit = walk.parseCommit(tip);
+    List<ChangeNotesCommit> newCommits = new ArrayList<>();
+    ChangeNotesCommit commit = tipCommit;
+    while (!commit.equals(baseId)) {
+      if (commit.getParentCount() != 1 || !commit.hasOnlyFooters(INCREMENTAL_FOOTERS)) {
+        return Optional.empty();
+      }
+      newCommits.add(commit);
+      commit = walk.parseCommit(commit.getParent(0));
+    }
+    ChangeNotesCommit baseCommit = commit;
+
+    Map<PatchSet.Id, PatchSet> basePatchSets = new HashMap<>();
+    base.patchSets().forEach(e -> basePatchSets.put(e.getKey(), e.getValue()));
+    Instant baseLastUpdatedOn = base.columns().lastUpdatedOn();
+    int baseUpdateCount = base.updateCount();
+
+    try (Timer0.Context timer = metrics.parseLatency.start()) {
+      // Same order as in parseAll(): newest commits first.
+      for (ChangeNotesCommit c : newCommits) {
+        PatchSetIdAndState psIdAndState = parsePatchSetIdAndState(c);
+        if (psIdAndState.state != null || !basePatchSets.containsKey(psIdAndState.id)) {
+          return Optional.empty();
+        }
+        Instant commitTimestamp = getCommitTimestamp(c);
+        parseTag(c);
+        Account.Id accountId = parseIdent(c);
+        Account.Id realAccountId = parseRealAccountId(c, accountId);
+        boolean hasChangeMessage =
+            parseChangeMessage(psIdAndState.id, accountId, realAccountId, c, commitTimestamp);
+        parseAttentionSetUpdates(c);
+        if (lastUpdatedOn == null || commitTimestamp.isAfter(lastUpdatedOn)) {
+          lastUpdatedOn = commitTimestamp;
+        }
+        if (countTowardsMaxUpdatesLimit(c, hasChangeMessage)) {
+          updateCount++;
+        }
+      }
+
+      ImmutableListMultimap<ObjectId, HumanComment> publishedComments;
+      if (tipCommit.getTree().equals(baseCommit.getTree())) {
+        publishedComments = base.publishedComments();
+      } else {
+        ObjectReader reader = walk.getObjectReader();
+        revisionNoteMap =
+            RevisionNoteMap.parse(
+                changeNoteJson,
+                reader,
+                NoteMap.read(reader, tipCommit),
+                HumanComment.Status.PUBLISHED);
+        parseComments(revisionNoteMap.revisionNotes);
+        humanComments
+            .values()
+            .removeIf(c -> !basePatchSets.containsKey(PatchSet.id(id, c.key.patchSetId)));
+        publishedComments = ImmutableListMultimap.copyOf(humanComments);
+      }
+
+      Map<Account.Id, AttentionSetUpdate> attentionSet = new HashMap<>();
+      base.attentionSet().forEach(u -> attentionSet.put(u.account(), u));
+      attentionSet.putAll(latestAttentionStatus);
+
+      return Optional.of(
+          base.toBuilder()
+              .metaId(tip.copy())
+              .columns(
+                  base.columns().toBuilder()
+                      .lastUpdatedOn(
+                          lastUpdatedOn != null && lastUpdatedOn.isAfter(baseLastUpdatedOn)
+                              ? lastUpdatedOn
+                              : baseLastUpdatedOn)
+                      .build())
+              .attentionSet(ImmutableSet.copyOf(attentionSet.values()))
+              .allAttentionSetUpdates(
+                  ImmutableList.<AttentionSetUpdate>builder()
+                      .addAll(allAttentionSetUpdates)
+                      .addAll(base.allAttentionSetUpdates())
+                      .build())
+              .changeMessages(
+                  ImmutableList.<ChangeMessage>builder()
+                      .addAll(base.changeMessages())
+                      .addAll(buildAllMessages())
+                      .build())
+              .publishedComments(publishedComments)
+              .updateCount(baseUpdateCount + updateCount)
+              .build());
+    }
+  }
+
   RevisionNoteMap<ChangeRevisionNote> getRevisionNoteMap() {
     return revisionNoteMap;
   }
@@ -1069,21 +1185,7 @@ class ChangeNotesParser {
         RevisionNoteMap.parse(
             changeNoteJson, reader, NoteMap.read(reader, tipCommit), HumanComment.Status.PUBLISHED);
     ImmutableMap<ObjectId, ChangeRevisionNote> rns = revisionNoteMap.revisionNotes;
-
-    for (Map.Entry<ObjectId, ChangeRevisionNote> e : rns.entrySet()) {
-      for (HumanComment c : e.getValue().getEntities()) {
-
-        noteDbUtil
-            .parseIdent(String.format("%s@%s", c.author.getId(), c.serverId))
-            .ifPresent(
-                id -> {
-                  c.author = new Comment.Identity(id);
-                  c.serverId = noteDbUtil.serverId;
-                });
-
-        humanComments.put(e.getKey(), c);
-      }
-    }
+    parseComments(rns);
 
     // Lookup submit requirement results from the revision notes of the last PS that has stored
     // submit requirements. This is important for cases where the change was abandoned/un-abandoned
@@ -1121,6 +1223,23 @@ class ChangeNotesParser {
     }
   }
 
+  private void parseComments(ImmutableMap<ObjectId, ChangeRevisionNote> rns) {
+    for (Map.Entry<ObjectId, ChangeRevisionNote> e : rns.entrySet()) {
+      for (HumanComment c : e.getValue().getEntities()) {
+
+        noteDbUtil
+            .parseIdent(String.format("%s@%s", c.author.getId(), c.serverId))
+            .ifPresent(
+                id -> {
+                  c.author = new Comment.Identity(id);
+                  c.serverId = noteDbUtil.serverId;
+                });
+
+        humanComments.put(e.getKey(), c);
+      }
+    }
+  }
+
   /** Parses copied {@link PatchSetApproval}. */
   private void parseCopiedApproval(PatchSet.Id psId, Instant ts, String line)
       throws ConfigInvalidException {
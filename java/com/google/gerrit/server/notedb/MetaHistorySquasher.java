@@ -0,0 +1,312 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.notedb;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.gerrit.server.update.context.RefUpdateContext.RefUpdateType.CHANGE_MODIFICATION;
+
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.server.notedb.ChangeNoteUtil.CommitMessageRange;
+import com.google.gerrit.server.update.context.RefUpdateContext;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Squashes redundant commits of {@link RefNames#changeMetaRef}s with a very long history.
+ *
+ * <p>Bots that repeatedly write the same update to a change (e.g. re-setting the same hashtags or
+ * attention set) can leave tens of thousands of commits in the meta ref, all of which need to be
+ * parsed whenever the {@link ChangeNotes} are loaded without the cache. A commit is redundant if it
+ * has no change message and the next commit was written by the same author with the exact same
+ * commit message. Redundant commits are dropped and all later commits are recreated with the same
+ * tree, message, author and committer on top of the shortened history.
+ *
+ * <p>The keys of change messages are the IDs of the meta commits that added them, and they are
+ * referenced by clients. Hence only commits after the last commit with a change message are
+ * squashed, so that no commit with a change message is ever recreated.
+ *
+ * <p>The old and the new history are both parsed and the ref is only updated if they result in
+ * the same {@link ChangeNotesState}, apart from the {@link ChangeNotesState#metaId()} and the
+ * {@link ChangeNotesState#updateCount()}. The ref is updated with the old tip as expected value, so
+ * that a change that is updated concurrently is skipped rather than losing the concurrent update.
+ * Changes with rewritten meta refs must be reindexed afterwards.
+ *
+ * <p>Like {@link CommitRewriter}, this is a standalone tool that is run per project. It is safe to
+ * run on a live server; {@link RunOptions#delayBetweenChangesMs} throttles the ref updates.
+ */
+@Singleton
+public class MetaHistorySquasher {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** Options to run {@link #squashProject}. */
+  public static class RunOptions implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Whether to update the refs or only find refs that can be squashed. */
+    public boolean dryRun = true;
+
+    /** Min number of commits in a meta ref for the ref to be considered. */
+    public int minCommits = 1000;
+
+    /** Max number of refs to update by a single run. */
+    public int maxRefsToUpdate = 1000;
+
+    /** Time to wait after each updated ref, to limit the load on the server. */
+    public long delayBetweenChangesMs = 0;
+  }
+
+  /** Result of {@link #squashProject}. */
+  public static class SquashResult {
+    /** Whether all refs of the project could be processed. */
+    public boolean ok;
+
+    /** Refs that were squashed, or would have been squashed in dry run mode. */
+    public List<String> squashedRefs = new ArrayList<>();
+
+    /** Number of commits that were removed from the squashed refs. */
+    public long removedCommits;
+
+    /** Refs that were not updated because the squashed history parsed to a different state. */
+    public List<String> refsNotEquivalent = new ArrayList<>();
+
+    /** Refs that failed to be squashed, e.g. because they were updated concurrently. */
+    public List<String> refsFailedToSquash = new ArrayList<>();
+  }
+
+  private final ChangeNoteJson changeNoteJson;
+  private final NoteDbMetrics metrics;
+  private final NoteDbUtil noteDbUtil;
+
+  @Inject
+  MetaHistorySquasher(ChangeNoteJson changeNoteJson, NoteDbMetrics metrics, NoteDbUtil noteDbUtil) {
+    this.changeNoteJson = changeNoteJson;
+    this.metrics = metrics;
+    this.noteDbUtil = noteDbUtil;
+  }
+
+  /**
+   * Squashes the redundant commits of all {@link RefNames#changeMetaRef}s in {@code repo}.
+   *
+   * @param project project to squash
+   * @param repo repo to squash
+   * @param options {@link RunOptions} to control how the run is executed.
+   * @return SquashResult
+   */
+  public SquashResult squashProject(Project.NameKey project, Repository repo, RunOptions options) {
+    checkState(options.maxRefsToUpdate > 0, "Expected maxRefsToUpdate > 0");
+    SquashResult result = new SquashResult();
+    result.ok = true;
+    try {
+      for (Ref ref : repo.getRefDatabase().getRefsByPrefix(RefNames.REFS_CHANGES)) {
+        if (result.squashedRefs.size() >= options.maxRefsToUpdate) {
+          break;
+        }
+        Change.Id changeId = Change.Id.fromRef(ref.getName());
+        if (changeId == null || !ref.getName().equals(RefNames.changeMetaRef(changeId))) {
+          continue;
+        }
+        try {
+          squashChange(repo, changeId, ref, options, result);
+        } catch (InterruptedIOException e) {
+          throw e;
+        } catch (Exception e) {
+          logger.atWarning().withCause(e).log("Failed to squash ref %s", ref);
+          result.refsFailedToSquash.add(ref.getName());
+        }
+      }
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Failed to squash project %s", project.get());
+      result.ok = false;
+    }
+    return result;
+  }
+
+  private void squashChange(
+      Repository repo, Change.Id changeId, Ref ref, RunOptions options, SquashResult result)
+      throws IOException, ConfigInvalidException {
+    ObjectId oldTip = ref.getObjectId();
+    try (ObjectInserter ins = repo.newObjectInserter();
+        ObjectReader reader = ins.newReader();
+        RevWalk rw = new RevWalk(reader)) {
+      List<RevCommit> history = readHistory(rw, oldTip);
+      if (history == null || history.size() < options.minCommits) {
+        return;
+      }
+
+      int firstSquashable = lastChangeMessage(history) + 1;
+      ObjectId newTip = null;
+      int removed = 0;
+      for (int i = 0; i < history.size(); i++) {
+        RevCommit commit = history.get(i);
+        if (i >= firstSquashable
+            && i + 1 < history.size()
+            && isRedundant(commit, history.get(i + 1))) {
+          removed++;
+          continue;
+        }
+        if (removed == 0) {
+          // History is unchanged up to here.
+          newTip = commit;
+          continue;
+        }
+        CommitBuilder cb = new CommitBuilder();
+        if (newTip != null) {
+          cb.setParentId(newTip);
+        }
+        cb.setTreeId(commit.getTree());
+        cb.setMessage(commit.getFullMessage());
+        cb.setAuthor(commit.getAuthorIdent());
+        cb.setCommitter(commit.getCommitterIdent());
+        cb.setEncoding(commit.getEncoding());
+        newTip = ins.insert(cb);
+      }
+      if (removed == 0) {
+        return;
+      }
+
+      if (!parse(changeId, reader, oldTip).equals(parse(changeId, reader, newTip))) {
+        logger.atWarning().log(
+            "Squashed history of ref %s results in a different state, skipping", ref.getName());
+        result.refsNotEquivalent.add(ref.getName());
+        return;
+      }
+
+      if (!options.dryRun) {
+        ins.flush();
+        updateRef(repo, ref.getName(), oldTip, newTip);
+      }
+      result.squashedRefs.add(ref.getName());
+      result.removedCommits += removed;
+      logger.atFine().log(
+          "Squashed %d of %d commits of ref %s", removed, history.size(), ref.getName());
+    }
+
+    if (!options.dryRun && options.delayBetweenChangesMs > 0) {
+      try {
+        TimeUnit.MILLISECONDS.sleep(options.delayBetweenChangesMs);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while squashing meta refs");
+      }
+    }
+  }
+
+  /**
+   * Returns the commits of the meta ref from the oldest to the newest commit, or {@code null} if
+   * the history is not linear.
+   */
+  @Nullable
+  private static List<RevCommit> readHistory(RevWalk rw, ObjectId tip) throws IOException {
+    rw.reset();
+    rw.sort(RevSort.TOPO);
+    rw.sort(RevSort.REVERSE, true);
+    rw.markStart(rw.parseCommit(tip));
+    List<RevCommit> history = new ArrayList<>();
+    RevCommit commit;
+    while ((commit = rw.next()) != null) {
+      if (commit.getParentCount() > 1) {
+        return null;
+      }
+      history.add(commit);
+    }
+    return history;
+  }
+
+  /** Returns the index of the last commit with a change message, or -1 if there is none. */
+  private static int lastChangeMessage(List<RevCommit> history) {
+    for (int i = history.size() - 1; i >= 0; i--) {
+      if (hasChangeMessage(history.get(i))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean hasChangeMessage(RevCommit commit) {
+    return ChangeNoteUtil.parseCommitMessageRange(commit)
+        .map(CommitMessageRange::hasChangeMessage)
+        .orElse(true);
+  }
+
+  /**
+   * Whether {@code commit} can be dropped because {@code next} repeats the same update.
+   *
+   * <p>Commits with a change message are never dropped, since the change message would be lost.
+   */
+  private static boolean isRedundant(RevCommit commit, RevCommit next) {
+    if (hasChangeMessage(commit)) {
+      return false;
+    }
+    return sameIdentity(commit.getAuthorIdent(), next.getAuthorIdent())
+        && Objects.equals(commit.getEncodingName(), next.getEncodingName())
+        && commit.getFullMessage().equals(next.getFullMessage());
+  }
+
+  private static boolean sameIdentity(PersonIdent a, PersonIdent b) {
+    return Objects.equals(a.getName(), b.getName())
+        && Objects.equals(a.getEmailAddress(), b.getEmailAddress());
+  }
+
+  /** Parses the state at {@code tip}, ignoring the values that are derived from the tip. */
+  private ChangeNotesState parse(Change.Id changeId, ObjectReader reader, ObjectId tip)
+      throws IOException, ConfigInvalidException {
+    ChangeNotesState state;
+    try (ChangeNotesCommit.ChangeNotesRevWalk walk = ChangeNotesCommit.newRevWalk(reader)) {
+      state =
+          new ChangeNotesParser(changeId, tip, walk, changeNoteJson, metrics, noteDbUtil)
+              .parseAll();
+    }
+    return state.toBuilder().metaId(ObjectId.zeroId()).updateCount(0).build();
+  }
+
+  private static void updateRef(Repository repo, String refName, ObjectId oldTip, ObjectId newTip)
+      throws IOException {
+    try (RefUpdateContext ctx = RefUpdateContext.open(CHANGE_MODIFICATION)) {
+      RefUpdate ru = repo.updateRef(refName);
+      ru.setExpectedOldObjectId(oldTip);
+      ru.setNewObjectId(newTip);
+      ru.setForceUpdate(true);
+      ru.setForceRefLog(true);
+      ru.setRefLogMessage(MetaHistorySquasher.class.getName(), false);
+      RefUpdate.Result res = ru.update();
+      if (res != RefUpdate.Result.FORCED) {
+        throw new IOException(String.format("Failed to update ref %s: %s", refName, res.name()));
+      }
+    }
+  }
+}
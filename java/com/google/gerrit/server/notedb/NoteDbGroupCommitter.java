@@ -0,0 +1,316 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.notedb;
+
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.git.RefUpdateUtil;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.GerritServerConfig;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+
+/**
+ * Merges NoteDb ref updates of concurrent {@link NoteDbUpdateManager}s into a single ref
+ * transaction.
+ *
+ * <p>Concurrent updates to the same busy project (e.g. bots voting and CI systems posting comments
+ * on many changes) each execute their own {@link BatchRefUpdate}. Every batch ref update needs to
+ * take the lock on the packed refs, so that concurrent updates contend on it and fail with lock
+ * failures that need to be retried.
+ *
+ * <p>For projects that opted in via {@code notedb.groupCommit.project}, updates are queued per
+ * project. The first update in the queue becomes the leader. If other updates are already queued
+ * behind it, it waits for {@code notedb.groupCommit.window} to collect further updates, and then
+ * executes the commands of all queued updates in a single atomic {@link BatchRefUpdate}. An update
+ * without concurrent writers is executed right away. The results are stored in the {@link
+ * ReceiveCommand}s of the original updates, so that each caller can check its own results. Only
+ * updates that touch disjoint refs and that have the same ref log identity and fast-forward setting
+ * are merged.
+ *
+ * <p>If the merged transaction fails, e.g. because one of the updates is rejected, the updates are
+ * executed one by one, so that an update never fails because of another update.
+ */
+@Singleton
+class NoteDbGroupCommitter {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final String SECTION = "notedb";
+  private static final String SUBSECTION = "groupCommit";
+  private static final long DEFAULT_WINDOW_MS = 10;
+  private static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+  private final NoteDbMetrics metrics;
+  private final ImmutableSet<Project.NameKey> projects;
+  private final long windowMs;
+  private final int maxBatchSize;
+  private final ConcurrentMap<Project.NameKey, Queue> queues = new ConcurrentHashMap<>();
+
+  @Inject
+  NoteDbGroupCommitter(@GerritServerConfig Config cfg, NoteDbMetrics metrics) {
+    this.metrics = metrics;
+    this.projects =
+        Arrays.stream(cfg.getStringList(SECTION, SUBSECTION, "project"))
+            .map(Project::nameKey)
+            .collect(toImmutableSet());
+    this.windowMs =
+        ConfigUtil.getTimeUnit(
+            cfg, SECTION, SUBSECTION, "window", DEFAULT_WINDOW_MS, TimeUnit.MILLISECONDS);
+    this.maxBatchSize =
+        Math.max(1, cfg.getInt(SECTION, SUBSECTION, "maxBatchSize", DEFAULT_MAX_BATCH_SIZE));
+  }
+
+  boolean isEnabled(Project.NameKey project) {
+    return projects.contains(project);
+  }
+
+  /**
+   * Executes the given batch ref update, possibly together with concurrent updates of the same
+   * project.
+   *
+   * @param project project to which the update belongs.
+   * @param repo repository of the project.
+   * @param bru fully set up batch ref update, not executed yet.
+   * @throws IOException if any result was not {@code OK}, see {@link
+   *     RefUpdateUtil#checkResults(BatchRefUpdate)}.
+   */
+  void execute(Project.NameKey project, Repository repo, BatchRefUpdate bru) throws IOException {
+    Queue queue = queues.computeIfAbsent(project, p -> new Queue());
+    PendingUpdate update = new PendingUpdate(bru);
+    if (queue.enqueue(update)) {
+      lead(queue, repo);
+    }
+    if (update.error != null) {
+      throw update.error;
+    }
+    RefUpdateUtil.checkResults(bru);
+  }
+
+  private void lead(Queue queue, Repository repo) throws IOException {
+    List<PendingUpdate> batch;
+    try {
+      if (windowMs > 0 && queue.hasFollowers()) {
+        TimeUnit.MILLISECONDS.sleep(windowMs);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      // Continue without waiting for further updates, the followers rely on the leader.
+    } finally {
+      batch = queue.drain(maxBatchSize);
+    }
+
+    try {
+      executeBatch(repo, batch);
+    } catch (IOException | RuntimeException e) {
+      for (PendingUpdate update : batch) {
+        update.error =
+            e instanceof IOException
+                ? (IOException) e
+                : new IOException("Failed to execute merged ref update", e);
+      }
+    } finally {
+      queue.complete(batch);
+    }
+  }
+
+  private void executeBatch(Repository repo, List<PendingUpdate> batch) throws IOException {
+    metrics.groupCommitBatchSize.record(batch.size());
+    try (RevWalk rw = new RevWalk(repo)) {
+      if (batch.size() == 1) {
+        batch.get(0).bru.execute(rw, NullProgressMonitor.INSTANCE);
+        return;
+      }
+
+      BatchRefUpdate leader = batch.get(0).bru;
+      BatchRefUpdate merged = repo.getRefDatabase().newBatchUpdate();
+      merged.setAtomic(true);
+      merged.setAllowNonFastForwards(leader.isAllowNonFastForwards());
+      merged.setRefLogIdent(leader.getRefLogIdent());
+      if (leader.isRefLogDisabled()) {
+        merged.disableRefLog();
+      } else {
+        merged.setRefLogMessage(leader.getRefLogMessage(), leader.isRefLogIncludingResult());
+      }
+      for (PendingUpdate update : batch) {
+        for (ReceiveCommand cmd : update.bru.getCommands()) {
+          // Preserve the ref log message of the original update.
+          if (!cmd.hasCustomRefLog()) {
+            if (update.bru.isRefLogDisabled()) {
+              cmd.disableRefLog();
+            } else {
+              cmd.setRefLogMessage(
+                  update.bru.getRefLogMessage(), update.bru.isRefLogIncludingResult());
+            }
+          }
+          merged.addCommand(cmd);
+        }
+      }
+      merged.execute(rw, NullProgressMonitor.INSTANCE);
+
+      if (merged.getCommands().stream().allMatch(c -> c.getResult() == ReceiveCommand.Result.OK)) {
+        metrics.groupCommitMergedUpdateCount.incrementBy(batch.size() - 1);
+        return;
+      }
+
+      // One of the updates failed and aborted the whole transaction. Execute the updates
+      // separately, so that each of them gets its own result.
+      logger.atFine().log(
+          "Merged ref update of %d updates failed, executing them separately", batch.size());
+      metrics.groupCommitFallbackCount.increment();
+      for (ReceiveCommand cmd : merged.getCommands()) {
+        cmd.setResult(ReceiveCommand.Result.NOT_ATTEMPTED);
+      }
+      for (PendingUpdate update : batch) {
+        update.bru.execute(rw, NullProgressMonitor.INSTANCE);
+      }
+    }
+  }
+
+  /**
+   * Checks whether the given update can be executed in the same transaction as the leader.
+   *
+   * <p>Updates with a push certificate are never passed to the group committer, see {@link
+   * NoteDbUpdateExecutor}.
+   */
+  @VisibleForTesting
+  static boolean canMerge(BatchRefUpdate leader, BatchRefUpdate update, Set<String> refs) {
+    if (leader.isAllowNonFastForwards() != update.isAllowNonFastForwards()
+        || !sameIdentity(leader.getRefLogIdent(), update.getRefLogIdent())) {
+      return false;
+    }
+    return update.getCommands().stream().noneMatch(c -> refs.contains(c.getRefName()));
+  }
+
+  private static boolean sameIdentity(@Nullable PersonIdent a, @Nullable PersonIdent b) {
+    if (a == null || b == null) {
+      return a == b;
+    }
+    return Objects.equals(a.getName(), b.getName())
+        && Objects.equals(a.getEmailAddress(), b.getEmailAddress());
+  }
+
+  private static class PendingUpdate {
+    final BatchRefUpdate bru;
+    boolean leader;
+    boolean done;
+    IOException error;
+
+    PendingUpdate(BatchRefUpdate bru) {
+      this.bru = bru;
+    }
+  }
+
+  /** Updates of one project waiting to be executed. */
+  private static class Queue {
+    private final ArrayDeque<PendingUpdate> pending = new ArrayDeque<>();
+    private boolean leaderActive;
+
+    /**
+     * Adds the update to the queue and waits until it was executed by another leader.
+     *
+     * @return whether the caller became the leader and must execute the next batch.
+     */
+    synchronized boolean enqueue(PendingUpdate update) throws InterruptedIOException {
+      pending.add(update);
+      if (!leaderActive) {
+        leaderActive = true;
+        update.leader = true;
+        return true;
+      }
+      boolean interrupted = false;
+      try {
+        while (!update.leader && !update.done) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+            if (!update.leader && pending.remove(update)) {
+              throw new InterruptedIOException("Interrupted while waiting for ref update");
+            }
+            // The update is already being executed or must lead the next batch, so it can't be
+            // abandoned anymore.
+          }
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return update.leader;
+    }
+
+    /** Whether other updates are queued behind the leader. */
+    synchronized boolean hasFollowers() {
+      return pending.size() > 1;
+    }
+
+    /**
+     * Removes the next batch from the queue. The head of the queue is always the leader and part of
+     * the batch.
+     */
+    synchronized List<PendingUpdate> drain(int maxBatchSize) {
+      List<PendingUpdate> batch = new ArrayList<>();
+      Set<String> refs = new HashSet<>();
+      BatchRefUpdate leader = pending.getFirst().bru;
+      Iterator<PendingUpdate> it = pending.iterator();
+      while (it.hasNext() && batch.size() < maxBatchSize) {
+        PendingUpdate update = it.next();
+        if (batch.isEmpty() || canMerge(leader, update.bru, refs)) {
+          update.bru.getCommands().forEach(c -> refs.add(c.getRefName()));
+          batch.add(update);
+          it.remove();
+        }
+      }
+      return batch;
+    }
+
+    /** Marks the batch as done and hands over leadership to the next queued update, if any. */
+    synchronized void complete(List<PendingUpdate> batch) {
+      batch.forEach(u -> u.done = true);
+      PendingUpdate next = pending.peekFirst();
+      if (next != null) {
+        next.leader = true;
+      } else {
+        leaderActive = false;
+      }
+      notifyAll();
+    }
+  }
+}
@@ -14,10 +14,15 @@
 
 package com.google.gerrit.server.notedb;
 
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Counter1;
 import com.google.gerrit.metrics.Description;
 import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.Histogram0;
 import com.google.gerrit.metrics.MetricMaker;
 import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.logging.Metadata;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
@@ -43,6 +48,21 @@ class NoteDbMetrics {
    */
   final Timer0 parseLatency;
 
+  /**
+   * Number of change notes cache loads, split by whether the state was computed incrementally from
+   * a cached ancestor state.
+   */
+  final Counter1<Boolean> cacheLoadCount;
+
+  /** Number of updates that were executed together in one ref transaction by group commit. */
+  final Histogram0 groupCommitBatchSize;
+
+  /** Number of updates that didn't need their own ref transaction thanks to group commit. */
+  final Counter0 groupCommitMergedUpdateCount;
+
+  /** Number of merged ref transactions that failed and were retried as separate updates. */
+  final Counter0 groupCommitFallbackCount;
+
   @Inject
   NoteDbMetrics(MetricMaker metrics) {
     updateLatency =
@@ -72,5 +92,41 @@ class NoteDbMetrics {
             new Description("NoteDb parse latency for changes")
                 .setCumulative()
                 .setUnit(Units.MICROSECONDS));
+
+    cacheLoadCount =
+        metrics.newCounter(
+            "notedb/change_notes_cache_load_count",
+            new Description("Total number of change notes cache loads.")
+                .setRate()
+                .setUnit("loads"),
+            Field.ofBoolean("incremental", Metadata.Builder::partial)
+                .description(
+                    "Whether the state was parsed incrementally on top of a cached ancestor.")
+                .build());
+
+    groupCommitBatchSize =
+        metrics.newHistogram(
+            "notedb/group_commit_batch_size",
+            new Description("Number of NoteDb updates executed in a single ref transaction.")
+                .setCumulative()
+                .setUnit("updates"));
+
+    groupCommitMergedUpdateCount =
+        metrics.newCounter(
+            "notedb/group_commit_merged_update_count",
+            new Description(
+                    "Total number of NoteDb updates that were merged into the ref transaction of"
+                        + " another update.")
+                .setRate()
+                .setUnit("updates"));
+
+    groupCommitFallbackCount =
+        metrics.newCounter(
+            "notedb/group_commit_fallback_count",
+            new Description(
+                    "Total number of merged ref transactions that failed and were executed as"
+                        + " separate updates.")
+                .setRate()
+                .setUnit("transactions"));
   }
 }
@@ -19,20 +19,33 @@ import com.google.common.cache.CacheBuilder;
 import com.google.gerrit.extensions.config.FactoryModule;
 import com.google.inject.TypeLiteral;
 import com.google.inject.name.Names;
+import java.nio.file.Path;
+import java.util.Optional;
 
 public class NoteDbModule extends FactoryModule {
   private final boolean useTestBindings;
+  private final boolean isBatchProgram;
 
+  /**
+   * Module for tests. The test must bind the {@code ScheduledExecutorService} named {@link
+   * AllUsersUpdateQueue#RETRY_EXECUTOR} and shut it down when it is done.
+   */
   static NoteDbModule forTest() {
-    return new NoteDbModule(true);
+    return new NoteDbModule(true, false);
+  }
+
+  /** Module for batch programs, which must not replay the journal of the daemon. */
+  public static NoteDbModule forBatchProgram() {
+    return new NoteDbModule(false, true);
   }
 
   public NoteDbModule() {
-    this(false);
+    this(false, false);
   }
 
-  private NoteDbModule(boolean useTestBindings) {
+  private NoteDbModule(boolean useTestBindings, boolean isBatchProgram) {
     this.useTestBindings = useTestBindings;
+    this.isBatchProgram = isBatchProgram;
   }
 
   @Override
@@ -43,10 +56,18 @@ public class NoteDbModule extends FactoryModule {
 
     if (!useTestBindings) {
       install(ChangeNotesCache.module());
+      if (isBatchProgram) {
+        install(new AllUsersUpdateQueue.BatchModule());
+      } else {
+        install(new AllUsersUpdateQueue.Module());
+      }
     } else {
       bind(new TypeLiteral<Cache<ChangeNotesCache.Key, ChangeNotesState>>() {})
           .annotatedWith(Names.named(ChangeNotesCache.CACHE_NAME))
           .toInstance(CacheBuilder.newBuilder().build());
+      bind(new TypeLiteral<Optional<Path>>() {})
+          .annotatedWith(Names.named(AllUsersUpdateQueue.JOURNAL_DIRECTORY))
+          .toInstance(Optional.empty());
     }
   }
 }
@@ -18,6 +18,7 @@ import static com.google.common.base.MoreObjects.firstNonNull;
 
 import com.google.common.collect.ImmutableList;
 import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Project;
 import com.google.gerrit.git.RefUpdateUtil;
 import com.google.gerrit.server.GerritPersonIdent;
 import com.google.gerrit.server.update.BatchUpdateListener;
@@ -34,13 +35,17 @@ import org.eclipse.jgit.transport.ReceiveCommand;
 /** Utility class for executing commands on a given repository. */
 class NoteDbUpdateExecutor {
   private final Provider<PersonIdent> serverIdent;
+  private final NoteDbGroupCommitter groupCommitter;
 
   @Inject
-  NoteDbUpdateExecutor(@GerritPersonIdent Provider<PersonIdent> serverIdent) {
+  NoteDbUpdateExecutor(
+      @GerritPersonIdent Provider<PersonIdent> serverIdent, NoteDbGroupCommitter groupCommitter) {
     this.serverIdent = serverIdent;
+    this.groupCommitter = groupCommitter;
   }
 
   Optional<BatchRefUpdate> execute(
+      Project.NameKey project,
       OpenRepo or,
       boolean dryrun,
       boolean maybeAllowNonFastForwards,
@@ -77,7 +82,15 @@ class NoteDbUpdateExecutor {
     }
 
     if (!dryrun) {
-      RefUpdateUtil.executeChecked(bru, or.rw);
+      // Listeners may replace the batch ref update with an implementation that must be executed on
+      // its own, and push certificates are specific to a single update.
+      if (batchUpdateListeners.isEmpty()
+          && pushCert == null
+          && groupCommitter.isEnabled(project)) {
+        groupCommitter.execute(project, or.repo, bru);
+      } else {
+        RefUpdateUtil.executeChecked(bru, or.rw);
+      }
     }
     return Optional.of(bru);
   }
@@ -359,6 +359,7 @@ public class NoteDbUpdateManager implements AutoCloseable {
   private Optional<BatchRefUpdate> execute(
       OpenRepo or, boolean dryrun, @Nullable PushCertificate pushCert) throws IOException {
     return noteDbUpdateExecutor.execute(
+        projectName,
         or,
         dryrun,
         allowNonFastForwards(),
@@ -31,22 +31,27 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.flogger.FluentLogger;
 import com.google.common.util.concurrent.Runnables;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.entities.RefNames;
 import com.google.gerrit.exceptions.StorageException;
 import com.google.gerrit.extensions.config.FactoryModule;
 import com.google.gerrit.git.LockFailureException;
 import com.google.gerrit.git.RefUpdateUtil;
+import com.google.gerrit.metrics.Timer1;
 import com.google.gerrit.server.Sequence;
+import com.google.gerrit.server.Sequence.SequenceType;
 import com.google.gerrit.server.config.AllProjectsName;
 import com.google.gerrit.server.config.AllUsersName;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.extensions.events.GitReferenceUpdated;
 import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.git.WorkQueue;
 import com.google.gerrit.server.update.context.RefUpdateContext;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Provides;
+import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 import java.io.IOException;
 import java.io.Serial;
@@ -54,7 +59,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import org.eclipse.jgit.lib.Config;
@@ -73,6 +81,10 @@ import org.eclipse.jgit.revwalk.RevWalk;
  * processes can increment the counter by a larger number and hand out numbers from that range in
  * memory until they run out. This means concurrent processes will hand out somewhat non-monotonic
  * numbers.
+ *
+ * <p>Numbers of the current batch are handed out through an atomic counter without taking a lock.
+ * Optionally the next batch is acquired in the background once only {@code refillThreshold} numbers
+ * are left in the current batch, so that callers don't need to wait for the ref update.
  */
 public class RepoSequence implements Sequence {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
@@ -88,6 +100,7 @@ public class RepoSequence implements Sequence {
   public static class RepoSequenceModule extends FactoryModule {
     public static final String SECTION_NOTE_DB = "noteDb";
     public static final String KEY_SEQUENCE_BATCH_SIZE = "sequenceBatchSize";
+    public static final String KEY_SEQUENCE_REFILL_THRESHOLD = "sequenceRefillThreshold";
     public static final int DEFAULT_ACCOUNTS_SEQUENCE_BATCH_SIZE = 1;
     public static final int DEFAULT_GROUPS_SEQUENCE_BATCH_SIZE = 1;
     public static final int DEFAULT_CHANGES_SEQUENCE_BATCH_SIZE = 20;
@@ -124,20 +137,37 @@ public class RepoSequence implements Sequence {
     }
 
     @Provides
+    @Singleton
     @Named(NAME_CHANGES)
     Sequence getChangesSequence(
         @GerritServerConfig Config cfg,
         GitRepositoryManager repoManager,
         AllProjectsName allProjects,
-        GitReferenceUpdated gitReferenceUpdated) {
+        GitReferenceUpdated gitReferenceUpdated,
+        RepoSequenceMetrics metrics,
+        WorkQueue workQueue) {
       int changeBatchSize =
           cfg.getInt(
               SECTION_NOTE_DB,
               NAME_CHANGES,
               KEY_SEQUENCE_BATCH_SIZE,
               DEFAULT_CHANGES_SEQUENCE_BATCH_SIZE);
+      int refillThreshold =
+          cfg.getInt(SECTION_NOTE_DB, NAME_CHANGES, KEY_SEQUENCE_REFILL_THRESHOLD, 0);
+      if (refillThreshold <= 0) {
+        return new RepoSequence(
+            repoManager, gitReferenceUpdated, allProjects, NAME_CHANGES, changeBatchSize);
+      }
+      Executor refillExecutor = workQueue.createQueue(1, "ChangeSequenceRefill");
       return new RepoSequence(
-          repoManager, gitReferenceUpdated, allProjects, NAME_CHANGES, changeBatchSize);
+          repoManager,
+          gitReferenceUpdated,
+          allProjects,
+          NAME_CHANGES,
+          changeBatchSize,
+          Runnables.doNothing(),
+          RETRYER,
+          new Refill(SequenceType.CHANGES, refillThreshold, refillExecutor, metrics));
     }
   }
 
@@ -183,6 +213,56 @@ public class RepoSequence implements Sequence {
 
   private static final Retryer<ImmutableList<Integer>> RETRYER = retryerBuilder().build();
 
+  /** Range of sequence numbers that were acquired from NoteDb and can be handed out. */
+  private static class Lease {
+    static final Lease EMPTY = new Lease(0, 0);
+
+    private final AtomicInteger next;
+    private final int limit;
+
+    Lease(int next, int limit) {
+      this.next = new AtomicInteger(next);
+      this.limit = limit;
+    }
+
+    /** Returns the next number of this lease, or -1 if the lease is exhausted. */
+    int take() {
+      while (true) {
+        int n = next.get();
+        if (n >= limit) {
+          return -1;
+        }
+        if (next.compareAndSet(n, n + 1)) {
+          return n;
+        }
+      }
+    }
+
+    int remaining() {
+      return Math.max(0, limit - next.get());
+    }
+  }
+
+  /** Settings for acquiring the next lease in the background. */
+  @VisibleForTesting
+  static class Refill {
+    final SequenceType sequenceType;
+    final int threshold;
+    final Executor executor;
+    final RepoSequenceMetrics metrics;
+
+    Refill(
+        SequenceType sequenceType,
+        int threshold,
+        Executor executor,
+        RepoSequenceMetrics metrics) {
+      this.sequenceType = sequenceType;
+      this.threshold = threshold;
+      this.executor = executor;
+      this.metrics = metrics;
+    }
+  }
+
   private final GitRepositoryManager repoManager;
   private final GitReferenceUpdated gitRefUpdated;
   private final Project.NameKey projectName;
@@ -191,12 +271,15 @@ public class RepoSequence implements Sequence {
   private final int batchSize;
   private final Runnable afterReadRef;
   private final Retryer<ImmutableList<Integer>> retryer;
+  @Nullable private final Refill refill;
+  private final AtomicBoolean refillScheduled = new AtomicBoolean();
 
-  // Protects all non-final fields.
+  // Protects replacing the leases and acquiring new sequence numbers from NoteDb. Numbers of the
+  // current lease may be taken without holding the lock.
   private final Lock counterLock;
 
-  private int limit;
-  private int counter;
+  private volatile Lease lease = Lease.EMPTY;
+  private Lease nextLease;
   private volatile Integer lastStoredSequence;
 
   @VisibleForTesting int acquireCount;
@@ -215,6 +298,7 @@ public class RepoSequence implements Sequence {
         batchSize,
         Runnables.doNothing(),
         RETRYER,
+        null,
         0);
   }
 
@@ -227,7 +311,21 @@ public class RepoSequence implements Sequence {
       int batchSize,
       Runnable afterReadRef,
       Retryer<ImmutableList<Integer>> retryer) {
-    this(repoManager, gitRefUpdated, projectName, name, batchSize, afterReadRef, retryer, 0);
+    this(repoManager, gitRefUpdated, projectName, name, batchSize, afterReadRef, retryer, null, 0);
+  }
+
+  @VisibleForTesting
+  RepoSequence(
+      GitRepositoryManager repoManager,
+      GitReferenceUpdated gitRefUpdated,
+      Project.NameKey projectName,
+      String name,
+      int batchSize,
+      Runnable afterReadRef,
+      Retryer<ImmutableList<Integer>> retryer,
+      Refill refill) {
+    this(
+        repoManager, gitRefUpdated, projectName, name, batchSize, afterReadRef, retryer, refill, 0);
   }
 
   private RepoSequence(
@@ -238,6 +336,7 @@ public class RepoSequence implements Sequence {
       int batchSize,
       Runnable afterReadRef,
       Retryer<ImmutableList<Integer>> retryer,
+      @Nullable Refill refill,
       int floor) {
     this.repoManager = requireNonNull(repoManager, "repoManager");
     this.gitRefUpdated = requireNonNull(gitRefUpdated, "gitRefUpdated");
@@ -257,6 +356,7 @@ public class RepoSequence implements Sequence {
     this.batchSize = batchSize;
     this.afterReadRef = requireNonNull(afterReadRef, "afterReadRef");
     this.retryer = requireNonNull(retryer, "retryer");
+    this.refill = refill;
 
     logger.atFine().log("sequence batch size for %s is %s", name, batchSize);
     counterLock = new ReentrantLock(true);
@@ -289,34 +389,48 @@ public class RepoSequence implements Sequence {
     }
     checkArgument(count > 0, "count is negative: %s", count);
 
+    if (count == 1) {
+      Lease current = lease;
+      int id = current.take();
+      if (id >= 0) {
+        maybeRefill(current);
+        return ImmutableList.of(id);
+      }
+    }
+
+    AtomicBoolean waited = new AtomicBoolean();
     try {
-      return retryer.call(
-          () -> {
-            counterLock.lock();
-            try {
-              if (count == 1) {
-                if (counter >= limit) {
-                  acquire(batchSize);
-                }
-                return ImmutableList.of(counter++);
-              }
-
-              List<Integer> ids = new ArrayList<>(count);
-              while (counter < limit) {
-                ids.add(counter++);
-                if (ids.size() == count) {
-                  return ImmutableList.copyOf(ids);
+      ImmutableList<Integer> ids =
+          retryer.call(
+              () -> {
+                counterLock.lock();
+                try {
+                  List<Integer> result = new ArrayList<>(count);
+                  takeAll(lease, result, count);
+                  if (result.size() < count && nextLease != null) {
+                    takeAll(nextLease, result, count);
+                    lease = nextLease;
+                    nextLease = null;
+                  }
+                  if (result.size() < count) {
+                    waited.set(true);
+                    // Take the numbers before publishing the lease, so that concurrent callers
+                    // can't take them away.
+                    Lease acquired = acquire(Math.max(count - result.size(), batchSize));
+                    takeAll(acquired, result, count);
+                    lease = acquired;
+                  }
+                  return ImmutableList.copyOf(result);
+                } finally {
+                  counterLock.unlock();
                 }
-              }
-              acquire(Math.max(count - ids.size(), batchSize));
-              while (ids.size() < count) {
-                ids.add(counter++);
-              }
-              return ImmutableList.copyOf(ids);
-            } finally {
-              counterLock.unlock();
-            }
-          });
+              });
+      if (refill != null && waited.get()) {
+        // Counted once per call, not once per attempt of the retryer.
+        refill.metrics.waitCount.increment(refill.sequenceType);
+      }
+      maybeRefill(lease);
+      return ids;
     } catch (ExecutionException | RetryException e) {
       if (e.getCause() != null) {
         if (Throwables.getRootCause(e) instanceof NonIncrementingSequenceException) {
@@ -330,18 +444,71 @@ public class RepoSequence implements Sequence {
     }
   }
 
+  private static void takeAll(Lease from, List<Integer> ids, int count) {
+    while (ids.size() < count) {
+      int id = from.take();
+      if (id < 0) {
+        return;
+      }
+      ids.add(id);
+    }
+  }
+
+  /**
+   * Acquires the next lease in the background if only few sequence numbers are left in the given
+   * lease.
+   */
+  private void maybeRefill(Lease current) {
+    if (refill == null
+        || current.remaining() > refill.threshold
+        || !refillScheduled.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      refill.executor.execute(this::refill);
+    } catch (RuntimeException e) {
+      refillScheduled.set(false);
+      logger.atWarning().withCause(e).log("Failed to schedule refill of %s", refName);
+    }
+  }
+
+  private void refill() {
+    try (Timer1.Context<SequenceType> ignored =
+        refill.metrics.refillLatency.start(refill.sequenceType)) {
+      @SuppressWarnings("unused")
+      var unused =
+          retryer.call(
+              () -> {
+                counterLock.lock();
+                try {
+                  if (nextLease == null && lease.remaining() <= refill.threshold) {
+                    nextLease = acquire(batchSize);
+                  }
+                  return ImmutableList.of();
+                } finally {
+                  counterLock.unlock();
+                }
+              });
+    } catch (ExecutionException | RetryException | RuntimeException e) {
+      // Not fatal, the next caller that runs out of numbers acquires them synchronously.
+      logger.atWarning().withCause(e).log("Failed to acquire next batch of %s", refName);
+    } finally {
+      refillScheduled.set(false);
+    }
+  }
+
   /**
    * Updates the next available sequence number in NoteDb in order to have a batch of sequence
-   * numbers available that can be handed out. {@link #counter} stores the next sequence number that
-   * can be handed out. When {@link #limit} is reached a new batch of sequence numbers needs to be
-   * retrieved by calling this method.
+   * numbers available that can be handed out. When the {@link #lease} is exhausted a new batch of
+   * sequence numbers needs to be retrieved by calling this method.
    *
    * <p><strong>Note:</strong> Callers are required to acquire the {@link #counterLock} before
    * calling this method.
    *
    * @param count the number of sequence numbers which should be retrieved
+   * @return the lease with the acquired sequence numbers
    */
-  private void acquire(int count) {
+  private Lease acquire(int count) {
     try (RefUpdateContext ctx = RefUpdateContext.open(REPO_SEQ)) {
       try (Repository repo = repoManager.openRepository(projectName);
           RevWalk rw = new RevWalk(repo)) {
@@ -362,9 +529,8 @@ public class RepoSequence implements Sequence {
         checkIsIncremental(next + count);
         store(repo, rw, oldId, next + count);
 
-        counter = next;
-        limit = counter + count;
         acquireCount++;
+        return new Lease(next, next + count);
       } catch (IOException | NonIncrementingSequenceException e) {
         throw new StorageException(e);
       }
@@ -389,8 +555,8 @@ public class RepoSequence implements Sequence {
 
         store(repo, rw, oldId, value + batchSize);
 
-        counter = value;
-        limit = counter + batchSize;
+        lease = new Lease(value, value + batchSize);
+        nextLease = null;
         acquireCount++;
       } catch (IOException e) {
         throw new StorageException(e);
@@ -426,11 +592,11 @@ public class RepoSequence implements Sequence {
    */
   @Override
   public int last() {
-    if (counter == 0) {
+    if (lease == Lease.EMPTY) {
       @SuppressWarnings("unused")
       var unused = next();
     }
-    return counter - 1;
+    return lease.next.get() - 1;
   }
 
   @VisibleForTesting
@@ -0,0 +1,62 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.notedb;
+
+import com.google.gerrit.metrics.Counter1;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer1;
+import com.google.gerrit.server.Sequence.SequenceType;
+import com.google.gerrit.server.logging.Metadata;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/** Metrics for refilling {@link RepoSequence}s in the background. */
+@Singleton
+class RepoSequenceMetrics {
+  /** Latency of acquiring the next batch of IDs in the background. */
+  final Timer1<SequenceType> refillLatency;
+
+  /** Number of requests that had to wait for the next batch of IDs to be acquired. */
+  final Counter1<SequenceType> waitCount;
+
+  @Inject
+  RepoSequenceMetrics(MetricMaker metricMaker) {
+    Field<SequenceType> sequenceField =
+        Field.ofEnum(SequenceType.class, "sequence", Metadata.Builder::noteDbSequenceType)
+            .description("The sequence for which IDs were acquired.")
+            .build();
+
+    refillLatency =
+        metricMaker.newTimer(
+            "sequence/refill_latency",
+            new Description("Latency of acquiring the next batch of IDs in the background")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            sequenceField);
+
+    waitCount =
+        metricMaker.newCounter(
+            "sequence/refill_wait_count",
+            new Description(
+                    "Total number of ID requests that had to wait for the next batch of IDs to be"
+                        + " acquired.")
+                .setRate()
+                .setUnit("requests"),
+            sequenceField);
+  }
+}
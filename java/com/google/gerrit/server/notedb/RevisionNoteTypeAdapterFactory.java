@@ -0,0 +1,310 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.notedb;
+
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.Comment;
+import com.google.gerrit.entities.FixSuggestion;
+import com.google.gerrit.entities.HumanComment;
+import com.google.gerrit.entities.SubmitRequirementResult;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Streaming adapters for reading {@link ChangeRevisionNoteData} and {@link HumanComment}s.
+ *
+ * <p>Revision notes of changes with many comments are dominated by the cost of deserializing the
+ * comments. The reflective adapters of Gson set every field via reflection; these adapters read the
+ * JSON tokens directly into the target objects instead.
+ *
+ * <p>The adapters read exactly the format written by the reflective adapters: unknown fields are
+ * skipped, missing fields and fields with {@code null} values keep their default values. Writing is
+ * delegated to the reflective adapters so that the stored format doesn't change.
+ */
+class RevisionNoteTypeAdapterFactory implements TypeAdapterFactory {
+  private static final TypeToken<List<FixSuggestion>> FIX_SUGGESTIONS_TYPE =
+      new TypeToken<List<FixSuggestion>>() {};
+  private static final TypeToken<List<SubmitRequirementResult>> SUBMIT_REQUIREMENT_RESULTS_TYPE =
+      new TypeToken<List<SubmitRequirementResult>>() {};
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+    if (type.getRawType() == HumanComment.class) {
+      return (TypeAdapter<T>)
+          new HumanCommentAdapter(
+              gson.getDelegateAdapter(this, TypeToken.get(HumanComment.class)),
+              gson.getAdapter(Timestamp.class),
+              gson.getAdapter(FIX_SUGGESTIONS_TYPE));
+    }
+    if (type.getRawType() == ChangeRevisionNoteData.class) {
+      return (TypeAdapter<T>)
+          new ChangeRevisionNoteDataAdapter(
+              gson.getDelegateAdapter(this, TypeToken.get(ChangeRevisionNoteData.class)),
+              gson.getAdapter(HumanComment.class),
+              gson.getAdapter(SUBMIT_REQUIREMENT_RESULTS_TYPE));
+    }
+    return null;
+  }
+
+  static class ChangeRevisionNoteDataAdapter extends TypeAdapter<ChangeRevisionNoteData> {
+    private final TypeAdapter<ChangeRevisionNoteData> delegate;
+    private final TypeAdapter<HumanComment> commentAdapter;
+    private final TypeAdapter<List<SubmitRequirementResult>> submitRequirementResultsAdapter;
+
+    ChangeRevisionNoteDataAdapter(
+        TypeAdapter<ChangeRevisionNoteData> delegate,
+        TypeAdapter<HumanComment> commentAdapter,
+        TypeAdapter<List<SubmitRequirementResult>> submitRequirementResultsAdapter) {
+      this.delegate = delegate;
+      this.commentAdapter = commentAdapter;
+      this.submitRequirementResultsAdapter = submitRequirementResultsAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, ChangeRevisionNoteData value) throws IOException {
+      delegate.write(out, value);
+    }
+
+    @Override
+    public ChangeRevisionNoteData read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      ChangeRevisionNoteData data = new ChangeRevisionNoteData();
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (in.peek() == JsonToken.NULL) {
+          in.nextNull();
+          continue;
+        }
+        switch (name) {
+          case "pushCert":
+            data.pushCert = in.nextString();
+            break;
+          case "comments":
+            data.comments = readComments(in);
+            break;
+          case "submitRequirementResults":
+            data.submitRequirementResults = submitRequirementResultsAdapter.read(in);
+            break;
+          default:
+            in.skipValue();
+            break;
+        }
+      }
+      in.endObject();
+      return data;
+    }
+
+    private List<HumanComment> readComments(JsonReader in) throws IOException {
+      List<HumanComment> comments = new ArrayList<>();
+      in.beginArray();
+      while (in.hasNext()) {
+        comments.add(commentAdapter.read(in));
+      }
+      in.endArray();
+      return comments;
+    }
+  }
+
+  static class HumanCommentAdapter extends TypeAdapter<HumanComment> {
+    private final TypeAdapter<HumanComment> delegate;
+    private final TypeAdapter<Timestamp> timestampAdapter;
+    private final TypeAdapter<List<FixSuggestion>> fixSuggestionsAdapter;
+
+    HumanCommentAdapter(
+        TypeAdapter<HumanComment> delegate,
+        TypeAdapter<Timestamp> timestampAdapter,
+        TypeAdapter<List<FixSuggestion>> fixSuggestionsAdapter) {
+      this.delegate = delegate;
+      this.timestampAdapter = timestampAdapter;
+      this.fixSuggestionsAdapter = fixSuggestionsAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, HumanComment value) throws IOException {
+      delegate.write(out, value);
+    }
+
+    @Override
+    public HumanComment read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      // Placeholder values, all fields are overwritten below to match the result of the reflective
+      // adapter, which doesn't invoke any constructor.
+      HumanComment c =
+          new HumanComment(null, Account.id(0), Instant.EPOCH, (short) 0, null, null, false);
+      c.author = null;
+      c.realAuthor = null;
+      c.writtenOn = null;
+
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (in.peek() == JsonToken.NULL) {
+          in.nextNull();
+          continue;
+        }
+        switch (name) {
+          case "unresolved":
+            c.unresolved = in.nextBoolean();
+            break;
+          case "key":
+            c.key = readKey(in);
+            break;
+          case "lineNbr":
+            c.lineNbr = in.nextInt();
+            break;
+          case "author":
+            c.author = readIdentity(in);
+            break;
+          case "realAuthor":
+            c.realAuthor = readIdentity(in);
+            break;
+          case "writtenOn":
+            c.writtenOn = timestampAdapter.read(in);
+            break;
+          case "side":
+            c.side = (short) in.nextInt();
+            break;
+          case "message":
+            c.message = in.nextString();
+            break;
+          case "parentUuid":
+            c.parentUuid = in.nextString();
+            break;
+          case "range":
+            c.range = readRange(in);
+            break;
+          case "tag":
+            c.tag = in.nextString();
+            break;
+          case "isAi":
+            c.isAi = in.nextBoolean();
+            break;
+          case "fixSuggestions":
+            c.fixSuggestions = fixSuggestionsAdapter.read(in);
+            break;
+          case "revId":
+            c.setCommitId(ObjectId.fromString(in.nextString()));
+            break;
+          case "serverId":
+            c.serverId = in.nextString();
+            break;
+          default:
+            in.skipValue();
+            break;
+        }
+      }
+      in.endObject();
+      return c;
+    }
+
+    private static Comment.Key readKey(JsonReader in) throws IOException {
+      String uuid = null;
+      String filename = null;
+      int patchSetId = 0;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (in.peek() == JsonToken.NULL) {
+          in.nextNull();
+          continue;
+        }
+        switch (name) {
+          case "uuid":
+            uuid = in.nextString();
+            break;
+          case "filename":
+            filename = in.nextString();
+            break;
+          case "patchSetId":
+            patchSetId = in.nextInt();
+            break;
+          default:
+            in.skipValue();
+            break;
+        }
+      }
+      in.endObject();
+      return new Comment.Key(uuid, filename, patchSetId);
+    }
+
+    private static Comment.Identity readIdentity(JsonReader in) throws IOException {
+      int id = 0;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (name.equals("id") && in.peek() != JsonToken.NULL) {
+          id = in.nextInt();
+        } else {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      return new Comment.Identity(Account.id(id));
+    }
+
+    private static Comment.Range readRange(JsonReader in) throws IOException {
+      int startLine = 0;
+      int startChar = 0;
+      int endLine = 0;
+      int endChar = 0;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (in.peek() == JsonToken.NULL) {
+          in.nextNull();
+          continue;
+        }
+        switch (name) {
+          case "startLine":
+            startLine = in.nextInt();
+            break;
+          case "startChar":
+            startChar = in.nextInt();
+            break;
+          case "endLine":
+            endLine = in.nextInt();
+            break;
+          case "endChar":
+            endChar = in.nextInt();
+            break;
+          default:
+            in.skipValue();
+            break;
+        }
+      }
+      in.endObject();
+      return new Comment.Range(startLine, startChar, endLine, endChar);
+    }
+  }
+}
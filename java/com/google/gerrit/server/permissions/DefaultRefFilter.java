@@ -26,6 +26,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.entities.BranchNameKey;
 import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.RefNames;
@@ -49,17 +50,28 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.eclipse.jgit.lib.Config;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
 import org.eclipse.jgit.lib.Repository;
 
 public class DefaultRefFilter {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
+  /** Prefixes of refs that are never starting points for the reachability check of tags. */
+  private static final ImmutableSet<String> NON_TAGGABLE_REF_PREFIXES =
+      ImmutableSet.<String>builder()
+          .addAll(RefNames.GERRIT_REFS)
+          .add(RefNames.REFS_TAGS)
+          .build();
+
   public interface Factory {
     DefaultRefFilter create(ProjectControl projectControl);
   }
@@ -88,6 +100,7 @@ public class DefaultRefFilter {
   private final TagCache tagCache;
   private final PermissionBackend permissionBackend;
   private final RefVisibilityControl refVisibilityControl;
+  private final RefVisibilityCache refVisibilityCache;
   private final ProjectControl projectControl;
   private final CurrentUser user;
   private final ProjectState projectState;
@@ -102,6 +115,7 @@ public class DefaultRefFilter {
       TagCache tagCache,
       PermissionBackend permissionBackend,
       RefVisibilityControl refVisibilityControl,
+      RefVisibilityCache refVisibilityCache,
       @GerritServerConfig Config config,
       Metrics metrics,
       ChangesByProjectCache changesByProjectCache,
@@ -110,6 +124,7 @@ public class DefaultRefFilter {
     this.tagCache = tagCache;
     this.permissionBackend = permissionBackend;
     this.refVisibilityControl = refVisibilityControl;
+    this.refVisibilityCache = refVisibilityCache;
     this.changesByProjectCache = changesByProjectCache;
     this.changeDataFactory = changeDataFactory;
     this.skipFullRefEvaluationIfAllRefsAreVisible =
@@ -225,6 +240,11 @@ public class DefaultRefFilter {
     logger.atFine().log("Performing visibility check for all refs. This can be expensive.");
     metrics.fullFilterCount.increment();
 
+    Optional<RefVisibilityCache.Key> cacheKey = projectControl.refVisibilityCacheKey();
+    ConcurrentMap<String, Boolean> cachedVisibility =
+        cacheKey.map(refVisibilityCache::get).orElse(null);
+    int cachedRefs = cachedVisibility != null ? cachedVisibility.size() : 0;
+
     boolean hasAccessDatabase =
         permissionBackend
             .exactUser(projectControl.getUser())
@@ -274,25 +294,49 @@ public class DefaultRefFilter {
           // Change is visible
           resultRefs.add(ref);
         }
-      } else if (refVisibilityControl.isVisible(projectControl, ref.getLeaf().getName())) {
+      } else if (isVisible(ref.getLeaf().getName(), cachedVisibility)) {
         resultRefs.add(ref);
       }
     }
+    if (cachedVisibility != null && cachedVisibility.size() != cachedRefs) {
+      refVisibilityCache.put(cacheKey.get(), cachedVisibility);
+    }
     Result result = new AutoValue_DefaultRefFilter_Result(resultRefs.build(), deferredTags.build());
     logger.atFinest().log("Result of ref filtering = %s", result);
     return result;
   }
 
+  /**
+   * Checks the visibility of a ref with {@link RefVisibilityControl}, using the visibility that was
+   * computed for users with the same permissions if the ref is cacheable.
+   */
+  private boolean isVisible(String refName, @Nullable Map<String, Boolean> cachedVisibility)
+      throws PermissionBackendException {
+    if (cachedVisibility == null || !RefVisibilityCache.isCacheable(refName)) {
+      return refVisibilityControl.isVisible(projectControl, refName);
+    }
+    Boolean visible = refVisibilityCache.isVisible(cachedVisibility, refName);
+    if (visible == null) {
+      visible = refVisibilityControl.isVisible(projectControl, refName);
+      cachedVisibility.put(refName, visible);
+    }
+    return visible;
+  }
+
   /**
    * Returns all refs tag we regard as starting points for reachability computation for tags. In
    * general, these are all refs not managed by Gerrit excluding symbolic refs and tags.
    *
    * <p>We exclude symbolic refs because their target will be included and this will suffice for
    * computing reachability.
+   *
+   * <p>Gerrit refs are excluded when reading the refs, so that the many change refs are not read.
    */
   private static List<Ref> getTaggableRefs(Repository repo) throws PermissionBackendException {
     try {
-      List<Ref> allRefs = repo.getRefDatabase().getRefs();
+      List<Ref> allRefs =
+          repo.getRefDatabase()
+              .getRefsByPrefixWithExclusions(RefDatabase.ALL, NON_TAGGABLE_REF_PREFIXES);
       return allRefs.stream()
           .filter(
               r ->
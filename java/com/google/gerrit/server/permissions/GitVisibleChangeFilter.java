@@ -14,6 +14,9 @@
 
 package com.google.gerrit.server.permissions;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
@@ -23,6 +26,7 @@ import com.google.gerrit.server.git.ChangesByProjectCache;
 import com.google.gerrit.server.query.change.ChangeData;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Stream;
@@ -72,9 +76,33 @@ public class GitVisibleChangeFilter {
         logger.atWarning().withCause(e).log("Unable to streamChangeDatas for %s", projectName);
       }
     }
+    ImmutableList<ChangeData> candidates =
+        changeDatas.filter(cd -> changes.contains(cd.getId())).collect(toImmutableList());
     HashMap<Change.Id, ChangeData> result = new HashMap<>();
-    changeDatas
-        .filter(cd -> changes.contains(cd.getId()))
+    for (ChangeData cd : filterReadable(forProject, candidates)) {
+      if (result.containsKey(cd.getId())) {
+        logger.atWarning().log(
+            "Duplicate change datas for the repo %s: [%s, %s]",
+            projectName, cd, result.get(cd.getId()));
+      }
+      result.put(cd.getId(), cd);
+    }
+    return ImmutableMap.copyOf(result);
+  }
+
+  /** Returns the changes that are readable, checking all changes in one batch if possible. */
+  private static List<ChangeData> filterReadable(
+      PermissionBackend.ForProject forProject, List<ChangeData> changes) {
+    try {
+      return forProject.filterChanges(ChangePermission.READ, changes);
+    } catch (PermissionBackendException e) {
+      // A single change that cannot be checked fails the whole batch. Check the changes one by one
+      // so that only the changes that cannot be checked are pretended to be invisible.
+      logger.atWarning().withCause(e).log(
+          "Cannot test read permission for a batch of %d changes; checking them one by one",
+          changes.size());
+    }
+    return changes.stream()
         .filter(
             cd -> {
               try {
@@ -87,16 +115,7 @@ public class GitVisibleChangeFilter {
                 return false;
               }
             })
-        .forEach(
-            cd -> {
-              if (result.containsKey(cd.getId())) {
-                logger.atWarning().log(
-                    "Duplicate change datas for the repo %s: [%s, %s]",
-                    projectName, cd, result.get(cd.getId()));
-              }
-              result.put(cd.getId(), cd);
-            });
-    return ImmutableMap.copyOf(result);
+        .collect(toImmutableList());
   }
 
   /** Get a stream of changes by loading them individually. */
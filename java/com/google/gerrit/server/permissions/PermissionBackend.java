@@ -38,6 +38,7 @@ import com.google.gerrit.server.IdentifiedUser.ImpersonationPermissionMode;
 import com.google.gerrit.server.notedb.ChangeNotes;
 import com.google.gerrit.server.query.change.ChangeData;
 import com.google.inject.ImplementedBy;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -365,6 +366,31 @@ public abstract class PermissionBackend {
     public abstract Collection<Ref> filter(
         Collection<Ref> refs, Repository repo, RefFilterOptions opts)
         throws PermissionBackendException;
+
+    /**
+     * Filter a collection of changes of this project to the changes on which the scoped user has
+     * {@code perm}.
+     *
+     * <p>Backends should override this method if they can check many changes faster than one by
+     * one.
+     *
+     * @param perm required permission on a change to be included in the result.
+     * @param changes candidate changes of this project; may be empty.
+     * @return the changes of {@code changes} for which {@code change(cd).test(perm)} is true, in
+     *     the order of {@code changes}.
+     * @throws PermissionBackendException backend cannot access its internal state.
+     */
+    public List<ChangeData> filterChanges(ChangePermission perm, Collection<ChangeData> changes)
+        throws PermissionBackendException {
+      requireNonNull(perm, "ChangePermission");
+      List<ChangeData> allowed = new ArrayList<>(changes.size());
+      for (ChangeData cd : changes) {
+        if (change(cd).test(perm)) {
+          allowed.add(cd);
+        }
+      }
+      return allowed;
+    }
   }
 
   /** Options for filtering refs using {@link ForProject}. */
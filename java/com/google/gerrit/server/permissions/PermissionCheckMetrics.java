@@ -0,0 +1,50 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.permissions;
+
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Histogram0;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/** Metrics for permission checks of batches of changes. */
+@Singleton
+class PermissionCheckMetrics {
+  private final Timer0 batchLatency;
+  private final Histogram0 batchSize;
+
+  @Inject
+  PermissionCheckMetrics(MetricMaker metricMaker) {
+    batchLatency =
+        metricMaker.newTimer(
+            "permissions/batch_check/latency",
+            new Description("Latency of checking the permissions of a batch of changes")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    batchSize =
+        metricMaker.newHistogram(
+            "permissions/batch_check/size",
+            new Description("Number of changes checked in a batch").setCumulative());
+  }
+
+  /** Records the size of a batch and starts timing it. */
+  Timer0.Context startBatch(int size) {
+    batchSize.record(size);
+    return batchLatency.start();
+  }
+}
@@ -20,6 +20,8 @@ import static com.google.gerrit.entities.AccessSection.REGEX_PREFIX;
 import static com.google.gerrit.entities.RefNames.REFS_TAGS;
 import static com.google.gerrit.server.util.MagicBranch.NEW_CHANGE;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.common.UsedAt;
@@ -36,6 +38,7 @@ import com.google.gerrit.extensions.api.access.CoreOrPluginProjectPermission;
 import com.google.gerrit.extensions.api.access.PluginProjectPermission;
 import com.google.gerrit.extensions.conditions.BooleanCondition;
 import com.google.gerrit.extensions.restapi.AuthException;
+import com.google.gerrit.metrics.Timer0;
 import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.account.GroupMembership;
 import com.google.gerrit.server.config.AllUsersName;
@@ -55,17 +58,21 @@ import com.google.gerrit.server.permissions.PermissionBackend.ForRef;
 import com.google.gerrit.server.permissions.PermissionBackend.RefFilterOptions;
 import com.google.gerrit.server.project.ProjectState;
 import com.google.gerrit.server.project.SectionMatcher;
+import com.google.gerrit.server.project.SectionTrie;
 import com.google.gerrit.server.query.change.ChangeData;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 
@@ -85,8 +92,10 @@ public class ProjectControl {
   private final AllUsersName allUsersName;
   private final RefControl.Factory refControlFactory;
   private final ChangeControl.Factory changeControlFactory;
+  private final PermissionCheckMetrics checkMetrics;
 
   private List<SectionMatcher> allSections;
+  private SectionTrie compiledSections;
   private Map<String, RefControl> refControls;
   private Boolean declaredOwner;
   private Config cfg;
@@ -102,6 +111,7 @@ public class ProjectControl {
       @GerritServerConfig Config cfg,
       RefControl.Factory refControlFactory,
       ChangeControl.Factory changeControlFactory,
+      PermissionCheckMetrics checkMetrics,
       @Assisted CurrentUser who,
       @Assisted ProjectState ps) {
     this.uploadGroups = uploadGroups;
@@ -113,6 +123,7 @@ public class ProjectControl {
     this.cfg = cfg;
     this.refControlFactory = refControlFactory;
     this.changeControlFactory = changeControlFactory;
+    this.checkMetrics = checkMetrics;
     user = who;
     state = ps;
   }
@@ -140,7 +151,7 @@ public class ProjectControl {
     }
     RefControl ctl = refControls.get(refName);
     if (ctl == null) {
-      PermissionCollection relevant = permissionFilter.filter(access(), refName, user);
+      PermissionCollection relevant = permissionFilter.filter(compiledAccess(), refName, user);
       ctl = refControlFactory.create(this, refName, relevant);
       refControls.put(refName, ctl);
     }
@@ -174,6 +185,40 @@ public class ProjectControl {
         || isOwner();
   }
 
+  /**
+   * Returns the key under which the visibility of refs that are not managed by Gerrit is cached for
+   * this user, or empty if it must not be cached.
+   */
+  Optional<RefVisibilityCache.Key> refVisibilityCacheKey() {
+    if (user.isInternalUser()) {
+      return Optional.empty();
+    }
+    ImmutableList.Builder<ObjectId> configRevisions = ImmutableList.builder();
+    for (ProjectState p : state.tree()) {
+      configRevisions.add(p.getConfig().getRevision().orElse(ObjectId.zeroId()));
+    }
+    ImmutableSet.Builder<AccountGroup.UUID> groups = ImmutableSet.builder();
+    boolean userSpecific = false;
+    for (SectionMatcher matcher : access()) {
+      AccessSection section = matcher.getSection();
+      userSpecific |= section.getName().contains("${");
+      for (Permission permission : section.getPermissions()) {
+        for (PermissionRule rule : permission.getRules()) {
+          if (match(rule)) {
+            groups.add(rule.getGroup().getUUID());
+          }
+        }
+      }
+    }
+    return Optional.of(
+        RefVisibilityCache.Key.create(
+            getProject().getNameKey(),
+            configRevisions.build(),
+            groups.build(),
+            isAdmin(),
+            userSpecific && user.isIdentifiedUser() ? user.getAccountId() : null));
+  }
+
   boolean isAdmin() {
     try {
       return permissionBackend.exactUser(user).test(GlobalPermission.ADMINISTRATE_SERVER);
@@ -357,6 +402,13 @@ public class ProjectControl {
     return allSections;
   }
 
+  private SectionTrie compiledAccess() {
+    if (compiledSections == null) {
+      compiledSections = state.getAllSectionsTrie();
+    }
+    return compiledSections;
+  }
+
   private boolean match(PermissionRule rule) {
     return match(rule.getGroup().getUUID());
   }
@@ -462,6 +514,48 @@ public class ProjectControl {
       return refFilterFactory.create(ProjectControl.this).filter(refs, repo, opts);
     }
 
+    @Override
+    public List<ChangeData> filterChanges(ChangePermission perm, Collection<ChangeData> changes)
+        throws PermissionBackendException {
+      try (Timer0.Context ignored = checkMetrics.startBatch(changes.size())) {
+        return filterChangesInBatch(perm, changes);
+      }
+    }
+
+    private List<ChangeData> filterChangesInBatch(
+        ChangePermission perm, Collection<ChangeData> changes) throws PermissionBackendException {
+      List<ChangeData> allowed = new ArrayList<>(changes.size());
+      // Whether a change can be read only depends on its destination branch, unless it is private.
+      // Check READ once per branch and load the change controls only for private changes.
+      Map<BranchNameKey, Boolean> readableBranches = new HashMap<>();
+      for (ChangeData cd : changes) {
+        checkProject(cd);
+        try {
+          RefControl refControl = controlForRef(cd.branchOrThrow());
+          if (perm == ChangePermission.READ) {
+            Boolean readable = readableBranches.get(cd.branchOrThrow());
+            if (readable == null) {
+              readable = refControl.asForRef().testOrFalse(RefPermission.READ);
+              readableBranches.put(cd.branchOrThrow(), readable);
+            }
+            if (!readable) {
+              continue;
+            }
+            if (!cd.isPrivateOrThrow()) {
+              allowed.add(cd);
+              continue;
+            }
+          }
+          if (changeControlFactory.create(ProjectControl.this, refControl, cd).can(perm)) {
+            allowed.add(cd);
+          }
+        } catch (StorageException e) {
+          throw new PermissionBackendException("unavailable", e);
+        }
+      }
+      return allowed;
+    }
+
     private boolean can(CoreOrPluginProjectPermission perm) throws PermissionBackendException {
       if (perm instanceof ProjectPermission) {
         return can((ProjectPermission) perm);
@@ -0,0 +1,191 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.permissions;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.AccountGroup;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
+import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+import com.google.inject.name.Named;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Caches the visibility of refs that are not managed by Gerrit (e.g. branches) for users that share
+ * the same permissions on a project.
+ *
+ * <p>The visibility of such a ref only depends on its name, on the access sections of the project
+ * and its parents, and on which of the groups that are used in these access sections the user is a
+ * member of. {@link DefaultRefFilter} uses these as {@link Key}, so that the permissions of a ref
+ * are evaluated once per set of users with the same permissions rather than once per request.
+ * Since the ref values don't matter, the cached visibility doesn't need to be recomputed when refs
+ * are updated: refs that are created are evaluated on first use and refs that are deleted are
+ * dropped on the {@link GitReferenceUpdatedListener} event. Any change of the permissions changes
+ * the revisions of the project configs, and hence the key.
+ *
+ * <p>Change refs and other Gerrit refs are never cached, their visibility depends on the user.
+ */
+@Singleton
+public class RefVisibilityCache implements GitReferenceUpdatedListener {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final String CACHE_NAME = "ref_visibility";
+
+  public static Module module() {
+    return new CacheModule() {
+      @Override
+      protected void configure() {
+        cache(CACHE_NAME, Key.class, new TypeLiteral<ConcurrentMap<String, Boolean>>() {})
+            .weigher(Weigher.class)
+            .maximumWeight(1 << 18);
+        bind(RefVisibilityCache.class);
+        DynamicSet.bind(binder(), GitReferenceUpdatedListener.class).to(RefVisibilityCache.class);
+      }
+    };
+  }
+
+  @AutoValue
+  abstract static class Key {
+    static Key create(
+        Project.NameKey project,
+        ImmutableList<ObjectId> configRevisions,
+        ImmutableSet<AccountGroup.UUID> groups,
+        boolean admin,
+        @Nullable Account.Id user) {
+      return new AutoValue_RefVisibilityCache_Key(project, configRevisions, groups, admin, user);
+    }
+
+    abstract Project.NameKey project();
+
+    /** Revisions of the configs of the project and all its parents. */
+    abstract ImmutableList<ObjectId> configRevisions();
+
+    /** Groups used in the access sections of the project that the user is a member of. */
+    abstract ImmutableSet<AccountGroup.UUID> groups();
+
+    abstract boolean admin();
+
+    /** The user, only set if an access section uses a parameterized ref pattern. */
+    @Nullable
+    abstract Account.Id user();
+  }
+
+  /** Weighs an entry by the number of refs whose visibility it holds. */
+  static class Weigher
+      implements com.google.common.cache.Weigher<Key, ConcurrentMap<String, Boolean>> {
+    @Override
+    public int weigh(Key key, ConcurrentMap<String, Boolean> visibility) {
+      return 1 + visibility.size();
+    }
+  }
+
+  /** Whether the visibility of the given ref can be cached. */
+  static boolean isCacheable(String refName) {
+    return !RefNames.isGerritRef(refName) && !refName.startsWith(RefNames.REFS_TAGS);
+  }
+
+  private final Cache<Key, ConcurrentMap<String, Boolean>> cache;
+  private final Counter0 hitCount;
+  private final Counter0 missCount;
+
+  @Inject
+  RefVisibilityCache(
+      @Named(CACHE_NAME) Cache<Key, ConcurrentMap<String, Boolean>> cache,
+      MetricMaker metricMaker) {
+    this.cache = cache;
+    this.hitCount =
+        metricMaker.newCounter(
+            "permissions/ref_filter/visibility_cache_hit_count",
+            new Description("Refs whose visibility was served from the ref visibility cache")
+                .setRate()
+                .setUnit("refs"));
+    this.missCount =
+        metricMaker.newCounter(
+            "permissions/ref_filter/visibility_cache_miss_count",
+            new Description("Refs whose visibility had to be computed by the ref filter")
+                .setRate()
+                .setUnit("refs"));
+  }
+
+  /**
+   * Returns the cached visibility of refs for users with the given key.
+   *
+   * <p>The returned map is shared between requests. Callers add the visibility of the refs that
+   * they compute to it.
+   */
+  ConcurrentMap<String, Boolean> get(Key key) {
+    try {
+      return cache.get(key, ConcurrentHashMap::new);
+    } catch (ExecutionException e) {
+      // Can't happen, creating the map doesn't throw.
+      logger.atWarning().withCause(e).log("Cannot load ref visibility for %s", key.project());
+      return new ConcurrentHashMap<>();
+    }
+  }
+
+  /**
+   * Stores the visibility of refs for users with the given key again after refs were added to it.
+   *
+   * <p>The cache weighs an entry only when it is stored, so this is needed for the entry to be
+   * weighed by its current size.
+   */
+  void put(Key key, ConcurrentMap<String, Boolean> visibility) {
+    cache.put(key, visibility);
+  }
+
+  /** Returns the cached visibility of the ref, or {@code null} if it isn't cached. */
+  @Nullable
+  Boolean isVisible(Map<String, Boolean> visibility, String refName) {
+    Boolean visible = visibility.get(refName);
+    if (visible != null) {
+      hitCount.increment();
+    } else {
+      missCount.increment();
+    }
+    return visible;
+  }
+
+  @Override
+  public void onGitReferenceUpdated(Event event) {
+    if (!event.isDelete() || !isCacheable(event.getRefName())) {
+      return;
+    }
+    Project.NameKey project = Project.nameKey(event.getProjectName());
+    for (Map.Entry<Key, ConcurrentMap<String, Boolean>> e : cache.asMap().entrySet()) {
+      if (e.getKey().project().equals(project)) {
+        e.getValue().remove(event.getRefName());
+      }
+    }
+  }
+}
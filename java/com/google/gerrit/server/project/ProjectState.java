@@ -94,6 +94,8 @@ public class ProjectState {
   /** Local access sections, wrapped in SectionMatchers for faster evaluation. */
   private volatile List<SectionMatcher> localAccessSections;
 
+  private volatile CompiledSections allSectionsTrie;
+
   /** If this is all projects, the capabilities used by the server. */
   private final CapabilityCollection capabilities;
 
@@ -315,6 +317,55 @@ public class ProjectState {
     return all;
   }
 
+  /**
+   * Returns all local and inherited sections compiled into a {@link SectionTrie}.
+   *
+   * <p>The trie is kept until this project or one of its parents is reloaded into the project
+   * cache.
+   */
+  public SectionTrie getAllSectionsTrie() {
+    ImmutableList.Builder<List<SectionMatcher>> b = ImmutableList.builder();
+    for (ProjectState s : tree()) {
+      b.add(s.getLocalAccessSections());
+    }
+    ImmutableList<List<SectionMatcher>> sources = b.build();
+
+    CompiledSections compiled = allSectionsTrie;
+    if (compiled != null && isSame(sources, compiled.sources)) {
+      return compiled.trie;
+    }
+    List<SectionMatcher> all = new ArrayList<>();
+    sources.forEach(all::addAll);
+    compiled = new CompiledSections(sources, SectionTrie.compile(all));
+    allSectionsTrie = compiled;
+    return compiled.trie;
+  }
+
+  private static class CompiledSections {
+    /** Local sections of the projects from which the trie was compiled. */
+    final ImmutableList<List<SectionMatcher>> sources;
+
+    final SectionTrie trie;
+
+    CompiledSections(ImmutableList<List<SectionMatcher>> sources, SectionTrie trie) {
+      this.sources = sources;
+      this.trie = trie;
+    }
+  }
+
+  private static boolean isSame(List<List<SectionMatcher>> a, List<List<SectionMatcher>> b) {
+    if (b == null || a.size() != b.size()) {
+      return false;
+    }
+    for (int i = 0; i < a.size(); i++) {
+      // Every ProjectState has its own list, compare identities to detect reloaded projects.
+      if (a.get(i) != b.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Returns all {@link AccountGroup}'s to which the owner privilege for 'refs/*' is assigned for
    * this project (the local owners), if there are no local owners the local owners of the nearest
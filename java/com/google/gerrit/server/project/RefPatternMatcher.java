@@ -54,6 +54,40 @@ public abstract class RefPatternMatcher {
 
   public abstract boolean match(String ref, CurrentUser user);
 
+  /**
+   * Returns a prefix that all refs matched by this matcher start with.
+   *
+   * <p>Used by {@link SectionTrie} to skip matchers that can't match a ref. The empty string is
+   * always a valid result.
+   */
+  String prefix() {
+    return "";
+  }
+
+  /**
+   * Returns the common prefix of all refs matched by a regular expression.
+   *
+   * <p>The automaton only understands the syntax shared with {@link Pattern} up to escapes, {@code
+   * $} and {@code (?} groups, which it reads as literal characters. The prefix is computed from the
+   * part of the expression before the first of them, all refs matched by the expression start with
+   * a match of that part.
+   */
+  static String literalPrefix(String regex) {
+    int end = regex.length();
+    for (String unsupported : new String[] {"\\", "$", "(?"}) {
+      int i = regex.indexOf(unsupported);
+      if (i >= 0) {
+        end = Math.min(end, i);
+      }
+    }
+    try {
+      return RefPattern.toAutomaton(regex.substring(0, end)).getCommonPrefix();
+    } catch (IllegalArgumentException e) {
+      // The part before the cut isn't a complete expression, e.g. it ends inside a group.
+      return "";
+    }
+  }
+
   private static class Exact extends RefPatternMatcher {
     private final String expect;
 
@@ -65,6 +99,11 @@ public abstract class RefPatternMatcher {
     public boolean match(String ref, CurrentUser user) {
       return expect.equals(ref);
     }
+
+    @Override
+    String prefix() {
+      return expect;
+    }
   }
 
   private static class Prefix extends RefPatternMatcher {
@@ -78,6 +117,11 @@ public abstract class RefPatternMatcher {
     public boolean match(String ref, CurrentUser user) {
       return ref.startsWith(prefix);
     }
+
+    @Override
+    String prefix() {
+      return prefix;
+    }
   }
 
   private static class Regexp extends RefPatternMatcher {
@@ -95,6 +139,11 @@ public abstract class RefPatternMatcher {
     public boolean match(String ref, CurrentUser user) {
       return pattern.matcher(ref).matches() || (isRE(ref) && pattern.pattern().equals(ref));
     }
+
+    @Override
+    String prefix() {
+      return literalPrefix(pattern.pattern());
+    }
   }
 
   public static class ExpandParameters extends RefPatternMatcher {
@@ -158,6 +207,11 @@ public abstract class RefPatternMatcher {
       return usernames.collect(toImmutableSet());
     }
 
+    @Override
+    String prefix() {
+      return prefix;
+    }
+
     public boolean matchPrefix(String ref) {
       if (isRE(ref)) {
         return ref.substring(1).startsWith(prefix);
@@ -50,6 +50,11 @@ public class SectionMatcher extends RefPatternMatcher {
     return this.matcher.match(ref, user);
   }
 
+  @Override
+  String prefix() {
+    return matcher.prefix();
+  }
+
   public AccessSection getSection() {
     return section;
   }
@@ -0,0 +1,91 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.project;
+
+import static com.google.gerrit.server.project.RefPattern.isRE;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Access sections of a project and its parents, indexed by the prefix of their ref patterns.
+ *
+ * <p>Every {@link SectionMatcher} is stored at the trie node of the prefix that all refs matched by
+ * it start with ({@link RefPatternMatcher#prefix()}). Looking up the sections that may match a ref
+ * walks the trie along the ref name, so the cost depends on the length of the ref name and the
+ * number of sections that share its prefix rather than on the number of sections of the project.
+ * Regular expressions are indexed by their literal prefix and still have to be evaluated for refs
+ * that start with it.
+ */
+public class SectionTrie {
+  private static class Node {
+    final Map<Character, Node> children = new HashMap<>();
+    final BitSet sections = new BitSet();
+  }
+
+  public static SectionTrie compile(List<SectionMatcher> sections) {
+    return new SectionTrie(sections);
+  }
+
+  private final ImmutableList<SectionMatcher> sections;
+  private final Node root = new Node();
+
+  private SectionTrie(List<SectionMatcher> sections) {
+    this.sections = ImmutableList.copyOf(sections);
+    for (int i = 0; i < this.sections.size(); i++) {
+      Node node = root;
+      for (char c : this.sections.get(i).prefix().toCharArray()) {
+        node = node.children.computeIfAbsent(c, k -> new Node());
+      }
+      node.sections.set(i);
+    }
+  }
+
+  /** Returns all sections, in the order in which they were compiled. */
+  public ImmutableList<SectionMatcher> all() {
+    return sections;
+  }
+
+  /**
+   * Returns the sections that may match the ref, in the order in which they were compiled.
+   *
+   * <p>The caller still needs to match the returned sections against the ref. If the ref is a
+   * regular expression all sections are returned.
+   */
+  public List<SectionMatcher> candidates(String ref) {
+    if (isRE(ref)) {
+      return sections;
+    }
+    BitSet matching = new BitSet();
+    Node node = root;
+    matching.or(node.sections);
+    for (int i = 0; i < ref.length(); i++) {
+      node = node.children.get(ref.charAt(i));
+      if (node == null) {
+        break;
+      }
+      matching.or(node.sections);
+    }
+    List<SectionMatcher> result = new ArrayList<>(matching.cardinality());
+    for (int i = matching.nextSetBit(0); i >= 0; i = matching.nextSetBit(i + 1)) {
+      result.add(sections.get(i));
+    }
+    return result;
+  }
+}
@@ -921,6 +921,35 @@ public class ChangeData {
     return notes;
   }
 
+  /**
+   * Loads the {@link ChangeNotes} of this change from an already opened repository, unless they
+   * were loaded before.
+   *
+   * <p>Used by {@link ChangeNotesBulkLoader} to share the repository and the meta ref lookup
+   * between many changes of the same project.
+   *
+   * @param repo open repository of the change's project.
+   * @param metaId current tip of the change meta ref; ignored if a specific meta revision was
+   *     requested for this change.
+   */
+  void loadNotes(Repository repo, ObjectId metaId) {
+    if (notes != null) {
+      return;
+    }
+    notes =
+        notesFactory.createChecked(
+            repo, project(), legacyId, metaRevision != null ? metaRevision : metaId);
+    change = notes.getChange();
+    if (changeServerId == null) {
+      changeServerId = notes.getServerId();
+    }
+  }
+
+  /** Returns whether {@link #notes()} would need to load the notes from NoteDb. */
+  boolean needsNotesLoaded() {
+    return notes == null && lazyload();
+  }
+
   @Nullable
   public PatchSet currentPatchSet() {
     if (currentPatchSet == null) {
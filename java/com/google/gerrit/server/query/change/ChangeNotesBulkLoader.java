@@ -0,0 +1,122 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.query.change;
+
+import static com.google.common.collect.ImmutableListMultimap.toImmutableListMultimap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.flogger.FluentLogger;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Loads the {@link com.google.gerrit.server.notedb.ChangeNotes} of many {@link ChangeData}s at
+ * once.
+ *
+ * <p>Loading notes one change at a time opens the repository and reads the meta ref for each
+ * change. This loader groups the changes by project, opens each repository once, reads all meta
+ * refs of a project with a single ref database lookup and parses the notes of the project in
+ * parallel.
+ *
+ * <p>Changes for which the notes can't be loaded are skipped; the error surfaces again when the
+ * caller accesses {@link ChangeData#notes()}. This includes all changes of a project whose
+ * repository can't be read.
+ */
+@Singleton
+public class ChangeNotesBulkLoader {
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private final GitRepositoryManager repoManager;
+  private final Timer0 loadLatency;
+
+  @Inject
+  ChangeNotesBulkLoader(GitRepositoryManager repoManager, MetricMaker metricMaker) {
+    this.repoManager = repoManager;
+    this.loadLatency =
+        metricMaker.newTimer(
+            "notedb/bulk_read_latency",
+            new Description("Latency for loading the change notes of multiple changes at once")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+  }
+
+  public void load(Collection<ChangeData> changes) {
+    ImmutableListMultimap<Project.NameKey, ChangeData> byProject =
+        changes.stream()
+            .filter(ChangeData::needsNotesLoaded)
+            .collect(toImmutableListMultimap(ChangeData::project, Function.identity()));
+    if (byProject.size() < 2) {
+      // Nothing to share, let the caller load the notes lazily.
+      return;
+    }
+
+    try (Timer0.Context ignored = loadLatency.start()) {
+      for (Project.NameKey project : byProject.keySet()) {
+        try {
+          loadProject(project, byProject.get(project));
+        } catch (RepositoryNotFoundException e) {
+          logger.atFine().log("Skip bulk loading notes of missing project %s", project);
+        } catch (IOException e) {
+          logger.atWarning().withCause(e).log("Failed to bulk load notes of project %s", project);
+        }
+      }
+    }
+  }
+
+  private void loadProject(Project.NameKey project, ImmutableList<ChangeData> projectChanges)
+      throws IOException {
+    try (Repository repo = repoManager.openRepository(project)) {
+      Map<String, Ref> metaRefs =
+          repo.getRefDatabase()
+              .exactRef(
+                  projectChanges.stream()
+                      .map(cd -> RefNames.changeMetaRef(cd.getId()))
+                      .toArray(String[]::new));
+      // Callers may run on the fan-out executor themselves, so don't submit to it. The parallel
+      // stream returns only after all notes were parsed, before the repository is closed.
+      projectChanges.parallelStream()
+          .forEach(
+              cd -> {
+                Ref metaRef = metaRefs.get(RefNames.changeMetaRef(cd.getId()));
+                if (metaRef != null) {
+                  loadNotes(cd, repo, metaRef);
+                }
+              });
+    }
+  }
+
+  private static void loadNotes(ChangeData cd, Repository repo, Ref metaRef) {
+    try {
+      cd.loadNotes(repo, metaRef.getObjectId());
+    } catch (RuntimeException e) {
+      logger.atFine().withCause(e).log("Failed to bulk load notes of change %s", cd.getId());
+    }
+  }
+}
@@ -21,5 +21,11 @@ public class QuotaGroupDefinitions {
    */
   public static final String REPOSITORY_SIZE_GROUP = "/repository:size";
 
+  /**
+   * Definition of the upload-pack quota group. {@link QuotaEnforcer} implementations that throttle
+   * fetches and clones have to act on requests with this group name.
+   */
+  public static final String UPLOAD_PACK_GROUP = "/git/upload-pack";
+
   private QuotaGroupDefinitions() {}
 }
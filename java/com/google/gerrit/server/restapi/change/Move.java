@@ -46,6 +46,7 @@ import com.google.gerrit.server.IdentifiedUser;
 import com.google.gerrit.server.PatchSetUtil;
 import com.google.gerrit.server.approval.ApprovalsUtil;
 import com.google.gerrit.server.change.ChangeJson;
+import com.google.gerrit.server.change.ChangeKeyCache;
 import com.google.gerrit.server.change.ChangeResource;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.git.GitRepositoryManager;
@@ -59,6 +60,7 @@ import com.google.gerrit.server.query.change.InternalChangeQuery;
 import com.google.gerrit.server.update.BatchUpdate;
 import com.google.gerrit.server.update.BatchUpdateOp;
 import com.google.gerrit.server.update.ChangeContext;
+import com.google.gerrit.server.update.PostUpdateContext;
 import com.google.gerrit.server.update.UpdateException;
 import com.google.gerrit.server.update.context.RefUpdateContext;
 import com.google.gerrit.server.util.time.TimeUtil;
@@ -84,6 +86,7 @@ public class Move implements RestModifyView<ChangeResource, MoveInput>, UiAction
   private final PatchSetUtil psUtil;
   private final ApprovalsUtil approvalsUtil;
   private final ProjectCache projectCache;
+  private final ChangeKeyCache changeKeyCache;
   private final boolean moveEnabled;
 
   @Inject
@@ -97,6 +100,7 @@ public class Move implements RestModifyView<ChangeResource, MoveInput>, UiAction
       PatchSetUtil psUtil,
       ApprovalsUtil approvalsUtil,
       ProjectCache projectCache,
+      ChangeKeyCache changeKeyCache,
       @GerritServerConfig Config gerritConfig) {
     this.permissionBackend = permissionBackend;
     this.updateFactory = updateFactory;
@@ -107,6 +111,7 @@ public class Move implements RestModifyView<ChangeResource, MoveInput>, UiAction
     this.psUtil = psUtil;
     this.approvalsUtil = approvalsUtil;
     this.projectCache = projectCache;
+    this.changeKeyCache = changeKeyCache;
     this.moveEnabled = gerritConfig.getBoolean("change", null, "move", true);
   }
 
@@ -171,6 +176,7 @@ public class Move implements RestModifyView<ChangeResource, MoveInput>, UiAction
     private final MoveInput input;
 
     private Change change;
+    private BranchNameKey prevDestKey;
     private BranchNameKey newDestKey;
 
     Op(MoveInput input) {
@@ -192,6 +198,7 @@ public class Move implements RestModifyView<ChangeResource, MoveInput>, UiAction
       Project.NameKey projectKey = change.getProject();
       newDestKey = BranchNameKey.create(projectKey, input.destinationBranch);
       BranchNameKey changePrevDest = change.getDest();
+      prevDestKey = changePrevDest;
       if (changePrevDest.equals(newDestKey)) {
         throw new ResourceConflictException("Change is already destined for the specified branch");
       }
@@ -252,6 +259,12 @@ public class Move implements RestModifyView<ChangeResource, MoveInput>, UiAction
       return true;
     }
 
+    @Override
+    public void postUpdate(PostUpdateContext ctx) {
+      changeKeyCache.invalidate(prevDestKey, change.getKey());
+      changeKeyCache.invalidate(newDestKey, change.getKey());
+    }
+
     /**
      * We have a long discussion about how to deal with its votes after moving a change from one
      * branch to another. In the end, we think only keeping the veto votes is the best way since
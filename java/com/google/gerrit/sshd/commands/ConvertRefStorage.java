@@ -16,18 +16,24 @@ package com.google.gerrit.sshd.commands;
 
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.gerrit.sshd.CommandMetaData.Mode.MASTER_OR_SLAVE;
+import static java.util.stream.Collectors.toList;
 
 import com.google.gerrit.common.data.GlobalCapability;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.extensions.annotations.RequiresCapability;
 import com.google.gerrit.server.git.DelegateRepository;
 import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.project.ProjectCache;
 import com.google.gerrit.server.project.ProjectState;
 import com.google.gerrit.sshd.CommandMetaData;
 import com.google.gerrit.sshd.SshCommand;
 import com.google.inject.Inject;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.internal.storage.file.FileReftableDatabase;
 import org.eclipse.jgit.internal.storage.file.FileRepository;
 import org.eclipse.jgit.lib.Repository;
 import org.kohsuke.args4j.Option;
@@ -67,15 +73,50 @@ public class ConvertRefStorage extends SshCommand {
       name = "--project",
       aliases = {"-p"},
       metaVar = "PROJECT",
-      required = true,
       usage = "project for which the storage format should be changed")
-  private ProjectState projectState;
+  private List<ProjectState> projects = new ArrayList<>();
+
+  @Option(name = "--all", usage = "convert all projects")
+  private boolean all;
+
+  @Inject private ProjectCache projectCache;
 
   @Override
   public void run() throws Exception {
     enableGracefulStop();
-    Project.NameKey projectName = projectState.getNameKey();
+    if (all == !projects.isEmpty()) {
+      throw die("either specify projects with --project or use --all");
+    }
+    List<Project.NameKey> projectNames =
+        all
+            ? new ArrayList<>(projectCache.all())
+            : projects.stream().map(ProjectState::getNameKey).collect(toList());
+    if (projectNames.size() == 1) {
+      convert(projectNames.get(0));
+      return;
+    }
+
+    int failed = 0;
+    for (Project.NameKey projectName : projectNames) {
+      try {
+        convert(projectName);
+      } catch (UnloggedFailure e) {
+        stderr.print(e.getMessage() + "\n");
+        failed++;
+      }
+    }
+    if (failed > 0) {
+      throw die(String.format("Failed to convert %d of %d projects", failed, projectNames.size()));
+    }
+  }
+
+  private void convert(Project.NameKey projectName) throws UnloggedFailure {
     try (Repository repo = repoManager.openRepository(projectName)) {
+      if (isConverted(repo)) {
+        stdout.print("'" + projectName + "': already uses " + storageFormat + ", skipping\n");
+        return;
+      }
+      long start = System.nanoTime();
       if (repo instanceof DelegateRepository) {
         ((DelegateRepository) repo).convertRefStorage(storageFormat.name(), writeLogs, backup);
       } else {
@@ -83,10 +124,22 @@ public class ConvertRefStorage extends SshCommand {
             repo instanceof FileRepository, "Repository is not an instance of FileRepository!");
         ((FileRepository) repo).convertRefStorage(storageFormat.name(), writeLogs, backup);
       }
+      stdout.print(
+          String.format(
+              "'%s': converted to %s in %d ms\n",
+              projectName,
+              storageFormat,
+              TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+      stdout.flush();
     } catch (RepositoryNotFoundException e) {
       throw die("'" + projectName + "': not a git archive", e);
     } catch (IOException e) {
       throw die("Error converting: '" + projectName + "': " + e.getMessage(), e);
     }
   }
+
+  private boolean isConverted(Repository repo) {
+    boolean reftable = FileReftableDatabase.isReftable(repo.getDirectory());
+    return reftable == (storageFormat == StorageFormatOption.reftable);
+  }
 }
@@ -23,6 +23,7 @@ import com.google.gerrit.server.RequestListener;
 import com.google.gerrit.server.git.PermissionAwareRepositoryManager;
 import com.google.gerrit.server.git.TracingHook;
 import com.google.gerrit.server.git.TransferConfig;
+import com.google.gerrit.server.git.UploadPackAdmissionControl;
 import com.google.gerrit.server.git.UploadPackInitializer;
 import com.google.gerrit.server.git.UsersSelfAdvertiseRefsHook;
 import com.google.gerrit.server.git.validators.UploadValidationException;
@@ -32,6 +33,7 @@ import com.google.gerrit.server.permissions.PermissionBackend;
 import com.google.gerrit.server.permissions.PermissionBackendException;
 import com.google.gerrit.server.permissions.ProjectPermission;
 import com.google.gerrit.server.plugincontext.PluginSetContext;
+import com.google.gerrit.server.quota.QuotaException;
 import com.google.gerrit.sshd.AbstractGitCommand;
 import com.google.gerrit.sshd.SshMetrics;
 import com.google.inject.Inject;
@@ -56,6 +58,7 @@ final class Upload extends AbstractGitCommand {
   @Inject private PermissionBackend permissionBackend;
   @Inject private UsersSelfAdvertiseRefsHook usersSelfAdvertiseRefsHook;
   @Inject private SshMetrics sshMetrics;
+  @Inject private UploadPackAdmissionControl admissionControl;
 
   private PackStatistics stats;
 
@@ -92,7 +95,15 @@ final class Upload extends AbstractGitCommand {
     for (UploadPackInitializer initializer : uploadPackInitializers) {
       initializer.init(projectState.getNameKey(), up);
     }
-    try (TraceContext traceContext = TraceContext.open();
+
+    UploadPackAdmissionControl.Permit permit;
+    try {
+      permit = admissionControl.admit(projectState.getNameKey(), user);
+    } catch (QuotaException e) {
+      throw new Failure(1, "fatal: " + e.getMessage(), e);
+    }
+    try (permit;
+        TraceContext traceContext = TraceContext.open();
         TracingHook tracingHook = new TracingHook((name, id) -> setTraceId(id))) {
       RequestInfo requestInfo =
           RequestInfo.builder(RequestInfo.RequestType.GIT_UPLOAD, getName(), user, traceContext)
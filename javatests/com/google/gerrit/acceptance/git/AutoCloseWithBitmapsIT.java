@@ -0,0 +1,106 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.acceptance.git;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.acceptance.AbstractDaemonTest;
+import com.google.gerrit.acceptance.PushOneCommit;
+import com.google.gerrit.acceptance.UseLocalDisk;
+import com.google.gerrit.acceptance.config.GerritConfig;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.extensions.client.ChangeStatus;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.inject.Inject;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.Test;
+
+@UseLocalDisk
+@GerritConfig(name = "receive.autoCloseWithBitmaps", value = "true")
+public class AutoCloseWithBitmapsIT extends AbstractDaemonTest {
+  private static final String BITMAPS_COUNT = "receivecommits/auto_close_with_bitmaps_count";
+
+  // The test server runs on disk, hence its metrics are recorded by DropWizard.
+  @Inject private MetricRegistry metricRegistry;
+
+  @Test
+  public void pushOfChangeCommitToBranchClosesChange() throws Exception {
+    PushOneCommit.Result r = createChange();
+    writeBitmapIndex();
+
+    long bitmapsCount = bitmapsCount();
+    pushFactory.create(admin.newIdent(), testRepo).to("refs/heads/master").assertOkStatus();
+
+    assertThat(bitmapsCount()).isEqualTo(bitmapsCount + 1);
+    assertThat(gApi.changes().id(r.getChangeId()).get().status).isEqualTo(ChangeStatus.MERGED);
+  }
+
+  @Test
+  public void pushOfChangeCommitsToBranchUsesSubmissionIdOfFirstChange() throws Exception {
+    PushOneCommit.Result r1 = createChange();
+    PushOneCommit.Result r2 = createChange();
+    writeBitmapIndex();
+
+    long bitmapsCount = bitmapsCount();
+    pushFactory.create(admin.newIdent(), testRepo).to("refs/heads/master").assertOkStatus();
+
+    assertThat(bitmapsCount()).isEqualTo(bitmapsCount + 1);
+    String submissionId = r1.getChange().getId().toString();
+    for (PushOneCommit.Result r : ImmutableList.of(r1, r2)) {
+      ChangeInfo info = gApi.changes().id(r.getChangeId()).get();
+      assertThat(info.status).isEqualTo(ChangeStatus.MERGED);
+      assertThat(info.submissionId).isEqualTo(submissionId);
+    }
+  }
+
+  @Test
+  public void pushWithoutBitmapIndexWalksNewCommits() throws Exception {
+    PushOneCommit.Result r = createChange();
+
+    long bitmapsCount = bitmapsCount();
+    pushFactory.create(admin.newIdent(), testRepo).to("refs/heads/master").assertOkStatus();
+
+    assertThat(bitmapsCount()).isEqualTo(bitmapsCount);
+    assertThat(gApi.changes().id(r.getChangeId()).get().status).isEqualTo(ChangeStatus.MERGED);
+  }
+
+  @Test
+  public void pushOfChangeCommitToOtherBranchDoesNotCloseChange() throws Exception {
+    createBranch(BranchNameKey.create(project, "stable"));
+    PushOneCommit.Result r = createChange();
+    writeBitmapIndex();
+
+    long bitmapsCount = bitmapsCount();
+    pushFactory.create(admin.newIdent(), testRepo).to("refs/heads/stable").assertOkStatus();
+
+    assertThat(bitmapsCount()).isEqualTo(bitmapsCount + 1);
+    assertThat(gApi.changes().id(r.getChangeId()).get().status).isEqualTo(ChangeStatus.NEW);
+  }
+
+  private long bitmapsCount() {
+    return metricRegistry.counter(BITMAPS_COUNT).getCount();
+  }
+
+  private void writeBitmapIndex() throws Exception {
+    adminRestSession.post("/projects/" + project.get() + "/gc").assertOK();
+    try (Repository repo = repoManager.openRepository(project);
+        ObjectReader reader = repo.newObjectReader()) {
+      assertThat(reader.getBitmapIndex()).isNotNull();
+    }
+  }
+}
@@ -0,0 +1,98 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.acceptance.git;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.acceptance.GitUtil.assertPushRejected;
+import static com.google.gerrit.acceptance.GitUtil.pushHead;
+
+import com.google.gerrit.acceptance.AbstractDaemonTest;
+import com.google.gerrit.acceptance.PushOneCommit;
+import com.google.gerrit.acceptance.UseLocalDisk;
+import com.google.gerrit.acceptance.config.GerritConfig;
+import com.google.gerrit.entities.BranchNameKey;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import java.util.List;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.Before;
+import org.junit.Test;
+
+@UseLocalDisk
+@GerritConfig(name = "receive.enableMagicPushFastPath", value = "true")
+public class MagicPushFastPathIT extends AbstractDaemonTest {
+  @Before
+  public void setUp() throws Exception {
+    // The fast path is only taken if the repository has a bitmap index.
+    writeBitmapIndex();
+  }
+
+  @Test
+  public void pushOfSingleCommitCreatesChange() throws Exception {
+    PushOneCommit.Result r = pushTo("refs/for/master");
+    r.assertOkStatus();
+    r.assertChange(Change.Status.NEW, null);
+  }
+
+  @Test
+  public void pushOfSingleCommitUpdatesChange() throws Exception {
+    PushOneCommit.Result r1 = pushTo("refs/for/master");
+    r1.assertOkStatus();
+
+    PushOneCommit.Result r2 = amendChange(r1.getChangeId());
+    r2.assertOkStatus();
+    assertThat(r2.getChange().getId()).isEqualTo(r1.getChange().getId());
+    assertThat(r2.getPatchSetId().get()).isEqualTo(2);
+
+    PushOneCommit.Result r3 = amendChange(r1.getChangeId());
+    r3.assertOkStatus();
+    assertThat(r3.getPatchSetId().get()).isEqualTo(3);
+  }
+
+  @Test
+  public void pushOfCommitThatIsAlreadyOnAnotherBranchIsRejected() throws Exception {
+    createBranch(BranchNameKey.create(project, "stable"));
+    pushTo("refs/heads/stable").assertOkStatus();
+    writeBitmapIndex();
+
+    assertPushRejected(pushHead(testRepo, "refs/for/master"), "refs/for/master", "no new changes");
+  }
+
+  @Test
+  public void pushAfterChangeWasMovedCreatesNewChange() throws Exception {
+    createBranch(BranchNameKey.create(project, "stable"));
+    PushOneCommit.Result r = pushTo("refs/for/master");
+    r.assertOkStatus();
+    // Looking up the change for the new patch set caches its Change-Id.
+    amendChange(r.getChangeId()).assertOkStatus();
+    gApi.changes().id(r.getChange().getId().get()).move("stable");
+
+    amendChange(r.getChangeId()).assertOkStatus();
+
+    List<ChangeInfo> changes = gApi.changes().query(r.getChangeId()).get();
+    assertThat(changes.stream().map(c -> c.branch).collect(toImmutableList()))
+        .containsExactly("master", "stable");
+  }
+
+  private void writeBitmapIndex() throws Exception {
+    adminRestSession.post("/projects/" + project.get() + "/gc").assertOK();
+    try (Repository repo = repoManager.openRepository(project);
+        ObjectReader reader = repo.newObjectReader()) {
+      assertThat(reader.getBitmapIndex()).isNotNull();
+    }
+  }
+}
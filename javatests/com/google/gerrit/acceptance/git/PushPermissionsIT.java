@@ -14,6 +14,7 @@
 
 package com.google.gerrit.acceptance.git;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth.assertWithMessage;
 import static com.google.gerrit.acceptance.testsuite.project.TestProjectUpdate.allow;
@@ -25,6 +26,7 @@ import static java.util.stream.Collectors.toList;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.gerrit.acceptance.AbstractDaemonTest;
+import com.google.gerrit.acceptance.config.GerritConfig;
 import com.google.gerrit.acceptance.testsuite.project.ProjectOperations;
 import com.google.gerrit.acceptance.testsuite.request.RequestScopeOperations;
 import com.google.gerrit.common.data.GlobalCapability;
@@ -39,6 +41,7 @@ import com.google.gerrit.server.project.ProjectConfig;
 import com.google.inject.Inject;
 import java.util.Arrays;
 import java.util.function.Consumer;
+import java.util.stream.IntStream;
 import org.eclipse.jgit.api.PushCommand;
 import org.eclipse.jgit.junit.TestRepository;
 import org.eclipse.jgit.lib.BlobBasedConfig;
@@ -195,6 +198,42 @@ public class PushPermissionsIT extends AbstractDaemonTest {
     assertThat(r).hasProcessed(ImmutableMap.of("refs", 1));
   }
 
+  @Test
+  public void createManyRefsWithOneDenied() throws Exception {
+    assertCreateManyRefsWithOneDenied();
+  }
+
+  @Test
+  @GerritConfig(name = "receive.commitValidationThreadPoolSize", value = "2")
+  @GerritConfig(name = "receive.createRefCheckChunkSize", value = "2")
+  public void createManyRefsWithOneDeniedConcurrently() throws Exception {
+    assertCreateManyRefsWithOneDenied();
+  }
+
+  private void assertCreateManyRefsWithOneDenied() throws Exception {
+    projectOperations
+        .project(project)
+        .forUpdate()
+        .add(allow(Permission.CREATE).ref("refs/heads/*").group(REGISTERED_USERS))
+        .add(allow(Permission.PUSH).ref("refs/heads/*").group(REGISTERED_USERS))
+        .add(block(Permission.CREATE).ref("refs/heads/branch-5").group(REGISTERED_USERS))
+        .update();
+    testRepo.branch("HEAD").commit().create();
+
+    ImmutableList<String> refs =
+        IntStream.range(0, 11).mapToObj(i -> "refs/heads/branch-" + i).collect(toImmutableList());
+    PushResult r = push(refs.stream().map(ref -> "HEAD:" + ref).toArray(String[]::new));
+
+    for (String ref : refs) {
+      if (ref.equals("refs/heads/branch-5")) {
+        assertThat(r).ref(ref).isRejected("prohibited by Gerrit: not permitted: create");
+      } else {
+        assertThat(r).ref(ref).isOk();
+      }
+    }
+    assertThat(r).containsMessages("You need 'Create' rights to create new references.");
+  }
+
   @Test
   public void groupRefsByMessage() throws Exception {
     try (Repository repo = repoManager.openRepository(project);
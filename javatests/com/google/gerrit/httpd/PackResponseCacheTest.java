@@ -0,0 +1,415 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.httpd;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.httpd.PackResponseCache.CacheableRequest;
+import com.google.gerrit.httpd.PackResponseCache.Entry;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.permissions.PermissionBackend;
+import com.google.gerrit.server.permissions.ProjectPermission;
+import com.google.gerrit.server.plugincontext.PluginContext.PluginMetrics;
+import com.google.gerrit.server.plugincontext.PluginSetContext;
+import com.google.gerrit.util.http.testutil.FakeHttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PackResponseCacheTest {
+  private static final Project.NameKey PROJECT = Project.nameKey("project");
+  private static final String WANT = "want 0123456789abcdef0123456789abcdef01234567";
+  private static final String V2 = "version=2";
+  private static final String FLUSH = "0000";
+  private static final String DONE = pkt("done\n");
+  private static final byte[] PACK = "0008NAK\nPACK-DATA".getBytes(UTF_8);
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path dir;
+  private TestRepository<InMemoryRepository> tr;
+  private RevCommit master;
+  private RevCommit stable;
+  private PermissionBackend.ForProject canReadAll;
+  private FakeUploadPack uploadPack;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = tempFolder.newFolder().toPath();
+    tr = new TestRepository<>(new InMemoryRepository(new DfsRepositoryDescription("project")));
+    master = tr.branch("refs/heads/master").commit().create();
+    stable = tr.branch("refs/heads/stable").commit().create();
+    canReadAll = permissions(true);
+    uploadPack = new FakeUploadPack();
+  }
+
+  @Test
+  public void replaysRecordedResponse() throws Exception {
+    PackResponseCache cache = newCache(newEntries(1024));
+
+    FakeHttpServletResponse first = serve(cache, canReadAll, master);
+    FakeHttpServletResponse second = serve(cache, canReadAll, master);
+
+    assertThat(uploadPack.calls).isEqualTo(1);
+    assertThat(first.getActualBody()).isEqualTo(PACK);
+    assertThat(second.getActualBody()).isEqualTo(PACK);
+    assertThat(second.getHeader("Content-Type")).isEqualTo("application/x-git-upload-pack-result");
+  }
+
+  @Test
+  public void userWhoCannotReadAllRefsIsNeverServedFromCache() throws Exception {
+    PackResponseCache cache = newCache(newEntries(1024));
+    serve(cache, canReadAll, master);
+    assertThat(uploadPack.calls).isEqualTo(1);
+
+    PermissionBackend.ForProject cannotReadAll = permissions(false);
+    serve(cache, cannotReadAll, master);
+    serve(cache, cannotReadAll, master);
+
+    assertThat(uploadPack.calls).isEqualTo(3);
+  }
+
+  @Test
+  public void responseIsNotReplayedIfWantIsNoLongerTip() throws Exception {
+    Cache<String, Entry> entries = newEntries(1024);
+    PackResponseCache cache = newCache(entries);
+    serve(cache, canReadAll, master);
+    assertThat(entries.size()).isEqualTo(1);
+
+    tr.branch("refs/heads/master").commit().create();
+    serve(cache, canReadAll, master);
+
+    assertThat(uploadPack.calls).isEqualTo(2);
+    assertThat(entries.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void responseIsNotRecordedIfWantIsNotTip() throws Exception {
+    Cache<String, Entry> entries = newEntries(1024);
+    PackResponseCache cache = newCache(entries);
+    RevCommit notTip = tr.commit().parent(master).create();
+
+    serve(cache, canReadAll, notTip);
+    serve(cache, canReadAll, notTip);
+
+    assertThat(uploadPack.calls).isEqualTo(2);
+    assertThat(entries.size()).isEqualTo(0);
+    assertThat(files()).isEmpty();
+  }
+
+  @Test
+  public void truncatedRecordingIsNotReplayed() throws Exception {
+    Cache<String, Entry> entries = newEntries(1024);
+    PackResponseCache cache =
+        new PackResponseCache(
+            dir,
+            /* maxEntrySize= */ PACK.length - 1,
+            entries,
+            DynamicSet.emptySet(),
+            new PluginSetContext<>(DynamicSet.emptySet(), PluginMetrics.DISABLED_INSTANCE),
+            new DisabledMetricMaker());
+
+    FakeHttpServletResponse first = serve(cache, canReadAll, master);
+    FakeHttpServletResponse second = serve(cache, canReadAll, master);
+
+    assertThat(uploadPack.calls).isEqualTo(2);
+    assertThat(first.getActualBody()).isEqualTo(PACK);
+    assertThat(second.getActualBody()).isEqualTo(PACK);
+    assertThat(entries.size()).isEqualTo(0);
+    assertThat(files()).isEmpty();
+  }
+
+  @Test
+  public void incompleteResponseIsNotReplayed() throws Exception {
+    Cache<String, Entry> entries = newEntries(1024);
+    PackResponseCache cache = newCache(entries);
+    uploadPack.complete = false;
+
+    serve(cache, canReadAll, master);
+    serve(cache, canReadAll, master);
+
+    assertThat(uploadPack.calls).isEqualTo(2);
+    assertThat(entries.size()).isEqualTo(0);
+    assertThat(files()).isEmpty();
+  }
+
+  @Test
+  public void evictedResponsesAreDeleted() throws Exception {
+    // Only one response fits into the cache.
+    Cache<String, Entry> entries = newEntries(PACK.length);
+    PackResponseCache cache = newCache(entries);
+
+    serve(cache, canReadAll, master);
+    serve(cache, canReadAll, stable);
+    assertThat(uploadPack.calls).isEqualTo(2);
+    assertThat(entries.size()).isEqualTo(1);
+    assertThat(files()).hasSize(1);
+
+    serve(cache, canReadAll, stable);
+    assertThat(uploadPack.calls).isEqualTo(2);
+    serve(cache, canReadAll, master);
+    assertThat(uploadPack.calls).isEqualTo(3);
+    assertThat(files()).hasSize(1);
+  }
+
+  @Test
+  public void flushedResponsesAreDeletedWithNextRecording() throws Exception {
+    Cache<String, Entry> entries = newEntries(1024);
+    PackResponseCache cache = newCache(entries);
+    serve(cache, canReadAll, master);
+    assertThat(files()).hasSize(1);
+
+    entries.invalidateAll();
+    serve(cache, canReadAll, stable);
+
+    assertThat(uploadPack.calls).isEqualTo(2);
+    assertThat(files()).containsExactly(entries.asMap().values().iterator().next().file);
+  }
+
+  @Test
+  public void protocolV0CloneIsCacheable() {
+    String key = key(null, pkt(WANT + " side-band-64k ofs-delta agent=git/2.40.0\n"), FLUSH, DONE);
+    assertThat(key).isNotNull();
+    assertThat(key(null, pkt(WANT + " side-band-64k ofs-delta agent=git/2.43.1\n"), FLUSH, DONE))
+        .isEqualTo(key);
+    assertThat(key(null, pkt(WANT + " side-band ofs-delta\n"), FLUSH, DONE)).isNotEqualTo(key);
+    assertThat(key(V2, pkt(WANT + " side-band-64k ofs-delta\n"), FLUSH, DONE)).isNotEqualTo(key);
+  }
+
+  @Test
+  public void protocolV2FetchIsCacheable() {
+    String key =
+        key(
+            V2,
+            pkt("command=fetch\n"),
+            pkt("agent=git/2.40.0\n"),
+            pkt("session-id=abc\n"),
+            "0001",
+            pkt("thin-pack\n"),
+            pkt(WANT + "\n"),
+            DONE,
+            FLUSH);
+    assertThat(key).isNotNull();
+    assertThat(
+            key(
+                V2,
+                pkt("command=fetch\n"),
+                pkt("agent=git/2.43.1\n"),
+                pkt("session-id=def\n"),
+                "0001",
+                pkt("thin-pack\n"),
+                pkt(WANT + "\n"),
+                DONE,
+                FLUSH))
+        .isEqualTo(key);
+    assertThat(
+            PackResponseCache.parse(
+                    Project.nameKey("other"),
+                    V2,
+                    false,
+                    body(
+                        pkt("command=fetch\n"),
+                        "0001",
+                        pkt("thin-pack\n"),
+                        pkt(WANT + "\n"),
+                        DONE,
+                        FLUSH))
+                .key)
+        .isNotEqualTo(
+            key(
+                V2,
+                pkt("command=fetch\n"),
+                "0001",
+                pkt("thin-pack\n"),
+                pkt(WANT + "\n"),
+                DONE,
+                FLUSH));
+  }
+
+  @Test
+  public void requestsThatDependOnRefsAreNotCacheable() {
+    assertThat(key(V2, pkt("command=ls-refs\n"), "0001", pkt("peel\n"), FLUSH)).isNull();
+    assertThat(
+            key(
+                V2,
+                pkt("command=fetch\n"),
+                "0001",
+                pkt("want-ref refs/heads/master\n"),
+                DONE,
+                FLUSH))
+        .isNull();
+    assertThat(key(null, pkt(WANT + "\n"), pkt("deepen-not refs/heads/master\n"), FLUSH, DONE))
+        .isNull();
+  }
+
+  @Test
+  public void negotiationRoundsAndMalformedRequestsAreNotCacheable() {
+    assertThat(key(null, pkt(WANT + " multi_ack\n"), FLUSH, pkt("have " + WANT.substring(5))))
+        .isNull();
+    assertThat(key(null, pkt(WANT + "\n"), "00")).isNull();
+    assertThat(key(null, "zzzz", DONE)).isNull();
+    assertThat(key(null, "00ffdone\n")).isNull();
+  }
+
+  @Test
+  public void wantsAreParsed() {
+    String otherWant = "want 89abcdef0123456789abcdef0123456789abcdef";
+    CacheableRequest request =
+        PackResponseCache.parse(
+            PROJECT,
+            null,
+            false,
+            body(pkt(WANT + " side-band-64k ofs-delta\n"), pkt(otherWant + "\n"), FLUSH, DONE));
+    assertThat(request.wants)
+        .containsExactly(
+            ObjectId.fromString(WANT.substring(5)), ObjectId.fromString(otherWant.substring(5)));
+
+    assertThat(key(null, pkt("want 0123\n"), FLUSH, DONE)).isNull();
+  }
+
+  private PackResponseCache newCache(Cache<String, Entry> entries) {
+    return new PackResponseCache(
+        dir,
+        /* maxEntrySize= */ 1024,
+        entries,
+        DynamicSet.emptySet(),
+        new PluginSetContext<>(DynamicSet.emptySet(), PluginMetrics.DISABLED_INSTANCE),
+        new DisabledMetricMaker());
+  }
+
+  private static Cache<String, Entry> newEntries(long maximumWeight) {
+    return CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumWeight(maximumWeight)
+        .weigher(new PackResponseCache.EntryWeigher())
+        .build();
+  }
+
+  private static PermissionBackend.ForProject permissions(boolean canReadAll) throws Exception {
+    PermissionBackend.ForProject perm = mock(PermissionBackend.ForProject.class);
+    when(perm.test(ProjectPermission.READ)).thenReturn(canReadAll);
+    return perm;
+  }
+
+  private FakeHttpServletResponse serve(
+      PackResponseCache cache, PermissionBackend.ForProject perm, ObjectId want) throws Exception {
+    FakeHttpServletResponse rsp = new FakeHttpServletResponse();
+    cache.serve(
+        PROJECT,
+        perm,
+        tr.getRepository(),
+        request(body(pkt("want " + want.name() + " side-band-64k\n"), FLUSH, DONE)),
+        rsp,
+        uploadPack);
+    return rsp;
+  }
+
+  private ImmutableList<Path> files() throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.collect(toImmutableList());
+    }
+  }
+
+  private static HttpServletRequest request(byte[] body) throws IOException {
+    InputStream in = new ByteArrayInputStream(body);
+    HttpServletRequest req = mock(HttpServletRequest.class);
+    when(req.getMethod()).thenReturn("POST");
+    when(req.getRequestURI()).thenReturn("/a/project/git-upload-pack");
+    when(req.getInputStream())
+        .thenReturn(
+            new ServletInputStream() {
+              @Override
+              public int read() throws IOException {
+                return in.read();
+              }
+
+              @Override
+              public boolean isFinished() {
+                return false;
+              }
+
+              @Override
+              public boolean isReady() {
+                return true;
+              }
+
+              @Override
+              public void setReadListener(ReadListener readListener) {}
+            });
+    return req;
+  }
+
+  /** Consumes the request and writes {@link #PACK} like upload-pack. */
+  private static class FakeUploadPack implements FilterChain {
+    int calls;
+    boolean complete = true;
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse rsp) throws IOException {
+      calls++;
+      ByteStreams.exhaust(req.getInputStream());
+      HttpServletResponse httpRsp = (HttpServletResponse) rsp;
+      httpRsp.setContentType("application/x-git-upload-pack-result");
+      httpRsp.getOutputStream().write(PACK);
+      if (complete) {
+        httpRsp.setHeader(
+            GitOverHttpServlet.GIT_COMMAND_STATUS_HEADER,
+            GitOverHttpServlet.GIT_COMMAND_STATUS.OK.toString());
+      }
+    }
+  }
+
+  private static String key(String protocol, String... pkts) {
+    CacheableRequest request = PackResponseCache.parse(PROJECT, protocol, false, body(pkts));
+    return request != null ? request.key : null;
+  }
+
+  private static byte[] body(String... pkts) {
+    return String.join("", pkts).getBytes(UTF_8);
+  }
+
+  private static String pkt(String line) {
+    return String.format("%04x", line.length() + 4) + line;
+  }
+}
@@ -0,0 +1,168 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.RefNames;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.PushCertificate;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AllUsersRefCacheTest {
+  private static final String USER_REF = RefNames.refsUsers(Account.id(1000001));
+
+  private InMemoryRepository repo;
+  private TestRepository<InMemoryRepository> tr;
+
+  @Before
+  public void setUp() throws Exception {
+    repo = new InMemoryRepository(new DfsRepositoryDescription("All-Users"));
+    tr = new TestRepository<>(repo);
+  }
+
+  @Test
+  public void cachesLookups() throws Exception {
+    RevCommit c1 = tr.update(USER_REF, tr.commit().create());
+    AllUsersRefCache cache = newCache(0);
+    RefDatabase refDb = wrap(cache);
+
+    assertThat(refDb.exactRef(USER_REF).getObjectId()).isEqualTo(c1);
+    assertThat(refDb.exactRef(USER_REF).getObjectId()).isEqualTo(c1);
+    assertThat(cache.missCount()).isEqualTo(1);
+    assertThat(cache.hitCount()).isEqualTo(1);
+
+    // Updates that bypass the cache are only visible after the ref was invalidated.
+    RevCommit c2 = tr.update(USER_REF, tr.commit().parent(c1).create());
+    assertThat(refDb.exactRef(USER_REF).getObjectId()).isEqualTo(c1);
+    cache.invalidate(USER_REF);
+    assertThat(refDb.exactRef(USER_REF).getObjectId()).isEqualTo(c2);
+  }
+
+  @Test
+  public void cachesMissingRefs() throws Exception {
+    AllUsersRefCache cache = newCache(0);
+    RefDatabase refDb = wrap(cache);
+
+    assertThat(refDb.exactRef(USER_REF)).isNull();
+    assertThat(refDb.exactRef(USER_REF)).isNull();
+    assertThat(cache.missCount()).isEqualTo(1);
+    assertThat(cache.hitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void updateThroughCachedRefDatabaseInvalidates() throws Exception {
+    RevCommit c1 = tr.update(USER_REF, tr.commit().create());
+    AllUsersRefCache cache = newCache(0);
+    RefDatabase refDb = wrap(cache);
+    assertThat(refDb.exactRef(USER_REF).getObjectId()).isEqualTo(c1);
+
+    RevCommit c2 = tr.commit().parent(c1).create();
+    RefUpdate ru = refDb.newUpdate(USER_REF, false);
+    ru.setExpectedOldObjectId(c1);
+    ru.setNewObjectId(c2);
+    assertThat(ru.update()).isEqualTo(RefUpdate.Result.FAST_FORWARD);
+
+    assertThat(refDb.exactRef(USER_REF).getObjectId()).isEqualTo(c2);
+  }
+
+  @Test
+  public void batchUpdateThroughCachedRefDatabaseInvalidates() throws Exception {
+    RevCommit c1 = tr.update(USER_REF, tr.commit().create());
+    AllUsersRefCache cache = newCache(0);
+    RefDatabase refDb = wrap(cache);
+    assertThat(refDb.exactRef(USER_REF).getObjectId()).isEqualTo(c1);
+
+    RevCommit c2 = tr.commit().parent(c1).create();
+    BatchRefUpdate bru = refDb.newBatchUpdate();
+    bru.addCommand(new ReceiveCommand(c1, c2, USER_REF));
+    try (RevWalk rw = new RevWalk(repo)) {
+      bru.execute(rw, NullProgressMonitor.INSTANCE);
+    }
+    assertThat(bru.getCommands().get(0).getResult()).isEqualTo(ReceiveCommand.Result.OK);
+
+    assertThat(refDb.exactRef(USER_REF).getObjectId()).isEqualTo(c2);
+  }
+
+  @Test
+  public void batchUpdatePassesPushCertificateOn() throws Exception {
+    BatchRefUpdate delegate = spy(repo.getRefDatabase().newBatchUpdate());
+    RefDatabase uncachedRefDb = spy(repo.getRefDatabase());
+    when(uncachedRefDb.newBatchUpdate()).thenReturn(delegate);
+    RefDatabase refDb = newCache(0).wrap(repo.getRefDatabase(), uncachedRefDb);
+    PushCertificate cert = mock(PushCertificate.class);
+
+    BatchRefUpdate bru = refDb.newBatchUpdate();
+    bru.setPushCertificate(cert);
+
+    verify(delegate).setPushCertificate(cert);
+    // The getter is protected, it is read by BatchRefUpdate itself when it executes the commands.
+    Method getPushCertificate = BatchRefUpdate.class.getDeclaredMethod("getPushCertificate");
+    getPushCertificate.setAccessible(true);
+    assertThat(getPushCertificate.invoke(bru)).isSameInstanceAs(cert);
+  }
+
+  @Test
+  public void sampledCheckRefreshesStaleRef() throws Exception {
+    RevCommit c1 = tr.update(USER_REF, tr.commit().create());
+    AllUsersRefCache cache = newCache(2);
+    RefDatabase refDb = wrap(cache);
+    assertThat(refDb.exactRef(USER_REF).getObjectId()).isEqualTo(c1);
+
+    RevCommit c2 = tr.update(USER_REF, tr.commit().parent(c1).create());
+    assertThat(refDb.exactRef(USER_REF).getObjectId()).isEqualTo(c1);
+    assertThat(refDb.exactRef(USER_REF).getObjectId()).isEqualTo(c2);
+    assertThat(cache.staleCount()).isEqualTo(1);
+    assertThat(refDb.exactRef(USER_REF).getObjectId()).isEqualTo(c2);
+  }
+
+  @Test
+  public void otherRefsAreNotCached() throws Exception {
+    String branch = "refs/heads/master";
+    tr.update(branch, tr.commit().create());
+    AllUsersRefCache cache = newCache(0);
+    RefDatabase refDb = wrap(cache);
+
+    assertThat(refDb.exactRef(branch)).isNotNull();
+    assertThat(refDb.exactRef(branch, USER_REF)).containsKey(branch);
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.missCount()).isEqualTo(1);
+  }
+
+  private static AllUsersRefCache newCache(int checkEvery) {
+    return new AllUsersRefCache(100, Duration.ofMinutes(5), checkEvery);
+  }
+
+  private RefDatabase wrap(AllUsersRefCache cache) {
+    return cache.wrap(repo.getRefDatabase(), repo.getRefDatabase());
+  }
+}
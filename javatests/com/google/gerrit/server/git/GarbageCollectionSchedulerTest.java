@@ -0,0 +1,237 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.gerrit.common.data.GarbageCollectionResult;
+import com.google.gerrit.common.data.GarbageCollectionResult.GcError;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.api.changes.NotifyHandling;
+import com.google.gerrit.extensions.common.AccountInfo;
+import com.google.gerrit.extensions.events.GitBatchRefUpdateListener;
+import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.config.AllUsersName;
+import com.google.gerrit.server.config.AllUsersNameProvider;
+import com.google.gerrit.server.config.GcConfig;
+import com.google.gerrit.server.config.SitePaths;
+import com.google.gerrit.server.git.GarbageCollectionScheduler.Candidate;
+import com.google.gerrit.server.git.GarbageCollectionScheduler.Trigger;
+import com.google.gerrit.server.plugincontext.PluginContext.PluginMetrics;
+import com.google.gerrit.server.plugincontext.PluginSetContext;
+import com.google.gerrit.server.project.ProjectCache;
+import java.util.List;
+import java.util.Set;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GarbageCollectionSchedulerTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final Project.NameKey project1 = Project.nameKey("project1");
+  private final Project.NameKey project2 = Project.nameKey("project2");
+  private final ProjectCache projectCache = mock(ProjectCache.class);
+
+  private Config cfg;
+  private LocalDiskRepositoryManager repoManager;
+
+  @Before
+  public void setUp() throws Exception {
+    SitePaths site = new SitePaths(temporaryFolder.newFolder().toPath());
+    site.resolve("git").toFile().mkdir();
+    cfg = new Config();
+    cfg.setString("gerrit", null, "basePath", "git");
+    cfg.setString("gc", null, "checkInterval", "1 min");
+    cfg.setInt("gc", null, "maxLooseObjects", 2);
+    repoManager =
+        new LocalDiskRepositoryManager(site, cfg, allUsersName(), new DisabledMetricMaker());
+    repoManager.createRepository(project1).close();
+    repoManager.createRepository(project2).close();
+    when(projectCache.all()).thenReturn(ImmutableSortedSet.of(project1, project2));
+  }
+
+  @Test
+  public void selectsProjectsThatExceedLimitsMostUrgentFirst() throws Exception {
+    GarbageCollectionScheduler scheduler = newScheduler(0);
+    commit(project1, 2);
+    commit(project2, 4);
+
+    List<Candidate> due = scheduler.selectProjects();
+    assertThat(projects(due)).containsExactly(project2, project1).inOrder();
+    assertThat(due.get(0).trigger()).isEqualTo(Trigger.LOOSE_OBJECTS);
+
+    // Only projects that were updated since the last check are checked again.
+    assertThat(scheduler.selectProjects()).isEmpty();
+    scheduler.onGitBatchRefUpdate(event(project1));
+    assertThat(projects(scheduler.selectProjects())).containsExactly(project1);
+  }
+
+  @Test
+  public void projectsThatWereNotUpdatedAreSampledOverSeveralChecks() throws Exception {
+    cfg.setInt("gc", null, "maxProjectsPerCheck", 1);
+    GarbageCollectionScheduler scheduler = newScheduler(0);
+    commit(project1, 4);
+    commit(project2, 4);
+
+    assertThat(projects(scheduler.selectProjects())).containsExactly(project1);
+    scheduler.onGitBatchRefUpdate(event(project1));
+    assertThat(projects(scheduler.selectProjects())).containsExactly(project1, project2);
+    assertThat(scheduler.selectProjects()).isEmpty();
+  }
+
+  @Test
+  public void projectsWithinLimitsAreNotSelected() throws Exception {
+    GarbageCollectionScheduler scheduler = newScheduler(0);
+    // A commit and its tree.
+    commit(project1, 1);
+
+    assertThat(scheduler.selectProjects()).isEmpty();
+  }
+
+  @Test
+  public void collectedProjectIsNoLongerDue() throws Exception {
+    GarbageCollectionScheduler scheduler = newScheduler(0);
+    commit(project1, 4);
+    List<Candidate> due = scheduler.selectProjects();
+    assertThat(due).hasSize(1);
+
+    scheduler.collect(due.get(0));
+
+    scheduler.onGitBatchRefUpdate(event(project1));
+    assertThat(scheduler.selectProjects()).isEmpty();
+  }
+
+  @Test
+  public void projectOnWhichGcIsRunningIsCheckedAgain() throws Exception {
+    GarbageCollectionScheduler scheduler = newScheduler(0);
+    commit(project1, 4);
+    scheduler.running.add(project1);
+
+    assertThat(scheduler.selectProjects()).isEmpty();
+    assertThat(scheduler.selectProjects()).isEmpty();
+
+    scheduler.running.remove(project1);
+    assertThat(projects(scheduler.selectProjects())).containsExactly(project1);
+  }
+
+  @Test
+  public void failedGcIsRetried() throws Exception {
+    GarbageCollection gc = mock(GarbageCollection.class);
+    GarbageCollectionResult failure = new GarbageCollectionResult();
+    failure.addError(new GcError(GcError.Type.GC_FAILED, project1));
+    when(gc.run(ImmutableList.of(project1))).thenReturn(failure);
+    GarbageCollectionScheduler scheduler = newScheduler(() -> gc, 0);
+    commit(project1, 4);
+    List<Candidate> due = scheduler.selectProjects();
+    assertThat(projects(due)).containsExactly(project1);
+
+    scheduler.collect(due.get(0));
+
+    assertThat(projects(scheduler.selectProjects())).containsExactly(project1);
+  }
+
+  @Test
+  public void checkIsDeferredUnderHighLoad() throws Exception {
+    GarbageCollectionScheduler scheduler = newScheduler(100);
+    commit(project1, 4);
+
+    scheduler.run();
+
+    verify(projectCache, never()).all();
+    assertThat(scheduler.selectProjects()).hasSize(1);
+  }
+
+  private GarbageCollectionScheduler newScheduler(int loadPercent) {
+    GarbageCollection gc =
+        new GarbageCollection(
+            repoManager,
+            new GarbageCollectionQueue(),
+            mock(GcConfig.class),
+            new PluginSetContext<>(new DynamicSet<>(), PluginMetrics.DISABLED_INSTANCE));
+    return newScheduler(() -> gc, loadPercent);
+  }
+
+  private GarbageCollectionScheduler newScheduler(
+      GarbageCollection.Factory gcFactory, int loadPercent) {
+    return new GarbageCollectionScheduler(
+        repoManager,
+        gcFactory,
+        projectCache,
+        /* workQueue= */ null,
+        new DisabledMetricMaker(),
+        cfg,
+        () -> loadPercent);
+  }
+
+  private static ImmutableList<Project.NameKey> projects(List<Candidate> candidates) {
+    return candidates.stream().map(Candidate::project).collect(toImmutableList());
+  }
+
+  private void commit(Project.NameKey project, int count) throws Exception {
+    try (Repository repo = repoManager.openRepository(project);
+        TestRepository<Repository> tr = new TestRepository<>(repo)) {
+      for (int i = 0; i < count; i++) {
+        tr.branch("refs/heads/master").commit().create();
+      }
+    }
+  }
+
+  private static GitBatchRefUpdateListener.Event event(Project.NameKey project) {
+    return new GitBatchRefUpdateListener.Event() {
+      @Override
+      public String getProjectName() {
+        return project.get();
+      }
+
+      @Override
+      public Set<GitBatchRefUpdateListener.UpdatedRef> getUpdatedRefs() {
+        return ImmutableSet.of();
+      }
+
+      @Override
+      public Set<String> getRefNames() {
+        return ImmutableSet.of();
+      }
+
+      @Override
+      public AccountInfo getUpdater() {
+        return null;
+      }
+
+      @Override
+      public NotifyHandling getNotify() {
+        return NotifyHandling.ALL;
+      }
+    };
+  }
+
+  private static AllUsersName allUsersName() {
+    return new AllUsersName(AllUsersNameProvider.DEFAULT);
+  }
+}
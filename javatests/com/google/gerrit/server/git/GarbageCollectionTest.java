@@ -22,6 +22,9 @@ import com.google.common.collect.ImmutableList;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.entities.Project.NameKey;
 import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.config.AllUsersName;
+import com.google.gerrit.server.config.AllUsersNameProvider;
 import com.google.gerrit.server.config.GcConfig;
 import com.google.gerrit.server.config.SitePaths;
 import com.google.gerrit.server.plugincontext.PluginContext.PluginMetrics;
@@ -86,7 +89,7 @@ public class GarbageCollectionTest {
     private final DelegateRepository wrapper;
 
     private DelegatedRepositoryManager(SitePaths site, Config cfg, DelegateRepository wrapper) {
-      super(site, cfg);
+      super(site, cfg, new AllUsersName(AllUsersNameProvider.DEFAULT), new DisabledMetricMaker());
       this.wrapper = wrapper;
     }
 
@@ -16,6 +16,7 @@ package com.google.gerrit.server.git;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.SortedSetMultimap;
@@ -23,6 +24,8 @@ import com.google.gerrit.entities.Change;
 import com.google.gerrit.entities.PatchSet;
 import com.google.gerrit.server.git.receive.ReceivePackRefCache;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
 import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
 import org.eclipse.jgit.junit.TestRepository;
@@ -269,6 +272,37 @@ public class GroupCollectorTest {
     assertThat(groups).containsEntry(d, c.name());
   }
 
+  @Test
+  public void groupsOfExistingPatchSetAreLookedUpOnce() throws Exception {
+    RevCommit branchTip = tr.commit().create();
+    RevCommit a = tr.commit().parent(branchTip).create();
+    createRef(psId(1, 1), a, tr);
+    RevCommit tip = a;
+    for (int i = 0; i < 10; i++) {
+      tip = tr.commit().parent(tip).create();
+    }
+
+    String group = "deadbeefdeadbeefdeadbeefdeadbeefdeadbeef";
+    List<PatchSet.Id> lookups = new ArrayList<>();
+    GroupCollector gc =
+        new GroupCollector(
+            ReceivePackRefCache.noCache(tr.getRepository().getRefDatabase()),
+            psId -> {
+              lookups.add(psId);
+              return ImmutableList.of(group);
+            });
+    RevWalk rw = newWalk(tip, branchTip);
+    RevCommit c;
+    while ((c = rw.next()) != null) {
+      gc.visit(c);
+    }
+    SortedSetMultimap<ObjectId, String> groups = gc.getGroups();
+
+    assertThat(groups.keySet()).hasSize(11);
+    assertThat(groups).containsEntry(tip, group);
+    assertThat(lookups).containsExactly(psId(1, 1));
+  }
+
   // TODO(dborowitz): Tests for octopus merges.
 
   private static PatchSet.Id psId(int c, int p) {
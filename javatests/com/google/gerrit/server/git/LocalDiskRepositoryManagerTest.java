@@ -19,6 +19,9 @@ import static com.google.common.truth.TruthJUnit.assume;
 import static com.google.gerrit.testing.GerritJUnit.assertThrows;
 
 import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.config.AllUsersName;
+import com.google.gerrit.server.config.AllUsersNameProvider;
 import com.google.gerrit.server.config.SitePaths;
 import com.google.gerrit.server.git.GitRepositoryManager.Status;
 import com.google.gerrit.server.ioutil.HostPlatform;
@@ -51,13 +54,17 @@ public class LocalDiskRepositoryManagerTest {
     site.resolve("git").toFile().mkdir();
     cfg = new Config();
     cfg.setString("gerrit", null, "basePath", "git");
-    repoManager = new LocalDiskRepositoryManager(site, cfg);
+    repoManager =
+        new LocalDiskRepositoryManager(site, cfg, allUsersName(), new DisabledMetricMaker());
   }
 
   @Test
   public void testThatNullBasePathThrowsAnException() {
     assertThrows(
-        IllegalStateException.class, () -> new LocalDiskRepositoryManager(site, new Config()));
+        IllegalStateException.class,
+        () ->
+            new LocalDiskRepositoryManager(
+                site, new Config(), allUsersName(), new DisabledMetricMaker()));
   }
 
   @Test
@@ -208,7 +215,8 @@ public class LocalDiskRepositoryManagerTest {
   @Test
   public void testProjectRecreationAfterRestart() throws Exception {
     repoManager.createRepository(Project.nameKey("a")).close();
-    LocalDiskRepositoryManager newRepoManager = new LocalDiskRepositoryManager(site, cfg);
+    LocalDiskRepositoryManager newRepoManager =
+        new LocalDiskRepositoryManager(site, cfg, allUsersName(), new DisabledMetricMaker());
     assertThrows(
         RepositoryExistsException.class,
         () -> newRepoManager.createRepository(Project.nameKey("a")));
@@ -263,7 +271,8 @@ public class LocalDiskRepositoryManagerTest {
     Project.NameKey name = Project.nameKey("a");
     repoManager.createRepository(name).close();
 
-    LocalDiskRepositoryManager newRepoManager = new LocalDiskRepositoryManager(site, cfg);
+    LocalDiskRepositoryManager newRepoManager =
+        new LocalDiskRepositoryManager(site, cfg, allUsersName(), new DisabledMetricMaker());
     assertThrows(
         RepositoryCaseMismatchException.class,
         () -> newRepoManager.createRepository(Project.nameKey("A")));
@@ -333,4 +342,8 @@ public class LocalDiskRepositoryManagerTest {
       db.create(true /* bare */);
     }
   }
+
+  private static AllUsersName allUsersName() {
+    return new AllUsersName(AllUsersNameProvider.DEFAULT);
+  }
 }
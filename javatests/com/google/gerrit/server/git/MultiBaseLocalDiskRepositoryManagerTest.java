@@ -21,6 +21,9 @@ import static org.mockito.Mockito.when;
 
 import com.google.common.collect.ImmutableList;
 import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.config.AllUsersName;
+import com.google.gerrit.server.config.AllUsersNameProvider;
 import com.google.gerrit.server.config.RepositoryConfig;
 import com.google.gerrit.server.config.SitePaths;
 import java.io.IOException;
@@ -54,7 +57,9 @@ public class MultiBaseLocalDiskRepositoryManagerTest {
     cfg.setString("gerrit", null, "basePath", "git");
     configMock = mock(RepositoryConfig.class);
     when(configMock.getAllBasePaths()).thenReturn(ImmutableList.of());
-    repoManager = new MultiBaseLocalDiskRepositoryManager(site, cfg, configMock);
+    repoManager =
+        new MultiBaseLocalDiskRepositoryManager(
+            site, cfg, allUsersName(), configMock, new DisabledMetricMaker());
   }
 
   @Test
@@ -156,7 +161,13 @@ public class MultiBaseLocalDiskRepositoryManagerTest {
         () -> {
           configMock = mock(RepositoryConfig.class);
           when(configMock.getAllBasePaths()).thenReturn(ImmutableList.of(Path.of("repos")));
-          repoManager = new MultiBaseLocalDiskRepositoryManager(site, cfg, configMock);
+          repoManager =
+              new MultiBaseLocalDiskRepositoryManager(
+                  site, cfg, allUsersName(), configMock, new DisabledMetricMaker());
         });
   }
+
+  private static AllUsersName allUsersName() {
+    return new AllUsersName(AllUsersNameProvider.DEFAULT);
+  }
 }
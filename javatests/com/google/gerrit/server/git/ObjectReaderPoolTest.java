@@ -0,0 +1,128 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.junit.Test;
+
+public class ObjectReaderPoolTest {
+  private final List<ObjectReader> created = new ArrayList<>();
+
+  @Test
+  public void closedReaderIsReused() throws Exception {
+    ObjectReaderPool.ForRepository pool = newPool(2, 10).forRepository(this::newReader);
+
+    try (ObjectReader reader = pool.newReader()) {
+      reader.has(ObjectId.zeroId());
+    }
+    try (ObjectReader reader = pool.newReader()) {
+      reader.has(ObjectId.zeroId());
+    }
+
+    assertThat(created).hasSize(1);
+    verify(created.get(0), never()).close();
+  }
+
+  @Test
+  public void unusedReaderDoesNotTakeReaderFromPool() throws Exception {
+    ObjectReaderPool.ForRepository pool = newPool(2, 10).forRepository(this::newReader);
+
+    pool.newReader().close();
+
+    assertThat(created).isEmpty();
+  }
+
+  @Test
+  public void readerThatIsUsedAfterCloseBorrowsAnotherReader() throws Exception {
+    ObjectReaderPool objectReaderPool = newPool(2, 10);
+    ObjectReaderPool.ForRepository pool = objectReaderPool.forRepository(this::newReader);
+
+    ObjectReader reader = pool.newReader();
+    reader.has(ObjectId.zeroId());
+    reader.close();
+    assertThat(objectReaderPool.idle()).isEqualTo(1);
+
+    reader.has(ObjectId.zeroId());
+    assertThat(objectReaderPool.idle()).isEqualTo(0);
+    reader.close();
+    reader.close();
+    assertThat(objectReaderPool.idle()).isEqualTo(1);
+    assertThat(created).hasSize(1);
+  }
+
+  @Test
+  public void idleReadersAreBoundedPerRepositoryAndInTotal() throws Exception {
+    ObjectReaderPool objectReaderPool = newPool(1, 2);
+    ObjectReaderPool.ForRepository pool1 = objectReaderPool.forRepository(this::newReader);
+    ObjectReaderPool.ForRepository pool2 = objectReaderPool.forRepository(this::newReader);
+    ObjectReaderPool.ForRepository pool3 = objectReaderPool.forRepository(this::newReader);
+
+    useAndClose(pool1.newReader(), pool1.newReader());
+    assertThat(objectReaderPool.idle()).isEqualTo(1);
+    verify(created.get(1)).close();
+
+    useAndClose(pool2.newReader());
+    useAndClose(pool3.newReader());
+    assertThat(objectReaderPool.idle()).isEqualTo(2);
+    verify(created.get(3)).close();
+  }
+
+  @Test
+  public void closingRepositoryClosesIdleReaders() throws Exception {
+    ObjectReaderPool objectReaderPool = newPool(2, 10);
+    ObjectReaderPool.ForRepository pool = objectReaderPool.forRepository(this::newReader);
+    ObjectReader reader = pool.newReader();
+    reader.has(ObjectId.zeroId());
+    useAndClose(pool.newReader());
+    assertThat(objectReaderPool.idle()).isEqualTo(1);
+
+    pool.close();
+    assertThat(objectReaderPool.idle()).isEqualTo(0);
+    verify(created.get(1)).close();
+
+    // Readers that are still in use are closed when they are released.
+    reader.close();
+    verify(created.get(0)).close();
+    assertThat(objectReaderPool.idle()).isEqualTo(0);
+  }
+
+  private static void useAndClose(ObjectReader... readers) throws Exception {
+    for (ObjectReader reader : readers) {
+      reader.has(ObjectId.zeroId());
+    }
+    for (ObjectReader reader : readers) {
+      reader.close();
+    }
+  }
+
+  private ObjectReader newReader() {
+    ObjectReader reader = mock(ObjectReader.class);
+    created.add(reader);
+    return reader;
+  }
+
+  private static ObjectReaderPool newPool(int maxIdlePerRepository, int maxIdle) {
+    return new ObjectReaderPool(maxIdlePerRepository, maxIdle, new DisabledMetricMaker());
+  }
+}
@@ -0,0 +1,139 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.extensions.api.access.CoreOrPluginProjectPermission;
+import com.google.gerrit.extensions.conditions.BooleanCondition;
+import com.google.gerrit.server.permissions.PermissionBackend.ForProject;
+import com.google.gerrit.server.permissions.PermissionBackend.ForRef;
+import com.google.gerrit.server.permissions.PermissionBackend.RefFilterOptions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PermissionAwareReadOnlyRefDatabaseTest {
+  /** Records the refs of which the visibility is checked, all refs are visible. */
+  private static class CountingForProject extends ForProject {
+    private final List<List<String>> checkedRefs = new ArrayList<>();
+
+    @Override
+    public String resourcePath() {
+      return "/projects/project";
+    }
+
+    @Override
+    public ForRef ref(String ref) {
+      throw new UnsupportedOperationException("not implemented");
+    }
+
+    @Override
+    public void check(CoreOrPluginProjectPermission perm) {
+      throw new UnsupportedOperationException("not implemented");
+    }
+
+    @Override
+    public <T extends CoreOrPluginProjectPermission> Set<T> test(Collection<T> permSet) {
+      throw new UnsupportedOperationException("not implemented");
+    }
+
+    @Override
+    public BooleanCondition testCond(CoreOrPluginProjectPermission perm) {
+      throw new UnsupportedOperationException("not implemented");
+    }
+
+    @Override
+    public Collection<Ref> filter(Collection<Ref> refs, Repository repo, RefFilterOptions opts) {
+      checkedRefs.add(refs.stream().map(Ref::getName).collect(toList()));
+      return refs;
+    }
+  }
+
+  private InMemoryRepository repo;
+  private CountingForProject forProject;
+  private PermissionAwareReadOnlyRefDatabase refDb;
+  private RevCommit commit;
+
+  @Before
+  public void setUp() throws Exception {
+    repo = new InMemoryRepository(new DfsRepositoryDescription("project"));
+    TestRepository<InMemoryRepository> tr = new TestRepository<>(repo);
+    commit = tr.commit().create();
+    for (String ref :
+        ImmutableSet.of(
+            "refs/heads/main",
+            "refs/heads/stable",
+            "refs/changes/01/1/1",
+            "refs/changes/01/1/meta",
+            "refs/changes/02/2/1",
+            "refs/tags/v1.0")) {
+      tr.update(ref, commit);
+    }
+    forProject = new CountingForProject();
+    refDb = new PermissionAwareReadOnlyRefDatabase(repo, forProject);
+  }
+
+  @Test
+  public void refPrefixesAreCheckedWithSingleCall() throws Exception {
+    List<Ref> refs = refDb.getRefsByPrefix("refs/heads/main", "refs/heads/", "refs/tags/");
+
+    assertThat(refs.stream().map(Ref::getName).collect(toList()))
+        .containsExactly("refs/heads/main", "refs/heads/stable", "refs/tags/v1.0");
+    assertThat(forProject.checkedRefs)
+        .containsExactly(List.of("refs/heads/main", "refs/heads/stable", "refs/tags/v1.0"));
+  }
+
+  @Test
+  public void refsOutsideOfPrefixAreNotChecked() throws Exception {
+    refDb.getRefsByPrefix("refs/heads/main");
+
+    assertThat(forProject.checkedRefs).containsExactly(List.of("refs/heads/main"));
+  }
+
+  @Test
+  public void excludedRefsAreNotChecked() throws Exception {
+    List<Ref> refs = refDb.getRefsByPrefixWithExclusions("refs/", ImmutableSet.of("refs/changes/"));
+
+    assertThat(refs.stream().map(Ref::getName).collect(toList()))
+        .containsExactly("refs/heads/main", "refs/heads/stable", "refs/tags/v1.0");
+    assertThat(forProject.checkedRefs).hasSize(1);
+    assertThat(forProject.checkedRefs.get(0))
+        .containsNoneOf("refs/changes/01/1/1", "refs/changes/01/1/meta", "refs/changes/02/2/1");
+  }
+
+  @Test
+  public void tipsWithSha1AreCheckedWithSingleCall() throws Exception {
+    assertThat(refDb.getTipsWithSha1(commit)).hasSize(6);
+    assertThat(forProject.checkedRefs).hasSize(1);
+  }
+
+  @Test
+  public void noCheckWithoutMatchingRefs() throws Exception {
+    assertThat(refDb.getRefsByPrefix("refs/meta/")).isEmpty();
+    assertThat(forProject.checkedRefs).isEmpty();
+  }
+}
@@ -0,0 +1,169 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.extensions.api.changes.NotifyHandling;
+import com.google.gerrit.extensions.common.AccountInfo;
+import com.google.gerrit.extensions.events.GitBatchRefUpdateListener;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.config.AllUsersName;
+import com.google.gerrit.server.config.AllUsersNameProvider;
+import com.google.gerrit.server.config.SitePaths;
+import java.util.Set;
+import org.eclipse.jgit.internal.storage.file.FileReftableDatabase;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReftableCompactionSchedulerTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final Project.NameKey project = Project.nameKey("project");
+
+  private Config cfg;
+  private LocalDiskRepositoryManager repoManager;
+
+  @Before
+  public void setUp() throws Exception {
+    SitePaths site = new SitePaths(temporaryFolder.newFolder().toPath());
+    site.resolve("git").toFile().mkdir();
+    cfg = new Config();
+    cfg.setString("gerrit", null, "basePath", "git");
+    cfg.setInt("reftable", null, "maxStackSize", 1000);
+    cfg.setInt("reftable", null, "maxUpdatesBeforeCompaction", 5);
+    cfg.setString("reftable", null, "compactionCheckInterval", "1 min");
+    repoManager =
+        new LocalDiskRepositoryManager(site, cfg, allUsersName(), new DisabledMetricMaker());
+    repoManager.createRepository(project).close();
+  }
+
+  @Test
+  public void compactsAfterMaxUpdates() throws Exception {
+    ReftableCompactionScheduler scheduler = newScheduler();
+    try (Repository repo = repoManager.openRepository(project)) {
+      ((FileRepository) repo).convertRefStorage("reftable", false, false);
+      assertThat(FileReftableDatabase.isReftable(repo.getDirectory())).isTrue();
+
+      updateRefs(repo, scheduler, 4);
+      long stackSize = ReftableCompactionScheduler.readStackSize(repo);
+      scheduler.check(project);
+      assertThat(ReftableCompactionScheduler.readStackSize(repo)).isEqualTo(stackSize);
+
+      updateRefs(repo, scheduler, 5);
+      scheduler.check(project);
+      assertThat(ReftableCompactionScheduler.readStackSize(repo)).isEqualTo(1);
+      assertThat(repo.exactRef("refs/heads/branch4")).isNotNull();
+    }
+  }
+
+  @Test
+  public void countsUpdatesSinceLastCheck() throws Exception {
+    ReftableCompactionScheduler scheduler = newScheduler();
+    try (Repository repo = repoManager.openRepository(project)) {
+      ((FileRepository) repo).convertRefStorage("reftable", false, false);
+
+      updateRefs(repo, scheduler, 4);
+      scheduler.check(project);
+      updateRefs(repo, scheduler, 1);
+      long stackSize = ReftableCompactionScheduler.readStackSize(repo);
+      scheduler.check(project);
+      assertThat(ReftableCompactionScheduler.readStackSize(repo)).isEqualTo(stackSize);
+    }
+  }
+
+  @Test
+  public void disabledByDefault() throws Exception {
+    cfg.unset("reftable", null, "compactionCheckInterval");
+    ReftableCompactionScheduler scheduler = newScheduler();
+    try (Repository repo = repoManager.openRepository(project)) {
+      ((FileRepository) repo).convertRefStorage("reftable", false, false);
+
+      updateRefs(repo, scheduler, 5);
+      long stackSize = ReftableCompactionScheduler.readStackSize(repo);
+      scheduler.check(project);
+      assertThat(ReftableCompactionScheduler.readStackSize(repo)).isEqualTo(stackSize);
+    }
+  }
+
+  @Test
+  public void ignoresRefDirectoryRepositories() throws Exception {
+    ReftableCompactionScheduler scheduler = newScheduler();
+    try (Repository repo = repoManager.openRepository(project)) {
+      updateRefs(repo, scheduler, 5);
+      scheduler.check(project);
+      assertThat(FileReftableDatabase.isReftable(repo.getDirectory())).isFalse();
+      assertThat(ReftableCompactionScheduler.readStackSize(repo)).isEqualTo(0);
+    }
+  }
+
+  private ReftableCompactionScheduler newScheduler() {
+    return new ReftableCompactionScheduler(
+        repoManager, /* workQueue= */ null, new DisabledMetricMaker(), cfg);
+  }
+
+  private void updateRefs(Repository repo, ReftableCompactionScheduler scheduler, int count)
+      throws Exception {
+    try (TestRepository<Repository> tr = new TestRepository<>(repo)) {
+      RevCommit commit = tr.commit().create();
+      for (int i = 0; i < count; i++) {
+        tr.update("refs/heads/branch" + i, commit);
+        scheduler.onGitBatchRefUpdate(event());
+      }
+    }
+  }
+
+  private GitBatchRefUpdateListener.Event event() {
+    return new GitBatchRefUpdateListener.Event() {
+      @Override
+      public String getProjectName() {
+        return project.get();
+      }
+
+      @Override
+      public Set<GitBatchRefUpdateListener.UpdatedRef> getUpdatedRefs() {
+        return ImmutableSet.of();
+      }
+
+      @Override
+      public Set<String> getRefNames() {
+        return ImmutableSet.of();
+      }
+
+      @Override
+      public AccountInfo getUpdater() {
+        return null;
+      }
+
+      @Override
+      public NotifyHandling getNotify() {
+        return NotifyHandling.ALL;
+      }
+    };
+  }
+
+  private static AllUsersName allUsersName() {
+    return new AllUsersName(AllUsersNameProvider.DEFAULT);
+  }
+}
@@ -18,9 +18,16 @@ import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.extensions.proto.ProtoTruth.assertThat;
 import static com.google.gerrit.proto.testing.SerializedClassSubject.assertThatSerializedClass;
 
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.DisabledMetricMaker;
 import com.google.gerrit.server.cache.proto.Cache.TagSetHolderProto;
+import java.util.List;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.junit.Test;
 
 public class TagSetHolderTest {
@@ -57,6 +64,30 @@ public class TagSetHolderTest {
     TagSetTest.assertEqual(holder.getTagSet(), deserialized.getTagSet());
   }
 
+  @Test
+  public void fastForwardIsUpdatedInPlace() throws Exception {
+    InMemoryRepository repo = new InMemoryRepository(new DfsRepositoryDescription("project"));
+    TestRepository<InMemoryRepository> tr = new TestRepository<>(repo);
+    RevCommit c1 = tr.branch("refs/heads/master").commit().create();
+    tr.update("refs/tags/v1", c1);
+    TagCache cache = new TagCache(CacheBuilder.newBuilder().build(), new DisabledMetricMaker());
+    TagSetHolder holder = cache.get(Project.nameKey("project"));
+    holder.refresh(cache, repo);
+    TagSet tags = holder.getTagSet();
+    assertThat(tags).isNotNull();
+
+    tr.branch("refs/heads/master").commit().create();
+    TagMatcher m = holder.matcher(cache, repo, List.of(repo.exactRef("refs/heads/master")));
+
+    assertThat(m.refsMoved).isTrue();
+    assertThat(m.updated).isFalse();
+    assertThat(holder.getTagSet()).isSameInstanceAs(tags);
+    assertThat(m.isReachable(repo.exactRef("refs/tags/v1"))).isTrue();
+
+    m = holder.matcher(cache, repo, List.of(repo.exactRef("refs/heads/master")));
+    assertThat(m.refsMoved).isFalse();
+  }
+
   @Test
   public void fields() {
     assertThatSerializedClass(TagSetHolder.class)
@@ -0,0 +1,138 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.server.quota.QuotaGroupDefinitions.UPLOAD_PACK_GROUP;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.quota.QuotaBackend;
+import com.google.gerrit.server.quota.QuotaException;
+import com.google.gerrit.server.quota.QuotaResponse;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UploadPackAdmissionControlTest {
+  private static final Project.NameKey PROJECT = Project.nameKey("project");
+  private static final Project.NameKey OTHER_PROJECT = Project.nameKey("other");
+
+  private final QuotaBackend.WithResource quotaWithResource =
+      mock(QuotaBackend.WithResource.class);
+  private Config cfg;
+  private QuotaBackend quotaBackend;
+
+  @Before
+  public void setUp() {
+    cfg = new Config();
+    QuotaBackend.WithUser quotaWithUser = mock(QuotaBackend.WithUser.class);
+    quotaBackend = mock(QuotaBackend.class);
+    when(quotaBackend.user(any())).thenReturn(quotaWithUser);
+    when(quotaWithUser.project(any())).thenReturn(quotaWithResource);
+    when(quotaWithResource.requestToken(UPLOAD_PACK_GROUP))
+        .thenReturn(QuotaResponse.Aggregated.create(ImmutableList.of(QuotaResponse.ok())));
+  }
+
+  @Test
+  public void projectLimitIsEnforcedPerProject() throws Exception {
+    cfg.setInt("upload", null, "maxConcurrentPerProject", 1);
+    UploadPackAdmissionControl admissionControl = create();
+    CurrentUser user = user(1);
+
+    try (UploadPackAdmissionControl.Permit permit = admissionControl.admit(PROJECT, user)) {
+      assertThrows(QuotaException.class, () -> admissionControl.admit(PROJECT, user(2)));
+      admissionControl.admit(OTHER_PROJECT, user).close();
+    }
+    admissionControl.admit(PROJECT, user(2)).close();
+  }
+
+  @Test
+  public void userLimitIsEnforcedPerUser() throws Exception {
+    cfg.setInt("upload", null, "maxConcurrentPerUser", 1);
+    UploadPackAdmissionControl admissionControl = create();
+
+    try (UploadPackAdmissionControl.Permit permit = admissionControl.admit(PROJECT, user(1))) {
+      assertThrows(QuotaException.class, () -> admissionControl.admit(OTHER_PROJECT, user(1)));
+      admissionControl.admit(PROJECT, user(2)).close();
+    }
+    admissionControl.admit(OTHER_PROJECT, user(1)).close();
+  }
+
+  @Test
+  public void rejectedRequestsHoldNoSlots() throws Exception {
+    cfg.setInt("upload", null, "maxConcurrentPerUser", 1);
+    cfg.setInt("upload", null, "maxConcurrentPerProject", 1);
+    UploadPackAdmissionControl admissionControl = create();
+
+    UploadPackAdmissionControl.Permit permit = admissionControl.admit(PROJECT, user(1));
+    assertThrows(QuotaException.class, () -> admissionControl.admit(OTHER_PROJECT, user(1)));
+    assertThrows(QuotaException.class, () -> admissionControl.admit(PROJECT, user(2)));
+
+    permit.close();
+    // Closing twice must not free a slot that is not held.
+    permit.close();
+    try (UploadPackAdmissionControl.Permit p = admissionControl.admit(PROJECT, user(2))) {
+      assertThrows(QuotaException.class, () -> admissionControl.admit(PROJECT, user(3)));
+    }
+  }
+
+  @Test
+  public void slotsOfIdleProjectsAndUsersAreDropped() throws Exception {
+    cfg.setInt("upload", null, "maxConcurrentPerUser", 2);
+    cfg.setInt("upload", null, "maxConcurrentPerProject", 2);
+    UploadPackAdmissionControl admissionControl = create();
+
+    UploadPackAdmissionControl.Permit p1 = admissionControl.admit(PROJECT, user(1));
+    UploadPackAdmissionControl.Permit p2 = admissionControl.admit(PROJECT, user(1));
+    UploadPackAdmissionControl.Permit p3 = admissionControl.admit(OTHER_PROJECT, user(2));
+    assertThat(admissionControl.trackedKeys()).isEqualTo(4);
+
+    p1.close();
+    assertThat(admissionControl.trackedKeys()).isEqualTo(4);
+    p2.close();
+    p3.close();
+    assertThat(admissionControl.trackedKeys()).isEqualTo(0);
+  }
+
+  @Test
+  public void quotaIsChecked() throws Exception {
+    when(quotaWithResource.requestToken(UPLOAD_PACK_GROUP))
+        .thenReturn(
+            QuotaResponse.Aggregated.create(ImmutableList.of(QuotaResponse.error("exhausted"))));
+    UploadPackAdmissionControl admissionControl = create();
+
+    assertThrows(QuotaException.class, () -> admissionControl.admit(PROJECT, user(1)));
+  }
+
+  private UploadPackAdmissionControl create() {
+    return new UploadPackAdmissionControl(cfg, quotaBackend, new DisabledMetricMaker());
+  }
+
+  private static CurrentUser user(int id) {
+    CurrentUser user = mock(CurrentUser.class);
+    when(user.isIdentifiedUser()).thenReturn(true);
+    when(user.getAccountId()).thenReturn(Account.id(id));
+    when(user.getLoggableName()).thenReturn("user" + id);
+    return user;
+  }
+}
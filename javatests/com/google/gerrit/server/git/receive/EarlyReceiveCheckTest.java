@@ -0,0 +1,168 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git.receive;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.server.permissions.PermissionBackend;
+import com.google.gerrit.server.permissions.PermissionDeniedException;
+import com.google.gerrit.server.permissions.RefPermission;
+import com.google.gerrit.server.project.ProjectState;
+import java.util.List;
+import java.util.Optional;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EarlyReceiveCheckTest {
+  private static final Project.NameKey PROJECT = Project.nameKey("project");
+  private static final Account.Id ACCOUNT_ID = Account.id(1000001);
+  private static final ObjectId NEW_ID =
+      ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+
+  private final ProjectState projectState = mock(ProjectState.class);
+  private final PermissionBackend.ForProject perm = mock(PermissionBackend.ForProject.class);
+  private TestRepository<InMemoryRepository> tr;
+  private ObjectId master;
+
+  @Before
+  public void setUp() throws Exception {
+    tr = new TestRepository<>(new InMemoryRepository(new DfsRepositoryDescription("project")));
+    master = tr.branch("refs/heads/master").commit().create();
+    when(projectState.getProject()).thenReturn(Project.builder(PROJECT).build());
+  }
+
+  @Test
+  public void pushIsReceivedIfAnyCommandMaySucceed() throws Exception {
+    allow(RefPermission.CREATE);
+
+    assertThat(check(create("refs/heads/master"), create("refs/heads/stable"))).isEmpty();
+  }
+
+  @Test
+  public void pushIsRejectedIfAllCommandsFail() throws Exception {
+    allow(RefPermission.CREATE);
+
+    assertThat(check(update("refs/heads/master"), create("refs/heads/master")))
+        .hasValue("refs/heads/master: prohibited by Gerrit: not permitted: update");
+    assertThat(check(create("refs/heads/master")))
+        .hasValue(
+            "refs/heads/master: Cannot create ref 'refs/heads/master' because it already exists.");
+    assertThat(check(create("refs/heads/foo//bar"))).hasValue("refs/heads/foo//bar: not valid ref");
+  }
+
+  @Test
+  public void permissionsThatDependOnPushedObjectsAreAccepted() throws Exception {
+    allow(RefPermission.CREATE_SIGNED_TAG, RefPermission.FORCE_UPDATE);
+
+    assertThat(check(create("refs/tags/v1.0"))).isEmpty();
+    assertThat(check(update("refs/heads/master"))).isEmpty();
+  }
+
+  @Test
+  public void readOnlyProjectRejectsAllPushes() throws Exception {
+    allow(RefPermission.UPDATE);
+    when(projectState.getProject())
+        .thenReturn(
+            Project.builder(PROJECT)
+                .setState(com.google.gerrit.extensions.client.ProjectState.READ_ONLY)
+                .build());
+
+    assertThat(check(update("refs/heads/master")))
+        .hasValue("prohibited by Gerrit: project state does not permit write");
+  }
+
+  @Test
+  public void magicPushesAreNotCheckedUnlessCombinedWithNormalPushes() throws Exception {
+    allow();
+
+    assertThat(check(create("refs/for/master"))).isEmpty();
+    assertThat(check(create("refs/for/master"), update("refs/heads/master")))
+        .hasValue("cannot combine normal pushes and magic pushes");
+  }
+
+  @Test
+  public void noteDbUpdatesRequirePushOption() throws Exception {
+    allow(RefPermission.UPDATE);
+    ImmutableList<ReceiveCommand> commands = ImmutableList.of(update("refs/changes/01/1/meta"));
+
+    assertThat(newCheck().check(commands, null))
+        .hasValue("refs/changes/01/1/meta: NoteDb update requires -o notedb=allow");
+    assertThat(newCheck().check(commands, List.of("notedb=allow"))).isEmpty();
+  }
+
+  @Test
+  public void pushToRefsUsersSelfIsCheckedAgainstUserBranch() throws Exception {
+    when(projectState.isAllUsers()).thenReturn(true);
+    String userRef = RefNames.refsUsers(ACCOUNT_ID);
+    tr.branch(userRef).commit().create();
+    allow(RefPermission.CREATE);
+
+    assertThat(check(create(RefNames.REFS_USERS_SELF)))
+        .hasValue(
+            RefNames.REFS_USERS_SELF
+                + ": Cannot create ref '"
+                + userRef
+                + "' because it already exists.");
+    verify(perm).ref(userRef);
+  }
+
+  private void allow(RefPermission... permissions) throws Exception {
+    ImmutableSet<RefPermission> allowed = ImmutableSet.copyOf(permissions);
+    PermissionBackend.ForRef forRef = mock(PermissionBackend.ForRef.class);
+    doAnswer(
+            invocation -> {
+              RefPermission permission = invocation.getArgument(0);
+              if (!allowed.contains(permission)) {
+                throw new PermissionDeniedException(permission);
+              }
+              return null;
+            })
+        .when(forRef)
+        .check(any(RefPermission.class));
+    when(perm.ref(anyString())).thenReturn(forRef);
+  }
+
+  private Optional<String> check(ReceiveCommand... commands) throws Exception {
+    return newCheck().check(ImmutableList.copyOf(commands), null);
+  }
+
+  private EarlyReceiveCheck newCheck() {
+    return new EarlyReceiveCheck(projectState, ACCOUNT_ID, perm, tr.getRepository());
+  }
+
+  private static ReceiveCommand create(String refName) {
+    return new ReceiveCommand(ObjectId.zeroId(), NEW_ID, refName);
+  }
+
+  private ReceiveCommand update(String refName) {
+    return new ReceiveCommand(master, NEW_ID, refName);
+  }
+}
@@ -0,0 +1,161 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git.receive;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelCommitValidatorTest {
+  private ExecutorService executor;
+  private List<ObjectId> consumed;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+    consumed = new ArrayList<>();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void consumesResultsInWalkOrder() throws Exception {
+    List<ObjectId> commits = commits(100);
+    try (ParallelCommitValidator<ObjectId> validator = newValidator(Set.of())) {
+      for (ObjectId c : commits) {
+        assertThat(validator.add(c)).isTrue();
+      }
+      assertThat(validator.finish()).isTrue();
+    }
+    assertThat(consumed).containsExactlyElementsIn(commits).inOrder();
+  }
+
+  @Test
+  public void stopsAtFirstInvalidCommitInWalkOrder() throws Exception {
+    List<ObjectId> commits = commits(100);
+    boolean valid;
+    try (ParallelCommitValidator<ObjectId> validator =
+        newValidator(Set.of(commits.get(42), commits.get(77)))) {
+      for (ObjectId c : commits) {
+        if (!validator.add(c)) {
+          break;
+        }
+      }
+      valid = validator.finish();
+    }
+    assertThat(valid).isFalse();
+    assertThat(consumed).containsExactlyElementsIn(commits.subList(0, 43)).inOrder();
+  }
+
+  @Test
+  public void propagatesIOException() throws Exception {
+    try (ParallelCommitValidator<ObjectId> validator =
+        new ParallelCommitValidator<>(
+            executor::submit,
+            /* chunkSize= */ 3,
+            /* maxPendingChunks= */ 2,
+            (commits, cancelled) -> {
+              throw new IOException("missing object");
+            },
+            consumed::add)) {
+      assertThat(validator.add(ObjectId.zeroId())).isTrue();
+      IOException e = assertThrows(IOException.class, validator::finish);
+      assertThat(e).hasMessageThat().isEqualTo("missing object");
+    }
+  }
+
+  @Test
+  public void closeWaitsForRunningTasks() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicInteger validated = new AtomicInteger();
+    ParallelCommitValidator<ObjectId> validator =
+        new ParallelCommitValidator<>(
+            executor::submit,
+            /* chunkSize= */ 1,
+            /* maxPendingChunks= */ 10,
+            (commits, cancelled) -> {
+              validated.incrementAndGet();
+              started.countDown();
+              try {
+                Thread.sleep(100);
+              } catch (InterruptedException e) {
+                throw new AssertionError(e);
+              }
+              done.set(true);
+              return commits;
+            },
+            consumed::add);
+    assertThat(validator.add(ObjectId.zeroId())).isTrue();
+    started.await();
+    for (ObjectId c : commits(5)) {
+      validator.add(c);
+    }
+
+    validator.close();
+
+    assertThat(done.get()).isTrue();
+    // Chunks that didn't start before the validation was cancelled are skipped.
+    assertThat(validated.get()).isLessThan(6);
+    assertThat(consumed).isEmpty();
+  }
+
+  private ParallelCommitValidator<ObjectId> newValidator(Set<ObjectId> invalid) {
+    return new ParallelCommitValidator<>(
+        executor::submit,
+        /* chunkSize= */ 3,
+        /* maxPendingChunks= */ 4,
+        (commits, cancelled) -> {
+          List<ObjectId> results = new ArrayList<>();
+          for (ObjectId c : commits) {
+            results.add(c);
+            if (invalid.contains(c)) {
+              break;
+            }
+          }
+          return results;
+        },
+        c -> {
+          consumed.add(c);
+          return !invalid.contains(c);
+        });
+  }
+
+  private static List<ObjectId> commits(int count) {
+    List<ObjectId> commits = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      commits.add(ObjectId.fromString(String.format("%040x", i + 1)));
+    }
+    return commits;
+  }
+}
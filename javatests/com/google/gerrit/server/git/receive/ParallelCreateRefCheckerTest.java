@@ -0,0 +1,191 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.git.receive;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+
+import com.google.gerrit.extensions.restapi.AuthException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelCreateRefCheckerTest {
+  private ExecutorService executor;
+  private AtomicInteger submitted;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+    submitted = new AtomicInteger();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void resultsMatchSerialChecks() throws Exception {
+    List<ReceiveCommand> cmds = commands(50);
+    Set<String> denied = Set.of(cmds.get(0).getRefName(), cmds.get(25).getRefName());
+    ParallelCreateRefChecker.CreateRefCheck check =
+        cmd -> {
+          if (denied.contains(cmd.getRefName())) {
+            throw new AuthException("not permitted: create " + cmd.getRefName());
+          }
+        };
+
+    Map<String, String> serial = new LinkedHashMap<>();
+    for (ReceiveCommand cmd : cmds) {
+      try {
+        check.check(cmd);
+        serial.put(cmd.getRefName(), "ok");
+      } catch (AuthException e) {
+        serial.put(cmd.getRefName(), e.getMessage());
+      }
+    }
+
+    Map<String, String> concurrent = new LinkedHashMap<>();
+    try (ParallelCreateRefChecker checker =
+        newChecker(/* chunkSize= */ 3, /* maxPendingChunks= */ 2, check, cmds)) {
+      for (ReceiveCommand cmd : cmds) {
+        try {
+          checker.check(cmd);
+          concurrent.put(cmd.getRefName(), "ok");
+        } catch (ExecutionException e) {
+          assertThat(e).hasCauseThat().isInstanceOf(AuthException.class);
+          concurrent.put(cmd.getRefName(), e.getCause().getMessage());
+        }
+      }
+    }
+    assertThat(concurrent).containsExactlyEntriesIn(serial).inOrder();
+  }
+
+  @Test
+  public void boundsChunksInFlight() throws Exception {
+    List<ReceiveCommand> cmds = commands(100);
+    AtomicInteger checked = new AtomicInteger();
+    try (ParallelCreateRefChecker checker =
+        newChecker(
+            /* chunkSize= */ 5,
+            /* maxPendingChunks= */ 2,
+            cmd -> checked.incrementAndGet(),
+            cmds)) {
+      assertThat(submitted.get()).isEqualTo(2);
+      for (int i = 0; i < cmds.size(); i++) {
+        checker.check(cmds.get(i));
+        // The chunk of the command and the next one may be in flight, but no more.
+        assertThat(submitted.get()).isAtMost(i / 5 + 2);
+      }
+    }
+    assertThat(submitted.get()).isEqualTo(20);
+    assertThat(checked.get()).isEqualTo(100);
+  }
+
+  @Test
+  public void checksUnknownCommandsInline() throws Exception {
+    List<ReceiveCommand> cmds = commands(4);
+    ReceiveCommand other = command(42);
+    AtomicInteger checked = new AtomicInteger();
+    try (ParallelCreateRefChecker checker =
+        newChecker(
+            /* chunkSize= */ 2,
+            /* maxPendingChunks= */ 2,
+            cmd -> {
+              checked.incrementAndGet();
+              if (cmd == other) {
+                throw new AuthException("denied");
+              }
+            },
+            cmds)) {
+      ExecutionException e = assertThrows(ExecutionException.class, () -> checker.check(other));
+      assertThat(e).hasCauseThat().hasMessageThat().isEqualTo("denied");
+    }
+    assertThat(checked.get()).isAtLeast(1);
+  }
+
+  @Test
+  public void closeWaitsForRunningTasks() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicInteger checked = new AtomicInteger();
+    ParallelCreateRefChecker checker =
+        newChecker(
+            /* chunkSize= */ 1,
+            /* maxPendingChunks= */ 10,
+            cmd -> {
+              checked.incrementAndGet();
+              started.countDown();
+              Thread.sleep(100);
+              done.set(true);
+            },
+            commands(20));
+    started.await();
+
+    checker.close();
+
+    assertThat(done.get()).isTrue();
+    // Chunks beyond the bound are never submitted, chunks that didn't start are skipped.
+    assertThat(submitted.get()).isEqualTo(10);
+    assertThat(checked.get()).isAtMost(10);
+  }
+
+  private ParallelCreateRefChecker newChecker(
+      int chunkSize,
+      int maxPendingChunks,
+      ParallelCreateRefChecker.CreateRefCheck check,
+      List<ReceiveCommand> cmds) {
+    return new ParallelCreateRefChecker(
+        task -> {
+          submitted.incrementAndGet();
+          return executor.submit(task);
+        },
+        chunkSize,
+        maxPendingChunks,
+        check,
+        cmds);
+  }
+
+  private static List<ReceiveCommand> commands(int count) {
+    List<ReceiveCommand> cmds = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      cmds.add(command(i));
+    }
+    return cmds;
+  }
+
+  private static ReceiveCommand command(int i) {
+    return new ReceiveCommand(
+        ObjectId.zeroId(),
+        ObjectId.fromString(String.format("%040x", i + 1)),
+        String.format("refs/tags/t%03d", i));
+  }
+}
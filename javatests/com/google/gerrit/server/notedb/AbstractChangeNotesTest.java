@@ -79,10 +79,13 @@ import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.Module;
 import com.google.inject.TypeLiteral;
+import com.google.inject.name.Names;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
 import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
 import org.eclipse.jgit.junit.TestRepository;
@@ -135,6 +138,7 @@ public abstract class AbstractChangeNotesTest {
 
   protected Injector injector;
   private String systemTimeZone;
+  private ScheduledExecutorService allUsersRetryExecutor;
 
   @Inject protected ChangeNotes.Factory changeNotesFactory;
 
@@ -166,6 +170,7 @@ public abstract class AbstractChangeNotesTest {
     ou.setPreferredEmail("other@account.com");
     accountCache.put(ou.build());
     assertableFanOutExecutor = new AssertableExecutorService();
+    allUsersRetryExecutor = Executors.newSingleThreadScheduledExecutor();
     gitReferenceUpdated = mock(GitReferenceUpdated.class);
     changeOwnerId = co.id();
     otherUserId = ou.id();
@@ -218,6 +223,9 @@ public abstract class AbstractChangeNotesTest {
             bind(ExecutorService.class)
                 .annotatedWith(FanOutExecutor.class)
                 .toInstance(assertableFanOutExecutor);
+            bind(ScheduledExecutorService.class)
+                .annotatedWith(Names.named(AllUsersUpdateQueue.RETRY_EXECUTOR))
+                .toInstance(allUsersRetryExecutor);
             bind(ServiceUserClassifier.class).to(ServiceUserClassifier.NoOp.class);
             bind(InternalChangeQuery.class)
                 .toProvider(
@@ -249,6 +257,13 @@ public abstract class AbstractChangeNotesTest {
     TestTimeUtil.resetWithClockStep(1, SECONDS);
   }
 
+  @After
+  public void shutDownAllUsersRetryExecutor() {
+    if (allUsersRetryExecutor != null) {
+      allUsersRetryExecutor.shutdownNow();
+    }
+  }
+
   @After
   public void resetTime() {
     TestTimeUtil.useSystemTime();
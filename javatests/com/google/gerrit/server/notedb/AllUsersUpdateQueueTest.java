@@ -0,0 +1,258 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.notedb;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MultimapBuilder;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.HumanComment;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.account.AccountState;
+import com.google.gerrit.server.config.AllUsersName;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.notedb.ChangeDraftNotesUpdate.DeleteReason;
+import com.google.gerrit.server.util.time.TimeUtil;
+import com.google.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+public class AllUsersUpdateQueueTest extends AbstractChangeNotesTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Inject private ChangeDraftNotesUpdate.Factory draftUpdateFactory;
+
+  private final ScheduledExecutorService retryExecutor = mock(ScheduledExecutorService.class);
+  private Config cfg;
+  private Path journalDir;
+
+  @Before
+  public void setUpQueue() throws Exception {
+    cfg = new Config();
+    journalDir = temporaryFolder.newFolder().toPath();
+  }
+
+  @Test
+  public void queuedUpdatesOfAccountAreExecutedInOneTransaction() throws Exception {
+    Change c = newChange();
+    HumanComment draft1 = draft(c, "uuid1");
+    HumanComment draft2 = draft(c, "uuid2");
+    HumanComment draft3 = draft(c, "uuid3");
+    clearInvocations(gitReferenceUpdated);
+    ManualExecutor executor = new ManualExecutor();
+    AllUsersUpdateQueue queue = newQueue(executor, repoManager);
+
+    enqueue(queue, deletion(c, draft1));
+    enqueue(queue, deletion(c, draft2));
+    assertThat(executor.tasks).hasSize(1);
+    assertThat(queue.pendingCount()).isEqualTo(2);
+
+    executor.runAll();
+    assertThat(newNotes(c).getDraftComments(otherUserId)).hasSize(1);
+    assertThat(queue.pendingCount()).isEqualTo(0);
+    verify(gitReferenceUpdated, times(1))
+        .fire(any(AllUsersName.class), any(BatchRefUpdate.class), any(AccountState.class));
+
+    // Updates that are queued after the shard was drained are executed by a new task.
+    enqueue(queue, deletion(c, draft3));
+    assertThat(executor.tasks).hasSize(1);
+    executor.runAll();
+    assertThat(newNotes(c).getDraftComments(otherUserId)).isEmpty();
+  }
+
+  @Test
+  public void failedUpdateIsRetriedBeforeLaterUpdates() throws Exception {
+    Change c = newChange();
+    HumanComment draft1 = draft(c, "uuid1");
+    HumanComment draft2 = draft(c, "uuid2");
+    GitRepositoryManager failingRepoManager = mock(GitRepositoryManager.class);
+    when(failingRepoManager.openRepository(allUsers))
+        .thenThrow(new IOException("injected failure"))
+        .thenAnswer(invocation -> repoManager.openRepository(allUsers));
+    AllUsersUpdateQueue queue = newQueue(newDirectExecutorService(), failingRepoManager);
+
+    enqueue(queue, deletion(c, draft1));
+    Runnable retry = capturedRetry(1);
+    assertThat(newNotes(c).getDraftComments(otherUserId)).hasSize(2);
+    assertThat(queue.pendingCount()).isEqualTo(1);
+
+    // Waits for the retry of the failed update.
+    enqueue(queue, deletion(c, draft2));
+    assertThat(newNotes(c).getDraftComments(otherUserId)).hasSize(2);
+    assertThat(queue.pendingCount()).isEqualTo(2);
+
+    retry.run();
+    assertThat(newNotes(c).getDraftComments(otherUserId)).isEmpty();
+    assertThat(queue.pendingCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void updateThatFailedAllAttemptsIsReplayedOnStart() throws Exception {
+    cfg.setInt("notedb", "allUsersQueue", "maxAttempts", 2);
+    Change c = newChange();
+    HumanComment draft = draft(c, "uuid");
+    GitRepositoryManager failingRepoManager = mock(GitRepositoryManager.class);
+    when(failingRepoManager.openRepository(allUsers))
+        .thenThrow(new IOException("injected failure"));
+    AllUsersUpdateQueue queue = newQueue(newDirectExecutorService(), failingRepoManager);
+
+    enqueue(queue, deletion(c, draft));
+    assertThat(journalFiles()).hasSize(1);
+    capturedRetry(1).run();
+    // No further retry is scheduled.
+    capturedRetry(1);
+    assertThat(queue.pendingCount()).isEqualTo(0);
+    assertThat(journalFiles()).hasSize(1);
+    assertThat(newNotes(c).getDraftComments(otherUserId)).hasSize(1);
+
+    AllUsersUpdateQueue restarted = newQueue(newDirectExecutorService(), repoManager);
+    restarted.start();
+    assertThat(newNotes(c).getDraftComments(otherUserId)).isEmpty();
+    assertThat(journalFiles()).isEmpty();
+  }
+
+  private AllUsersUpdateQueue newQueue(ExecutorService executor, GitRepositoryManager repos) {
+    return new AllUsersUpdateQueue(
+        executor,
+        retryExecutor,
+        allUsers,
+        repos,
+        gitReferenceUpdated,
+        changeNotesFactory,
+        draftUpdateFactory,
+        cfg,
+        Optional.of(journalDir),
+        new DisabledMetricMaker());
+  }
+
+  private Runnable capturedRetry(int expectedRetries) {
+    ArgumentCaptor<Runnable> retry = ArgumentCaptor.forClass(Runnable.class);
+    verify(retryExecutor, times(expectedRetries))
+        .schedule(retry.capture(), anyLong(), eq(MILLISECONDS));
+    return retry.getValue();
+  }
+
+  private void enqueue(
+      AllUsersUpdateQueue queue, ListMultimap<String, ChangeDraftNotesUpdate> draftUpdates) {
+    queue.enqueue(draftUpdates, serverIdent, null, null, otherUser.state());
+  }
+
+  private HumanComment draft(Change c, String uuid) throws Exception {
+    HumanComment comment =
+        newComment(
+            c.currentPatchSetId(),
+            "filename",
+            uuid,
+            null,
+            0,
+            otherUser,
+            null,
+            TimeUtil.now(),
+            "comment",
+            (short) 0,
+            ObjectId.fromString("abcd1234abcd1234abcd1234abcd1234abcd1234"),
+            false);
+    ChangeUpdate update = newUpdate(c, otherUser);
+    update.setPatchSetId(c.currentPatchSetId());
+    update.putComment(HumanComment.Status.DRAFT, comment);
+    update.commit();
+    return comment;
+  }
+
+  private ListMultimap<String, ChangeDraftNotesUpdate> deletion(Change c, HumanComment draft) {
+    ChangeDraftNotesUpdate update =
+        draftUpdateFactory.create(
+            c, otherUserId, "other", otherUserId, "other", serverIdent, TimeUtil.now());
+    update.addDeletion(draft.getCommitId(), draft.key, DeleteReason.PUBLISHED);
+    ListMultimap<String, ChangeDraftNotesUpdate> draftUpdates =
+        MultimapBuilder.hashKeys().arrayListValues().build();
+    draftUpdates.put(update.getRefName(), update);
+    return draftUpdates;
+  }
+
+  private ImmutableList<Path> journalFiles() throws IOException {
+    try (Stream<Path> s = Files.list(journalDir)) {
+      return s.collect(ImmutableList.toImmutableList());
+    }
+  }
+
+  /** Executor that runs the submitted tasks only when the test asks for it. */
+  private static class ManualExecutor extends AbstractExecutorService {
+    final List<Runnable> tasks = new ArrayList<>();
+
+    @Override
+    public void execute(Runnable command) {
+      tasks.add(command);
+    }
+
+    void runAll() {
+      while (!tasks.isEmpty()) {
+        tasks.remove(0).run();
+      }
+    }
+
+    @Override
+    public void shutdown() {}
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      return ImmutableList.of();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return false;
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return false;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+      return true;
+    }
+  }
+}
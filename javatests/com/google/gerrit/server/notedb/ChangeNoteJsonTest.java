@@ -16,9 +16,17 @@ package com.google.gerrit.server.notedb;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.Comment;
+import com.google.gerrit.entities.FixReplacement;
+import com.google.gerrit.entities.FixSuggestion;
+import com.google.gerrit.entities.HumanComment;
 import com.google.gson.Gson;
 import com.google.inject.TypeLiteral;
+import java.time.Instant;
 import java.util.Optional;
+import org.eclipse.jgit.lib.ObjectId;
 import org.junit.Test;
 
 public class ChangeNoteJsonTest {
@@ -170,4 +178,86 @@ public class ChangeNoteJsonTest {
     assertThat(gson.toJson(c)).isEqualTo(serialized);
     assertThat(gson.toJson(c2)).isEqualTo(serialized);
   }
+
+  @Test
+  public void humanCommentRoundTrip() {
+    HumanComment c =
+        new HumanComment(
+            new Comment.Key("uuid", "file.txt", 3),
+            Account.id(1000001),
+            Instant.ofEpochSecond(1_600_000_000),
+            (short) 1,
+            "message",
+            "server-id",
+            /* unresolved= */ true,
+            /* revId= */ ObjectId.zeroId().name(),
+            /* parentUuid= */ "parent",
+            /* tag= */ "tag",
+            ImmutableList.of(
+                new FixSuggestion(
+                    "fix",
+                    "description",
+                    ImmutableList.of(
+                        new FixReplacement(
+                            "file.txt", new Comment.Range(1, 2, 3, 4), "replacement")))),
+            /* realAuthor= */ Account.id(1000002));
+    c.lineNbr = 3;
+    c.range = new Comment.Range(1, 2, 3, 4);
+    c.isAi = false;
+
+    HumanComment result = gson.fromJson(gson.toJson(c), HumanComment.class);
+
+    assertThat(result).isEqualTo(c);
+    assertThat(result.unresolved).isTrue();
+  }
+
+  @Test
+  public void humanCommentIgnoresUnknownFieldsAndNullValues() {
+    String json =
+        "{\n"
+            + "  \"key\": {\"uuid\": \"uuid\", \"filename\": \"file.txt\", \"patchSetId\": 1},\n"
+            + "  \"unknown-field\": {\"nested\": [1, 2]},\n"
+            + "  \"author\": {\"id\": 1000001},\n"
+            + "  \"writtenOn\": \"2020-09-13T12:26:40Z\",\n"
+            + "  \"message\": \"message\",\n"
+            + "  \"tag\": null\n"
+            + "}";
+
+    HumanComment result = gson.fromJson(json, HumanComment.class);
+
+    assertThat(result.key).isEqualTo(new Comment.Key("uuid", "file.txt", 1));
+    assertThat(result.author.getId()).isEqualTo(Account.id(1000001));
+    assertThat(result.realAuthor).isNull();
+    assertThat(result.writtenOn.toInstant()).isEqualTo(Instant.ofEpochSecond(1_600_000_000));
+    assertThat(result.message).isEqualTo("message");
+    assertThat(result.tag).isNull();
+    assertThat(result.range).isNull();
+    assertThat(result.fixSuggestions).isNull();
+    assertThat(result.getCommitId()).isNull();
+    assertThat(result.unresolved).isFalse();
+  }
+
+  @Test
+  public void changeRevisionNoteDataRoundTrip() {
+    ChangeRevisionNoteData data = new ChangeRevisionNoteData();
+    data.pushCert = "cert";
+    data.comments =
+        ImmutableList.of(
+            new HumanComment(
+                new Comment.Key("uuid", "file.txt", 1),
+                Account.id(1000001),
+                Instant.ofEpochSecond(1_600_000_000),
+                (short) 1,
+                "message",
+                "server-id",
+                /* unresolved= */ false));
+
+    String json = gson.toJson(data);
+    ChangeRevisionNoteData result = gson.fromJson(json, ChangeRevisionNoteData.class);
+
+    assertThat(result.pushCert).isEqualTo("cert");
+    assertThat(result.comments).containsExactlyElementsIn(data.comments);
+    assertThat(result.submitRequirementResults).isNull();
+    assertThat(gson.toJson(result)).isEqualTo(json);
+  }
 }
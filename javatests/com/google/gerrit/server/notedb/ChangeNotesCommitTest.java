@@ -112,6 +112,42 @@ public class ChangeNotesCommitTest extends AbstractChangeNotesTest {
     assertThat(((ChangeNotesCommit) commit).isAttentionSetCommitOnly(true)).isEqualTo(false);
   }
 
+  @Test
+  public void footerLineValuesMatchUnfoldedValues() throws Exception {
+    ChangeNotesCommit commit =
+        (ChangeNotesCommit)
+            writeCommit(
+                "Update patch set 1\n"
+                    + "\n"
+                    + "Patch-set: 1\n"
+                    + "Label: Code-Review+1\n"
+                    + "Label: Verified-1\n"
+                    + "Subject: Long\n"
+                    + " subject\n");
+
+    assertThat(commit.getFooterLineValues(ChangeNoteFooters.FOOTER_PATCH_SET)).containsExactly("1");
+    assertThat(commit.getFooterLineValues(ChangeNoteFooters.FOOTER_LABEL))
+        .containsExactly("Code-Review+1", "Verified-1")
+        .inOrder();
+    assertThat(commit.getFooterLineValues(ChangeNoteFooters.FOOTER_SUBJECT))
+        .containsExactly("Long subject");
+    assertThat(commit.getFooterLineValues(ChangeNoteFooters.FOOTER_TOPIC)).isEmpty();
+  }
+
+  @Test
+  public void identicalFooterLinesShareDecodedValueWithinWalk() throws Exception {
+    String body = "Update patch set 1\n\nPatch-set: 1\nLabel: Code-Review+2\n";
+    ChangeNotesCommit c1 = (ChangeNotesCommit) writeCommit(body);
+    ChangeNotesCommit c2 = (ChangeNotesCommit) writeCommit(body + "Label: Verified+1\n");
+
+    String label1 = c1.getFooterLineValues(ChangeNoteFooters.FOOTER_LABEL).get(0);
+    String label2 = c2.getFooterLineValues(ChangeNoteFooters.FOOTER_LABEL).get(0);
+    assertThat(label1).isEqualTo("Code-Review+2");
+    assertThat(label2).isSameInstanceAs(label1);
+    assertThat(c2.getFooterLineValues(ChangeNoteFooters.FOOTER_LABEL).get(1))
+        .isEqualTo("Verified+1");
+  }
+
   private ChangeNotesParser newParser(ObjectId tip) throws Exception {
     walk.reset();
     ChangeNoteJson changeNoteJson = injector.getInstance(ChangeNoteJson.class);
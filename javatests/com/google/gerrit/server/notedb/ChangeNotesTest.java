@@ -2156,6 +2156,72 @@ public class ChangeNotesTest extends AbstractChangeNotesTest {
     }
   }
 
+  @Test
+  public void parseOnTopOfCachedStateMatchesFullParse() throws Exception {
+    Change c = newChange();
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.setChangeMessage("First message");
+    update.commit();
+    ObjectId baseTip = newNotes(c).getRevision();
+
+    update = newUpdate(c, otherUser);
+    update.setChangeMessage("Second message");
+    update.addToPlannedAttentionSetUpdates(
+        ImmutableSet.of(
+            AttentionSetUpdate.createForWrite(changeOwner.getAccountId(), Operation.ADD, "test")));
+    update.commit();
+
+    update = newUpdate(c, otherUser);
+    update.setPatchSetId(c.currentPatchSetId());
+    update.setChangeMessage("Third message");
+    CommentRange range = new CommentRange(1, 1, 2, 1);
+    update.putComment(
+        HumanComment.Status.PUBLISHED,
+        newComment(
+            c.currentPatchSetId(),
+            "file1",
+            "uuid1",
+            range,
+            range.getEndLine(),
+            otherUser,
+            null,
+            TimeUtil.now(),
+            "comment 1",
+            (short) 1,
+            ObjectId.fromString("abcd1234abcd1234abcd1234abcd1234abcd1234"),
+            false));
+    update.commit();
+    ObjectId tip = newNotes(c).getRevision();
+
+    try (ChangeNotesRevWalk rw = ChangeNotesCommit.newRevWalk(repo)) {
+      ChangeNotesState base = newParser(c, baseTip, rw).parseAll();
+      ChangeNotesState full = newParser(c, tip, rw).parseAll();
+      Optional<ChangeNotesState> incremental = newParser(c, tip, rw).parseOnTopOf(base);
+
+      assertThat(incremental).hasValue(full);
+      assertThat(full.changeMessages()).hasSize(3);
+      assertThat(full.publishedComments()).hasSize(1);
+      assertThat(full.attentionSet()).hasSize(1);
+    }
+  }
+
+  @Test
+  public void parseOnTopOfCachedStateFallsBackForUnsupportedFooters() throws Exception {
+    Change c = newChange();
+    ObjectId baseTip = newNotes(c).getRevision();
+
+    ChangeUpdate update = newUpdate(c, otherUser);
+    update.setChangeMessage("Looks good");
+    update.putApproval(LabelId.CODE_REVIEW, (short) 2);
+    update.commit();
+    ObjectId tip = newNotes(c).getRevision();
+
+    try (ChangeNotesRevWalk rw = ChangeNotesCommit.newRevWalk(repo)) {
+      ChangeNotesState base = newParser(c, baseTip, rw).parseAll();
+      assertThat(newParser(c, tip, rw).parseOnTopOf(base)).isEmpty();
+    }
+  }
+
   @Test
   public void multipleUpdatesAcrossRefs() throws Exception {
     Change c1 = newChange();
@@ -3987,6 +4053,16 @@ public class ChangeNotesTest extends AbstractChangeNotesTest {
     assertThat(newNotes(c).getChange().currentPatchSetId().get()).isEqualTo(2);
   }
 
+  private ChangeNotesParser newParser(Change c, ObjectId tip, ChangeNotesRevWalk rw) {
+    return new ChangeNotesParser(
+        c.getId(),
+        tip,
+        rw,
+        changeNoteJson,
+        args.metrics,
+        new NoteDbUtil(serverId, externalIdCache));
+  }
+
   @Nullable
   private ObjectId exactRefAllUsers(String refName) throws Exception {
     try (Repository allUsersRepo = repoManager.openRepository(allUsers)) {
@@ -0,0 +1,155 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.notedb;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.ChangeMessage;
+import com.google.gerrit.entities.RefNames;
+import com.google.gerrit.server.notedb.MetaHistorySquasher.RunOptions;
+import com.google.gerrit.server.notedb.MetaHistorySquasher.SquashResult;
+import com.google.inject.Inject;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Test;
+
+public class MetaHistorySquasherTest extends AbstractChangeNotesTest {
+  @Inject private MetaHistorySquasher squasher;
+
+  @Test
+  public void squashesRepeatedUpdates() throws Exception {
+    Change c = newChange();
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.setChangeMessage("Looks good");
+    update.commit();
+    for (int i = 0; i < 5; i++) {
+      setHashtags(c, "bot");
+    }
+    ChangeNotes notesBefore = newNotes(c);
+    int commitsBefore = countCommits(c);
+
+    SquashResult result = squasher.squashProject(project, repo, options(/* dryRun= */ false));
+
+    assertThat(result.ok).isTrue();
+    assertThat(result.squashedRefs).containsExactly(RefNames.changeMetaRef(c.getId()));
+    assertThat(result.removedCommits).isEqualTo(4);
+    assertThat(countCommits(c)).isEqualTo(commitsBefore - 4);
+
+    ChangeNotes notesAfter = newNotes(c);
+    assertThat(notesAfter.getMetaId()).isNotEqualTo(notesBefore.getMetaId());
+    assertThat(notesAfter.getChange().getLastUpdatedOn())
+        .isEqualTo(notesBefore.getChange().getLastUpdatedOn());
+    assertThat(notesAfter.getHashtags()).containsExactly("bot");
+    assertThat(notesAfter.getChangeMessages()).hasSize(notesBefore.getChangeMessages().size());
+    for (int i = 0; i < notesAfter.getChangeMessages().size(); i++) {
+      ChangeMessage before = notesBefore.getChangeMessages().get(i);
+      ChangeMessage after = notesAfter.getChangeMessages().get(i);
+      assertThat(after.getKey()).isEqualTo(before.getKey());
+      assertThat(after.getMessage()).isEqualTo(before.getMessage());
+      assertThat(after.getWrittenOn()).isEqualTo(before.getWrittenOn());
+    }
+  }
+
+  @Test
+  public void dryRunDoesNotUpdateRef() throws Exception {
+    Change c = newChange();
+    setHashtags(c, "bot");
+    setHashtags(c, "bot");
+    ObjectId metaIdBefore = newNotes(c).getMetaId();
+
+    SquashResult result = squasher.squashProject(project, repo, options(/* dryRun= */ true));
+
+    assertThat(result.squashedRefs).containsExactly(RefNames.changeMetaRef(c.getId()));
+    assertThat(result.removedCommits).isEqualTo(1);
+    assertThat(repo.exactRef(RefNames.changeMetaRef(c.getId())).getObjectId())
+        .isEqualTo(metaIdBefore);
+  }
+
+  @Test
+  public void keepsUpdatesWithChangeMessage() throws Exception {
+    Change c = newChange();
+    for (int i = 0; i < 3; i++) {
+      ChangeUpdate update = newUpdate(c, changeOwner);
+      update.setChangeMessage("Build started");
+      update.commit();
+    }
+    ObjectId metaIdBefore = newNotes(c).getMetaId();
+
+    SquashResult result = squasher.squashProject(project, repo, options(/* dryRun= */ false));
+
+    assertThat(result.squashedRefs).isEmpty();
+    assertThat(repo.exactRef(RefNames.changeMetaRef(c.getId())).getObjectId())
+        .isEqualTo(metaIdBefore);
+  }
+
+  @Test
+  public void keepsUpdatesBeforeChangeMessage() throws Exception {
+    Change c = newChange();
+    setHashtags(c, "bot");
+    setHashtags(c, "bot");
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.setChangeMessage("Looks good");
+    update.commit();
+    ChangeNotes notesBefore = newNotes(c);
+
+    SquashResult result = squasher.squashProject(project, repo, options(/* dryRun= */ false));
+
+    // Squashing would change the key of the change message, which is the ID of its meta commit.
+    assertThat(result.squashedRefs).isEmpty();
+    ChangeNotes notesAfter = newNotes(c);
+    assertThat(notesAfter.getMetaId()).isEqualTo(notesBefore.getMetaId());
+    assertThat(notesAfter.getChangeMessages()).isEqualTo(notesBefore.getChangeMessages());
+  }
+
+  @Test
+  public void skipsChangesWithShortHistory() throws Exception {
+    Change c = newChange();
+    setHashtags(c, "bot");
+    setHashtags(c, "bot");
+    RunOptions options = options(/* dryRun= */ false);
+    options.minCommits = countCommits(c) + 1;
+
+    SquashResult result = squasher.squashProject(project, repo, options);
+
+    assertThat(result.squashedRefs).isEmpty();
+  }
+
+  private void setHashtags(Change c, String... hashtags) throws Exception {
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.setHashtags(ImmutableSet.copyOf(hashtags));
+    update.commit();
+  }
+
+  private int countCommits(Change c) throws Exception {
+    try (RevWalk walk = new RevWalk(repo)) {
+      walk.markStart(
+          walk.parseCommit(repo.exactRef(RefNames.changeMetaRef(c.getId())).getObjectId()));
+      int count = 0;
+      while (walk.next() != null) {
+        count++;
+      }
+      return count;
+    }
+  }
+
+  private static RunOptions options(boolean dryRun) {
+    RunOptions options = new RunOptions();
+    options.dryRun = dryRun;
+    options.minCommits = 1;
+    return options;
+  }
+}
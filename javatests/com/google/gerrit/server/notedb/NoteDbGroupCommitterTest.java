@@ -0,0 +1,183 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.notedb;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.gerrit.testing.GerritJUnit.assertThrows;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.git.LockFailureException;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NoteDbGroupCommitterTest {
+  private static final Project.NameKey PROJECT = Project.nameKey("project");
+
+  private InMemoryRepository repo;
+  private TestRepository<InMemoryRepository> tr;
+  private NoteDbGroupCommitter groupCommitter;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws Exception {
+    repo = new InMemoryRepository(new DfsRepositoryDescription(PROJECT.get()));
+    tr = new TestRepository<>(repo);
+    Config cfg = new Config();
+    cfg.setStringList("notedb", "groupCommit", "project", ImmutableList.of(PROJECT.get()));
+    // Long enough that concurrent updates of a test that queue behind a leader end up in one batch.
+    cfg.setString("notedb", "groupCommit", "window", "200ms");
+    groupCommitter = new NoteDbGroupCommitter(cfg, new NoteDbMetrics(new DisabledMetricMaker()));
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void enabledOnlyForConfiguredProjects() {
+    assertThat(groupCommitter.isEnabled(PROJECT)).isTrue();
+    assertThat(groupCommitter.isEnabled(Project.nameKey("other"))).isFalse();
+  }
+
+  @Test
+  public void updateWithoutConcurrentWritersDoesNotWaitForWindow() throws Exception {
+    Config cfg = new Config();
+    cfg.setStringList("notedb", "groupCommit", "project", ImmutableList.of(PROJECT.get()));
+    cfg.setString("notedb", "groupCommit", "window", "1 min");
+    NoteDbGroupCommitter committer =
+        new NoteDbGroupCommitter(cfg, new NoteDbMetrics(new DisabledMetricMaker()));
+    RevCommit c = tr.commit().create();
+    Stopwatch sw = Stopwatch.createStarted();
+
+    committer.execute(PROJECT, repo, newUpdate(ObjectId.zeroId(), c, metaRef(1)));
+
+    assertThat(sw.elapsed(TimeUnit.SECONDS)).isLessThan(60);
+    assertThat(repo.exactRef(metaRef(1)).getObjectId()).isEqualTo(c);
+  }
+
+  @Test
+  public void concurrentUpdatesAreAllExecuted() throws Exception {
+    List<BatchRefUpdate> updates = new ArrayList<>();
+    for (int i = 1; i <= 5; i++) {
+      updates.add(newUpdate(ObjectId.zeroId(), tr.commit().create(), metaRef(i)));
+    }
+
+    List<Future<?>> futures = executeConcurrently(updates);
+
+    for (Future<?> f : futures) {
+      f.get();
+    }
+    for (int i = 1; i <= 5; i++) {
+      assertThat(repo.exactRef(metaRef(i)).getObjectId())
+          .isEqualTo(updates.get(i - 1).getCommands().get(0).getNewId());
+    }
+  }
+
+  @Test
+  public void failingUpdateDoesNotFailOtherUpdates() throws Exception {
+    RevCommit c1 = tr.commit().create();
+    RevCommit c2 = tr.commit().create();
+    BatchRefUpdate good = newUpdate(ObjectId.zeroId(), c1, metaRef(1));
+    // Expects an old value that the ref doesn't have.
+    BatchRefUpdate bad = newUpdate(c1, c2, metaRef(2));
+
+    List<Future<?>> futures = executeConcurrently(ImmutableList.of(good, bad));
+
+    futures.get(0).get();
+    ExecutionException e = assertThrows(ExecutionException.class, () -> futures.get(1).get());
+    assertThat(e).hasCauseThat().isInstanceOf(LockFailureException.class);
+    assertThat(good.getCommands().get(0).getResult()).isEqualTo(ReceiveCommand.Result.OK);
+    assertThat(repo.exactRef(metaRef(1)).getObjectId()).isEqualTo(c1);
+    assertThat(repo.exactRef(metaRef(2))).isNull();
+  }
+
+  @Test
+  public void canMerge() throws Exception {
+    RevCommit c = tr.commit().create();
+    BatchRefUpdate leader = newUpdate(ObjectId.zeroId(), c, metaRef(1));
+
+    assertThat(
+            NoteDbGroupCommitter.canMerge(
+                leader, newUpdate(ObjectId.zeroId(), c, metaRef(2)), ImmutableSet.of(metaRef(1))))
+        .isTrue();
+    assertThat(
+            NoteDbGroupCommitter.canMerge(
+                leader, newUpdate(ObjectId.zeroId(), c, metaRef(1)), ImmutableSet.of(metaRef(1))))
+        .isFalse();
+
+    BatchRefUpdate otherIdent = newUpdate(ObjectId.zeroId(), c, metaRef(2));
+    otherIdent.setRefLogIdent(new PersonIdent("Other", "other@example.com"));
+    assertThat(NoteDbGroupCommitter.canMerge(leader, otherIdent, ImmutableSet.of(metaRef(1))))
+        .isFalse();
+
+    BatchRefUpdate nonFastForward = newUpdate(ObjectId.zeroId(), c, metaRef(2));
+    nonFastForward.setAllowNonFastForwards(true);
+    assertThat(NoteDbGroupCommitter.canMerge(leader, nonFastForward, ImmutableSet.of(metaRef(1))))
+        .isFalse();
+  }
+
+  private List<Future<?>> executeConcurrently(List<BatchRefUpdate> updates) {
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (BatchRefUpdate bru : updates) {
+      futures.add(
+          executor.submit(
+              () -> {
+                start.await();
+                groupCommitter.execute(PROJECT, repo, bru);
+                return null;
+              }));
+    }
+    start.countDown();
+    return futures;
+  }
+
+  private BatchRefUpdate newUpdate(ObjectId oldId, ObjectId newId, String refName) {
+    BatchRefUpdate bru = repo.getRefDatabase().newBatchUpdate();
+    bru.setAtomic(true);
+    bru.setRefLogIdent(new PersonIdent("Bot", "bot@example.com"));
+    bru.setRefLogMessage("update", false);
+    bru.addCommand(new ReceiveCommand(oldId, newId, refName));
+    return bru;
+  }
+
+  private static String metaRef(int changeId) {
+    return String.format("refs/changes/%02d/%d/meta", changeId % 100, changeId);
+  }
+}
@@ -20,6 +20,10 @@ import static com.google.gerrit.testing.GerritJUnit.assertThrows;
 import static com.google.gerrit.testing.TestActionRefUpdateContext.testRefAction;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import com.github.rholder.retry.BlockStrategy;
 import com.github.rholder.retry.Retryer;
@@ -27,11 +31,15 @@ import com.github.rholder.retry.RetryerBuilder;
 import com.github.rholder.retry.StopStrategies;
 import com.google.common.collect.ImmutableList;
 import com.google.common.truth.Expect;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.Runnables;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.entities.RefNames;
 import com.google.gerrit.exceptions.StorageException;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.Sequence;
 import com.google.gerrit.server.extensions.events.GitReferenceUpdated;
 import com.google.gerrit.testing.InMemoryRepositoryManager;
 import java.io.IOException;
@@ -430,6 +438,73 @@ public class RepoSequenceTest {
         .contains("Expected refs/sequences/id to exist");
   }
 
+  @Test
+  public void backgroundRefillAcquiresNextBatchBeforeCurrentBatchRunsOut() throws Exception {
+    RepoSequence s =
+        new RepoSequence(
+            repoManager,
+            GitReferenceUpdated.DISABLED,
+            project,
+            "id",
+            3,
+            Runnables.doNothing(),
+            RETRYER,
+            new RepoSequence.Refill(
+                Sequence.SequenceType.CHANGES,
+                1,
+                MoreExecutors.directExecutor(),
+                new RepoSequenceMetrics(new DisabledMetricMaker())));
+    s.init(1);
+
+    assertThat(s.next()).isEqualTo(1);
+    assertThat(s.acquireCount).isEqualTo(1);
+    assertThat(readBlob("id")).isEqualTo("4");
+
+    // Only one number is left in the current batch, the next batch is acquired.
+    assertThat(s.next()).isEqualTo(2);
+    assertThat(s.acquireCount).isEqualTo(2);
+    assertThat(readBlob("id")).isEqualTo("7");
+
+    assertThat(s.next()).isEqualTo(3);
+    assertThat(s.acquireCount).isEqualTo(2);
+
+    // The prefetched batch is used without acquiring another batch.
+    assertThat(s.next()).isEqualTo(4);
+    assertThat(s.next(2)).containsExactly(5, 6).inOrder();
+    assertThat(s.last()).isEqualTo(6);
+    assertThat(s.acquireCount).isEqualTo(3);
+    assertThat(readBlob("id")).isEqualTo("10");
+  }
+
+  @Test
+  public void waitForNextBatchIsCountedOncePerCall() throws Exception {
+    writeBlob("id", "1");
+    AtomicBoolean doneBgUpdate = new AtomicBoolean(false);
+    // Let the first attempt fail with LOCK_FAILURE, so that the retryer runs a second attempt.
+    Runnable bgUpdate =
+        () -> {
+          if (!doneBgUpdate.getAndSet(true)) {
+            writeBlob("id", "1234");
+          }
+        };
+    RepoSequenceMetrics metrics =
+        new RepoSequenceMetrics(mock(MetricMaker.class, RETURNS_DEEP_STUBS));
+    RepoSequence s =
+        new RepoSequence(
+            repoManager,
+            GitReferenceUpdated.DISABLED,
+            project,
+            "id",
+            1,
+            bgUpdate,
+            RETRYER,
+            new RepoSequence.Refill(Sequence.SequenceType.CHANGES, 0, command -> {}, metrics));
+
+    assertThat(s.next()).isEqualTo(1234);
+    assertThat(doneBgUpdate.get()).isTrue();
+    verify(metrics.waitCount, times(1)).increment(Sequence.SequenceType.CHANGES);
+  }
+
   private RepoSequence newSequence(String name, int batchSize) {
     return newSequence(name, batchSize, Runnables.doNothing(), RETRYER);
   }
@@ -0,0 +1,132 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.permissions;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.extensions.events.GitReferenceUpdated.GitReferenceUpdatedEvent;
+import com.google.gerrit.server.extensions.events.GitReferenceUpdated.UpdatedRef;
+import com.google.gerrit.server.group.SystemGroupBackend;
+import com.google.gerrit.server.permissions.RefVisibilityCache.Key;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Test for {@link RefVisibilityCache} */
+public class RefVisibilityCacheTest {
+  private static final Project.NameKey PROJECT = Project.nameKey("project");
+  private static final ObjectId REVISION =
+      ObjectId.fromString("0123456789012345678901234567890123456789");
+
+  private RefVisibilityCache refVisibilityCache;
+
+  @Before
+  public void setup() {
+    refVisibilityCache =
+        new RefVisibilityCache(CacheBuilder.newBuilder().build(), new DisabledMetricMaker());
+  }
+
+  @Test
+  public void sameKeySharesVisibility() {
+    refVisibilityCache.get(key(PROJECT, REVISION)).put("refs/heads/master", true);
+
+    Map<String, Boolean> visibility = refVisibilityCache.get(key(PROJECT, REVISION));
+    assertThat(refVisibilityCache.isVisible(visibility, "refs/heads/master")).isTrue();
+    assertThat(refVisibilityCache.isVisible(visibility, "refs/heads/other")).isNull();
+  }
+
+  @Test
+  public void newConfigRevisionDoesNotShareVisibility() {
+    refVisibilityCache.get(key(PROJECT, REVISION)).put("refs/heads/master", true);
+
+    Map<String, Boolean> visibility = refVisibilityCache.get(key(PROJECT, ObjectId.zeroId()));
+    assertThat(refVisibilityCache.isVisible(visibility, "refs/heads/master")).isNull();
+  }
+
+  @Test
+  public void deletedRefIsDropped() {
+    Map<String, Boolean> visibility = refVisibilityCache.get(key(PROJECT, REVISION));
+    visibility.put("refs/heads/master", true);
+    visibility.put("refs/heads/stable", false);
+
+    refVisibilityCache.onGitReferenceUpdated(
+        event(PROJECT, "refs/heads/stable", ReceiveCommand.Type.DELETE));
+    refVisibilityCache.onGitReferenceUpdated(
+        event(PROJECT, "refs/heads/master", ReceiveCommand.Type.UPDATE));
+    refVisibilityCache.onGitReferenceUpdated(
+        event(Project.nameKey("other"), "refs/heads/master", ReceiveCommand.Type.DELETE));
+
+    assertThat(visibility).containsExactly("refs/heads/master", true);
+  }
+
+  @Test
+  public void entriesAreWeighedByNumberOfRefsWhenStoredAgain() {
+    refVisibilityCache =
+        new RefVisibilityCache(
+            CacheBuilder.newBuilder()
+                .maximumWeight(3)
+                .weigher(new RefVisibilityCache.Weigher())
+                .build(),
+            new DisabledMetricMaker());
+    Key key = key(PROJECT, REVISION);
+    ConcurrentMap<String, Boolean> visibility = refVisibilityCache.get(key);
+    visibility.put("refs/heads/master", true);
+    visibility.put("refs/heads/stable", true);
+    visibility.put("refs/heads/other", true);
+
+    refVisibilityCache.put(key, visibility);
+
+    // The entry exceeds the maximum weight and is evicted.
+    assertThat(refVisibilityCache.get(key)).isEmpty();
+  }
+
+  @Test
+  public void gerritRefsAreNotCacheable() {
+    assertThat(RefVisibilityCache.isCacheable("refs/heads/master")).isTrue();
+    assertThat(RefVisibilityCache.isCacheable("refs/meta/config")).isTrue();
+    assertThat(RefVisibilityCache.isCacheable("refs/changes/01/1/1")).isFalse();
+    assertThat(RefVisibilityCache.isCacheable("refs/users/01/1")).isFalse();
+    assertThat(RefVisibilityCache.isCacheable("refs/tags/v1.0")).isFalse();
+  }
+
+  private static Key key(Project.NameKey project, ObjectId revision) {
+    return Key.create(
+        project,
+        ImmutableList.of(revision),
+        ImmutableSet.of(SystemGroupBackend.REGISTERED_USERS),
+        /* admin= */ false,
+        /* user= */ null);
+  }
+
+  private static GitReferenceUpdatedEvent event(
+      Project.NameKey project, String refName, ReceiveCommand.Type type) {
+    return new GitReferenceUpdatedEvent(
+        project,
+        new UpdatedRef(
+            refName,
+            ObjectId.zeroId(),
+            type == ReceiveCommand.Type.DELETE ? ObjectId.zeroId() : REVISION,
+            type),
+        null);
+  }
+}
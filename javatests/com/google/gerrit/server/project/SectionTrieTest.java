@@ -0,0 +1,113 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.project;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.AccessSection;
+import com.google.gerrit.entities.Project;
+import java.util.List;
+import org.junit.Test;
+
+/** Test for {@link SectionTrie} */
+public class SectionTrieTest {
+  private static final Project.NameKey PROJECT = Project.nameKey("project");
+
+  private final SectionTrie trie =
+      SectionTrie.compile(
+          ImmutableList.of(
+              section("refs/*"),
+              section("refs/heads/*"),
+              section("refs/heads/master"),
+              section("^refs/heads/stable-[0-9]+"),
+              section("^refs/heads/rel?ease"),
+              section("^refs/(heads|tags)/v.*"),
+              section("refs/heads/sandbox/${username}/*"),
+              section("refs/tags/*")));
+
+  @Test
+  public void candidatesStartWithPrefix() {
+    assertThat(candidates("refs/heads/master"))
+        .containsExactly("refs/*", "refs/heads/*", "refs/heads/master", "^refs/(heads|tags)/v.*")
+        .inOrder();
+    assertThat(candidates("refs/heads/stable-1"))
+        .containsExactly(
+            "refs/*", "refs/heads/*", "^refs/heads/stable-[0-9]+", "^refs/(heads|tags)/v.*")
+        .inOrder();
+    assertThat(candidates("refs/heads/release"))
+        .containsExactly("refs/*", "refs/heads/*", "^refs/heads/rel?ease", "^refs/(heads|tags)/v.*")
+        .inOrder();
+    assertThat(candidates("refs/heads/sandbox/user/foo"))
+        .containsExactly(
+            "refs/*", "refs/heads/*", "^refs/(heads|tags)/v.*", "refs/heads/sandbox/${username}/*")
+        .inOrder();
+    assertThat(candidates("refs/tags/v1.0"))
+        .containsExactly("refs/*", "^refs/(heads|tags)/v.*", "refs/tags/*")
+        .inOrder();
+  }
+
+  @Test
+  public void candidatesIncludeAllMatchingSections() {
+    for (String ref :
+        ImmutableList.of(
+            "refs/heads/master",
+            "refs/heads/master2",
+            "refs/heads/stable-12",
+            "refs/heads/relase",
+            "refs/heads/release",
+            "refs/heads/v1",
+            "refs/tags/v1",
+            "refs/meta/config")) {
+      List<SectionMatcher> candidates = trie.candidates(ref);
+      for (SectionMatcher sm : trie.all()) {
+        if (!(sm.getMatcher() instanceof RefPatternMatcher.ExpandParameters)
+            && sm.match(ref, null)) {
+          assertThat(candidates).contains(sm);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void regularExpressionRefReturnsAllSections() {
+    assertThat(trie.candidates("^refs/heads/.*")).isEqualTo(trie.all());
+  }
+
+  @Test
+  public void literalPrefix() {
+    assertThat(RefPatternMatcher.literalPrefix("^refs/heads/stable-[0-9]+"))
+        .isEqualTo("refs/heads/stable-");
+    assertThat(RefPatternMatcher.literalPrefix("^refs/heads/rel?ease")).isEqualTo("refs/heads/re");
+    assertThat(RefPatternMatcher.literalPrefix("^refs/heads/a{0,1}")).isEqualTo("refs/heads/");
+    assertThat(RefPatternMatcher.literalPrefix("^refs/heads/x.*")).isEqualTo("refs/heads/x");
+    assertThat(RefPatternMatcher.literalPrefix("^refs/heads/\\d+")).isEqualTo("refs/heads/");
+    assertThat(RefPatternMatcher.literalPrefix("^refs/heads/a|refs/tags/b")).isEqualTo("refs/");
+    assertThat(RefPatternMatcher.literalPrefix("^refs/heads/master$"))
+        .isEqualTo("refs/heads/master");
+    assertThat(RefPatternMatcher.literalPrefix("^refs/(heads|tags)/\\w+")).isEqualTo("refs/");
+    assertThat(RefPatternMatcher.literalPrefix("^refs/(\\w+)/x")).isEmpty();
+    assertThat(RefPatternMatcher.literalPrefix("^(?i)refs/heads/x")).isEmpty();
+  }
+
+  private List<String> candidates(String ref) {
+    return trie.candidates(ref).stream().map(sm -> sm.getSection().getName()).collect(toList());
+  }
+
+  private static SectionMatcher section(String name) {
+    return SectionMatcher.wrap(PROJECT, AccessSection.create(name));
+  }
+}
@@ -0,0 +1,87 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.gerrit.server.query.change;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.Change;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.notedb.AbstractChangeNotesTest;
+import com.google.gerrit.server.notedb.ChangeUpdate;
+import java.io.IOException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+public class ChangeNotesBulkLoaderTest extends AbstractChangeNotesTest {
+  private static final Project.NameKey BROKEN_PROJECT = Project.nameKey("broken");
+
+  @Test
+  public void notesOfAllChangesOfProjectAreLoaded() throws Exception {
+    Change c1 = newChange();
+    Change c2 = newChange();
+    ObjectId meta1 = newNotes(c1).getMetaId();
+    ObjectId meta2 = newNotes(c2).getMetaId();
+    ChangeData cd1 = changeData(project, c1.getId());
+    ChangeData cd2 = changeData(project, c2.getId());
+
+    new ChangeNotesBulkLoader(repoManager, new DisabledMetricMaker())
+        .load(ImmutableList.of(cd1, cd2));
+
+    // Notes that were loaded in bulk don't see later updates.
+    updateChange(c1);
+    updateChange(c2);
+    assertThat(cd1.notes().getMetaId()).isEqualTo(meta1);
+    assertThat(cd2.notes().getMetaId()).isEqualTo(meta2);
+  }
+
+  @Test
+  public void projectThatCannotBeReadIsSkipped() throws Exception {
+    Change c1 = newChange();
+    Change c2 = newChange();
+    ObjectId meta1 = newNotes(c1).getMetaId();
+    ChangeData cd1 = changeData(project, c1.getId());
+    ChangeData cd2 = changeData(project, c2.getId());
+    ChangeData broken1 = changeData(BROKEN_PROJECT, Change.id(1001));
+    ChangeData broken2 = changeData(BROKEN_PROJECT, Change.id(1002));
+    GitRepositoryManager failingRepoManager = mock(GitRepositoryManager.class);
+    when(failingRepoManager.openRepository(BROKEN_PROJECT))
+        .thenThrow(new IOException("injected failure"));
+    when(failingRepoManager.openRepository(project))
+        .thenAnswer(invocation -> repoManager.openRepository(project));
+
+    new ChangeNotesBulkLoader(failingRepoManager, new DisabledMetricMaker())
+        .load(ImmutableList.of(broken1, cd1, broken2, cd2));
+
+    updateChange(c1);
+    assertThat(cd1.notes().getMetaId()).isEqualTo(meta1);
+  }
+
+  private ChangeData changeData(Project.NameKey projectName, Change.Id id) {
+    return ChangeData.createForTest(
+            projectName, id, 1, ObjectId.zeroId(), null, changeNotesFactory, null)
+        .setStorageConstraint(ChangeData.StorageConstraint.INDEX_PRIMARY_NOTEDB_SECONDARY);
+  }
+
+  private void updateChange(Change c) throws Exception {
+    ChangeUpdate update = newUpdate(c, changeOwner);
+    update.setChangeMessage("Update");
+    update.commit();
+  }
+}